@@ -6,19 +6,29 @@ import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Map;
-import java.util.Objects;
+import java.util.NavigableMap;
 import java.util.Set;
+import java.util.TreeMap;
 
+/**
+ * An epic: a task made of subtasks. Its status, duration, start and end time are the aggregates of
+ * its subtasks. They are kept up to date as the subtasks are added, updated and removed, so reading
+ * them does not walk the subtasks.
+ * <p>
+ * The view of an epic holds the views of its subtasks, it is taken again after a subtask is added,
+ * updated or removed. It is not kept while a subtask reads its description on demand.
+ */
 public class Epic extends Task {
 
   private final Set<Subtask> subtasks = new HashSet<>();
+  private transient Aggregates aggregates = new Aggregates();
 
   public Epic() {
   }
 
   @Override
   public TaskStatus getStatus() {
-    return calculateStatus();
+    return aggregates().status();
   }
 
   @Override
@@ -26,19 +36,59 @@ public class Epic extends Task {
     return TaskType.EPIC;
   }
 
+  /**
+   * Returns the total duration of the Epic, the sum of the durations of its subtasks.
+   * <p>
+   * If the Epic does not have any subtasks, the total duration will be zero.
+   *
+   * @return {@link Duration}
+   */
   @Override
   public Duration getDuration() {
-    return calculateDuration();
+    return aggregates().duration;
   }
 
+  /**
+   * Returns the earliest start date and time among all subtasks of the Epic.
+   * <p>
+   * If the Epic does not contain any subtasks or if all subtasks have null start times, null is
+   * returned.
+   *
+   * @return {@link LocalDateTime}
+   */
   @Override
   public LocalDateTime getStartTime() {
-    return defineStartTime();
+    return aggregates().startTime();
   }
 
+  /**
+   * Returns the latest end date and time among all subtasks of the Epic.
+   * <p>
+   * If the Epic does not have any subtasks or if all subtasks have null end times, null is
+   * returned.
+   *
+   * @return {@link LocalDateTime}
+   */
   @Override
   public LocalDateTime getEndTime() {
-    return defineEndTime();
+    return aggregates().endTime();
+  }
+
+  @Override
+  public EpicRecord view() {
+    return (EpicRecord) super.view();
+  }
+
+  @Override
+  protected EpicRecord createView() {
+    return new EpicRecord(getId(), getTitle(), getDescription(), getStatus(), getDuration(),
+        getStartTime(), subtasks.stream().map(Subtask::view).toList());
+  }
+
+  @Override
+  protected boolean isViewCacheable() {
+    return super.isViewCacheable()
+        && subtasks.stream().allMatch(subtask -> subtask.getDescriptionSource() == null);
   }
 
   @Override
@@ -50,7 +100,8 @@ public class Epic extends Task {
     newEpic.setStatus(TaskStatus.valueOf(this.getStatus().name()));
     newEpic.setDuration(this.getDuration());
     newEpic.setStartTime(this.getStartTime());
-    this.subtasks.forEach(subtask -> newEpic.addSubtask(subtask.copy()));
+    this.subtasks.forEach(subtask -> newEpic.subtasks.add(subtask.copy()));
+    newEpic.aggregates = aggregates().copy();
     return newEpic;
   }
 
@@ -69,89 +120,155 @@ public class Epic extends Task {
     if (subtask == null || subtasks.contains(subtask)) {
       return;
     }
+    final Aggregates current = aggregates();
     subtasks.add(subtask);
+    current.add(subtask);
+    resetView();
   }
 
   public void updateSubtask(final Subtask subtask) {
     if (subtask == null || !subtasks.contains(subtask)) {
       return;
     }
+    final Aggregates current = aggregates();
     subtasks.remove(subtask);
     subtasks.add(subtask);
+    current.add(subtask);
+    resetView();
   }
 
   public void removeSubtask(final Subtask subtask) {
-    subtasks.remove(subtask);
+    final Aggregates current = aggregates();
+    if (subtasks.remove(subtask)) {
+      current.remove(subtask.getId());
+      resetView();
+    }
   }
 
   public void clearSubtasks() {
     subtasks.clear();
-  }
-
-  private TaskStatus calculateStatus() {
-    if (subtasks.isEmpty()) {
-      return TaskStatus.NEW;
-    }
-    Map<TaskStatus, Integer> subtaskStatus = getSubtasksStatuses();
-
-    if (subtaskStatus.getOrDefault(TaskStatus.NEW, 0) == subtasks.size()) {
-      return TaskStatus.NEW;
-    }
-    if (subtaskStatus.getOrDefault(TaskStatus.DONE, 0) == subtasks.size()) {
-      return TaskStatus.DONE;
-    }
-    return TaskStatus.IN_PROGRESS;
-  }
-
-  private Map<TaskStatus, Integer> getSubtasksStatuses() {
-    final Map<TaskStatus, Integer> result = new HashMap<>();
-    subtasks.forEach(s -> result.put(s.getStatus(), result.getOrDefault(s.getStatus(), 0) + 1));
-    return result;
+    aggregates = new Aggregates();
+    resetView();
   }
 
   /**
-   * Performs a calculation of the total duration of the Epic by summing the durations of its
-   * subtasks.
-   * <p>
-   * If the Epic does not have any subtasks, the total duration will be zero.
-   *
-   * @return {@link Duration}
+   * Returns the aggregates of the subtasks. They are counted again if they do not cover the
+   * subtasks, as after Gson has filled the subtasks of a parsed epic.
    */
-  private Duration calculateDuration() {
-    return subtasks.stream().map(Subtask::getDuration)
-        .reduce(Duration.ZERO, Duration::plus);
+  private Aggregates aggregates() {
+    if (aggregates == null || aggregates.size() != subtasks.size()) {
+      aggregates = new Aggregates();
+      subtasks.forEach(aggregates::add);
+    }
+    return aggregates;
   }
 
   /**
-   * Defines and returns the earliest start date and time among all subtasks of the Epic.
-   * <p>
-   * If the Epic does not contain any subtasks or if all subtasks have null start times, null is
-   * returned.
-   *
-   * @return {@link LocalDateTime}
+   * What a subtask adds to the aggregates, kept to be taken back when the subtask is updated or
+   * removed.
    */
-  private LocalDateTime defineStartTime() {
-    return subtasks.stream()
-        .map(Subtask::getStartTime)
-        .filter(Objects::nonNull)
-        .min(LocalDateTime::compareTo)
-        .orElse(null);
+  private record Contribution(TaskStatus status, Duration duration, LocalDateTime startTime,
+                              LocalDateTime endTime) {
+
   }
 
   /**
-   * Defines and returns the latest end date and time among all subtasks of the Epic.
-   * <p>
-   * If the Epic does not have any subtasks or if ll subtasks have null end times, null is
-   * returned.
-   *
-   * @return {@link LocalDateTime}
+   * The aggregates of the subtasks: the number of the subtasks in every status, the sum of their
+   * durations and the numbers of the subtasks starting and ending at every time, sorted by the
+   * time.
    */
-  private LocalDateTime defineEndTime() {
-    return subtasks.stream()
-        .map(Subtask::getEndTime)
-        .filter(Objects::nonNull)
-        .max(LocalDateTime::compareTo)
-        .orElse(null);
-  }
+  private static final class Aggregates {
 
+    private static final TaskStatus[] STATUSES = TaskStatus.values();
+
+    private final Map<Integer, Contribution> contributions;
+    private final int[] statuses;
+    private final NavigableMap<LocalDateTime, Integer> startTimes;
+    private final NavigableMap<LocalDateTime, Integer> endTimes;
+    private Duration duration;
+
+    private Aggregates() {
+      this.contributions = new HashMap<>();
+      this.statuses = new int[STATUSES.length + 1];
+      this.startTimes = new TreeMap<>();
+      this.endTimes = new TreeMap<>();
+      this.duration = Duration.ZERO;
+    }
+
+    private Aggregates(final Aggregates other) {
+      this.contributions = new HashMap<>(other.contributions);
+      this.statuses = other.statuses.clone();
+      this.startTimes = new TreeMap<>(other.startTimes);
+      this.endTimes = new TreeMap<>(other.endTimes);
+      this.duration = other.duration;
+    }
+
+    private Aggregates copy() {
+      return new Aggregates(this);
+    }
+
+    private int size() {
+      return contributions.size();
+    }
+
+    /**
+     * Adds the subtask, replacing the contribution of its previous version.
+     */
+    private void add(final Subtask subtask) {
+      remove(subtask.getId());
+      final Contribution contribution = new Contribution(subtask.getStatus(),
+          subtask.getDuration(), subtask.getStartTime(), subtask.getEndTime());
+      contributions.put(subtask.getId(), contribution);
+      statuses[index(contribution.status())]++;
+      duration = duration.plus(contribution.duration());
+      if (contribution.startTime() != null) {
+        startTimes.merge(contribution.startTime(), 1, Integer::sum);
+        endTimes.merge(contribution.endTime(), 1, Integer::sum);
+      }
+    }
+
+    private void remove(final int id) {
+      final Contribution contribution = contributions.remove(id);
+      if (contribution == null) {
+        return;
+      }
+      statuses[index(contribution.status())]--;
+      duration = duration.minus(contribution.duration());
+      if (contribution.startTime() != null) {
+        decrement(startTimes, contribution.startTime());
+        decrement(endTimes, contribution.endTime());
+      }
+    }
+
+    private TaskStatus status() {
+      final int size = size();
+      if (size == 0 || statuses[TaskStatus.NEW.ordinal()] == size) {
+        return TaskStatus.NEW;
+      }
+      if (statuses[TaskStatus.DONE.ordinal()] == size) {
+        return TaskStatus.DONE;
+      }
+      return TaskStatus.IN_PROGRESS;
+    }
+
+    private LocalDateTime startTime() {
+      return startTimes.isEmpty() ? null : startTimes.firstKey();
+    }
+
+    private LocalDateTime endTime() {
+      return endTimes.isEmpty() ? null : endTimes.lastKey();
+    }
+
+    /**
+     * Returns the counter of the status, the last one counts the subtasks without a status.
+     */
+    private static int index(final TaskStatus status) {
+      return status == null ? STATUSES.length : status.ordinal();
+    }
+
+    private static void decrement(final NavigableMap<LocalDateTime, Integer> times,
+        final LocalDateTime time) {
+      times.computeIfPresent(time, (key, count) -> count == 1 ? null : count - 1);
+    }
+  }
 }
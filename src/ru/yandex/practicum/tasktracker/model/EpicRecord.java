@@ -0,0 +1,35 @@
+package ru.yandex.practicum.tasktracker.model;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * The immutable view of an {@link Epic}: its aggregates and the views of its subtasks.
+ */
+public record EpicRecord(int id, String title, String description, TaskStatus status,
+                         Duration duration, LocalDateTime startTime,
+                         List<SubtaskRecord> subtasks) implements TaskView {
+
+  public EpicRecord {
+    subtasks = List.copyOf(subtasks);
+  }
+
+  @Override
+  public TaskType type() {
+    return TaskType.EPIC;
+  }
+
+  /**
+   * Returns the latest end time among the subtasks, see {@link Epic#getEndTime()}.
+   */
+  @Override
+  public LocalDateTime endTime() {
+    return subtasks.stream()
+        .map(SubtaskRecord::endTime)
+        .filter(Objects::nonNull)
+        .max(LocalDateTime::compareTo)
+        .orElse(null);
+  }
+}
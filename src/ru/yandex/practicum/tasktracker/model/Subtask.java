@@ -13,6 +13,7 @@ public class Subtask extends Task {
 
   public void setEpicId(final int epicId) {
     this.epicId = epicId;
+    resetView();
   }
 
   @Override
@@ -27,6 +28,17 @@ public class Subtask extends Task {
     return TaskType.SUBTASK;
   }
 
+  @Override
+  public SubtaskRecord view() {
+    return (SubtaskRecord) super.view();
+  }
+
+  @Override
+  protected SubtaskRecord createView() {
+    return new SubtaskRecord(getId(), getTitle(), getDescription(), getStatus(), getDuration(),
+        getStartTime(), epicId);
+  }
+
   @Override
   public Subtask copy() {
     Subtask newSubtask = new Subtask();
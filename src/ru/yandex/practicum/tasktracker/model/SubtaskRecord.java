@@ -0,0 +1,17 @@
+package ru.yandex.practicum.tasktracker.model;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+
+/**
+ * The immutable view of a {@link Subtask}.
+ */
+public record SubtaskRecord(int id, String title, String description, TaskStatus status,
+                            Duration duration, LocalDateTime startTime, int epicId)
+    implements TaskView {
+
+  @Override
+  public TaskType type() {
+    return TaskType.SUBTASK;
+  }
+}
@@ -3,6 +3,7 @@ package ru.yandex.practicum.tasktracker.model;
 import java.time.Duration;
 import java.time.LocalDateTime;
 import java.util.Objects;
+import java.util.function.Supplier;
 
 public class Task {
 
@@ -12,6 +13,8 @@ public class Task {
   private TaskStatus status;
   private Duration duration;
   private LocalDateTime startTime;
+  private transient Supplier<String> descriptionSource;
+  private transient TaskView view;
 
   public Task() {
     this.status = TaskStatus.NEW;
@@ -24,6 +27,7 @@ public class Task {
 
   public void setId(final int id) {
     this.id = id;
+    resetView();
   }
 
   public String getTitle() {
@@ -32,14 +36,36 @@ public class Task {
 
   public void setTitle(final String title) {
     this.title = title;
+    resetView();
   }
 
   public String getDescription() {
-    return description;
+    final Supplier<String> source = descriptionSource;
+    return source == null ? description : source.get();
   }
 
   public void setDescription(final String description) {
     this.description = description;
+    this.descriptionSource = null;
+    resetView();
+  }
+
+  /**
+   * Returns the source the description is read from on demand, or {@code null} if the task holds
+   * the description itself.
+   */
+  public Supplier<String> getDescriptionSource() {
+    return descriptionSource;
+  }
+
+  /**
+   * Makes the task read its description from the {@code source} on demand instead of holding it.
+   */
+  public void setDescriptionSource(final Supplier<String> descriptionSource) {
+    this.descriptionSource = Objects.requireNonNull(descriptionSource,
+        "Can not set description source to null.");
+    this.description = null;
+    resetView();
   }
 
   public TaskStatus getStatus() {
@@ -48,6 +74,7 @@ public class Task {
 
   public void setStatus(final TaskStatus taskStatus) {
     this.status = taskStatus;
+    resetView();
   }
 
   public void setDuration(final Duration duration) {
@@ -56,6 +83,7 @@ public class Task {
       throw new IllegalArgumentException("Duration cannot be negative.");
     }
     this.duration = duration;
+    resetView();
   }
 
   public Duration getDuration() {
@@ -68,6 +96,7 @@ public class Task {
 
   public void setStartTime(final LocalDateTime startTime) {
     this.startTime = startTime;
+    resetView();
   }
 
   public LocalDateTime getEndTime() {
@@ -90,6 +119,41 @@ public class Task {
         " ");
   }
 
+  /**
+   * Returns the immutable view of the task, see {@link TaskView}. The view is taken once and shared
+   * until the task is changed, unless {@link #isViewCacheable()} forbids keeping it.
+   */
+  public TaskView view() {
+    TaskView current = view;
+    if (current == null) {
+      current = createView();
+      if (isViewCacheable()) {
+        view = current;
+      }
+    }
+    return current;
+  }
+
+  /**
+   * Returns whether the view may be kept until the task is changed. A task reading its description
+   * on demand takes a new view every time, so the description is not kept in memory.
+   */
+  protected boolean isViewCacheable() {
+    return descriptionSource == null;
+  }
+
+  protected TaskView createView() {
+    return new TaskRecord(getId(), getTitle(), getDescription(), getStatus(), getDuration(),
+        getStartTime());
+  }
+
+  /**
+   * Drops the view taken before the task is changed.
+   */
+  protected void resetView() {
+    view = null;
+  }
+
   public Task copy() {
     final Task newTask = new Task();
     newTask.setId(this.getId());
@@ -123,7 +187,7 @@ public class Task {
         "{" +
         "id=" + id +
         ", title='" + title + '\'' +
-        ", description='" + description + '\'' +
+        ", description='" + getDescription() + '\'' +
         ", status=" + getStatus() +
         ", duration=" + getDuration().toMinutes() +
         ", startTime=" + getStartTime() +
@@ -0,0 +1,16 @@
+package ru.yandex.practicum.tasktracker.model;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+
+/**
+ * The immutable view of a {@link Task}.
+ */
+public record TaskRecord(int id, String title, String description, TaskStatus status,
+                         Duration duration, LocalDateTime startTime) implements TaskView {
+
+  @Override
+  public TaskType type() {
+    return TaskType.TASK;
+  }
+}
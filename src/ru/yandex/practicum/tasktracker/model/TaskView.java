@@ -0,0 +1,32 @@
+package ru.yandex.practicum.tasktracker.model;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+
+/**
+ * An immutable view of a task, see {@link Task#view()}.
+ * <p>
+ * A view holds the values the task had when the view was taken, so the managers share it with the
+ * readers instead of copying the task for every read. The components of the views are named after
+ * the fields of the tasks: a view is written to JSON as the task itself is.
+ */
+public sealed interface TaskView permits TaskRecord, SubtaskRecord, EpicRecord {
+
+  int id();
+
+  String title();
+
+  String description();
+
+  TaskStatus status();
+
+  Duration duration();
+
+  LocalDateTime startTime();
+
+  TaskType type();
+
+  default LocalDateTime endTime() {
+    return startTime() == null ? null : startTime().plus(duration());
+  }
+}
@@ -17,6 +17,12 @@ public enum Endpoint {
 
   GET_HISTORY("^/history$"),
   GET_PRIORITIZED("^/prioritized$"),
+  GET_PRIORITIZED_SLOT("^/prioritized/slot$"),
+
+  GET_ADMIN_BACKUP("^/admin/backup$"),
+  GET_ADMIN_BACKUP_LAST("^/admin/backup/last$"),
+  GET_ADMIN_CHECKPOINT("^/admin/checkpoint$"),
+  GET_ADMIN_REPLICATION("^/admin/replication$"),
 
   /* POST endpoints */
   POST_TASKS("^/tasks$"),
@@ -27,13 +33,15 @@ public enum Endpoint {
 
   POST_EPIC("^/epics$"),
 
+  POST_PRIORITIZED_SCHEDULE("^/prioritized/schedule$"),
+
   /* DELETE endpoints */
   DELETE_TASKS_ID("^/tasks/\\d+$"),
   DELETE_SUBTASKS_ID("^/subtasks/\\d+$"),
   DELETE_EPICS_ID("^/epics/\\d+$"),
 
   UNKNOWN(
-      "^(?!/(tasks|epics|subtasks|history|prioritized)(?:$|/)).*");
+      "^(?!/(tasks|epics|subtasks|history|prioritized|admin)(?:$|/)).*");
 
   private String path;
 
@@ -4,11 +4,17 @@ import com.google.gson.Gson;
 import com.sun.net.httpserver.HttpServer;
 import java.io.IOException;
 import java.net.InetSocketAddress;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import ru.yandex.practicum.tasktracker.exception.ManagerSaveException;
+import ru.yandex.practicum.tasktracker.server.handlers.AdminHandler;
 import ru.yandex.practicum.tasktracker.server.handlers.EpicsHandler;
 import ru.yandex.practicum.tasktracker.server.handlers.HistoryHandler;
 import ru.yandex.practicum.tasktracker.server.handlers.PrioritizedHandler;
 import ru.yandex.practicum.tasktracker.server.handlers.SubtasksHandler;
 import ru.yandex.practicum.tasktracker.server.handlers.TasksHandler;
+import ru.yandex.practicum.tasktracker.service.FileBackedTaskManager;
 import ru.yandex.practicum.tasktracker.service.Managers;
 import ru.yandex.practicum.tasktracker.service.TaskManager;
 
@@ -16,6 +22,13 @@ import ru.yandex.practicum.tasktracker.service.TaskManager;
  * Listens to 8080 port and accepts requests. This is main class of the application.It contains main
  * method which will be launched to start working with the application. To accept and handle user
  * requests {@link HttpServer} is used. Its instance starts when application launches.
+ * <p>
+ * By default the requests are handled one by one. A server with several handler threads needs a
+ * thread-safe {@link TaskManager}, see {@link Managers#getConcurrentTaskManager()}. Backups are
+ * streamed on a thread of their own, see {@link AdminHandler}.
+ * <p>
+ * A manager that holds files, such as {@link FileBackedTaskManager}, is closed when the server is
+ * stopped, so the pending changes are written and the files are released.
  */
 public class HttpTaskServer {
 
@@ -25,12 +38,26 @@ public class HttpTaskServer {
   private final Gson gson;
 
   private final TaskManager taskManager;
+  private final ExecutorService executor;
+  private final ExecutorService backupExecutor;
 
   public HttpTaskServer() throws IOException {
     this(Managers.getDefault());
   }
 
   public HttpTaskServer(final TaskManager taskManager) throws IOException {
+    this(taskManager, 1);
+  }
+
+  /**
+   * Creates the server that handles the requests on the given number of threads.
+   *
+   * @throws IllegalArgumentException if {@code threads} is not positive
+   */
+  public HttpTaskServer(final TaskManager taskManager, final int threads) throws IOException {
+    if (threads < 1) {
+      throw new IllegalArgumentException("The number of threads must be positive: " + threads);
+    }
     this.taskManager = taskManager;
     gson = Managers.getGson();
     server = HttpServer.create(new InetSocketAddress("localhost", PORT), 0);
@@ -39,6 +66,11 @@ public class HttpTaskServer {
     server.createContext("/epics", new EpicsHandler(this.taskManager, this.gson));
     server.createContext("/history", new HistoryHandler(this.taskManager, this.gson));
     server.createContext("/prioritized", new PrioritizedHandler(this.taskManager, this.gson));
+    backupExecutor = Executors.newSingleThreadExecutor();
+    server.createContext("/admin",
+        new AdminHandler(this.taskManager, this.gson, this.backupExecutor));
+    executor = threads == 1 ? null : Executors.newFixedThreadPool(threads);
+    server.setExecutor(executor);
   }
 
   public void start() throws IOException {
@@ -47,8 +79,34 @@ public class HttpTaskServer {
     server.start();
   }
 
+  /**
+   * Stops the server and closes the {@link TaskManager} if it is {@link AutoCloseable}.
+   *
+   * @throws ManagerSaveException if the pending changes of the manager cannot be written
+   */
   public void stop() {
     System.out.println("Stopped server on port " + PORT);
     server.stop(0);
+    if (executor != null) {
+      executor.shutdown();
+    }
+    backupExecutor.shutdown();
+    try {
+      if (!backupExecutor.awaitTermination(1, TimeUnit.MINUTES)) {
+        backupExecutor.shutdownNow();
+      }
+    } catch (InterruptedException e) {
+      backupExecutor.shutdownNow();
+      Thread.currentThread().interrupt();
+    }
+    if (taskManager instanceof AutoCloseable closeable) {
+      try {
+        closeable.close();
+      } catch (RuntimeException e) {
+        throw e;
+      } catch (Exception e) {
+        throw new ManagerSaveException("An error occurred during closing the task manager.", e);
+      }
+    }
   }
 }
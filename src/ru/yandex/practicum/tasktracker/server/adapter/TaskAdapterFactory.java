@@ -0,0 +1,47 @@
+package ru.yandex.practicum.tasktracker.server.adapter;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonElement;
+import com.google.gson.TypeAdapter;
+import com.google.gson.TypeAdapterFactory;
+import com.google.gson.reflect.TypeToken;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+import java.io.IOException;
+import ru.yandex.practicum.tasktracker.model.Task;
+
+/**
+ * A custom Gson {@link TypeAdapterFactory} for {@link Task} and its subclasses.
+ * <p>
+ * A task may read its description on demand instead of holding it in a field, see
+ * {@link Task#setDescriptionSource}. The adapter serializes the fields of the task as usual and
+ * puts the description returned by {@link Task#getDescription()} in place of the field.
+ */
+public class TaskAdapterFactory implements TypeAdapterFactory {
+
+  private static final String DESCRIPTION = "description";
+
+  @Override
+  public <T> TypeAdapter<T> create(final Gson gson, final TypeToken<T> type) {
+    if (!Task.class.isAssignableFrom(type.getRawType())) {
+      return null;
+    }
+    final TypeAdapter<T> delegate = gson.getDelegateAdapter(this, type);
+    final TypeAdapter<JsonElement> elementAdapter = gson.getAdapter(JsonElement.class);
+    return new TypeAdapter<>() {
+      @Override
+      public void write(final JsonWriter jsonWriter, final T value) throws IOException {
+        final JsonElement element = delegate.toJsonTree(value);
+        if (value != null && element.isJsonObject()) {
+          element.getAsJsonObject().addProperty(DESCRIPTION, ((Task) value).getDescription());
+        }
+        elementAdapter.write(jsonWriter, element);
+      }
+
+      @Override
+      public T read(final JsonReader jsonReader) throws IOException {
+        return delegate.read(jsonReader);
+      }
+    };
+  }
+}
@@ -0,0 +1,156 @@
+package ru.yandex.practicum.tasktracker.server.handlers;
+
+import com.google.gson.Gson;
+import com.sun.net.httpserver.HttpExchange;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.zip.GZIPOutputStream;
+import ru.yandex.practicum.tasktracker.server.Endpoint;
+import ru.yandex.practicum.tasktracker.service.BackupReport;
+import ru.yandex.practicum.tasktracker.service.CheckpointMetrics;
+import ru.yandex.practicum.tasktracker.service.FileBackedTaskManager;
+import ru.yandex.practicum.tasktracker.service.FollowerTaskManager;
+import ru.yandex.practicum.tasktracker.service.TaskManager;
+
+/**
+ * HTTP handler class for the path "/admin".
+ * <p>
+ * {@code GET /admin/backup} streams a consistent CSV snapshot of a {@link FileBackedTaskManager}
+ * while the manager keeps accepting modifications, see
+ * {@link FileBackedTaskManager#backup(OutputStream)}. The size and the throughput of the last
+ * backup are returned by {@code GET /admin/backup/last}. Any other manager has no backups: both
+ * paths return 404. A client that accepts the {@code gzip} encoding receives the backup compressed,
+ * the reported size is the size of the uncompressed CSV. The backup is streamed on the given
+ * executor, so a slow client does not hold the thread that handles the other requests.
+ * <p>
+ * {@code GET /admin/checkpoint} returns the progress of the background checkpoints, see
+ * {@link FileBackedTaskManager#getCheckpointMetrics()}, or 404 if they are not enabled.
+ * <p>
+ * {@code GET /admin/replication} returns the replication lag of a {@link FollowerTaskManager}, see
+ * {@link FollowerTaskManager#getReplicationMetrics()}, or 404 for any other manager.
+ */
+public class AdminHandler extends BaseHttpHandler {
+
+  private final Executor backupExecutor;
+  private volatile BackupReport lastReport;
+
+  public AdminHandler(final TaskManager taskManager, final Gson gson,
+      final Executor backupExecutor) {
+    super(taskManager, gson);
+    this.backupExecutor = backupExecutor;
+  }
+
+  /**
+   * Hands a backup request over to the backup executor and handles any other request on the
+   * calling thread.
+   */
+  @Override
+  public void handle(HttpExchange exchange) {
+    if ("GET".equals(exchange.getRequestMethod()) && Endpoint.GET_ADMIN_BACKUP.equals(
+        Endpoint.getEndpoint("GET", exchange.getRequestURI().getPath()))) {
+      backupExecutor.execute(() -> super.handle(exchange));
+      return;
+    }
+    super.handle(exchange);
+  }
+
+  @Override
+  protected void handleGet(HttpExchange exchange, String path) throws IOException {
+    Endpoint endpoint = Endpoint.getEndpoint("GET", path);
+    if (Endpoint.GET_ADMIN_BACKUP.equals(endpoint)) {
+      handleBackup(exchange);
+    } else if (Endpoint.GET_ADMIN_BACKUP_LAST.equals(endpoint)) {
+      handleLastBackup(exchange);
+    } else if (Endpoint.GET_ADMIN_CHECKPOINT.equals(endpoint)) {
+      handleCheckpointMetrics(exchange);
+    } else if (Endpoint.GET_ADMIN_REPLICATION.equals(endpoint)) {
+      handleReplicationMetrics(exchange);
+    } else {
+      System.out.println("Wrong path - 400");
+      sendBadRequest400(exchange);
+    }
+  }
+
+  @Override
+  protected void handlePost(HttpExchange exchange, String path) throws IOException {
+    System.out.println("Unsupported method ");
+    sendNotAllowed405(exchange);
+  }
+
+  @Override
+  protected void handleDelete(HttpExchange exchange, String path) throws IOException {
+    System.out.println("Unsupported method ");
+    sendNotAllowed405(exchange);
+  }
+
+  private void handleBackup(HttpExchange exchange) throws IOException {
+    if (!(taskManager instanceof FileBackedTaskManager fileBackedTaskManager)) {
+      System.out.println("Backup is not supported - 404");
+      sendNotFound404(exchange);
+      return;
+    }
+    final boolean gzip = acceptsGzip(exchange);
+    exchange.getResponseHeaders().add("Content-Type", "text/csv;charset=utf-8");
+    if (gzip) {
+      exchange.getResponseHeaders().add("Content-Encoding", "gzip");
+    }
+    exchange.sendResponseHeaders(200, 0);
+    try (final OutputStream responseBody = gzip
+        ? new GZIPOutputStream(exchange.getResponseBody(), 1 << 16)
+        : exchange.getResponseBody()) {
+      lastReport = fileBackedTaskManager.backup(responseBody);
+    }
+    System.out.printf("Backup - 200, %d bytes, %.1f MB/s%n", lastReport.bytes(),
+        lastReport.megabytesPerSecond());
+  }
+
+  private static boolean acceptsGzip(HttpExchange exchange) {
+    final List<String> encodings = exchange.getRequestHeaders().get("Accept-Encoding");
+    return encodings != null && encodings.stream()
+        .flatMap(value -> Arrays.stream(value.split(",")))
+        .map(encoding -> encoding.split(";")[0].trim())
+        .anyMatch("gzip"::equalsIgnoreCase);
+  }
+
+  private void handleLastBackup(HttpExchange exchange) throws IOException {
+    final BackupReport report = lastReport;
+    if (report == null) {
+      System.out.println("No backup has been taken - 404");
+      sendNotFound404(exchange);
+      return;
+    }
+    sendText200(exchange, gson.toJson(report));
+    System.out.println("Get Last Backup - 200");
+  }
+
+  private void handleCheckpointMetrics(HttpExchange exchange) throws IOException {
+    if (!(taskManager instanceof FileBackedTaskManager fileBackedTaskManager)) {
+      System.out.println("Background checkpoints are not supported - 404");
+      sendNotFound404(exchange);
+      return;
+    }
+    final CheckpointMetrics metrics;
+    try {
+      metrics = fileBackedTaskManager.getCheckpointMetrics();
+    } catch (IllegalStateException e) {
+      System.out.println("Background checkpoints are not enabled - 404");
+      sendNotFound404(exchange);
+      return;
+    }
+    sendText200(exchange, gson.toJson(metrics));
+    System.out.println("Get Checkpoint Metrics - 200");
+  }
+
+  private void handleReplicationMetrics(HttpExchange exchange) throws IOException {
+    if (!(taskManager instanceof FollowerTaskManager followerTaskManager)) {
+      System.out.println("Replication is not supported - 404");
+      sendNotFound404(exchange);
+      return;
+    }
+    sendText200(exchange, gson.toJson(followerTaskManager.getReplicationMetrics()));
+    System.out.println("Get Replication Metrics - 200");
+  }
+}
@@ -7,6 +7,7 @@ import java.io.IOException;
 import java.io.OutputStream;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
+import ru.yandex.practicum.tasktracker.service.FollowerTaskManager;
 import ru.yandex.practicum.tasktracker.service.TaskManager;
 
 /**
@@ -24,6 +25,7 @@ import ru.yandex.practicum.tasktracker.service.TaskManager;
  *   <li>{@link #readText(HttpExchange)} - reads the request body as a string using the default charset.</li>
  *   <li>{@link #handle(HttpExchange)} - handles incoming HTTP requests by delegating to appropriate method handlers based on the request method.</li>
  * </ul>
+ * A read-only {@link FollowerTaskManager} answers only GET requests, any other method gets 405.
  *
  * @see TaskManager
  * @see TasksHandler
@@ -31,6 +33,7 @@ import ru.yandex.practicum.tasktracker.service.TaskManager;
  * @see SubtasksHandler
  * @see HistoryHandler
  * @see PrioritizedHandler
+ * @see AdminHandler
  */
 public abstract class BaseHttpHandler implements HttpHandler {
 
@@ -57,6 +60,11 @@ public abstract class BaseHttpHandler implements HttpHandler {
     try (exchange) {
       final String path = exchange.getRequestURI().getPath();
       final String requestMethod = exchange.getRequestMethod();
+      if (!"GET".equals(requestMethod) && taskManager instanceof FollowerTaskManager) {
+        System.out.println("The follower is read-only - 405");
+        sendNotAllowed405(exchange);
+        return;
+      }
       switch (requestMethod) {
         case "GET": {
           handleGet(exchange, path);
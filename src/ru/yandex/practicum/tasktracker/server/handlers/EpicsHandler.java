@@ -67,7 +67,7 @@ public class EpicsHandler extends BaseHttpHandler {
   }
 
   private void handleGetEpics(HttpExchange exchange, String path) throws IOException {
-    String response = gson.toJson(taskManager.getEpics());
+    String response = gson.toJson(taskManager.getEpicViews());
     sendText200(exchange, response);
     System.out.println("Get Epics List - 200");
   }
@@ -80,7 +80,7 @@ public class EpicsHandler extends BaseHttpHandler {
       return;
     }
     try {
-      String response = gson.toJson(taskManager.getEpicById(id));
+      String response = gson.toJson(taskManager.getEpicView(id));
 
       sendText200(exchange, response);
       System.out.println("Get epic by id = " + id + "- 200 ");
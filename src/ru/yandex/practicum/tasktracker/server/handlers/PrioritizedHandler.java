@@ -3,24 +3,171 @@ package ru.yandex.practicum.tasktracker.server.handlers;
 import com.google.gson.Gson;
 import com.sun.net.httpserver.HttpExchange;
 import java.io.IOException;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.time.format.DateTimeParseException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import ru.yandex.practicum.tasktracker.exception.TaskPrioritizationException;
+import ru.yandex.practicum.tasktracker.model.Task;
 import ru.yandex.practicum.tasktracker.server.Endpoint;
+import ru.yandex.practicum.tasktracker.service.ScheduleWindow;
 import ru.yandex.practicum.tasktracker.service.TaskManager;
 
 /**
  * HTTP handler class for the path "/prioritized"
+ * <p>
+ * {@code GET /prioritized?from=&to=&limit=&after=} returns a page of the prioritized tasks, see
+ * {@link ScheduleWindow}: the tasks overlapping the window from {@code from} to {@code to},
+ * given as ISO date-times, at most {@code limit} of them, following the {@code after} cursor.
+ * Every parameter may be left out. A full page carries the cursor of the next one in the
+ * {@value #NEXT_CURSOR} header. Without parameters all prioritized tasks are returned.
+ * <p>
+ * {@code GET /prioritized/slot?after=&duration=} returns the start and the end time of the earliest
+ * free slot of the {@code duration}, given in minutes, at or after the {@code after} time, see
+ * {@link TaskManager#findFreeSlot(LocalDateTime, Duration)}.
+ * <p>
+ * {@code POST /prioritized/schedule?after=} gives the free slots at or after the {@code after}
+ * time, the current time if it is left out, to all tasks and subtasks without a start time and
+ * returns them, see {@link TaskManager#scheduleUnscheduled(LocalDateTime)}.
  */
 public class PrioritizedHandler extends HistoryHandler {
 
+  public static final String NEXT_CURSOR = "X-Next-Cursor";
+  private static final Set<String> WINDOW_PARAMETERS = Set.of("from", "to", "limit", "after");
+  private static final Set<String> SLOT_PARAMETERS = Set.of("after", "duration");
+  private static final Set<String> SCHEDULE_PARAMETERS = Set.of("after");
+
   public PrioritizedHandler(final TaskManager taskManager, final Gson gson) {
     super(taskManager, gson);
     endpoint = Endpoint.GET_PRIORITIZED;
   }
 
+  @Override
+  protected void handleGet(HttpExchange exchange, String path) throws IOException {
+    Endpoint endpoint = Endpoint.getEndpoint("GET", path);
+    if (Endpoint.GET_PRIORITIZED_SLOT.equals(endpoint)) {
+      handleGetSlot(exchange);
+    } else {
+      super.handleGet(exchange, path);
+    }
+  }
+
+  @Override
+  protected void handlePost(HttpExchange exchange, String path) throws IOException {
+    Endpoint endpoint = Endpoint.getEndpoint("POST", path);
+    if (Endpoint.POST_PRIORITIZED_SCHEDULE.equals(endpoint)) {
+      handlePostSchedule(exchange);
+    } else {
+      super.handlePost(exchange, path);
+    }
+  }
+
   @Override
   protected void handleGetPath(HttpExchange exchange) throws IOException {
-    String response = gson.toJson(taskManager.getPrioritizedTasks());
-    sendText200(exchange, response);
-    System.out.println("Get Prioritized List - 200");
+    final String query = exchange.getRequestURI().getRawQuery();
+    if (query == null || query.isEmpty()) {
+      String response = gson.toJson(taskManager.getPrioritizedTasks());
+      sendText200(exchange, response);
+      System.out.println("Get Prioritized List - 200");
+      return;
+    }
+    final ScheduleWindow window;
+    try {
+      window = parseWindow(parseQuery(exchange, WINDOW_PARAMETERS));
+    } catch (IllegalArgumentException | DateTimeParseException e) {
+      System.out.println("Invalid window: " + e.getMessage() + " - 400");
+      sendBadRequest400(exchange);
+      return;
+    }
+    final List<Task> page = taskManager.getPrioritizedTasks(window);
+    if (page.size() == window.limit()) {
+      exchange.getResponseHeaders().add(NEXT_CURSOR,
+          ScheduleWindow.Cursor.of(page.get(page.size() - 1)).toString());
+    }
+    sendText200(exchange, gson.toJson(page));
+    System.out.println("Get Prioritized Page - 200");
+  }
+
+  private void handleGetSlot(HttpExchange exchange) throws IOException {
+    final LocalDateTime slot;
+    final Duration duration;
+    try {
+      final Map<String, String> parameters = parseQuery(exchange, SLOT_PARAMETERS);
+      if (!parameters.containsKey("after") || !parameters.containsKey("duration")) {
+        throw new IllegalArgumentException("The after time and the duration are required");
+      }
+      duration = Duration.ofMinutes(Long.parseLong(parameters.get("duration")));
+      slot = taskManager.findFreeSlot(LocalDateTime.parse(parameters.get("after")), duration);
+    } catch (IllegalArgumentException | DateTimeParseException e) {
+      System.out.println("Invalid slot query: " + e.getMessage() + " - 400");
+      sendBadRequest400(exchange);
+      return;
+    }
+    sendText200(exchange, gson.toJson(new FreeSlot(slot, slot.plus(duration))));
+    System.out.println("Get Free Slot - 200");
   }
 
+  private void handlePostSchedule(HttpExchange exchange) throws IOException {
+    final LocalDateTime after;
+    try {
+      final String value = parseQuery(exchange, SCHEDULE_PARAMETERS).get("after");
+      after = value == null
+          ? LocalDateTime.now().truncatedTo(ChronoUnit.MINUTES) : LocalDateTime.parse(value);
+    } catch (IllegalArgumentException | DateTimeParseException e) {
+      System.out.println("Invalid schedule query: " + e.getMessage() + " - 400");
+      sendBadRequest400(exchange);
+      return;
+    }
+    try {
+      final List<Task> scheduled = taskManager.scheduleUnscheduled(after);
+      sendText200(exchange, gson.toJson(scheduled));
+      System.out.println("Schedule " + scheduled.size() + " Tasks - 200");
+    } catch (TaskPrioritizationException e) {
+      System.out.println(e.getMessage() + " - 406");
+      sendHasInteractions406(exchange);
+    }
+  }
+
+  private static Map<String, String> parseQuery(final HttpExchange exchange,
+      final Set<String> names) {
+    final String query = exchange.getRequestURI().getRawQuery();
+    final Map<String, String> parameters = new HashMap<>();
+    if (query == null || query.isEmpty()) {
+      return parameters;
+    }
+    for (String parameter : query.split("&")) {
+      final int separator = parameter.indexOf('=');
+      final String name = separator < 0 ? parameter : parameter.substring(0, separator);
+      if (!names.contains(name)) {
+        throw new IllegalArgumentException("Unknown parameter " + name);
+      }
+      final String value = separator < 0 ? "" : parameter.substring(separator + 1);
+      if (!value.isEmpty()) {
+        parameters.put(name, URLDecoder.decode(value, StandardCharsets.UTF_8));
+      }
+    }
+    return parameters;
+  }
+
+  private static ScheduleWindow parseWindow(final Map<String, String> parameters) {
+    final String from = parameters.get("from");
+    final String to = parameters.get("to");
+    final String limit = parameters.get("limit");
+    final String after = parameters.get("after");
+    return new ScheduleWindow(
+        from == null ? null : LocalDateTime.parse(from),
+        to == null ? null : LocalDateTime.parse(to),
+        after == null ? null : ScheduleWindow.Cursor.parse(after),
+        limit == null ? Integer.MAX_VALUE : Integer.parseInt(limit));
+  }
+
+  private record FreeSlot(LocalDateTime startTime, LocalDateTime endTime) {
+
+  }
 }
@@ -70,7 +70,7 @@ public class SubtasksHandler extends BaseHttpHandler {
   }
 
   private void handleGetSubtasks(HttpExchange exchange, String path) throws IOException {
-    String response = gson.toJson(taskManager.getSubtasks());
+    String response = gson.toJson(taskManager.getSubtaskViews());
     sendText200(exchange, response);
     System.out.println("Get Subtask List - 200");
   }
@@ -83,7 +83,7 @@ public class SubtasksHandler extends BaseHttpHandler {
       return;
     }
     try {
-      String response = gson.toJson(taskManager.getSubtaskById(id));
+      String response = gson.toJson(taskManager.getSubtaskView(id));
       System.out.println("Viewed Subtask with id =" + id);
       sendText200(exchange, response);
       System.out.println("get Subtask with id =" + id + "- 200 ");
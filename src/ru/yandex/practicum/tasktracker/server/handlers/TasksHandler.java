@@ -69,7 +69,7 @@ public class TasksHandler extends BaseHttpHandler {
   }
 
   private void handleGetTasks(HttpExchange exchange) throws IOException {
-    String response = gson.toJson(taskManager.getTasks());
+    String response = gson.toJson(taskManager.getTaskViews());
     sendText200(exchange, response);
     System.out.println("Get Task List - 200");
   }
@@ -82,7 +82,7 @@ public class TasksHandler extends BaseHttpHandler {
       return;
     }
     try {
-      String response = gson.toJson(taskManager.getTaskById(id));
+      String response = gson.toJson(taskManager.getTaskView(id));
       System.out.println("Viewed Task with id =" + id);
       sendText200(exchange, response);
       System.out.println("get task by id - 200 ");
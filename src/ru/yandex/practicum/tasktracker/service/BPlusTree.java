@@ -0,0 +1,457 @@
+package ru.yandex.practicum.tasktracker.service;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import ru.yandex.practicum.tasktracker.service.PageFile.Page;
+
+/**
+ * B+tree of byte values ordered by a {@link Key} of two numbers, kept in the pages of a
+ * {@link BTreePageCache}.
+ * <p>
+ * Every node is a page. A leaf holds the entries in the order of the keys, an internal node holds
+ * the first child and the pairs of a separator key and the child holding the keys from the
+ * separator on. A node that does not fit in its page is split in two: a leaf in halves of equal
+ * size, an internal node in halves of equal number of keys, and the separator of the right half
+ * moves to the parent. A node left without entries by a removal is freed and dropped from its
+ * parent, and a root with a single child is replaced by the child; the nodes are not merged
+ * otherwise, so a tree that shrank may stay deeper than necessary until it grows again.
+ * <p>
+ * A value longer than {@link #MAX_INLINE_VALUE} bytes is kept in overflow pages and the leaf holds
+ * only its first page and length.
+ *
+ * @see BTreeTaskManager
+ */
+final class BPlusTree {
+
+  static final int MAX_INLINE_VALUE = 1024;
+  private static final int COUNT_OFFSET = PageFile.PAGE_HEADER_SIZE;
+  private static final int LEAF_ENTRIES_OFFSET = COUNT_OFFSET + Short.BYTES;
+  private static final int FIRST_CHILD_OFFSET = COUNT_OFFSET + Short.BYTES;
+  private static final int INTERNAL_ENTRIES_OFFSET = FIRST_CHILD_OFFSET + Integer.BYTES;
+  private static final int KEY_SIZE = 2 * Long.BYTES;
+  private static final int MAX_INTERNAL_KEYS =
+      (PageFile.PAGE_SIZE - INTERNAL_ENTRIES_OFFSET) / (KEY_SIZE + Integer.BYTES);
+  private static final short OVERFLOW_VALUE = -1;
+  private static final int NOT_FOUND = 0;
+  private static final int REMOVED = 1;
+  private static final int EMPTIED = 2;
+
+  private final BTreePageCache cache;
+  private int root;
+
+  private BPlusTree(final BTreePageCache cache, final int root) {
+    this.cache = cache;
+    this.root = root;
+  }
+
+  /**
+   * Creates an empty tree, which is written by the next commit of the cache.
+   */
+  static BPlusTree create(final BTreePageCache cache) {
+    return new BPlusTree(cache, cache.allocate(true).number());
+  }
+
+  /**
+   * Opens the tree with the root in the page with the given number.
+   */
+  static BPlusTree open(final BTreePageCache cache, final int root) {
+    return new BPlusTree(cache, root);
+  }
+
+  /**
+   * Returns the number of the page of the root, which changes as the tree grows and shrinks.
+   */
+  int root() {
+    return root;
+  }
+
+  /**
+   * Returns the value of the key or {@code null} if there is no such key.
+   */
+  byte[] get(final Key key) {
+    Node node = cache.node(root);
+    while (!node.leaf) {
+      node = cache.node(node.children.get(childIndex(node, key)));
+    }
+    final int index = Collections.binarySearch(node.keys, key);
+    return index < 0 ? null : value(node, index);
+  }
+
+  boolean contains(final Key key) {
+    return get(key) != null;
+  }
+
+  /**
+   * Puts the value of the key, replacing the previous one.
+   */
+  void put(final Key key, final byte[] value) {
+    final Value stored = value.length > MAX_INLINE_VALUE
+        ? new Value(null, cache.writeOverflow(value), value.length)
+        : new Value(value, 0, value.length);
+    final Split split = insert(root, key, stored);
+    if (split != null) {
+      final Node newRoot = cache.allocate(false);
+      newRoot.children.add(root);
+      newRoot.keys.add(split.separator());
+      newRoot.children.add(split.right());
+      root = newRoot.number();
+    }
+  }
+
+  /**
+   * Removes the key and its value.
+   *
+   * @return {@code true} if the key was in the tree
+   */
+  boolean remove(final Key key) {
+    final int result = remove(root, key);
+    if (result == NOT_FOUND) {
+      return false;
+    }
+    Node node = cache.node(root);
+    if (result == EMPTIED && !node.leaf) {
+      cache.free(node);
+      root = cache.allocate(true).number();
+      return true;
+    }
+    while (!node.leaf && node.children.size() == 1) {
+      cache.free(node);
+      root = node.children.get(0);
+      node = cache.node(root);
+    }
+    return true;
+  }
+
+  /**
+   * Passes the entries with keys from {@code from} inclusive to {@code to} exclusive to the
+   * visitor in the order of the keys, until the visitor returns {@code false}.
+   */
+  void scan(final Key from, final Key to, final EntryVisitor visitor) {
+    scan(root, from, to, visitor);
+  }
+
+  /**
+   * Returns the keys from {@code from} inclusive to {@code to} exclusive.
+   */
+  List<Key> keys(final Key from, final Key to) {
+    final List<Key> keys = new ArrayList<>();
+    scan(from, to, (key, value) -> keys.add(key));
+    return keys;
+  }
+
+  /**
+   * Returns the entry with the greatest key less than or equal to the given one, or {@code null}.
+   */
+  Entry floor(final Key key) {
+    return floor(root, key);
+  }
+
+  /**
+   * Returns the entry with the least key greater than or equal to the given one, or
+   * {@code null}.
+   */
+  Entry ceiling(final Key key) {
+    final Entry[] ceiling = new Entry[1];
+    scan(key, Key.MAX, (entryKey, value) -> {
+      ceiling[0] = new Entry(entryKey, value);
+      return false;
+    });
+    return ceiling[0];
+  }
+
+  /**
+   * Returns the depth of the tree, the root is at depth {@code 1}.
+   */
+  int depth() {
+    int depth = 1;
+    Node node = cache.node(root);
+    while (!node.leaf) {
+      node = cache.node(node.children.get(0));
+      depth++;
+    }
+    return depth;
+  }
+
+  private Split insert(final int number, final Key key, final Value value) {
+    final Node node = cache.node(number);
+    if (node.leaf) {
+      final int index = Collections.binarySearch(node.keys, key);
+      if (index >= 0) {
+        releaseValue(node.values.get(index));
+        node.values.set(index, value);
+      } else {
+        node.keys.add(-index - 1, key);
+        node.values.add(-index - 1, value);
+      }
+      cache.markDirty(node);
+      return node.size() > PageFile.PAGE_SIZE ? splitLeaf(node) : null;
+    }
+    final int childIndex = childIndex(node, key);
+    final Split split = insert(node.children.get(childIndex), key, value);
+    if (split == null) {
+      return null;
+    }
+    node.keys.add(childIndex, split.separator());
+    node.children.add(childIndex + 1, split.right());
+    cache.markDirty(node);
+    return node.keys.size() > MAX_INTERNAL_KEYS ? splitInternal(node) : null;
+  }
+
+  private Split splitLeaf(final Node node) {
+    final int half = node.size() / 2;
+    int size = LEAF_ENTRIES_OFFSET;
+    int index = 0;
+    while (index < node.keys.size() - 1 && size < half) {
+      size += entrySize(node.values.get(index));
+      index++;
+    }
+    final Node right = cache.allocate(true);
+    final List<Key> movedKeys = node.keys.subList(Math.max(index, 1), node.keys.size());
+    final List<Value> movedValues = node.values.subList(Math.max(index, 1), node.values.size());
+    right.keys.addAll(movedKeys);
+    right.values.addAll(movedValues);
+    movedKeys.clear();
+    movedValues.clear();
+    return new Split(right.keys.get(0), right.number());
+  }
+
+  private Split splitInternal(final Node node) {
+    final int middle = node.keys.size() / 2;
+    final Key separator = node.keys.get(middle);
+    final Node right = cache.allocate(false);
+    final List<Key> movedKeys = node.keys.subList(middle + 1, node.keys.size());
+    final List<Integer> movedChildren = node.children.subList(middle + 1, node.children.size());
+    right.keys.addAll(movedKeys);
+    right.children.addAll(movedChildren);
+    movedKeys.clear();
+    movedChildren.clear();
+    node.keys.remove(middle);
+    return new Split(separator, right.number());
+  }
+
+  private int remove(final int number, final Key key) {
+    final Node node = cache.node(number);
+    if (node.leaf) {
+      final int index = Collections.binarySearch(node.keys, key);
+      if (index < 0) {
+        return NOT_FOUND;
+      }
+      node.keys.remove(index);
+      releaseValue(node.values.remove(index));
+      cache.markDirty(node);
+      return node.keys.isEmpty() ? EMPTIED : REMOVED;
+    }
+    final int childIndex = childIndex(node, key);
+    final int child = node.children.get(childIndex);
+    final int result = remove(child, key);
+    if (result != EMPTIED) {
+      return result;
+    }
+    cache.free(cache.node(child));
+    node.children.remove(childIndex);
+    if (!node.keys.isEmpty()) {
+      node.keys.remove(Math.max(childIndex - 1, 0));
+    }
+    cache.markDirty(node);
+    return node.children.isEmpty() ? EMPTIED : REMOVED;
+  }
+
+  private boolean scan(final int number, final Key from, final Key to,
+      final EntryVisitor visitor) {
+    final Node node = cache.node(number);
+    if (node.leaf) {
+      final int found = Collections.binarySearch(node.keys, from);
+      for (int i = found < 0 ? -found - 1 : found; i < node.keys.size(); i++) {
+        if (node.keys.get(i).compareTo(to) >= 0
+            || !visitor.visit(node.keys.get(i), value(node, i))) {
+          return false;
+        }
+      }
+      return true;
+    }
+    for (int i = childIndex(node, from); i < node.children.size(); i++) {
+      if (i > 0 && node.keys.get(i - 1).compareTo(to) >= 0) {
+        return false;
+      }
+      if (!scan(node.children.get(i), from, to, visitor)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private Entry floor(final int number, final Key key) {
+    final Node node = cache.node(number);
+    if (node.leaf) {
+      final int found = Collections.binarySearch(node.keys, key);
+      final int index = found < 0 ? -found - 2 : found;
+      return index < 0 ? null : new Entry(node.keys.get(index), value(node, index));
+    }
+    for (int i = childIndex(node, key); i >= 0; i--) {
+      final Entry floor = floor(node.children.get(i), key);
+      if (floor != null) {
+        return floor;
+      }
+    }
+    return null;
+  }
+
+  private byte[] value(final Node node, final int index) {
+    final Value value = node.values.get(index);
+    return value.inline() != null ? value.inline()
+        : cache.readOverflow(value.overflowPage(), value.length());
+  }
+
+  private void releaseValue(final Value value) {
+    if (value.inline() == null) {
+      cache.freeOverflow(value.overflowPage());
+    }
+  }
+
+  /**
+   * Returns the index of the child of the internal node that holds the key.
+   */
+  private static int childIndex(final Node node, final Key key) {
+    final int found = Collections.binarySearch(node.keys, key);
+    return found < 0 ? -found - 1 : found + 1;
+  }
+
+  private static int entrySize(final Value value) {
+    return KEY_SIZE + Short.BYTES
+        + (value.inline() != null ? value.length() : 2 * Integer.BYTES);
+  }
+
+  /**
+   * Key of an entry, ordered by the high number and then by the low one.
+   */
+  record Key(long high, long low) implements Comparable<Key> {
+
+    static final Key MIN = new Key(Long.MIN_VALUE, Long.MIN_VALUE);
+    static final Key MAX = new Key(Long.MAX_VALUE, Long.MAX_VALUE);
+
+    @Override
+    public int compareTo(final Key other) {
+      final int byHigh = Long.compare(high, other.high);
+      return byHigh != 0 ? byHigh : Long.compare(low, other.low);
+    }
+  }
+
+  record Entry(Key key, byte[] value) {
+
+  }
+
+  @FunctionalInterface
+  interface EntryVisitor {
+
+    /**
+     * Visits an entry and returns {@code false} to stop the scan.
+     */
+    boolean visit(Key key, byte[] value);
+  }
+
+  private record Split(Key separator, int right) {
+
+  }
+
+  /**
+   * Stored form of a value: the bytes of a short value, or the first overflow page and the
+   * length of a long one.
+   */
+  private record Value(byte[] inline, int overflowPage, int length) {
+
+  }
+
+  /**
+   * A node decoded from its page. The page is encoded again only when the node is written.
+   */
+  static final class Node {
+
+    private final Page page;
+    private final boolean leaf;
+    private final List<Key> keys = new ArrayList<>();
+    private final List<Value> values = new ArrayList<>();
+    private final List<Integer> children = new ArrayList<>();
+
+    Node(final Page page) {
+      this.page = page;
+      this.leaf = page.type() == BTreePageCache.LEAF_PAGE;
+    }
+
+    static Node decode(final Page page) {
+      final Node node = new Node(page);
+      final ByteBuffer buffer = page.buffer().duplicate().clear();
+      final int count = Short.toUnsignedInt(buffer.getShort(COUNT_OFFSET));
+      if (node.leaf) {
+        buffer.position(LEAF_ENTRIES_OFFSET);
+        for (int i = 0; i < count; i++) {
+          node.keys.add(new Key(buffer.getLong(), buffer.getLong()));
+          final short length = buffer.getShort();
+          if (length == OVERFLOW_VALUE) {
+            node.values.add(new Value(null, buffer.getInt(), buffer.getInt()));
+          } else {
+            final byte[] value = new byte[length];
+            buffer.get(value);
+            node.values.add(new Value(value, 0, length));
+          }
+        }
+      } else {
+        node.children.add(buffer.getInt(FIRST_CHILD_OFFSET));
+        buffer.position(INTERNAL_ENTRIES_OFFSET);
+        for (int i = 0; i < count; i++) {
+          node.keys.add(new Key(buffer.getLong(), buffer.getLong()));
+          node.children.add(buffer.getInt());
+        }
+      }
+      return node;
+    }
+
+    int number() {
+      return page.number();
+    }
+
+    Page page() {
+      return page;
+    }
+
+    /**
+     * Writes the node to its page and returns the page.
+     */
+    Page encode() {
+      final ByteBuffer buffer = page.buffer().duplicate().clear();
+      buffer.putShort(COUNT_OFFSET, (short) keys.size());
+      if (leaf) {
+        buffer.position(LEAF_ENTRIES_OFFSET);
+        for (int i = 0; i < keys.size(); i++) {
+          buffer.putLong(keys.get(i).high()).putLong(keys.get(i).low());
+          final Value value = values.get(i);
+          if (value.inline() != null) {
+            buffer.putShort((short) value.length()).put(value.inline());
+          } else {
+            buffer.putShort(OVERFLOW_VALUE).putInt(value.overflowPage()).putInt(value.length());
+          }
+        }
+      } else {
+        buffer.putInt(FIRST_CHILD_OFFSET, children.get(0));
+        buffer.position(INTERNAL_ENTRIES_OFFSET);
+        for (int i = 0; i < keys.size(); i++) {
+          buffer.putLong(keys.get(i).high()).putLong(keys.get(i).low())
+              .putInt(children.get(i + 1));
+        }
+      }
+      return page;
+    }
+
+    /**
+     * Returns the number of bytes the leaf takes in its page.
+     */
+    private int size() {
+      int size = LEAF_ENTRIES_OFFSET;
+      for (Value value : values) {
+        size += entrySize(value);
+      }
+      return size;
+    }
+  }
+}
@@ -0,0 +1,278 @@
+package ru.yandex.practicum.tasktracker.service;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import ru.yandex.practicum.tasktracker.exception.ManagerLoadException;
+import ru.yandex.practicum.tasktracker.exception.ManagerSaveException;
+import ru.yandex.practicum.tasktracker.service.BPlusTree.Node;
+import ru.yandex.practicum.tasktracker.service.PageFile.Page;
+
+/**
+ * Bounded cache of the nodes of the {@link BPlusTree B+trees} kept in one {@link PageFile}, which
+ * collects the pages changed by an operation and writes them as one group.
+ * <p>
+ * A node is decoded from its page on the first access and is kept in access order; once the cache
+ * holds more nodes than its capacity, the least recently used node that has not been changed is
+ * dropped. A changed node stays in the cache until {@link #commit()} has written it together with
+ * the overflow pages and the freed pages of the operation and the meta page, which holds a few
+ * numbers of the owner, such as the roots of the trees. The group is written through the
+ * double-write file of the {@link PageFile}, so an operation is either stored entirely or not at
+ * all.
+ * <p>
+ * A value too long for a node is kept in a chain of overflow pages, which are not cached.
+ *
+ * @see BTreeTaskManager
+ */
+final class BTreePageCache implements Closeable {
+
+  static final byte LEAF_PAGE = 3;
+  static final byte INTERNAL_PAGE = 4;
+  private static final byte OVERFLOW_PAGE = 5;
+  private static final byte META_PAGE = 6;
+  private static final int META_SLOTS = 8;
+  private static final int NEXT_PAGE_OFFSET = PageFile.PAGE_HEADER_SIZE;
+  private static final int CHUNK_LENGTH_OFFSET = NEXT_PAGE_OFFSET + Integer.BYTES;
+  private static final int CHUNK_OFFSET = CHUNK_LENGTH_OFFSET + Integer.BYTES;
+  private static final int CHUNK_CAPACITY = PageFile.PAGE_SIZE - CHUNK_OFFSET;
+  private static final int NO_PAGE = -1;
+
+  private final PageFile pageFile;
+  private final int capacity;
+  private final Durability durability;
+  private final Page metaPage;
+  private final Map<Integer, Node> nodes = new LinkedHashMap<>(16, 0.75f, true);
+  private final Map<Integer, Node> dirtyNodes = new HashMap<>();
+  private final Map<Integer, Page> dirtyPages = new HashMap<>();
+  private final boolean created;
+  private boolean metaDirty;
+  private long hits;
+  private long misses;
+
+  private BTreePageCache(final PageFile pageFile, final Page metaPage, final int capacity,
+      final Durability durability) {
+    this.pageFile = pageFile;
+    this.capacity = capacity;
+    this.durability = durability;
+    this.created = metaPage == null;
+    this.metaPage = created ? pageFile.allocate(META_PAGE) : metaPage;
+    this.metaDirty = created;
+  }
+
+  /**
+   * Opens the page file, creating it if it is empty, with a cache of {@code capacity} nodes.
+   */
+  static BTreePageCache open(final File file, final int capacity, final Durability durability)
+      throws IOException {
+    final Page[] meta = new Page[1];
+    final PageFile pageFile = PageFile.open(file, page -> {
+      if (page.type() == META_PAGE) {
+        meta[0] = page;
+      }
+    });
+    return new BTreePageCache(pageFile, meta[0], capacity, durability);
+  }
+
+  /**
+   * Returns {@code true} if the file has been created by {@link #open}, so the trees have to be
+   * created as well.
+   */
+  boolean isCreated() {
+    return created;
+  }
+
+  int meta(final int slot) {
+    return metaPage.buffer().getInt(metaOffset(slot));
+  }
+
+  void setMeta(final int slot, final int value) {
+    if (meta(slot) != value) {
+      metaPage.buffer().putInt(metaOffset(slot), value);
+      metaDirty = true;
+    }
+  }
+
+  /**
+   * Returns the node kept in the page with the given number.
+   */
+  Node node(final int number) {
+    Node node = dirtyNodes.get(number);
+    if (node == null) {
+      node = nodes.get(number);
+    }
+    if (node != null) {
+      hits++;
+      return node;
+    }
+    misses++;
+    try {
+      node = Node.decode(pageFile.read(number));
+    } catch (IOException e) {
+      throw new ManagerLoadException("An error occurred during reading the page file.", e);
+    }
+    nodes.put(number, node);
+    evict();
+    return node;
+  }
+
+  /**
+   * Returns a new empty node, which is written by the next {@link #commit()}.
+   */
+  Node allocate(final boolean leaf) {
+    final Node node = new Node(pageFile.allocate(leaf ? LEAF_PAGE : INTERNAL_PAGE));
+    markDirty(node);
+    return node;
+  }
+
+  /**
+   * Registers the changed node to be written by the next {@link #commit()}.
+   */
+  void markDirty(final Node node) {
+    dirtyNodes.put(node.number(), node);
+    nodes.put(node.number(), node);
+  }
+
+  /**
+   * Frees the page of the node.
+   */
+  void free(final Node node) {
+    nodes.remove(node.number());
+    dirtyNodes.remove(node.number());
+    pageFile.free(node.page());
+    dirtyPages.put(node.number(), node.page());
+  }
+
+  /**
+   * Writes the value to a chain of overflow pages and returns the number of the first page.
+   */
+  int writeOverflow(final byte[] value) {
+    int first = NO_PAGE;
+    Page previous = null;
+    for (int position = 0; position < value.length; position += CHUNK_CAPACITY) {
+      final Page page = pageFile.allocate(OVERFLOW_PAGE);
+      final int length = Math.min(CHUNK_CAPACITY, value.length - position);
+      page.buffer().putInt(NEXT_PAGE_OFFSET, NO_PAGE).putInt(CHUNK_LENGTH_OFFSET, length);
+      System.arraycopy(value, position, page.buffer().array(), CHUNK_OFFSET, length);
+      if (previous == null) {
+        first = page.number();
+      } else {
+        previous.buffer().putInt(NEXT_PAGE_OFFSET, page.number());
+      }
+      dirtyPages.put(page.number(), page);
+      previous = page;
+    }
+    return first;
+  }
+
+  byte[] readOverflow(final int first, final int length) {
+    final byte[] value = new byte[length];
+    int position = 0;
+    int next = first;
+    while (next != NO_PAGE) {
+      final Page page = overflowPage(next);
+      final int chunkLength = page.buffer().getInt(CHUNK_LENGTH_OFFSET);
+      System.arraycopy(page.buffer().array(), CHUNK_OFFSET, value, position, chunkLength);
+      position += chunkLength;
+      next = page.buffer().getInt(NEXT_PAGE_OFFSET);
+    }
+    return value;
+  }
+
+  void freeOverflow(final int first) {
+    int next = first;
+    while (next != NO_PAGE) {
+      final Page page = overflowPage(next);
+      next = page.buffer().getInt(NEXT_PAGE_OFFSET);
+      pageFile.free(page);
+      dirtyPages.put(page.number(), page);
+    }
+  }
+
+  /**
+   * Writes the pages changed since the last commit as one group and lets the cache shrink back to
+   * its capacity.
+   *
+   * @throws ManagerSaveException if the pages could not be written, the cached nodes are dropped
+   *                              then and the file keeps the state of the last commit
+   */
+  void commit() {
+    if (dirtyNodes.isEmpty() && dirtyPages.isEmpty() && !metaDirty) {
+      return;
+    }
+    final Map<Integer, Page> pages = new HashMap<>(dirtyPages);
+    for (Node node : dirtyNodes.values()) {
+      pages.put(node.number(), node.encode());
+    }
+    pages.put(metaPage.number(), metaPage);
+    try {
+      pageFile.write(pages, durability);
+    } catch (IOException e) {
+      nodes.clear();
+      throw new ManagerSaveException("An error occurred during saving to the file.", e);
+    } finally {
+      dirtyNodes.clear();
+      dirtyPages.clear();
+      metaDirty = false;
+    }
+    evict();
+  }
+
+  int size() {
+    return nodes.size();
+  }
+
+  long hits() {
+    return hits;
+  }
+
+  long misses() {
+    return misses;
+  }
+
+  int pageCount() {
+    return pageFile.pageCount();
+  }
+
+  @Override
+  public void close() throws IOException {
+    pageFile.close();
+  }
+
+  private Page overflowPage(final int number) {
+    final Page page = dirtyPages.get(number);
+    if (page != null) {
+      return page;
+    }
+    try {
+      return pageFile.read(number);
+    } catch (IOException e) {
+      throw new ManagerLoadException("An error occurred during reading the page file.", e);
+    }
+  }
+
+  /**
+   * Drops the least recently used nodes that have not been changed while the cache is over its
+   * capacity.
+   */
+  private void evict() {
+    final Iterator<Map.Entry<Integer, Node>> iterator = nodes.entrySet().iterator();
+    int excess = nodes.size() - capacity;
+    while (excess > 0 && iterator.hasNext()) {
+      if (!dirtyNodes.containsKey(iterator.next().getKey())) {
+        iterator.remove();
+        excess--;
+      }
+    }
+  }
+
+  private static int metaOffset(final int slot) {
+    if (slot < 0 || slot >= META_SLOTS) {
+      throw new IllegalArgumentException("Invalid meta slot " + slot);
+    }
+    return PageFile.PAGE_HEADER_SIZE + slot * Integer.BYTES;
+  }
+}
@@ -0,0 +1,609 @@
+package ru.yandex.practicum.tasktracker.service;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.Supplier;
+import ru.yandex.practicum.tasktracker.exception.ManagerLoadException;
+import ru.yandex.practicum.tasktracker.exception.ManagerSaveException;
+import ru.yandex.practicum.tasktracker.exception.TaskNotFoundException;
+import ru.yandex.practicum.tasktracker.exception.TaskPrioritizationException;
+import ru.yandex.practicum.tasktracker.exception.TaskValidationException;
+import ru.yandex.practicum.tasktracker.model.Epic;
+import ru.yandex.practicum.tasktracker.model.Subtask;
+import ru.yandex.practicum.tasktracker.model.Task;
+import ru.yandex.practicum.tasktracker.model.TaskType;
+import ru.yandex.practicum.tasktracker.service.BPlusTree.Entry;
+import ru.yandex.practicum.tasktracker.service.BPlusTree.Key;
+
+/**
+ * Task manager that keeps the tasks on disk, for boards that do not fit in the heap.
+ * <p>
+ * The file is a {@link PageFile} with three {@link BPlusTree B+trees}: the records of the tasks
+ * keyed by the type and the id, the prioritized tasks keyed by the start time and the id, and the
+ * subtasks of the epics keyed by the id of the epic and the id of the subtask. Only the nodes held
+ * by a {@link BTreePageCache} of a bounded size stay in the heap, so a lookup by id reads a few
+ * pages at most, and the time conflicts of a task are checked against the tasks around its time in
+ * the start time tree. An epic is stored without its subtasks, which are read through the
+ * membership tree when the epic is read.
+ * <p>
+ * Every modifying operation writes the pages it changed as one group before it returns, so the
+ * file always holds the state after the last complete operation. The ids are given by a counter
+ * kept in the file. The history of viewed tasks is kept in the heap by the {@link HistoryManager}
+ * and is not persisted.
+ * <p>
+ * The returned tasks are read from the file and are never shared with the manager. The manager
+ * is synchronized, and {@link #close()} has to be called to release the file.
+ *
+ * @see TaskManager
+ * @see Managers#getBTreeTaskManager(File)
+ */
+public class BTreeTaskManager implements TaskManager, AutoCloseable {
+
+  public static final int DEFAULT_CACHE_PAGES = 1024;
+  private static final int NEXT_ID_SLOT = 0;
+  private static final int TASKS_ROOT_SLOT = 1;
+  private static final int PRIORITIZED_ROOT_SLOT = 2;
+  private static final int MEMBERSHIP_ROOT_SLOT = 3;
+  private static final int START_KEY_LAYOUT_SLOT = 4;
+  private static final int START_KEY_LAYOUT = 1;
+  private static final long ID_MASK = 0xFFFFFFFFL;
+  private static final byte[] NO_VALUE = new byte[0];
+  private final BTreePageCache cache;
+  private final BPlusTree tasks;
+  private final BPlusTree prioritized;
+  private final BPlusTree membership;
+  private final HistoryManager historyManager = Managers.getDefaultHistory();
+  private final ByteArrayOutputStream recordBytes = new ByteArrayOutputStream();
+  private final DataOutputStream recordOut = new DataOutputStream(recordBytes);
+  private int lastId;
+  private int operationDepth;
+
+  private BTreeTaskManager(final BTreePageCache cache) {
+    this.cache = cache;
+    if (cache.isCreated()) {
+      tasks = BPlusTree.create(cache);
+      prioritized = BPlusTree.create(cache);
+      membership = BPlusTree.create(cache);
+      commit();
+    } else {
+      tasks = BPlusTree.open(cache, cache.meta(TASKS_ROOT_SLOT));
+      prioritized = BPlusTree.open(cache, cache.meta(PRIORITIZED_ROOT_SLOT));
+      membership = BPlusTree.open(cache, cache.meta(MEMBERSHIP_ROOT_SLOT));
+      lastId = cache.meta(NEXT_ID_SLOT);
+      if (cache.meta(START_KEY_LAYOUT_SLOT) != START_KEY_LAYOUT) {
+        rebuildPrioritized();
+      }
+    }
+  }
+
+  public static BTreeTaskManager open(final File file) {
+    return open(file, DEFAULT_CACHE_PAGES, Durability.FLUSH);
+  }
+
+  /**
+   * Opens the manager, creating the file if it is empty, with a cache of {@code cachePages} nodes
+   * of the trees.
+   *
+   * @throws ManagerLoadException if the file is not a file of this manager or is damaged
+   */
+  public static BTreeTaskManager open(final File file, final int cachePages,
+      final Durability durability) {
+    Objects.requireNonNull(file);
+    Objects.requireNonNull(durability);
+    if (cachePages <= 0) {
+      throw new IllegalArgumentException("Cache size should be positive.");
+    }
+    try {
+      return new BTreeTaskManager(BTreePageCache.open(file, cachePages, durability));
+    } catch (IOException e) {
+      throw new ManagerLoadException("An Error occurred during reading the file", e);
+    }
+  }
+
+  @Override
+  public synchronized List<Task> getTasks() {
+    return readAll(TaskType.TASK, Task.class);
+  }
+
+  @Override
+  public synchronized List<Epic> getEpics() {
+    final Map<Integer, Epic> epics = new HashMap<>();
+    readAll(TaskType.EPIC, Epic.class).forEach(epic -> epics.put(epic.getId(), epic));
+    for (Subtask subtask : readAll(TaskType.SUBTASK, Subtask.class)) {
+      final Epic epic = epics.get(subtask.getEpicId());
+      if (epic != null) {
+        epic.addSubtask(subtask);
+      }
+    }
+    return new ArrayList<>(epics.values());
+  }
+
+  @Override
+  public synchronized List<Subtask> getSubtasks() {
+    return readAll(TaskType.SUBTASK, Subtask.class);
+  }
+
+  @Override
+  public synchronized List<Task> getPrioritizedTasks() {
+    final List<Task> prioritizedTasks = new ArrayList<>();
+    prioritized.scan(Key.MIN, Key.MAX, (key, value) -> {
+      final ByteBuffer reference = ByteBuffer.wrap(value);
+      prioritizedTasks.add(read(TaskType.values()[reference.get()], reference.getInt()));
+      return true;
+    });
+    return prioritizedTasks;
+  }
+
+  /**
+   * Scans the start time tree from the tasks starting last at the start of the window or before it,
+   * the only earlier tasks that may overlap it, to the end of the window.
+   */
+  @Override
+  public synchronized List<Task> getPrioritizedTasks(final ScheduleWindow window) {
+    final List<Task> page = new ArrayList<>(Math.min(window.limit(), 64));
+    final Entry floor = window.from() == null ? null
+        : prioritized.floor(lastKeyAt(window.from()));
+    Key from = floor == null ? Key.MIN : firstKeyAtTimeOf(floor.key());
+    if (window.after() != null) {
+      final Key after = startKey(window.after().startTime(), window.after().id());
+      if (after.compareTo(from) > 0) {
+        from = after;
+      }
+    }
+    final Key to = window.to() == null ? Key.MAX : firstKeyAt(window.to());
+    prioritized.scan(from, to, (key, value) -> {
+      final ByteBuffer reference = ByteBuffer.wrap(value);
+      final Task task = read(TaskType.values()[reference.get()], reference.getInt());
+      if (window.includes(task)) {
+        page.add(task);
+      }
+      return page.size() < window.limit();
+    });
+    return page;
+  }
+
+  /**
+   * Scans the start time tree from the tasks starting last at the {@code after} time or before it,
+   * the only earlier tasks that may take the time, to the first task the slot fits before.
+   */
+  @Override
+  public synchronized LocalDateTime findFreeSlot(final LocalDateTime after,
+      final Duration duration) {
+    final SlotSweep sweep = new SlotSweep(after, duration);
+    final Entry floor = prioritized.floor(lastKeyAt(after));
+    final Key from = floor == null ? Key.MIN : firstKeyAtTimeOf(floor.key());
+    prioritized.scan(from, Key.MAX, (key, value) -> {
+      final ByteBuffer reference = ByteBuffer.wrap(value);
+      return !sweep.fitsBefore(read(TaskType.values()[reference.get()], reference.getInt()));
+    });
+    return sweep.slot();
+  }
+
+  @Override
+  public synchronized List<Task> getHistory() {
+    return historyManager.getHistory().stream()
+        .map(task -> read(task.getType(), task.getId()))
+        .filter(Objects::nonNull)
+        .toList();
+  }
+
+  @Override
+  public synchronized Task getTaskById(final int id) {
+    return view(read(TaskType.TASK, id), "Task with Id " + id + " was not found.");
+  }
+
+  @Override
+  public synchronized Epic getEpicById(final int id) {
+    return (Epic) view(read(TaskType.EPIC, id), "Epic with Id " + id + " was not found.");
+  }
+
+  @Override
+  public synchronized Subtask getSubtaskById(final int id) {
+    return (Subtask) view(read(TaskType.SUBTASK, id),
+        "Subtask with Id " + id + " was not found.");
+  }
+
+  @Override
+  public synchronized Set<Subtask> getSubtasksByEpicId(final int epicId) {
+    if (!tasks.contains(primaryKey(TaskType.EPIC, epicId))) {
+      throw new TaskNotFoundException("Epic with Id " + epicId + " was not found.");
+    }
+    return new HashSet<>(readSubtasks(epicId));
+  }
+
+  @Override
+  public synchronized Task addTask(final Task task) {
+    return inOperation(() -> {
+      task.setId(generateId());
+      final Task stored = task.copy();
+      final boolean prioritize = canBePrioritized(stored);
+      write(stored);
+      if (prioritize) {
+        addPrioritized(stored);
+      }
+      return task;
+    });
+  }
+
+  @Override
+  public synchronized Epic addEpic(final Epic epic) {
+    return inOperation(() -> {
+      epic.setId(generateId());
+      final Epic stored = epic.copy();
+      stored.clearSubtasks();
+      write(stored);
+      final Set<Subtask> subtasksFromNewEpic = new HashSet<>(epic.getSubtasks());
+      epic.clearSubtasks();
+      subtasksFromNewEpic.forEach(subtask -> {
+        subtask.setEpicId(epic.getId());
+        addSubtask(subtask);
+      });
+      return epic;
+    });
+  }
+
+  @Override
+  public synchronized Subtask addSubtask(final Subtask subtask) {
+    return inOperation(() -> {
+      final int epicId = subtask.getEpicId();
+      if (!tasks.contains(primaryKey(TaskType.EPIC, epicId))) {
+        throw new TaskValidationException("Invalid epic Id " + epicId);
+      }
+      subtask.setId(generateId());
+      final Subtask stored = subtask.copy();
+      final boolean prioritize = canBePrioritized(stored);
+      write(stored);
+      membership.put(new Key(epicId, stored.getId()), NO_VALUE);
+      if (prioritize) {
+        addPrioritized(stored);
+      }
+      return subtask;
+    });
+  }
+
+  @Override
+  public synchronized void updateTask(final Task task) {
+    final Task taskInDisk = read(TaskType.TASK, task.getId());
+    if (taskInDisk == null) {
+      throw new TaskNotFoundException("The task " + task + "does not exist in the TaskManager");
+    }
+    inOperation(() -> replace(taskInDisk, task.copy()));
+  }
+
+  /**
+   * Updates the title and the description of the epic only, see
+   * {@link InMemoryTaskManager#updateEpic(Epic)}.
+   */
+  @Override
+  public synchronized void updateEpic(final Epic epic) {
+    final Task epicInDisk = read(TaskType.EPIC, epic.getId());
+    if (epicInDisk == null) {
+      return;
+    }
+    epicInDisk.setTitle(epic.getTitle());
+    epicInDisk.setDescription(epic.getDescription());
+    inOperation(() -> write(epicInDisk));
+  }
+
+  @Override
+  public synchronized void updateSubtask(final Subtask subtask) {
+    final Task subtaskInDisk = read(TaskType.SUBTASK, subtask.getId());
+    if (subtaskInDisk == null
+        || ((Subtask) subtaskInDisk).getEpicId() != subtask.getEpicId()) {
+      throw new TaskNotFoundException(
+          "The subtask " + subtask + "does not exist in the TaskManager");
+    }
+    inOperation(() -> replace(subtaskInDisk, subtask.copy()));
+  }
+
+  @Override
+  public synchronized void clearTasks() {
+    inOperation(() -> idsOf(TaskType.TASK).forEach(this::deleteTask));
+  }
+
+  @Override
+  public synchronized void clearEpics() {
+    inOperation(() -> idsOf(TaskType.EPIC).forEach(this::deleteEpic));
+  }
+
+  @Override
+  public synchronized void clearSubtasks() {
+    inOperation(() -> idsOf(TaskType.SUBTASK).forEach(this::deleteSubtask));
+  }
+
+  @Override
+  public synchronized void deleteTask(final int id) {
+    inOperation(() -> remove(read(TaskType.TASK, id)));
+  }
+
+  @Override
+  public synchronized void deleteEpic(final int id) {
+    inOperation(() -> {
+      if (!tasks.contains(primaryKey(TaskType.EPIC, id))) {
+        return;
+      }
+      for (Key key : membership.keys(new Key(id, Long.MIN_VALUE), new Key(id + 1L,
+          Long.MIN_VALUE))) {
+        remove(read(TaskType.SUBTASK, (int) key.low()));
+      }
+      tasks.remove(primaryKey(TaskType.EPIC, id));
+      historyManager.remove(id);
+    });
+  }
+
+  @Override
+  public synchronized void deleteSubtask(final int id) {
+    inOperation(() -> remove(read(TaskType.SUBTASK, id)));
+  }
+
+  /**
+   * Releases the file.
+   */
+  @Override
+  public synchronized void close() {
+    try {
+      cache.close();
+    } catch (IOException e) {
+      throw new ManagerSaveException("An error occurred during closing the file.", e);
+    }
+  }
+
+  /**
+   * Returns the number of pages of the file.
+   */
+  synchronized int pageCount() {
+    return cache.pageCount();
+  }
+
+  /**
+   * Returns the number of nodes held by the cache.
+   */
+  synchronized int cachedPages() {
+    return cache.size();
+  }
+
+  private void inOperation(final Runnable operation) {
+    inOperation(() -> {
+      operation.run();
+      return null;
+    });
+  }
+
+  /**
+   * Runs the operation and writes the pages it changed, the nested operations are written with
+   * the outermost one. The pages changed by an operation that failed are written as well: the
+   * operations check their arguments before they change the trees.
+   */
+  private <T> T inOperation(final Supplier<T> operation) {
+    operationDepth++;
+    try {
+      return operation.get();
+    } finally {
+      if (--operationDepth == 0) {
+        commit();
+      }
+    }
+  }
+
+  private void commit() {
+    cache.setMeta(START_KEY_LAYOUT_SLOT, START_KEY_LAYOUT);
+    cache.setMeta(NEXT_ID_SLOT, lastId);
+    cache.setMeta(TASKS_ROOT_SLOT, tasks.root());
+    cache.setMeta(PRIORITIZED_ROOT_SLOT, prioritized.root());
+    cache.setMeta(MEMBERSHIP_ROOT_SLOT, membership.root());
+    cache.commit();
+  }
+
+  private int generateId() {
+    if (lastId == Integer.MAX_VALUE) {
+      throw new ManagerSaveException("No more ids are available.");
+    }
+    return ++lastId;
+  }
+
+  private Task view(final Task task, final String notFoundMessage) {
+    if (task == null) {
+      throw new TaskNotFoundException(notFoundMessage);
+    }
+    historyManager.add(task);
+    return task;
+  }
+
+  /**
+   * Replaces the stored task or subtask with its new version.
+   *
+   * @throws TaskPrioritizationException if the new version has a time conflict with another task
+   */
+  private void replace(final Task stored, final Task updated) {
+    removePrioritized(stored);
+    final boolean prioritize;
+    try {
+      prioritize = canBePrioritized(updated);
+    } catch (TaskPrioritizationException e) {
+      if (stored.getStartTime() != null) {
+        addPrioritized(stored);
+      }
+      throw e;
+    }
+    write(updated);
+    if (prioritize) {
+      addPrioritized(updated);
+    }
+  }
+
+  /**
+   * Removes the task or subtask, which is {@code null} if there is nothing to remove.
+   */
+  private void remove(final Task task) {
+    if (task == null) {
+      return;
+    }
+    tasks.remove(primaryKey(task.getType(), task.getId()));
+    if (task instanceof Subtask subtask) {
+      membership.remove(new Key(subtask.getEpicId(), subtask.getId()));
+    }
+    removePrioritized(task);
+    historyManager.remove(task.getId());
+  }
+
+  private List<Integer> idsOf(final TaskType type) {
+    return tasks.keys(primaryKey(type, Integer.MIN_VALUE), new Key(type.ordinal() + 1L,
+            Long.MIN_VALUE))
+        .stream()
+        .map(key -> (int) key.low())
+        .toList();
+  }
+
+  private <T extends Task> List<T> readAll(final TaskType type, final Class<T> taskClass) {
+    final List<T> all = new ArrayList<>();
+    tasks.scan(primaryKey(type, Integer.MIN_VALUE), new Key(type.ordinal() + 1L, Long.MIN_VALUE),
+        (key, value) -> all.add(taskClass.cast(decode(value))));
+    return all;
+  }
+
+  /**
+   * Reads the task of the type, an epic along with its subtasks, or returns {@code null}.
+   */
+  private Task read(final TaskType type, final int id) {
+    final byte[] record = tasks.get(primaryKey(type, id));
+    if (record == null) {
+      return null;
+    }
+    final Task task = decode(record);
+    if (task instanceof Epic epic) {
+      readSubtasks(id).forEach(epic::addSubtask);
+    }
+    return task;
+  }
+
+  private List<Subtask> readSubtasks(final int epicId) {
+    final List<Subtask> subtasks = new ArrayList<>();
+    membership.scan(new Key(epicId, Long.MIN_VALUE), new Key(epicId + 1L, Long.MIN_VALUE),
+        (key, value) -> subtasks.add((Subtask) read(TaskType.SUBTASK, (int) key.low())));
+    return subtasks;
+  }
+
+  private void write(final Task task) {
+    recordBytes.reset();
+    try {
+      BinarySnapshot.writeTask(recordOut, task);
+      recordOut.flush();
+    } catch (IOException e) {
+      throw new ManagerSaveException("An error occurred during saving to the file.", e);
+    }
+    tasks.put(primaryKey(task.getType(), task.getId()), recordBytes.toByteArray());
+  }
+
+  private static Task decode(final byte[] record) {
+    return BinarySnapshot.readTask(ByteBuffer.wrap(record));
+  }
+
+  /**
+   * Checks that the task has a start time and no time conflict with the prioritized tasks. Only
+   * the tasks starting last before it, one of which may last past its start, and the tasks starting
+   * before it ends are checked.
+   *
+   * @throws TaskPrioritizationException if the task has a time conflict with an existing task
+   */
+  private boolean canBePrioritized(final Task task) {
+    if (task.getStartTime() == null) {
+      return false;
+    }
+    final Entry before = prioritized.floor(lastKeyBefore(task.getStartTime()));
+    final Key from = before == null ? Key.MIN : firstKeyAtTimeOf(before.key());
+    prioritized.scan(from, firstKeyAt(task.getEndTime()), (key, value) -> {
+      checkTimeConflict(task, value);
+      return true;
+    });
+    return true;
+  }
+
+  private void checkTimeConflict(final Task task, final byte[] neighbour) {
+    final ByteBuffer reference = ByteBuffer.wrap(neighbour);
+    final Task other = read(TaskType.values()[reference.get()], reference.getInt());
+    if (task.getStartTime().isBefore(other.getEndTime())
+        && task.getEndTime().isAfter(other.getStartTime())) {
+      throw new TaskPrioritizationException(
+          "Task has time conflict with existing task with ID " + other.getId());
+    }
+  }
+
+  private void addPrioritized(final Task task) {
+    prioritized.put(startKey(task.getStartTime(), task.getId()),
+        ByteBuffer.allocate(1 + Integer.BYTES)
+            .put((byte) task.getType().ordinal())
+            .putInt(task.getId())
+            .array());
+  }
+
+  private void removePrioritized(final Task task) {
+    if (task.getStartTime() != null) {
+      prioritized.remove(startKey(task.getStartTime(), task.getId()));
+    }
+  }
+
+  /**
+   * Rebuilds the start time tree of a file that keyed it by the start time only, keying every task
+   * by its start time and id.
+   */
+  private void rebuildPrioritized() {
+    prioritized.keys(Key.MIN, Key.MAX).forEach(prioritized::remove);
+    for (TaskType type : List.of(TaskType.TASK, TaskType.SUBTASK)) {
+      for (Task task : readAll(type, Task.class)) {
+        if (task.getStartTime() != null) {
+          addPrioritized(task);
+        }
+      }
+    }
+    commit();
+  }
+
+  private static Key primaryKey(final TaskType type, final int id) {
+    return new Key(type.ordinal(), id);
+  }
+
+  /**
+   * Returns the key of the task in the start time tree: the seconds of the start time, then its
+   * nanoseconds and the id, so the tasks starting at the same time have their own entries.
+   */
+  private static Key startKey(final LocalDateTime startTime, final int id) {
+    return new Key(startTime.toEpochSecond(ZoneOffset.UTC),
+        (long) startTime.getNano() << Integer.SIZE | Integer.toUnsignedLong(id));
+  }
+
+  private static Key firstKeyAt(final LocalDateTime time) {
+    return startKey(time, 0);
+  }
+
+  private static Key lastKeyAt(final LocalDateTime time) {
+    return startKey(time, -1);
+  }
+
+  /**
+   * Returns a key less than the keys of all tasks starting at the time or later.
+   */
+  private static Key lastKeyBefore(final LocalDateTime time) {
+    final Key first = firstKeyAt(time);
+    return new Key(first.high(), first.low() - 1);
+  }
+
+  /**
+   * Returns the least key of the tasks starting at the same time as the task of the key.
+   */
+  private static Key firstKeyAtTimeOf(final Key key) {
+    return new Key(key.high(), key.low() & ~ID_MASK);
+  }
+}
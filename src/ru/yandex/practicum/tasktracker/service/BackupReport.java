@@ -0,0 +1,15 @@
+package ru.yandex.practicum.tasktracker.service;
+
+/**
+ * Outcome of an online backup of a {@link FileBackedTaskManager}: the number of bytes and tasks
+ * written, the time it took and the throughput in megabytes (10^6 bytes) per second.
+ *
+ * @see FileBackedTaskManager#backup(java.io.OutputStream)
+ */
+public record BackupReport(long bytes, int tasks, long elapsedMillis, double megabytesPerSecond) {
+
+  static BackupReport of(final long bytes, final int tasks, final long elapsedNanos) {
+    final double seconds = Math.max(elapsedNanos, 1) / 1e9;
+    return new BackupReport(bytes, tasks, elapsedNanos / 1_000_000, bytes / 1e6 / seconds);
+  }
+}
@@ -0,0 +1,280 @@
+package ru.yandex.practicum.tasktracker.service;
+
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.Collection;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.IntConsumer;
+import java.util.zip.CRC32C;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
+import ru.yandex.practicum.tasktracker.exception.ManagerLoadException;
+import ru.yandex.practicum.tasktracker.model.Epic;
+import ru.yandex.practicum.tasktracker.model.Subtask;
+import ru.yandex.practicum.tasktracker.model.Task;
+import ru.yandex.practicum.tasktracker.model.TaskStatus;
+import ru.yandex.practicum.tasktracker.model.TaskType;
+
+/**
+ * Binary snapshot format of a {@link FileBackedTaskManager}.
+ * <p>
+ * The file starts with the magic number, the format version and the number of task records. Every
+ * record has the fixed-width part:
+ * <ul>
+ *   <li>type and status - one byte each, the ordinal of the enum constant;</li>
+ *   <li>id and epic id - four bytes each, the epic id is {@code 0} for tasks and epics;</li>
+ *   <li>duration in minutes - eight bytes, the precision the CSV format stores it with;</li>
+ *   <li>start time in seconds since the epoch (UTC) and nanoseconds - eight and four bytes, a
+ *   missing start time is written as {@link Long#MIN_VALUE} seconds;</li>
+ * </ul>
+ * followed by the title and the description, each as a four-byte length and UTF-8 bytes (the
+ * length is {@code -1} for {@code null}). The records go in the order tasks, epics, subtasks.
+ * After them follow the number of viewed tasks and their ids in the order of the history, and the
+ * CRC32C checksum of all preceding bytes, which is verified before the records are read. Snapshots
+ * of the first version, written without the checksum, are read without verification.
+ * <p>
+ * The file is loaded through a memory-mapped {@link FileChannel}, a compressed one through the
+ * stream of its inflated blocks, without line splitting, regular expressions or date parsing.
+ *
+ * @see SnapshotFormat
+ */
+final class BinarySnapshot {
+
+  private static final int MAGIC = 0x544B534E;
+  private static final byte UNCHECKED_VERSION = 1;
+  private static final byte VERSION = 2;
+  private static final long NO_START_TIME = Long.MIN_VALUE;
+  private static final int NULL_LENGTH = -1;
+  private static final TaskType[] TYPES = TaskType.values();
+  private static final TaskStatus[] STATUSES = TaskStatus.values();
+
+  private BinarySnapshot() {
+  }
+
+  /**
+   * Writes the snapshot to the {@code out} and flushes it.
+   */
+  static void write(final OutputStream out, final Collection<? extends Task> tasks,
+      final List<Task> history) throws IOException {
+    final CheckedOutputStream checkedOut = new CheckedOutputStream(out, new CRC32C());
+    final DataOutputStream dataOut = new DataOutputStream(
+        new BufferedOutputStream(checkedOut, 1 << 16));
+    dataOut.writeInt(MAGIC);
+    dataOut.writeByte(VERSION);
+    dataOut.writeInt(tasks.size());
+    for (Task task : tasks) {
+      writeTask(dataOut, task);
+    }
+    dataOut.writeInt(history.size());
+    for (Task task : history) {
+      dataOut.writeInt(task.getId());
+    }
+    dataOut.flush();
+    dataOut.writeInt((int) checkedOut.getChecksum().getValue());
+    dataOut.flush();
+  }
+
+  /**
+   * Reads the snapshot file, passing every task to the {@code taskAction} and every id of the
+   * history to the {@code historyAction}. An empty file is read as an empty snapshot, a compressed
+   * one is inflated block by block as it is read instead of being mapped.
+   */
+  static void read(final File file, final Consumer<Task> taskAction,
+      final IntConsumer historyAction) throws IOException {
+    if (CompressedBlocks.isCompressed(file)) {
+      try (final InputStream in = new CompressedBlocks.BlockInputStream(file)) {
+        read(in, file, taskAction, historyAction);
+      }
+      return;
+    }
+    try (final FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+      if (channel.size() == 0) {
+        return;
+      }
+      read(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()), file, taskAction,
+          historyAction);
+    }
+  }
+
+  private static void read(final ByteBuffer buffer, final File file,
+      final Consumer<Task> taskAction, final IntConsumer historyAction) {
+    try {
+      if (buffer.getInt() != MAGIC) {
+        throw new ManagerLoadException("The file is not a binary snapshot: " + file);
+      }
+      final byte version = buffer.get();
+      if (version == VERSION) {
+        verify(buffer, file);
+      } else if (version != UNCHECKED_VERSION) {
+        throw new ManagerLoadException("Unsupported version of the binary snapshot: " + file);
+      }
+      final int tasksCount = buffer.getInt();
+      for (int i = 0; i < tasksCount; i++) {
+        taskAction.accept(readTask(buffer));
+      }
+      final int historyCount = buffer.getInt();
+      for (int i = 0; i < historyCount; i++) {
+        historyAction.accept(buffer.getInt());
+      }
+    } catch (BufferUnderflowException | IndexOutOfBoundsException
+             | NegativeArraySizeException e) {
+      throw new ManagerLoadException("The binary snapshot is damaged: " + file, e);
+    }
+  }
+
+  /**
+   * Reads the inflated content of a compressed snapshot. The stream can not be verified before
+   * its records are read, so its checksum is verified after them: the blocks have checksums of
+   * their own, and the callers drop the state read from a damaged snapshot.
+   */
+  private static void read(final InputStream in, final File file,
+      final Consumer<Task> taskAction, final IntConsumer historyAction) throws IOException {
+    final CheckedInputStream checkedIn = new CheckedInputStream(in, new CRC32C());
+    final DataInputStream dataIn = new DataInputStream(checkedIn);
+    try {
+      if (dataIn.readInt() != MAGIC) {
+        throw new ManagerLoadException("The file is not a binary snapshot: " + file);
+      }
+      final byte version = dataIn.readByte();
+      if (version != VERSION && version != UNCHECKED_VERSION) {
+        throw new ManagerLoadException("Unsupported version of the binary snapshot: " + file);
+      }
+      final int tasksCount = dataIn.readInt();
+      for (int i = 0; i < tasksCount; i++) {
+        taskAction.accept(readTask(dataIn));
+      }
+      final int historyCount = dataIn.readInt();
+      for (int i = 0; i < historyCount; i++) {
+        historyAction.accept(dataIn.readInt());
+      }
+      if (version == VERSION) {
+        final int checksum = (int) checkedIn.getChecksum().getValue();
+        if (dataIn.readInt() != checksum || dataIn.read() >= 0) {
+          throw new ManagerLoadException("The binary snapshot is damaged: " + file);
+        }
+      }
+    } catch (EOFException | IndexOutOfBoundsException | NegativeArraySizeException e) {
+      throw new ManagerLoadException("The binary snapshot is damaged: " + file, e);
+    }
+  }
+
+  /**
+   * Ensures that the content of the file matches the checksum in its last four bytes.
+   */
+  private static void verify(final ByteBuffer buffer, final File file) {
+    final int checksumPosition = buffer.limit() - Integer.BYTES;
+    if (checksumPosition < buffer.position()) {
+      throw new ManagerLoadException("The binary snapshot is damaged: " + file);
+    }
+    final CRC32C crc = new CRC32C();
+    crc.update(buffer.duplicate().position(0).limit(checksumPosition));
+    if ((int) crc.getValue() != buffer.getInt(checksumPosition)) {
+      throw new ManagerLoadException("The binary snapshot is damaged: " + file);
+    }
+  }
+
+  /**
+   * Writes the record of the task, which is also used by the {@link PagedTaskStore}.
+   */
+  static void writeTask(final DataOutputStream out, final Task task) throws IOException {
+    out.writeByte(task.getType().ordinal());
+    out.writeByte(task.getStatus().ordinal());
+    out.writeInt(task.getId());
+    out.writeInt(task instanceof Subtask subtask ? subtask.getEpicId() : 0);
+    out.writeLong(task.getDuration().toMinutes());
+    final LocalDateTime startTime = task.getStartTime();
+    out.writeLong(startTime == null ? NO_START_TIME : startTime.toEpochSecond(ZoneOffset.UTC));
+    out.writeInt(startTime == null ? 0 : startTime.getNano());
+    writeString(out, task.getTitle());
+    writeString(out, task.getDescription());
+  }
+
+  static Task readTask(final ByteBuffer buffer) {
+    final TaskType type = TYPES[buffer.get()];
+    final TaskStatus status = STATUSES[buffer.get()];
+    final Task task = newTask(type, buffer.getInt(), buffer.getInt());
+    task.setStatus(status);
+    task.setDuration(Duration.ofMinutes(buffer.getLong()));
+    task.setStartTime(startTime(buffer.getLong(), buffer.getInt()));
+    task.setTitle(readString(buffer));
+    task.setDescription(readString(buffer));
+    return task;
+  }
+
+  private static Task readTask(final DataInputStream in) throws IOException {
+    final TaskType type = TYPES[in.readByte()];
+    final TaskStatus status = STATUSES[in.readByte()];
+    final Task task = newTask(type, in.readInt(), in.readInt());
+    task.setStatus(status);
+    task.setDuration(Duration.ofMinutes(in.readLong()));
+    task.setStartTime(startTime(in.readLong(), in.readInt()));
+    task.setTitle(readString(in));
+    task.setDescription(readString(in));
+    return task;
+  }
+
+  private static Task newTask(final TaskType type, final int id, final int epicId) {
+    final Task task = switch (type) {
+      case TASK -> new Task();
+      case EPIC -> new Epic();
+      case SUBTASK -> {
+        final Subtask subtask = new Subtask();
+        subtask.setEpicId(epicId);
+        yield subtask;
+      }
+    };
+    task.setId(id);
+    return task;
+  }
+
+  private static LocalDateTime startTime(final long epochSecond, final int nano) {
+    return epochSecond == NO_START_TIME ? null
+        : LocalDateTime.ofEpochSecond(epochSecond, nano, ZoneOffset.UTC);
+  }
+
+  private static void writeString(final DataOutputStream out, final String value)
+      throws IOException {
+    if (value == null) {
+      out.writeInt(NULL_LENGTH);
+      return;
+    }
+    final byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+    out.writeInt(bytes.length);
+    out.write(bytes);
+  }
+
+  private static String readString(final ByteBuffer buffer) {
+    final int length = buffer.getInt();
+    if (length == NULL_LENGTH) {
+      return null;
+    }
+    final byte[] bytes = new byte[length];
+    buffer.get(bytes);
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+
+  private static String readString(final DataInputStream in) throws IOException {
+    final int length = in.readInt();
+    if (length == NULL_LENGTH) {
+      return null;
+    }
+    final byte[] bytes = new byte[length];
+    in.readFully(bytes);
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+}
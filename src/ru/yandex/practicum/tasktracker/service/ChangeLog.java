@@ -0,0 +1,314 @@
+package ru.yandex.practicum.tasktracker.service;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.DateTimeException;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.TreeSet;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
+import ru.yandex.practicum.tasktracker.exception.ManagerLoadException;
+import ru.yandex.practicum.tasktracker.exception.ManagerSaveException;
+import ru.yandex.practicum.tasktracker.model.Task;
+
+/**
+ * Retained log of the mutations of a {@link FileBackedTaskManager}, which serves the state of the
+ * manager as of any retained mutation.
+ * <p>
+ * Every persisted mutation gets the next sequence number and its records are appended to the log
+ * with the number and the time it was made, e.g. {@code 42,1718000000000,DELETE,5}; the records
+ * are the same as in the journal of the manager. Every {@code checkpointInterval} records the
+ * whole state is written to a checkpoint file (with the {@code .checkpoint-<sequence>} suffix),
+ * and the next records go to a new segment of the log (with the {@code .log-<sequence>} suffix),
+ * which starts with the time of its checkpoint.
+ * On opening, the last segment is continued if its checkpoint and records build the state loaded
+ * by the manager, so reopening the manager does not push the older states out of the retained
+ * ones. Otherwise a checkpoint of the loaded state is written, since it is the only one the manager
+ * can vouch for.
+ * <p>
+ * A state as of a sequence number or a time is built from the nearest checkpoint at or before it
+ * and the records of its segment, so it costs at most one checkpoint and
+ * {@code checkpointInterval} records regardless of the age of the state. Only the last
+ * {@code retainedCheckpoints} checkpoints are kept with their segments, older states are dropped.
+ *
+ * @see StorageConfig#isChangeLogEnabled()
+ * @see PointInTimeView
+ */
+final class ChangeLog {
+
+  private static final String CHECKPOINT_SUFFIX = ".checkpoint-";
+  private static final String SEGMENT_SUFFIX = ".log-";
+  private static final String CHECKPOINT_RECORD = "CHECKPOINT";
+  private final File file;
+  private final int checkpointInterval;
+  private final int retainedCheckpoints;
+  private final NavigableSet<Long> checkpoints = new TreeSet<>();
+  private final Map<Long, Long> checkpointTimes = new HashMap<>();
+  private TaskJournal segment;
+  private int segmentRecords;
+  private long sequence;
+  private long lastTime;
+
+  ChangeLog(final File file, final int checkpointInterval, final int retainedCheckpoints) {
+    this.file = file;
+    this.checkpointInterval = checkpointInterval;
+    this.retainedCheckpoints = retainedCheckpoints;
+  }
+
+  /**
+   * Finds the retained checkpoints, restores the last sequence number from the last segment and
+   * continues the last segment if it builds the loaded {@code tasks}, or writes a checkpoint of
+   * them otherwise.
+   */
+  void open(final Collection<? extends Task> tasks, final Durability durability) {
+    final String prefix = file.getName() + CHECKPOINT_SUFFIX;
+    final Path directory = file.getAbsoluteFile().toPath().getParent();
+    try (final Stream<Path> files = Files.list(directory)) {
+      files.map(path -> path.getFileName().toString())
+          .filter(name -> name.startsWith(prefix) && name.length() > prefix.length()
+              && name.substring(prefix.length()).chars().allMatch(Character::isDigit))
+          .forEach(name -> checkpoints.add(Long.parseLong(name.substring(prefix.length()))));
+    } catch (IOException e) {
+      throw new ManagerLoadException("An Error occurred during reading the change log", e);
+    }
+    if (!checkpoints.isEmpty()) {
+      final long last = checkpoints.last();
+      sequence = last;
+      segment = segmentOf(last);
+      segment.replay(line -> {
+        sequence = Math.max(sequence, parseSequence(line));
+        lastTime = Math.max(lastTime, parseTime(line));
+        if (parseRecord(line).equals(CHECKPOINT_RECORD)) {
+          checkpointTimes.put(last, parseTime(line));
+        } else {
+          segmentRecords++;
+        }
+      });
+      if (checkpointTimes.containsKey(last) && builds(last, tasks)) {
+        return;
+      }
+    }
+    checkpoint(tasks, durability);
+  }
+
+  /**
+   * Returns the sequence number of the last mutation.
+   */
+  long sequence() {
+    return sequence;
+  }
+
+  /**
+   * Appends the records of one mutation under the next sequence number, so a state is never built
+   * in the middle of a mutation.
+   */
+  void append(final List<String> records) {
+    final long time = nextTime();
+    sequence++;
+    for (String record : records) {
+      segment.append(sequence + "," + time + "," + record);
+    }
+    segmentRecords += records.size();
+  }
+
+  void commit(final Durability durability) {
+    segment.commit(durability);
+  }
+
+  /**
+   * Returns whether the current segment has reached the checkpoint interval.
+   */
+  boolean needsCheckpoint() {
+    return segmentRecords >= checkpointInterval;
+  }
+
+  /**
+   * Writes the {@code tasks}, the state as of the last mutation, to a checkpoint, starts a new
+   * segment and drops the checkpoints beyond the retained ones.
+   */
+  void checkpoint(final Collection<? extends Task> tasks, final Durability durability) {
+    if (segment != null) {
+      segment.commit(durability);
+      segment.close();
+    }
+    final SnapshotFile checkpointFile = new SnapshotFile(checkpointFile(sequence));
+    try {
+      checkpointFile.write(out -> CsvSnapshot.write(out, tasks, List.of()), durability);
+      /* A checkpoint is rewritten only as of the same mutation, it needs no backup. */
+      Files.deleteIfExists(checkpointFile.backup().toPath());
+    } catch (IOException e) {
+      throw new ManagerSaveException("An error occurred during writing a checkpoint.", e);
+    }
+    final long time = nextTime();
+    segment = segmentOf(sequence);
+    segment.truncate();
+    segment.append(sequence + "," + time + "," + CHECKPOINT_RECORD);
+    segment.commit(durability);
+    segmentRecords = 0;
+    checkpoints.add(sequence);
+    checkpointTimes.put(sequence, time);
+    while (checkpoints.size() > retainedCheckpoints) {
+      drop(checkpoints.pollFirst());
+    }
+  }
+
+  /**
+   * Builds the state as of the mutation with the {@code target} sequence number.
+   *
+   * @throws IllegalArgumentException if the state is older than the oldest checkpoint or the
+   *                                  mutation has not been made yet
+   */
+  PointInTimeView viewAsOf(final long target) {
+    final Long checkpoint = checkpoints.floor(target);
+    if (checkpoint == null || target > sequence) {
+      throw new IllegalArgumentException("The state as of the sequence number " + target
+          + " is not retained, the retained ones are " + checkpoints.first() + ".." + sequence);
+    }
+    return replay(checkpoint, line -> parseSequence(line) <= target);
+  }
+
+  /**
+   * Builds the state as of the {@code time}: the state after the last mutation made at or before
+   * it.
+   *
+   * @throws IllegalArgumentException if the time is before the oldest checkpoint
+   */
+  PointInTimeView viewAsOf(final Instant time) {
+    final long millis = time.toEpochMilli();
+    for (Long checkpoint : checkpoints.descendingSet()) {
+      if (checkpointTime(checkpoint) <= millis) {
+        return replay(checkpoint, line -> parseTime(line) <= millis);
+      }
+    }
+    throw new IllegalArgumentException("The state as of " + time + " is not retained, the oldest "
+        + "one is as of " + Instant.ofEpochMilli(checkpointTime(checkpoints.first())));
+  }
+
+  void close() {
+    if (segment != null) {
+      segment.close();
+    }
+  }
+
+  /**
+   * Reads the checkpoint and applies the records of its segment while they match the
+   * {@code filter}.
+   */
+  private PointInTimeView replay(final long checkpoint, final Predicate<String> filter) {
+    segment.commit(Durability.FLUSH);
+    final PointInTimeView view = new PointInTimeView();
+    final File checkpointFile = checkpointFile(checkpoint);
+    try {
+      CsvSnapshot.verify(checkpointFile);
+      CsvSnapshot.read(checkpointFile, view::put, id -> { });
+    } catch (IOException e) {
+      throw new ManagerLoadException("An Error occurred during reading the checkpoint", e);
+    }
+    segmentOf(checkpoint).replayWhile(line -> {
+      if (!filter.test(line)) {
+        return false;
+      }
+      final String record = parseRecord(line);
+      if (!record.equals(CHECKPOINT_RECORD)) {
+        view.apply(record);
+      }
+      return true;
+    });
+    return view;
+  }
+
+  /**
+   * Returns whether the checkpoint and all records of its segment build the {@code tasks}.
+   */
+  private boolean builds(final long checkpoint, final Collection<? extends Task> tasks) {
+    final PointInTimeView view;
+    try {
+      view = replay(checkpoint, line -> true);
+    } catch (ManagerLoadException | IllegalArgumentException | DateTimeException e) {
+      return false;
+    }
+    final List<Task> built = Stream.of(view.getTasks(), view.getEpics(), view.getSubtasks())
+        .<Task>flatMap(List::stream)
+        .toList();
+    return Arrays.equals(toCsv(built), toCsv(tasks));
+  }
+
+  /**
+   * Returns the tasks written as a checkpoint in the order of their types and ids, which is the
+   * same for the same tasks.
+   */
+  private static byte[] toCsv(final Collection<? extends Task> tasks) {
+    final ByteArrayOutputStream out = new ByteArrayOutputStream();
+    try {
+      CsvSnapshot.write(out, tasks.stream().sorted(Comparator.comparing(Task::getType)
+          .thenComparingInt(Task::getId)).toList(), List.of());
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    return out.toByteArray();
+  }
+
+  /**
+   * Returns the time of the checkpoint, which is the time of the first record of its segment.
+   */
+  private long checkpointTime(final long checkpoint) {
+    return checkpointTimes.computeIfAbsent(checkpoint, key -> {
+      final long[] time = {Long.MAX_VALUE};
+      segmentOf(key).replayWhile(line -> {
+        time[0] = parseTime(line);
+        return false;
+      });
+      return time[0];
+    });
+  }
+
+  /**
+   * Returns the time of the next mutation, which is never before the time of the previous one.
+   */
+  private long nextTime() {
+    lastTime = Math.max(lastTime, System.currentTimeMillis());
+    return lastTime;
+  }
+
+  private void drop(final long checkpoint) {
+    checkpointTimes.remove(checkpoint);
+    segmentOf(checkpoint).truncate();
+    try {
+      Files.deleteIfExists(checkpointFile(checkpoint).toPath());
+    } catch (IOException e) {
+      throw new ManagerSaveException("An error occurred during deleting a checkpoint.", e);
+    }
+  }
+
+  private File checkpointFile(final long checkpoint) {
+    return new File(file.getPath() + CHECKPOINT_SUFFIX + checkpoint);
+  }
+
+  private TaskJournal segmentOf(final long checkpoint) {
+    return new TaskJournal(file, SEGMENT_SUFFIX + checkpoint);
+  }
+
+  private static long parseSequence(final String line) {
+    return Long.parseLong(line, 0, line.indexOf(','), 10);
+  }
+
+  private static long parseTime(final String line) {
+    final int start = line.indexOf(',') + 1;
+    return Long.parseLong(line, start, line.indexOf(',', start), 10);
+  }
+
+  private static String parseRecord(final String line) {
+    return line.substring(line.indexOf(',', line.indexOf(',') + 1) + 1);
+  }
+}
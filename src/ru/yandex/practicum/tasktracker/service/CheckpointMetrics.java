@@ -0,0 +1,13 @@
+package ru.yandex.practicum.tasktracker.service;
+
+/**
+ * State of the background checkpoints of a {@link FileBackedTaskManager}: the number of completed
+ * and failed checkpoints, the number of journal records not yet covered by a snapshot, the time
+ * the last checkpoint took and whether a checkpoint is pending or running.
+ *
+ * @see FileBackedTaskManager#getCheckpointMetrics()
+ */
+public record CheckpointMetrics(long checkpoints, long failures, long lagRecords,
+    long lastDurationMillis, boolean running) {
+
+}
@@ -0,0 +1,105 @@
+package ru.yandex.practicum.tasktracker.service;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import ru.yandex.practicum.tasktracker.exception.ManagerSaveException;
+
+/**
+ * Background checkpoints of the journal of a {@link FileBackedTaskManager}.
+ * <p>
+ * The manager calls {@link #request()} once its journal has reached the compaction threshold. A
+ * single daemon thread runs the checkpoint action, the requests made while it is pending or
+ * running are coalesced into it. The checkpoint action is responsible for its own synchronization
+ * with the operations.
+ * <p>
+ * A failure of the checkpoint action does not stop the checkpointer: the journal keeps growing
+ * until the next request succeeds. The operation that made the request has already been applied,
+ * so the failure is not reported to it, but to {@link #checkHealth()} until a later checkpoint
+ * succeeds.
+ *
+ * @see CheckpointMetrics
+ */
+class Checkpointer {
+
+  private final Runnable checkpointAction;
+  private final ExecutorService executor;
+  private final AtomicBoolean requested = new AtomicBoolean();
+  private final AtomicReference<RuntimeException> failure = new AtomicReference<>();
+  private final AtomicLong checkpoints = new AtomicLong();
+  private final AtomicLong failures = new AtomicLong();
+  private final AtomicLong lastDurationNanos = new AtomicLong();
+
+  Checkpointer(final Runnable checkpointAction) {
+    this.checkpointAction = checkpointAction;
+    this.executor = Executors.newSingleThreadExecutor(runnable -> {
+      final Thread thread = new Thread(runnable, "task-manager-checkpointer");
+      thread.setDaemon(true);
+      return thread;
+    });
+  }
+
+  /**
+   * Requests a checkpoint unless one is already pending or running.
+   */
+  void request() {
+    if (requested.compareAndSet(false, true)) {
+      executor.execute(this::checkpoint);
+    }
+  }
+
+  /**
+   * Reports the failure of the last checkpoint, if no checkpoint has succeeded since.
+   *
+   * @throws ManagerSaveException if the last checkpoint has failed
+   */
+  void checkHealth() {
+    final RuntimeException e = failure.get();
+    if (e != null) {
+      throw new ManagerSaveException("An error occurred during a checkpoint in the background.",
+          e);
+    }
+  }
+
+  /**
+   * Waits for the running checkpoint, if any, and stops the background thread.
+   */
+  void close() {
+    executor.shutdown();
+    try {
+      if (!executor.awaitTermination(1, TimeUnit.MINUTES)) {
+        executor.shutdownNow();
+      }
+    } catch (InterruptedException e) {
+      executor.shutdownNow();
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  /**
+   * Returns the counters of the checkpoints along with the given number of records not yet
+   * covered by a snapshot.
+   */
+  CheckpointMetrics metrics(final long lagRecords) {
+    return new CheckpointMetrics(checkpoints.get(), failures.get(), lagRecords,
+        TimeUnit.NANOSECONDS.toMillis(lastDurationNanos.get()), requested.get());
+  }
+
+  private void checkpoint() {
+    final long start = System.nanoTime();
+    try {
+      checkpointAction.run();
+      checkpoints.incrementAndGet();
+      failure.set(null);
+    } catch (RuntimeException e) {
+      failures.incrementAndGet();
+      failure.set(e);
+    } finally {
+      lastDurationNanos.set(System.nanoTime() - start);
+      requested.set(false);
+    }
+  }
+}
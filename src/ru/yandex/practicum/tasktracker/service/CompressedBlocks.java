@@ -0,0 +1,353 @@
+package ru.yandex.practicum.tasktracker.service;
+
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Objects;
+import java.util.zip.CRC32C;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+import ru.yandex.practicum.tasktracker.exception.ManagerLoadException;
+import ru.yandex.practicum.tasktracker.service.SnapshotFile.SnapshotWriter;
+
+/**
+ * Block-compressed layout of a snapshot file of a {@link FileBackedTaskManager}.
+ * <p>
+ * The file starts with the magic number and the format version, followed by blocks compressed
+ * independently of each other with {@link Deflater}. Every block has a header of three four-byte
+ * numbers: the length of the content, the length of the compressed bytes and the CRC32C checksum of
+ * the content. The last block is followed by a zero length, so a truncated file is recognized.
+ * <p>
+ * A block holds about {@value #BLOCK_SIZE} bytes of the content and ends right after a line
+ * separator, so the lines of a CSV snapshot never span two blocks: the blocks can be inflated and
+ * parsed on several threads, see {@link ParallelCsvSnapshotReader}. A block grows past its size
+ * only for a line longer than the block.
+ * <p>
+ * The compressed files are recognized by their magic number, so a manager loads a snapshot in
+ * either layout whatever its {@link StorageConfig#isCompressionEnabled() settings}.
+ *
+ * @see StorageConfig#isCompressionEnabled()
+ */
+final class CompressedBlocks {
+
+  static final int BLOCK_SIZE = 1 << 18;
+  private static final int MAGIC = 0x54545A42;
+  private static final byte VERSION = 1;
+  private static final int FILE_HEADER_SIZE = Integer.BYTES + Byte.BYTES;
+  private static final int BLOCK_HEADER_SIZE = 3 * Integer.BYTES;
+  private static final int LEVEL = Deflater.BEST_SPEED;
+
+  private CompressedBlocks() {
+  }
+
+  /**
+   * Returns whether the file exists and starts with the magic number of the compressed layout.
+   */
+  static boolean isCompressed(final File file) throws IOException {
+    if (!file.isFile() || file.length() < FILE_HEADER_SIZE) {
+      return false;
+    }
+    try (final DataInputStream in = new DataInputStream(new FileInputStream(file))) {
+      return in.readInt() == MAGIC;
+    }
+  }
+
+  /**
+   * Returns the writer that compresses everything the {@code writer} writes.
+   */
+  static SnapshotWriter compressing(final SnapshotWriter writer) {
+    return out -> {
+      final BlockOutputStream blockOut = new BlockOutputStream(out, BLOCK_SIZE);
+      writer.write(blockOut);
+      blockOut.finish();
+    };
+  }
+
+  /**
+   * Returns the blocks of the compressed file, read from their headers without inflating them.
+   *
+   * @throws ManagerLoadException if the file is not compressed or is truncated
+   */
+  static List<Block> blocks(final FileChannel channel, final File file) throws IOException {
+    final ByteBuffer header = ByteBuffer.allocate(BLOCK_HEADER_SIZE);
+    readFully(channel, header.limit(FILE_HEADER_SIZE), 0, file);
+    if (header.getInt(0) != MAGIC || header.get(Integer.BYTES) != VERSION) {
+      throw new ManagerLoadException("The file is not a compressed snapshot: " + file);
+    }
+    final List<Block> blocks = new ArrayList<>();
+    long position = FILE_HEADER_SIZE;
+    while (true) {
+      readFully(channel, header.clear().limit(Integer.BYTES), position, file);
+      final int length = header.getInt(0);
+      if (length == 0) {
+        break;
+      }
+      readFully(channel, header.clear(), position, file);
+      final Block block = new Block(position + BLOCK_HEADER_SIZE, length, header.getInt(4),
+          header.getInt(8));
+      if (length < 0 || block.compressedLength() <= 0
+          || block.position() + block.compressedLength() > channel.size()) {
+        throw damaged(file);
+      }
+      blocks.add(block);
+      position = block.position() + block.compressedLength();
+    }
+    if (position + Integer.BYTES != channel.size()) {
+      throw damaged(file);
+    }
+    return blocks;
+  }
+
+  /**
+   * Reads and inflates the block, verifying its checksum.
+   *
+   * @throws ManagerLoadException if the block is damaged
+   */
+  static byte[] inflate(final FileChannel channel, final Block block, final File file)
+      throws IOException {
+    final ByteBuffer compressed = ByteBuffer.allocate(block.compressedLength());
+    readFully(channel, compressed, block.position(), file);
+    final byte[] content = new byte[block.length()];
+    final Inflater inflater = new Inflater();
+    try {
+      inflater.setInput(compressed.array());
+      int length = 0;
+      while (length < content.length) {
+        final int inflated = inflater.inflate(content, length, content.length - length);
+        if (inflated == 0 && (inflater.finished() || inflater.needsInput()
+            || inflater.needsDictionary())) {
+          break;
+        }
+        length += inflated;
+      }
+      final CRC32C crc = new CRC32C();
+      crc.update(content);
+      if (length != content.length || (int) crc.getValue() != block.checksum()) {
+        throw damaged(file);
+      }
+    } catch (DataFormatException e) {
+      throw new ManagerLoadException("The compressed snapshot is damaged: " + file, e);
+    } finally {
+      inflater.end();
+    }
+    return content;
+  }
+
+  private static void readFully(final FileChannel channel, final ByteBuffer buffer,
+      final long position, final File file) throws IOException {
+    while (buffer.hasRemaining()) {
+      if (channel.read(buffer, position + buffer.position()) < 0) {
+        throw new ManagerLoadException("The compressed snapshot is truncated: " + file);
+      }
+    }
+  }
+
+  private static ManagerLoadException damaged(final File file) {
+    return new ManagerLoadException("The compressed snapshot is damaged: " + file);
+  }
+
+  /**
+   * A compressed block: the position of its compressed bytes in the file, their length, and the
+   * length and the checksum of the content.
+   */
+  record Block(long position, int length, int compressedLength, int checksum) {
+
+  }
+
+  /**
+   * Stream of the content of a compressed file, which inflates one block at a time as it is read
+   * and verifies its checksum, so the content is never held in memory as a whole. Closing the
+   * stream closes the file.
+   *
+   * @see #inflate(FileChannel, Block, File)
+   */
+  static final class BlockInputStream extends InputStream {
+
+    private final File file;
+    private final FileChannel channel;
+    private final Iterator<Block> blocks;
+    private byte[] content = new byte[0];
+    private int position;
+
+    /**
+     * Opens the compressed file and reads the headers of its blocks.
+     *
+     * @throws ManagerLoadException if the file is not compressed or is truncated
+     */
+    BlockInputStream(final File file) throws IOException {
+      this.file = file;
+      this.channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+      try {
+        this.blocks = blocks(channel, file).iterator();
+      } catch (IOException | RuntimeException e) {
+        channel.close();
+        throw e;
+      }
+    }
+
+    @Override
+    public int read() throws IOException {
+      return fill() ? content[position++] & 0xFF : -1;
+    }
+
+    @Override
+    public int read(final byte[] b, final int off, final int len) throws IOException {
+      Objects.checkFromIndexSize(off, len, b.length);
+      if (len == 0) {
+        return 0;
+      }
+      if (!fill()) {
+        return -1;
+      }
+      final int length = Math.min(len, content.length - position);
+      System.arraycopy(content, position, b, off, length);
+      position += length;
+      return length;
+    }
+
+    @Override
+    public int available() {
+      return content.length - position;
+    }
+
+    @Override
+    public void close() throws IOException {
+      channel.close();
+    }
+
+    /**
+     * Inflates the next block once the current one is read.
+     *
+     * @return {@code false} if all blocks are read
+     */
+    private boolean fill() throws IOException {
+      while (position == content.length) {
+        if (!blocks.hasNext()) {
+          return false;
+        }
+        content = inflate(channel, blocks.next(), file);
+        position = 0;
+      }
+      return true;
+    }
+  }
+
+  /**
+   * Stream that collects the written bytes into blocks and writes every full block compressed.
+   * {@link #finish()} writes the last block and the end of the file, but does not close the
+   * underlying stream.
+   */
+  static final class BlockOutputStream extends OutputStream {
+
+    private final DataOutputStream out;
+    private final Deflater deflater = new Deflater(LEVEL);
+    private final CRC32C crc = new CRC32C();
+    private byte[] buffer;
+    private byte[] compressed;
+    private int size;
+
+    BlockOutputStream(final OutputStream out, final int blockSize) throws IOException {
+      this.out = new DataOutputStream(new BufferedOutputStream(out, 1 << 16));
+      this.buffer = new byte[blockSize];
+      this.compressed = new byte[blockSize];
+      this.out.writeInt(MAGIC);
+      this.out.writeByte(VERSION);
+    }
+
+    @Override
+    public void write(final int b) throws IOException {
+      if (size == buffer.length) {
+        spill();
+      }
+      buffer[size++] = (byte) b;
+    }
+
+    @Override
+    public void write(final byte[] b, final int off, final int len) throws IOException {
+      int offset = off;
+      int remaining = len;
+      while (remaining > 0) {
+        if (size == buffer.length) {
+          spill();
+        }
+        final int length = Math.min(remaining, buffer.length - size);
+        System.arraycopy(b, offset, buffer, size, length);
+        size += length;
+        offset += length;
+        remaining -= length;
+      }
+    }
+
+    /**
+     * Flushes the compressed blocks written so far, the block being collected is kept.
+     */
+    @Override
+    public void flush() throws IOException {
+      out.flush();
+    }
+
+    /**
+     * Writes the collected bytes as the last block and the end of the file, and flushes them.
+     */
+    void finish() throws IOException {
+      if (size > 0) {
+        writeBlock(size);
+        size = 0;
+      }
+      out.writeInt(0);
+      out.flush();
+      deflater.end();
+    }
+
+    /**
+     * Writes the full buffer up to its last line separator as a block and keeps the rest for the
+     * next one. A buffer without a line separator is doubled instead.
+     */
+    private void spill() throws IOException {
+      int end = size;
+      while (end > 0 && buffer[end - 1] != '\n') {
+        end--;
+      }
+      if (end == 0) {
+        buffer = Arrays.copyOf(buffer, buffer.length * 2);
+        return;
+      }
+      writeBlock(end);
+      System.arraycopy(buffer, end, buffer, 0, size - end);
+      size -= end;
+    }
+
+    private void writeBlock(final int length) throws IOException {
+      crc.reset();
+      crc.update(buffer, 0, length);
+      deflater.reset();
+      deflater.setInput(buffer, 0, length);
+      deflater.finish();
+      int compressedLength = 0;
+      while (!deflater.finished()) {
+        if (compressedLength == compressed.length) {
+          compressed = Arrays.copyOf(compressed, compressed.length * 2);
+        }
+        compressedLength += deflater.deflate(compressed, compressedLength,
+            compressed.length - compressedLength);
+      }
+      out.writeInt(length);
+      out.writeInt(compressedLength);
+      out.writeInt((int) crc.getValue());
+      out.write(compressed, 0, compressedLength);
+    }
+  }
+}
@@ -0,0 +1,504 @@
+package ru.yandex.practicum.tasktracker.service;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Stream;
+import ru.yandex.practicum.tasktracker.exception.TaskNotFoundException;
+import ru.yandex.practicum.tasktracker.exception.TaskPrioritizationException;
+import ru.yandex.practicum.tasktracker.exception.TaskValidationException;
+import ru.yandex.practicum.tasktracker.model.Epic;
+import ru.yandex.practicum.tasktracker.model.EpicRecord;
+import ru.yandex.practicum.tasktracker.model.Subtask;
+import ru.yandex.practicum.tasktracker.model.SubtaskRecord;
+import ru.yandex.practicum.tasktracker.model.Task;
+import ru.yandex.practicum.tasktracker.model.TaskView;
+
+/**
+ * Thread-safe in-memory {@link TaskManager}, for a server that handles requests on several
+ * threads.
+ * <p>
+ * The tasks, epics and subtasks are kept in {@link ConcurrentHashMap}s. A stored task or subtask
+ * is never changed: an update puts a new copy, so the lists and lookups read the maps without
+ * locking. An epic holds the set of its subtasks, so every change of the subtasks of an epic, and
+ * every read of the epic, holds the monitor of that stored epic: changes of different epics never
+ * wait for each other.
+ * <p>
+ * The prioritized tasks are kept in an {@link IntervalIndex} behind a {@link ReadWriteLock}.
+ * Checking a task for time conflicts and putting it in the index is done under the write lock as
+ * one step, so two threads cannot schedule overlapping tasks, and a failed update puts the previous
+ * version back. The history of viewed tasks is guarded by its own monitor.
+ * <p>
+ * The clear operations remove the tasks one by one, so a task added while the tasks are being
+ * cleared may stay. The ids are given by an {@link IdAllocator} of the manager, every thread takes
+ * them from a block of its own.
+ *
+ * @see TaskManager
+ * @see InMemoryTaskManager
+ */
+public class ConcurrentTaskManager implements TaskManager {
+
+  private final Map<Integer, Task> tasks = new ConcurrentHashMap<>();
+  private final Map<Integer, Epic> epics = new ConcurrentHashMap<>();
+  private final Map<Integer, Subtask> subtasks = new ConcurrentHashMap<>();
+  private final HistoryManager historyManager = Managers.getDefaultHistory();
+  private final IntervalIndex prioritizedTasks = new IntervalIndex();
+  private final ReadWriteLock prioritizedLock = new ReentrantReadWriteLock();
+  private final IdAllocator ids = new IdAllocator();
+
+  @Override
+  public List<Task> getTasks() {
+    return new ArrayList<>(tasks.values());
+  }
+
+  @Override
+  public List<Epic> getEpics() {
+    final List<Epic> result = new ArrayList<>();
+    epics.values().forEach(epic -> {
+      synchronized (epic) {
+        if (epics.get(epic.getId()) == epic) {
+          result.add(epic.copy());
+        }
+      }
+    });
+    return result;
+  }
+
+  @Override
+  public List<Subtask> getSubtasks() {
+    return new ArrayList<>(subtasks.values());
+  }
+
+  @Override
+  public List<Task> getPrioritizedTasks() {
+    prioritizedLock.readLock().lock();
+    try {
+      return new ArrayList<>(prioritizedTasks);
+    } finally {
+      prioritizedLock.readLock().unlock();
+    }
+  }
+
+  @Override
+  public List<Task> getPrioritizedTasks(final ScheduleWindow window) {
+    prioritizedLock.readLock().lock();
+    try {
+      return prioritizedTasks.page(window);
+    } finally {
+      prioritizedLock.readLock().unlock();
+    }
+  }
+
+  @Override
+  public LocalDateTime findFreeSlot(final LocalDateTime after, final Duration duration) {
+    prioritizedLock.readLock().lock();
+    try {
+      return prioritizedTasks.firstGap(after, duration);
+    } finally {
+      prioritizedLock.readLock().unlock();
+    }
+  }
+
+  /**
+   * Schedules the unscheduled tasks, see {@link TaskManager#scheduleUnscheduled(LocalDateTime)}.
+   * A slot taken by another thread between finding it and updating the task is searched again, a
+   * task deleted meanwhile is skipped.
+   */
+  @Override
+  public List<Task> scheduleUnscheduled(final LocalDateTime after) {
+    final List<Task> unscheduled = Stream.concat(getTasks().stream(), getSubtasks().stream())
+        .filter(task -> task.getStartTime() == null)
+        .sorted(Comparator.comparingInt(Task::getId))
+        .map(Task::copy)
+        .toList();
+    final List<Task> scheduled = new ArrayList<>(unscheduled.size());
+    for (Task task : unscheduled) {
+      while (true) {
+        task.setStartTime(findFreeSlot(after, task.getDuration()));
+        try {
+          if (task instanceof Subtask subtask) {
+            updateSubtask(subtask);
+          } else {
+            updateTask(task);
+          }
+          scheduled.add(task);
+          break;
+        } catch (TaskPrioritizationException e) {
+          /* The slot was taken, the next search finds another one. */
+        } catch (TaskNotFoundException e) {
+          break;
+        }
+      }
+    }
+    return scheduled;
+  }
+
+  @Override
+  public List<Task> getHistory() {
+    final List<Task> history;
+    synchronized (historyManager) {
+      history = historyManager.getHistory();
+    }
+    final List<Task> result = new ArrayList<>();
+    for (Task viewed : history) {
+      final int id = viewed.getId();
+      final Epic epic = epics.get(id);
+      final Task task = epic != null ? copyOf(epic)
+          : tasks.containsKey(id) ? tasks.get(id) : subtasks.get(id);
+      if (task != null) {
+        result.add(task);
+      }
+    }
+    return result;
+  }
+
+  @Override
+  public void clearTasks() {
+    tasks.keySet().forEach(this::deleteTask);
+  }
+
+  @Override
+  public void clearEpics() {
+    epics.keySet().forEach(this::deleteEpic);
+  }
+
+  @Override
+  public void clearSubtasks() {
+    epics.values().forEach(epic -> {
+      synchronized (epic) {
+        if (epics.get(epic.getId()) != epic) {
+          return;
+        }
+        epic.getSubtasks().forEach(this::removeSubtaskOf);
+        epic.clearSubtasks();
+      }
+    });
+  }
+
+  @Override
+  public void deleteTask(final int id) {
+    final Task removedTask = tasks.remove(id);
+    if (removedTask == null) {
+      return;
+    }
+    removeFromHistory(id);
+    removePrioritized(removedTask);
+  }
+
+  @Override
+  public void deleteEpic(final int id) {
+    final Epic epic = epics.get(id);
+    if (epic == null) {
+      return;
+    }
+    synchronized (epic) {
+      if (!epics.remove(id, epic)) {
+        return;
+      }
+      epic.getSubtasks().forEach(this::removeSubtaskOf);
+    }
+    removeFromHistory(id);
+  }
+
+  @Override
+  public void deleteSubtask(final int id) {
+    final Subtask subtask = subtasks.get(id);
+    if (subtask == null) {
+      return;
+    }
+    final Epic epic = epics.get(subtask.getEpicId());
+    if (epic == null) {
+      return;
+    }
+    synchronized (epic) {
+      final Subtask removedSubtask = subtasks.remove(id);
+      if (removedSubtask == null) {
+        return;
+      }
+      epic.removeSubtask(removedSubtask);
+      removePrioritized(removedSubtask);
+    }
+    removeFromHistory(id);
+  }
+
+  @Override
+  public Task getTaskById(final int id) throws TaskNotFoundException {
+    final Task task = tasks.get(id);
+    if (task == null) {
+      throw new TaskNotFoundException("Task with Id " + id + " was not found.");
+    }
+    addToHistory(task);
+    return task.copy();
+  }
+
+  @Override
+  public Epic getEpicById(final int id) {
+    final Epic epic = epics.get(id);
+    final Epic copy = epic == null ? null : copyOf(epic);
+    if (copy == null) {
+      throw new TaskNotFoundException("Epic with Id " + id + " was not found.");
+    }
+    addToHistory(copy);
+    return copy;
+  }
+
+  @Override
+  public Subtask getSubtaskById(final int id) {
+    final Subtask subtask = subtasks.get(id);
+    if (subtask == null) {
+      throw new TaskNotFoundException("Subtask with Id " + id + " was not found.");
+    }
+    addToHistory(subtask);
+    return subtask.copy();
+  }
+
+  @Override
+  public TaskView getTaskView(final int id) {
+    final Task task = tasks.get(id);
+    if (task == null) {
+      throw new TaskNotFoundException("Task with Id " + id + " was not found.");
+    }
+    addToHistory(task);
+    return task.view();
+  }
+
+  @Override
+  public EpicRecord getEpicView(final int id) {
+    final Epic epic = epics.get(id);
+    final EpicRecord view = epic == null ? null : viewOf(epic);
+    if (view == null) {
+      throw new TaskNotFoundException("Epic with Id " + id + " was not found.");
+    }
+    addToHistory(epic);
+    return view;
+  }
+
+  @Override
+  public SubtaskRecord getSubtaskView(final int id) {
+    final Subtask subtask = subtasks.get(id);
+    if (subtask == null) {
+      throw new TaskNotFoundException("Subtask with Id " + id + " was not found.");
+    }
+    addToHistory(subtask);
+    return subtask.view();
+  }
+
+  @Override
+  public List<TaskView> getTaskViews() {
+    return tasks.values().stream().map(Task::view).toList();
+  }
+
+  @Override
+  public List<EpicRecord> getEpicViews() {
+    return epics.values().stream().map(this::viewOf).filter(Objects::nonNull).toList();
+  }
+
+  @Override
+  public List<SubtaskRecord> getSubtaskViews() {
+    return subtasks.values().stream().map(Subtask::view).toList();
+  }
+
+  @Override
+  public Set<Subtask> getSubtasksByEpicId(final int epicId) {
+    final Epic epic = epics.get(epicId);
+    if (epic != null) {
+      synchronized (epic) {
+        if (epics.get(epicId) == epic) {
+          return new HashSet<>(epic.getSubtasks());
+        }
+      }
+    }
+    throw new TaskNotFoundException("Epic with Id " + epicId + " was not found.");
+  }
+
+  @Override
+  public Task addTask(final Task task) throws TaskPrioritizationException {
+    task.setId(generateId());
+    final Task taskToAdd = task.copy();
+    replacePrioritized(null, taskToAdd);
+    tasks.put(task.getId(), taskToAdd);
+    return task;
+  }
+
+  @Override
+  public Epic addEpic(final Epic epic) {
+    epic.setId(generateId());
+    final Epic epicToAdd = epic.copy();
+    epicToAdd.clearSubtasks();
+    epics.put(epic.getId(), epicToAdd);
+    final Set<Subtask> subtasksFromNewEpic = new HashSet<>(epic.getSubtasks());
+    epic.clearSubtasks();
+    subtasksFromNewEpic.forEach(s -> {
+      s.setEpicId(epic.getId());
+      addSubtask(s);
+    });
+    return epic;
+  }
+
+  @Override
+  public Subtask addSubtask(final Subtask subtask) {
+    final int epicId = subtask.getEpicId();
+    final Epic epic = epics.get(epicId);
+    if (epic == null) {
+      throw new TaskValidationException("Invalid epic Id " + epicId);
+    }
+    synchronized (epic) {
+      if (epics.get(epicId) != epic) {
+        throw new TaskValidationException("Invalid epic Id " + epicId);
+      }
+      subtask.setId(generateId());
+      final Subtask subtaskToAdd = subtask.copy();
+      replacePrioritized(null, subtaskToAdd);
+      epic.addSubtask(subtaskToAdd);
+      subtasks.put(subtask.getId(), subtaskToAdd);
+    }
+    return subtask;
+  }
+
+  @Override
+  public void updateTask(final Task taskToUpdate)
+      throws TaskNotFoundException, TaskPrioritizationException {
+    final Task updatedTask = taskToUpdate.copy();
+    tasks.compute(taskToUpdate.getId(), (id, taskInMemory) -> {
+      if (taskInMemory == null) {
+        throw new TaskNotFoundException(
+            "The task " + taskToUpdate + "does not exist in the TaskManager");
+      }
+      replacePrioritized(taskInMemory, updatedTask);
+      return updatedTask;
+    });
+  }
+
+  /**
+   * Method {@code updateEpic(Epic)} allows update title, description only, see
+   * {@link InMemoryTaskManager#updateEpic(Epic)}.
+   */
+  @Override
+  public void updateEpic(final Epic epic) {
+    final Epic epicInMemory = epics.get(epic.getId());
+    if (epicInMemory == null) {
+      return;
+    }
+    synchronized (epicInMemory) {
+      epicInMemory.setTitle(epic.getTitle());
+      epicInMemory.setDescription(epic.getDescription());
+    }
+  }
+
+  @Override
+  public void updateSubtask(final Subtask subtask) {
+    final Epic epic = epics.get(subtask.getEpicId());
+    if (epic != null) {
+      synchronized (epic) {
+        final Subtask subtaskInMemory = subtasks.get(subtask.getId());
+        if (epics.get(epic.getId()) == epic && subtaskInMemory != null
+            && subtaskInMemory.getEpicId() == subtask.getEpicId()) {
+          final Subtask subtaskToUpdate = subtask.copy();
+          replacePrioritized(subtaskInMemory, subtaskToUpdate);
+          subtasks.put(subtask.getId(), subtaskToUpdate);
+          epic.updateSubtask(subtaskToUpdate);
+          return;
+        }
+      }
+    }
+    throw new TaskNotFoundException(
+        "The subtask " + subtask + "does not exist in the TaskManager");
+  }
+
+  private int generateId() {
+    return ids.nextIntId();
+  }
+
+  /**
+   * Removes the subtask of an epic being changed from the subtasks, the history and the
+   * prioritized tasks. Is called holding the monitor of the epic.
+   */
+  private void removeSubtaskOf(final Subtask subtask) {
+    subtasks.remove(subtask.getId());
+    removeFromHistory(subtask.getId());
+    removePrioritized(subtask);
+  }
+
+  private static Epic copyOf(final Epic epic) {
+    synchronized (epic) {
+      return epic.copy();
+    }
+  }
+
+  /**
+   * Returns the view of the stored epic, or {@code null} if the epic has been deleted meanwhile.
+   */
+  private EpicRecord viewOf(final Epic epic) {
+    synchronized (epic) {
+      return epics.get(epic.getId()) == epic ? epic.view() : null;
+    }
+  }
+
+  private void addToHistory(final Task task) {
+    synchronized (historyManager) {
+      historyManager.add(task);
+    }
+  }
+
+  private void removeFromHistory(final int id) {
+    synchronized (historyManager) {
+      historyManager.remove(id);
+    }
+  }
+
+  /**
+   * Replaces the {@code previous} version of a task in the {@link #prioritizedTasks} with the
+   * {@code replacement}, if the replacement has a start time and no time conflict with the other
+   * tasks. The check and the replacement are one step under the write lock.
+   *
+   * @param previous    the prioritized version of the task, or {@code null} for a new task
+   * @param replacement the new version of the task
+   * @throws TaskPrioritizationException if the replacement has a time conflict with another task,
+   *                                     the previous version stays prioritized then
+   */
+  private void replacePrioritized(final Task previous, final Task replacement)
+      throws TaskPrioritizationException {
+    Objects.requireNonNull(replacement);
+    prioritizedLock.writeLock().lock();
+    try {
+      final boolean removed = previous != null && previous.getStartTime() != null
+          && prioritizedTasks.remove(previous);
+      if (replacement.getStartTime() == null) {
+        return;
+      }
+      final Task conflict = prioritizedTasks.firstOverlapping(replacement.getStartTime(),
+          replacement.getEndTime());
+      if (conflict != null) {
+        if (removed) {
+          prioritizedTasks.add(previous);
+        }
+        throw new TaskPrioritizationException(
+            "Task has time conflict with existing task with ID " + conflict.getId());
+      }
+      prioritizedTasks.add(replacement);
+    } finally {
+      prioritizedLock.writeLock().unlock();
+    }
+  }
+
+  private void removePrioritized(final Task task) {
+    if (task == null || task.getStartTime() == null) {
+      return;
+    }
+    prioritizedLock.writeLock().lock();
+    try {
+      prioritizedTasks.remove(task);
+    } finally {
+      prioritizedLock.writeLock().unlock();
+    }
+  }
+}
@@ -0,0 +1,381 @@
+package ru.yandex.practicum.tasktracker.service;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.Objects;
+import java.util.function.Consumer;
+import java.util.function.IntConsumer;
+import java.util.zip.CRC32C;
+import java.util.zip.CheckedOutputStream;
+import ru.yandex.practicum.tasktracker.exception.ManagerLoadException;
+import ru.yandex.practicum.tasktracker.model.Epic;
+import ru.yandex.practicum.tasktracker.model.Subtask;
+import ru.yandex.practicum.tasktracker.model.Task;
+import ru.yandex.practicum.tasktracker.model.TaskStatus;
+import ru.yandex.practicum.tasktracker.model.TaskType;
+
+/**
+ * CSV snapshot format of a {@link FileBackedTaskManager}.
+ * <p>
+ * The file starts with the {@link #FORMAT_HEADER} and has two sections: the tasks under the
+ * {@link #TASKS_CSV_HEADER} and the ids of the viewed tasks under the {@link #HISTORY_HEADER}.
+ * Every line of the tasks is produced by {@link Task#toCsvLine()} and contains exactly eight
+ * fields separated by commas. The file ends with the CRC32C checksum of its content, which
+ * {@link #verify(File)} checks before the file is read.
+ * Nothing derived from the tasks is written: the prioritized tasks are rebuilt from the tasks on
+ * loading.
+ * <p>
+ * Files of the previous layouts, which start with the header of the tasks, are read as well:
+ * they may have no checksum, their history repeats the whole lines of the tasks and they end with a
+ * section of the prioritized tasks under the {@link #PRIORITIZED_HEADER}, which is skipped.
+ * <p>
+ * The file is read in a single pass, line by line, and a section is never held in memory. A line
+ * is tokenized in place: its fields are located by one scan over the characters and the numbers
+ * and the start time are parsed directly from the line, without regular expressions, splitting or
+ * intermediate strings.
+ *
+ * @see SnapshotFormat
+ */
+final class CsvSnapshot {
+
+  static final String FORMAT_HEADER = "tasktracker,csv,crc32c";
+  static final String TASKS_CSV_HEADER = "id,type,name,status,description,duration,startTime,epic";
+  static final String HISTORY_HEADER = "history";
+  static final String PRIORITIZED_HEADER = "prioritized";
+  static final String CHECKSUM_PREFIX = "crc32c,";
+  private static final int FIELDS_COUNT = 8;
+  private static final String NULL_VALUE = "null";
+  private static final int CHECKSUM_LENGTH = 8;
+  private static final int CHECKSUM_TAIL_SIZE = 64;
+  private static final int WRITE_BUFFER_SIZE = 1 << 16;
+
+  private CsvSnapshot() {
+  }
+
+  /**
+   * Writes the snapshot to the {@code out} and flushes it. The last line of the snapshot is the
+   * CRC32C checksum of all preceding bytes.
+   */
+  static void write(final OutputStream out, final Collection<? extends Task> tasks,
+      final Collection<? extends Task> history) throws IOException {
+    final CheckedOutputStream checkedOut = new CheckedOutputStream(out, new CRC32C());
+    final Writer writer = new BufferedWriter(
+        new OutputStreamWriter(checkedOut, StandardCharsets.UTF_8), WRITE_BUFFER_SIZE);
+    final StringBuilder line = new StringBuilder();
+    writer.write(FORMAT_HEADER);
+    writer.write(System.lineSeparator());
+    writeTasks(writer, line, tasks);
+    writer.write(HISTORY_HEADER);
+    writer.write(System.lineSeparator());
+    for (Task task : history) {
+      writer.write(String.valueOf(task.getId()));
+      writer.write(System.lineSeparator());
+    }
+    writer.flush();
+    writer.write(CHECKSUM_PREFIX + toHex(checkedOut.getChecksum().getValue())
+        + System.lineSeparator());
+    writer.flush();
+  }
+
+  /**
+   * Ensures that the content of the file matches the checksum in its last line. A file starting
+   * with the {@link #FORMAT_HEADER} must end with the checksum line. A file of the previous layout
+   * has no format header and is checked only if it has the checksum line, and a compressed file is
+   * not checked here, its blocks are checked while they are inflated.
+   *
+   * @throws ManagerLoadException if the file is damaged or its checksum line is missing
+   */
+  static void verify(final File file) throws IOException {
+    if (CompressedBlocks.isCompressed(file)) {
+      return;
+    }
+    try (final FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+      final ChecksumLine checksumLine = findChecksumLine(channel);
+      if (checksumLine == null) {
+        if (hasFormatHeader(channel)) {
+          throw new ManagerLoadException("The checksum of the snapshot is missing: " + file);
+        }
+        return;
+      }
+      final CRC32C crc = new CRC32C();
+      final ByteBuffer buffer = ByteBuffer.allocateDirect(WRITE_BUFFER_SIZE);
+      long position = 0;
+      while (position < checksumLine.start()) {
+        buffer.clear().limit((int) Math.min(buffer.capacity(), checksumLine.start() - position));
+        final int read = channel.read(buffer, position);
+        if (read < 0) {
+          break;
+        }
+        crc.update(buffer.flip());
+        position += read;
+      }
+      if (position != checksumLine.start() || crc.getValue() != checksumLine.checksum()) {
+        throw new ManagerLoadException("The snapshot is damaged: " + file);
+      }
+    }
+  }
+
+  /**
+   * Reads the snapshot file, passing every task to the {@code taskAction} and every id of the
+   * history to the {@code historyAction}, in the order they are written. A compressed file is
+   * inflated block by block as it is read.
+   *
+   * @throws IllegalArgumentException if a line of the file has an invalid format
+   */
+  static void read(final File file, final Consumer<Task> taskAction,
+      final IntConsumer historyAction) throws IOException {
+    try (final BufferedReader reader = new BufferedReader(CompressedBlocks.isCompressed(file)
+        ? new InputStreamReader(new CompressedBlocks.BlockInputStream(file),
+        StandardCharsets.UTF_8)
+        : new FileReader(file, StandardCharsets.UTF_8))) {
+      String section = TASKS_CSV_HEADER;
+      String line;
+      while ((line = reader.readLine()) != null) {
+        if (line.isBlank() || line.equals(FORMAT_HEADER) || line.equals(TASKS_CSV_HEADER)
+            || line.startsWith(CHECKSUM_PREFIX)) {
+          continue;
+        }
+        if (line.equals(HISTORY_HEADER) || line.equals(PRIORITIZED_HEADER)) {
+          section = line;
+          continue;
+        }
+        switch (section) {
+          case TASKS_CSV_HEADER -> taskAction.accept(parseTask(line));
+          case HISTORY_HEADER -> historyAction.accept(parseId(line));
+          default -> {
+            /* The prioritized tasks of the previous layout are rebuilt from the tasks. */
+          }
+        }
+      }
+    }
+  }
+
+  /**
+   * Parses a line produced by {@link Task#toCsvLine()}.
+   *
+   * @throws IllegalArgumentException if the line has an invalid format
+   */
+  static Task parseTask(final String line) {
+    Objects.requireNonNull(line);
+    final int[] ends = findFieldEnds(line);
+    final int id = Integer.parseInt(line, 0, ends[0], 10);
+    final TaskType type = TaskType.valueOf(line.substring(ends[0] + 1, ends[1]));
+    final String title = line.substring(ends[1] + 1, ends[2]);
+    final TaskStatus status = TaskStatus.valueOf(line.substring(ends[2] + 1, ends[3]));
+    final String description = line.substring(ends[3] + 1, ends[4]);
+    final Duration duration =
+        Duration.ofMinutes(Long.parseLong(line, ends[4] + 1, ends[5], 10));
+    final LocalDateTime startTime = parseDateTime(line, ends[5] + 1, ends[6]);
+    final Task task = switch (type) {
+      case TASK -> new Task();
+      case EPIC -> new Epic();
+      case SUBTASK -> {
+        final Subtask subtask = new Subtask();
+        subtask.setEpicId(Integer.parseInt(line, ends[6] + 1, ends[7], 10));
+        yield subtask;
+      }
+    };
+    task.setId(id);
+    task.setTitle(title);
+    task.setDescription(description);
+    task.setStatus(status);
+    task.setDuration(duration);
+    task.setStartTime(startTime);
+    return task;
+  }
+
+  /**
+   * Writes the section of the tasks. Every line is the same as {@link Task#toCsvLine()}, but is
+   * built in the reused {@code line} instead of being formatted.
+   */
+  private static void writeTasks(final Writer writer, final StringBuilder line,
+      final Collection<? extends Task> tasks) throws IOException {
+    writer.write(TASKS_CSV_HEADER);
+    writer.write(System.lineSeparator());
+    for (Task task : tasks) {
+      line.setLength(0);
+      line.append(task.getId()).append(',')
+          .append(task.getType()).append(',')
+          .append(task.getTitle()).append(',')
+          .append(task.getStatus()).append(',')
+          .append(task.getDescription()).append(',')
+          .append(task.getDuration().toMinutes()).append(',')
+          .append(task.getStartTime()).append(',');
+      if (task instanceof Subtask subtask) {
+        line.append(subtask.getEpicId());
+      } else {
+        line.append(' ');
+      }
+      line.append(System.lineSeparator());
+      writer.append(line);
+    }
+  }
+
+  /**
+   * Returns the checksum line ending the file, or {@code null} if there is none.
+   *
+   * @throws ManagerLoadException if the checksum line is damaged
+   */
+  private static ChecksumLine findChecksumLine(final FileChannel channel) throws IOException {
+    final long size = channel.size();
+    final ByteBuffer tail = ByteBuffer.allocate((int) Math.min(size, CHECKSUM_TAIL_SIZE));
+    final long tailStart = size - tail.capacity();
+    while (tail.hasRemaining()) {
+      if (channel.read(tail, tailStart + tail.position()) < 0) {
+        break;
+      }
+    }
+    final String text = new String(tail.array(), 0, tail.position(), StandardCharsets.UTF_8)
+        .stripTrailing();
+    final int lineStart = text.lastIndexOf('\n') + 1;
+    if (!text.startsWith(CHECKSUM_PREFIX, lineStart)) {
+      return null;
+    }
+    try {
+      return new ChecksumLine(
+          tailStart + text.substring(0, lineStart).getBytes(StandardCharsets.UTF_8).length,
+          Long.parseLong(text.substring(lineStart + CHECKSUM_PREFIX.length()), 16));
+    } catch (NumberFormatException e) {
+      throw new ManagerLoadException("The checksum of the snapshot is damaged: " + text, e);
+    }
+  }
+
+  /**
+   * Returns {@code true} if the file starts with the {@link #FORMAT_HEADER}, i.e. it was written
+   * with the checksum line.
+   */
+  private static boolean hasFormatHeader(final FileChannel channel) throws IOException {
+    final byte[] header = (FORMAT_HEADER + '\n').getBytes(StandardCharsets.UTF_8);
+    final ByteBuffer head = ByteBuffer.allocate((int) Math.min(channel.size(), header.length + 1));
+    while (head.hasRemaining()) {
+      if (channel.read(head, head.position()) < 0) {
+        break;
+      }
+    }
+    final String text = new String(head.array(), 0, head.position(), StandardCharsets.UTF_8);
+    return text.startsWith(FORMAT_HEADER + '\n') || text.startsWith(FORMAT_HEADER + "\r\n");
+  }
+
+  private static String toHex(final long checksum) {
+    final String hex = Long.toHexString(checksum);
+    return "0".repeat(CHECKSUM_LENGTH - hex.length()) + hex;
+  }
+
+  /**
+   * Parses a line of the history: the id of the task, or the whole line of the task produced by
+   * {@link Task#toCsvLine()} in the previous layout.
+   *
+   * @throws IllegalArgumentException if the line has an invalid format
+   */
+  static int parseId(final String line) {
+    return line.indexOf(',') < 0 ? Integer.parseInt(line.strip())
+        : Integer.parseInt(line, 0, findFieldEnds(line)[0], 10);
+  }
+
+  /**
+   * Returns the end index of every field of the line, ensuring that there are exactly eight
+   * non-empty fields without quotes.
+   */
+  private static int[] findFieldEnds(final String line) {
+    final int[] ends = new int[FIELDS_COUNT];
+    int field = 0;
+    int fieldStart = 0;
+    for (int i = 0; i <= line.length(); i++) {
+      final char c = i == line.length() ? ',' : line.charAt(i);
+      if (c == '"' || c == '\'') {
+        throw invalidLine(line);
+      }
+      if (c != ',') {
+        continue;
+      }
+      if (i == fieldStart || field == FIELDS_COUNT) {
+        throw invalidLine(line);
+      }
+      ends[field++] = i;
+      fieldStart = i + 1;
+    }
+    if (field != FIELDS_COUNT) {
+      throw invalidLine(line);
+    }
+    return ends;
+  }
+
+  /**
+   * Parses the time written by {@link LocalDateTime#toString()}. The common layouts
+   * {@code yyyy-MM-ddTHH:mm[:ss[.fraction]]} are parsed by hand, any other one is left to
+   * {@link LocalDateTime#parse(CharSequence)}.
+   */
+  private static LocalDateTime parseDateTime(final String line, final int from, final int to) {
+    if (line.startsWith(NULL_VALUE, from) && to - from == NULL_VALUE.length()) {
+      return null;
+    }
+    final int length = to - from;
+    if (length < 16 || line.charAt(from + 4) != '-' || line.charAt(from + 7) != '-'
+        || line.charAt(from + 10) != 'T' || line.charAt(from + 13) != ':') {
+      return LocalDateTime.parse(line.subSequence(from, to));
+    }
+    final int year = parseDigits(line, from, from + 4);
+    final int month = parseDigits(line, from + 5, from + 7);
+    final int day = parseDigits(line, from + 8, from + 10);
+    final int hour = parseDigits(line, from + 11, from + 13);
+    final int minute = parseDigits(line, from + 14, from + 16);
+    int second = 0;
+    int nano = 0;
+    if (length > 16) {
+      second = line.charAt(from + 16) == ':' && length >= 19
+          ? parseDigits(line, from + 17, from + 19) : -1;
+      if (length > 19) {
+        final int fractionLength = to - from - 20;
+        nano = line.charAt(from + 19) == '.' && fractionLength > 0 && fractionLength <= 9
+            ? parseDigits(line, from + 20, to) : -1;
+        for (int i = fractionLength; i < 9 && nano >= 0; i++) {
+          nano *= 10;
+        }
+      }
+    }
+    if (year < 0 || month < 0 || day < 0 || hour < 0 || minute < 0 || second < 0 || nano < 0) {
+      return LocalDateTime.parse(line.subSequence(from, to));
+    }
+    return LocalDateTime.of(year, month, day, hour, minute, second, nano);
+  }
+
+  /**
+   * Returns the number written by the decimal digits, or {@code -1} if there is another character.
+   */
+  private static int parseDigits(final String line, final int from, final int to) {
+    int value = 0;
+    for (int i = from; i < to; i++) {
+      final char c = line.charAt(i);
+      if (c < '0' || c > '9') {
+        return -1;
+      }
+      value = value * 10 + (c - '0');
+    }
+    return value;
+  }
+
+  /**
+   * The checksum written in the last line of the file and the position of the line.
+   */
+  private record ChecksumLine(long start, long checksum) {
+
+  }
+
+  private static IllegalArgumentException invalidLine(final String line) {
+    return new IllegalArgumentException("Invalid CSV format of the line with task: " + line);
+  }
+}
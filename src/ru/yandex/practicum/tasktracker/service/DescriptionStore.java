@@ -0,0 +1,228 @@
+package ru.yandex.practicum.tasktracker.service;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Supplier;
+import ru.yandex.practicum.tasktracker.model.Task;
+
+/**
+ * File of task descriptions, which keeps the long descriptions off the heap.
+ * <p>
+ * A description of at least {@value #MIN_STORED_LENGTH} characters is appended to the file (with
+ * the {@code .descriptions} suffix) and the task keeps only a {@link Reference} to it: the offset
+ * and the length of the description in the file. The description is read on demand, and the
+ * recently read descriptions are kept in a cache of a bounded number of entries, which evicts the
+ * least recently used one.
+ * <p>
+ * The file is a spill area of the manager rather than its storage: it is cleared on opening, filled
+ * from the loaded snapshot and deleted on closing. The descriptions of updated and removed tasks
+ * are left in the file as garbage, and {@link #compact} rewrites the file with the descriptions of
+ * the tasks of the manager once the file has doubled since the previous compaction. A task leaving
+ * the manager gets its description back, and a reference read right before a compaction stays
+ * valid until the next one: the previous file is kept open until then.
+ *
+ * @see StorageConfig#isDescriptionStoreEnabled()
+ */
+final class DescriptionStore implements Closeable {
+
+  static final int MIN_STORED_LENGTH = 64;
+  private static final String DESCRIPTIONS_SUFFIX = ".descriptions";
+  private static final String TEMP_SUFFIX = ".tmp";
+  private static final int WRITE_BUFFER_SIZE = 1 << 16;
+  private static final long MIN_COMPACTION_SIZE = 1 << 20;
+
+  private final Path path;
+  private final Path tempPath;
+  private final Map<Reference, String> cache;
+  private final ByteBuffer writeBuffer = ByteBuffer.allocateDirect(WRITE_BUFFER_SIZE);
+  private FileChannel channel;
+  private FileChannel retiredChannel;
+  private int generation;
+  private long flushedSize;
+  private long sizeAfterCompaction;
+
+  DescriptionStore(final File file, final int cacheSize) throws IOException {
+    this.path = Path.of(file.getPath() + DESCRIPTIONS_SUFFIX);
+    this.tempPath = Path.of(path + TEMP_SUFFIX);
+    this.cache = new LinkedHashMap<>(16, 0.75f, true) {
+      @Override
+      protected boolean removeEldestEntry(final Map.Entry<Reference, String> eldest) {
+        return size() > cacheSize;
+      }
+    };
+    this.channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE,
+        StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING);
+  }
+
+  /**
+   * Moves a long description of the task to the file, leaving a reference in the task. A short or
+   * missing description and a description that is already stored stay as they are.
+   */
+  synchronized void store(final Task task) {
+    if (task.getDescriptionSource() != null) {
+      return;
+    }
+    final String description = task.getDescription();
+    if (description == null || description.length() < MIN_STORED_LENGTH) {
+      return;
+    }
+    task.setDescriptionSource(append(description));
+  }
+
+  /**
+   * Returns whether the file has doubled since the previous compaction.
+   */
+  synchronized boolean needsCompaction() {
+    final long size = flushedSize + writeBuffer.position();
+    return size >= MIN_COMPACTION_SIZE && size >= 2 * sizeAfterCompaction;
+  }
+
+  /**
+   * Rewrites the file with the descriptions of the tasks and points the tasks to their new places.
+   * The descriptions of any other tasks are dropped.
+   */
+  synchronized void compact(final Collection<? extends Task> tasks) {
+    try {
+      flushWriteBuffer();
+      final FileChannel compacted = FileChannel.open(tempPath, StandardOpenOption.READ,
+          StandardOpenOption.WRITE, StandardOpenOption.CREATE,
+          StandardOpenOption.TRUNCATE_EXISTING);
+      long position = 0;
+      for (Task task : tasks) {
+        if (task.getDescriptionSource() instanceof Reference reference
+            && reference.store() == this && reference.generation() == generation) {
+          long transferred = 0;
+          while (transferred < reference.length()) {
+            transferred += channel.transferTo(reference.offset() + transferred,
+                reference.length() - transferred, compacted);
+          }
+          task.setDescriptionSource(
+              new Reference(this, generation + 1, position, reference.length()));
+          position += reference.length();
+        }
+      }
+      Files.move(tempPath, path, StandardCopyOption.REPLACE_EXISTING,
+          StandardCopyOption.ATOMIC_MOVE);
+      closeRetired();
+      retiredChannel = channel;
+      channel = compacted;
+      generation++;
+      flushedSize = position;
+      sizeAfterCompaction = position;
+    } catch (IOException e) {
+      throw new UncheckedIOException("An error occurred during compaction of descriptions.", e);
+    }
+  }
+
+  /**
+   * Returns the size of the file, including the descriptions that have not been flushed yet.
+   */
+  synchronized long size() {
+    return flushedSize + writeBuffer.position();
+  }
+
+  @Override
+  public synchronized void close() throws IOException {
+    closeRetired();
+    channel.close();
+    Files.deleteIfExists(path);
+  }
+
+  private Reference append(final String description) {
+    final byte[] bytes = description.getBytes(StandardCharsets.UTF_8);
+    final Reference reference = new Reference(this, generation,
+        flushedSize + writeBuffer.position(), bytes.length);
+    try {
+      if (bytes.length > writeBuffer.remaining()) {
+        flushWriteBuffer();
+      }
+      if (bytes.length > writeBuffer.capacity()) {
+        writeFully(channel, ByteBuffer.wrap(bytes), flushedSize);
+        flushedSize += bytes.length;
+      } else {
+        writeBuffer.put(bytes);
+      }
+    } catch (IOException e) {
+      throw new UncheckedIOException("An error occurred during writing a description.", e);
+    }
+    return reference;
+  }
+
+  private synchronized String read(final Reference reference) {
+    final String cached = cache.get(reference);
+    if (cached != null) {
+      return cached;
+    }
+    final byte[] bytes = new byte[reference.length()];
+    if (reference.generation() == generation && reference.offset() >= flushedSize) {
+      writeBuffer.get(Math.toIntExact(reference.offset() - flushedSize), bytes);
+    } else {
+      final FileChannel source = reference.generation() == generation ? channel
+          : (reference.generation() == generation - 1 ? retiredChannel : null);
+      if (source == null) {
+        throw new IllegalStateException("The description has been moved by a compaction.");
+      }
+      try {
+        final ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        while (buffer.hasRemaining()) {
+          if (source.read(buffer, reference.offset() + buffer.position()) < 0) {
+            throw new IOException("The file of descriptions is truncated.");
+          }
+        }
+      } catch (IOException e) {
+        throw new UncheckedIOException("An error occurred during reading a description.", e);
+      }
+    }
+    final String description = new String(bytes, StandardCharsets.UTF_8);
+    cache.put(reference, description);
+    return description;
+  }
+
+  private void flushWriteBuffer() throws IOException {
+    writeBuffer.flip();
+    final int length = writeBuffer.remaining();
+    writeFully(channel, writeBuffer, flushedSize);
+    flushedSize += length;
+    writeBuffer.clear();
+  }
+
+  private void closeRetired() throws IOException {
+    if (retiredChannel != null) {
+      retiredChannel.close();
+      retiredChannel = null;
+    }
+  }
+
+  private static void writeFully(final FileChannel channel, final ByteBuffer buffer,
+      final long position) throws IOException {
+    final int start = buffer.position();
+    while (buffer.hasRemaining()) {
+      channel.write(buffer, position + buffer.position() - start);
+    }
+  }
+
+  /**
+   * Place of a description in the file: the generation of the file, which changes with every
+   * compaction, the offset and the length in bytes.
+   */
+  record Reference(DescriptionStore store, int generation, long offset, int length)
+      implements Supplier<String> {
+
+    @Override
+    public String get() {
+      return store.read(this);
+    }
+  }
+}
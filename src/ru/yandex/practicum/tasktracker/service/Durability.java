@@ -0,0 +1,16 @@
+package ru.yandex.practicum.tasktracker.service;
+
+/**
+ * Defines how far the data of a group of modifying operations is pushed when the
+ * {@link FileBackedTaskManager} commits it to the file.
+ *
+ * @see StorageConfig
+ */
+public enum Durability {
+  /* The data stays in the application buffers until they are full or the manager is closed. */
+  NONE,
+  /* The data is handed over to the operating system, it survives a crash of the application. */
+  FLUSH,
+  /* The data is forced to the storage device, it survives a crash of the operating system. */
+  FSYNC
+}
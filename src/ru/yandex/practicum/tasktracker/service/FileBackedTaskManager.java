@@ -1,28 +1,42 @@
 package ru.yandex.practicum.tasktracker.service;
 
-import java.io.BufferedReader;
 import java.io.File;
-import java.io.FileReader;
-import java.io.FileWriter;
 import java.io.IOException;
-import java.io.Writer;
-import java.nio.charset.StandardCharsets;
-import java.time.Duration;
+import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.DateTimeException;
+import java.time.Instant;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
 import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.function.Consumer;
-import java.util.regex.Pattern;
+import java.util.function.IntConsumer;
+import java.util.function.Supplier;
 import java.util.stream.Stream;
 import ru.yandex.practicum.tasktracker.exception.ManagerLoadException;
 import ru.yandex.practicum.tasktracker.exception.ManagerSaveException;
 import ru.yandex.practicum.tasktracker.model.Epic;
+import ru.yandex.practicum.tasktracker.model.EpicRecord;
 import ru.yandex.practicum.tasktracker.model.Subtask;
+import ru.yandex.practicum.tasktracker.model.SubtaskRecord;
 import ru.yandex.practicum.tasktracker.model.Task;
-import ru.yandex.practicum.tasktracker.model.TaskStatus;
 import ru.yandex.practicum.tasktracker.model.TaskType;
+import ru.yandex.practicum.tasktracker.model.TaskView;
+import ru.yandex.practicum.tasktracker.service.SnapshotFile.SnapshotWriter;
 
 /**
  * Task manager extends {@link InMemoryTaskManager} and provides automatic <b>saving</b> and
@@ -35,6 +49,62 @@ import ru.yandex.practicum.tasktracker.model.TaskType;
  * In addition to the save method, there is a static factory method {@link #loadFromFile(File)} that
  * restores the manager's data from the file each time the program is launched.
  * <p>
+ * With the journal enabled in {@link StorageConfig}, a modifying operation appends one record to
+ * the {@link TaskJournal} instead of rewriting the file. The journal is replayed on loading and is
+ * periodically compacted into a fresh snapshot.
+ * <p>
+ * With background checkpoints enabled, the compaction is run by a {@link Checkpointer}: the
+ * journal is sealed and the state is taken under the lock as for an online backup, the snapshot is
+ * written on the checkpointer thread while the operations go on, and the sealed journal is marked
+ * covered once the snapshot has replaced the previous one. The progress is reported by
+ * {@link #getCheckpointMetrics()}.
+ * <p>
+ * With the lock enabled, the manager holds an exclusive lock of a file next to the snapshot (with
+ * the {@code .lock} suffix) until it is closed, so a second writer of the same files fails to
+ * load. Read-only {@link FollowerTaskManager followers} in other processes tail the files instead.
+ * <p>
+ * With write-behind enabled, the operations are committed to the file in groups by a background
+ * {@link WriteBehindFlusher}, so {@link #close()} has to be called to write the last group. The
+ * modifying operations are synchronized with the flusher, which reads the state on its own thread.
+ * <p>
+ * Viewing a task does not rewrite the snapshot: the id of the task is appended to a small history
+ * journal (with the {@code .history} suffix), which is replayed on loading and cleared by the next
+ * snapshot.
+ * <p>
+ * The snapshot is written in the {@link SnapshotFormat} selected in {@link StorageConfig}: the CSV
+ * lines produced by {@link Task#toCsvLine()} or the compact {@link BinarySnapshot}. A large CSV
+ * snapshot is parsed by the {@link ParallelCsvSnapshotReader}. With compression enabled, the
+ * snapshot is written in independently compressed {@link CompressedBlocks blocks}, which are
+ * inflated and parsed on the same threads.
+ * <p>
+ * A snapshot is written to a temporary file, which replaces the previous snapshot only when it is
+ * complete, see {@link SnapshotFile}. Snapshots and journal records carry CRC32C checksums: a
+ * damaged snapshot is replaced by the previous one, and the journals are replayed up to the first
+ * damaged or partially written record. In journal mode the journal segments folded into the
+ * damaged snapshot are kept until the next snapshot and are replayed over the previous one, a
+ * damaged snapshot without them is reported instead, see {@link #isRecoveredFromBackup()}.
+ * <p>
+ * In the {@link SnapshotFormat#PAGED} format the file is a {@link PagedTaskStore}, which is not
+ * rewritten as a whole: only the records of the tasks changed since the last save are written in
+ * place. The history stays in the history journal in this format.
+ * <p>
+ * With more than one shard in {@link StorageConfig}, the snapshot is split into the files of a
+ * {@link ShardedSnapshot}, and a save rewrites only the shards of the changed tasks. The history
+ * stays in the history journal in this mode as well.
+ * <p>
+ * With the description store enabled, the long descriptions of the tasks are moved to a
+ * {@link DescriptionStore} once the tasks are persisted, and are read from it on demand. A task
+ * removed or replaced by an update gets its description back, since the store may drop it.
+ * <p>
+ * With the change log enabled, every persisted mutation gets a sequence number and is kept in a
+ * {@link ChangeLog} with periodic checkpoints, which serves read-only views of the state as of a
+ * past mutation or time, see {@link #asOf(long)}, and restores such a state, see
+ * {@link #restoreAsOf(long)}.
+ * <p>
+ * A consistent copy of the state can be taken while the manager keeps accepting modifications,
+ * see {@link #backup(OutputStream)}: the manager keeps the state of an epic it changes for every
+ * running {@link OnlineBackup}.
+ * <p>
  * This class is an implementation of the {@link TaskManager} interface, which manages tasks of
  * different types including {@link Task}, {@link Epic}, and {@link Subtask}. It provides
  * functionalities for storing, retrieving, updating, and deleting tasks.
@@ -46,274 +116,1102 @@ import ru.yandex.practicum.tasktracker.model.TaskType;
  * @see Subtask
  */
 
-public class FileBackedTaskManager extends InMemoryTaskManager {
+public class FileBackedTaskManager extends InMemoryTaskManager implements AutoCloseable {
 
-  private static final String TASKS_CSV_HEADER = "id,type,name,status,description,duration,startTime,epic";
-  private static final String HISTORY_HEADER = "history";
-  private static final String PRIORITIZED_HEADER = "prioritized";
-  private static final String TASKS_LINE_FORMAT = "^([^,\"']+,){7}[^,\"']+$";// Format used for ensuring that each task line in the file will contain exactly 8 fields separated by commas.
+  static final String PUT_RECORD = "PUT";
+  static final String DELETE_RECORD = "DELETE";
+  static final String CLEAR_RECORD = "CLEAR";
+  static final String JOURNAL_SUFFIX = ".journal";
+  private static final String HISTORY_SUFFIX = ".history";
+  private static final String LOCK_SUFFIX = ".lock";
+  private static final long PARALLEL_LOAD_MIN_BYTES = 1 << 20;
   private final File file;
+  private final SnapshotFile snapshotFile;
+  private final StorageConfig config;
+  private final TaskJournal journal;
+  private final TaskJournal historyJournal;
+  private final WriteBehindFlusher flusher;
+  private final Checkpointer checkpointer;
+  private final ShardedSnapshot shardedSnapshot;
+  private final DescriptionStore descriptionStore;
+  private final ChangeLog changeLog;
+  private final FileLock writerLock;
+  private final List<String> pendingRemovals = new ArrayList<>();
+  private final Set<Integer> pendingPuts = new LinkedHashSet<>();
+  private final Set<Integer> dirtyIds = new HashSet<>();
+  private final List<OnlineBackup> backups = new CopyOnWriteArrayList<>();
+  private final BitSet dirtyShards = new BitSet();
+  private PagedTaskStore pagedStore;
+  private int operationDepth;
+  private boolean snapshotDirty;
+  private boolean singleSnapshotSuperseded;
+  private boolean recoveredFromBackup;
+  private boolean bulkLoading;
+  private long sealedRecords;
 
 
-  private FileBackedTaskManager(final File file) {
+  private FileBackedTaskManager(final File file, final StorageConfig config) {
     super();
+    checkBackgroundCheckpoints(config);
     this.file = file;
-    load();
+    this.snapshotFile = new SnapshotFile(file);
+    this.config = config;
+    this.writerLock = config.isLockEnabled() ? lock(file) : null;
+    try {
+      this.journal = new TaskJournal(file, JOURNAL_SUFFIX);
+      this.historyJournal = new TaskJournal(file, HISTORY_SUFFIX);
+      this.shardedSnapshot = config.getShardCount() > 1
+          ? new ShardedSnapshot(file, config.getSnapshotFormat(), config.getShardCount(),
+          config.isCompressionEnabled(), config.getLoadParallelism())
+          : null;
+      this.descriptionStore = config.isDescriptionStoreEnabled() ? openDescriptionStore() : null;
+      this.changeLog = config.isChangeLogEnabled()
+          ? new ChangeLog(file, config.getCheckpointInterval(), config.getRetainedCheckpoints())
+          : null;
+      load();
+      replayJournal();
+      if (changeLog != null) {
+        changeLog.open(getAllTasks(), config.getDurability());
+      }
+    } catch (RuntimeException e) {
+      try {
+        release();
+      } catch (RuntimeException releaseFailure) {
+        e.addSuppressed(releaseFailure);
+      }
+      throw e;
+    }
+    this.checkpointer = config.isBackgroundCheckpointEnabled()
+        ? new Checkpointer(this::checkpointInBackground)
+        : null;
+    this.flusher = config.isWriteBehindEnabled()
+        ? new WriteBehindFlusher(this::flush, config.getFlushInterval(),
+        config.getFlushOperations())
+        : null;
+  }
+
+  /**
+   * Ensures that the background checkpoints, if enabled, have a journal to fold into a single
+   * snapshot file, the only layout the {@link Checkpointer} writes.
+   *
+   * @throws IllegalArgumentException if the background checkpoints are enabled without the journal
+   *                                  or with the page file or the shards
+   */
+  private static void checkBackgroundCheckpoints(final StorageConfig config) {
+    if (!config.isBackgroundCheckpointEnabled()) {
+      return;
+    }
+    if (!config.isJournalEnabled()) {
+      throw new IllegalArgumentException("The background checkpoints need the journal.");
+    }
+    if (config.getSnapshotFormat() == SnapshotFormat.PAGED || config.getShardCount() > 1) {
+      throw new IllegalArgumentException(
+          "The background checkpoints can not be written to the page file or the shards.");
+    }
   }
 
   public static FileBackedTaskManager loadFromFile(final File file) {
+    return loadFromFile(file, StorageConfig.snapshot());
+  }
+
+  public static FileBackedTaskManager loadFromFile(final File file, final StorageConfig config) {
     Objects.requireNonNull(file);
-    return new FileBackedTaskManager(file);
+    Objects.requireNonNull(config);
+    return new FileBackedTaskManager(file, config);
+  }
+
+  /**
+   * Commits all modifying operations that have not been written to the file yet. In write-behind
+   * mode it is called by the background flusher, otherwise every operation is committed
+   * immediately and there is nothing left to flush.
+   */
+  public synchronized void flush() {
+    if (changeLog != null) {
+      changeLog.commit(config.getDurability());
+      if (changeLog.needsCheckpoint()) {
+        changeLog.checkpoint(getAllTasks(), config.getDurability());
+      }
+    }
+    if (config.isJournalEnabled()) {
+      journal.commit(config.getDurability());
+      if (journal.size() >= config.getCompactionThreshold()) {
+        if (checkpointer != null) {
+          checkpointer.request();
+        } else {
+          compact();
+        }
+      }
+    } else if (snapshotDirty) {
+      save();
+    }
+    commitHistory();
+  }
+
+  /**
+   * Reports the failure of the last background flush or checkpoint, if no flush or checkpoint has
+   * succeeded since. The operations never fail because of the background threads: the changes of
+   * the write-behind mode stay pending in memory and the journal keeps growing until the next run
+   * succeeds.
+   *
+   * @throws ManagerSaveException if the last background flush or checkpoint has failed
+   */
+  public void checkHealth() {
+    if (flusher != null) {
+      flusher.checkHealth();
+    }
+    if (checkpointer != null) {
+      checkpointer.checkHealth();
+    }
   }
 
+  /**
+   * Returns {@code true} if the snapshot was damaged on loading and the state was recovered from
+   * the backup, the previous snapshot, which has then been written as the fresh snapshot. In
+   * journal mode the journal segments leading from the backup to the damaged snapshot are replayed
+   * over it, so nothing is lost; otherwise the changes saved by the damaged snapshot are.
+   */
+  public boolean isRecoveredFromBackup() {
+    return recoveredFromBackup;
+  }
+
+  /**
+   * Returns the progress of the background checkpoints, the lag is the number of journal records
+   * that are not covered by the snapshot yet.
+   *
+   * @throws IllegalStateException if the background checkpoints are not enabled
+   */
+  public synchronized CheckpointMetrics getCheckpointMetrics() {
+    if (checkpointer == null) {
+      throw new IllegalStateException("The background checkpoints are not enabled.");
+    }
+    return checkpointer.metrics(journal.size() + sealedRecords);
+  }
+
+  /**
+   * Returns the sequence number of the last persisted mutation.
+   *
+   * @throws IllegalStateException if the change log is not enabled
+   */
+  public synchronized long getSequence() {
+    return changeLog().sequence();
+  }
+
+  /**
+   * Returns a read-only view of the state as of the mutation with the {@code sequence} number. The
+   * view is built from the nearest checkpoint and does not change with the manager.
+   *
+   * @throws IllegalStateException    if the change log is not enabled
+   * @throws IllegalArgumentException if the state is no longer retained or is in the future
+   */
+  public synchronized TaskManager asOf(final long sequence) {
+    return changeLog().viewAsOf(sequence);
+  }
+
+  /**
+   * Returns a read-only view of the state as of the {@code time}, see {@link #asOf(long)}.
+   */
+  public synchronized TaskManager asOf(final Instant time) {
+    Objects.requireNonNull(time);
+    return changeLog().viewAsOf(time);
+  }
+
+  /**
+   * Brings the tasks back to their state as of the mutation with the {@code sequence} number. The
+   * restore is a mutation itself: it is persisted and logged as any other operation, so it can be
+   * undone in turn. The history of viewed tasks is cleared, it is not a part of the logged state.
+   *
+   * @throws IllegalStateException    if the change log is not enabled
+   * @throws IllegalArgumentException if the state is no longer retained or is in the future
+   */
+  public synchronized void restoreAsOf(final long sequence) {
+    restore(changeLog().viewAsOf(sequence));
+  }
+
+  /**
+   * Brings the tasks back to their state as of the {@code time}, see {@link #restoreAsOf(long)}.
+   */
+  public synchronized void restoreAsOf(final Instant time) {
+    Objects.requireNonNull(time);
+    restore(changeLog().viewAsOf(time));
+  }
+
+  /**
+   * Writes a CSV snapshot of the current state to the {@code out} without blocking the modifying
+   * operations while it is written: the state is taken under the lock in one pass over the
+   * references to the tasks, and the epics changed while the backup runs are copied before the
+   * change. The backup can be loaded as the file of a manager.
+   *
+   * @return the size of the backup and the throughput of writing it
+   */
+  public BackupReport backup(final OutputStream out) throws IOException {
+    Objects.requireNonNull(out);
+    final OnlineBackup backup;
+    synchronized (this) {
+      backup = new OnlineBackup(getAllTasks(), historyManager.getHistory());
+      backups.add(backup);
+    }
+    try {
+      return backup.writeTo(out, SnapshotFormat.CSV);
+    } finally {
+      backups.remove(backup);
+    }
+  }
+
+  /**
+   * Stops the background flusher, if any, writes the pending operations, waits for the running
+   * checkpoint and releases the files. The files are released even if the pending operations
+   * cannot be written.
+   *
+   * @throws ManagerSaveException if the pending operations cannot be written
+   */
   @Override
-  public void clearTasks() {
-    super.clearTasks();
-    save();
+  public void close() {
+    try {
+      if (flusher != null) {
+        flusher.close();
+      }
+    } finally {
+      release();
+    }
+  }
+
+  /**
+   * Stops the checkpointer and releases the files and the lock. Called by the constructor as well
+   * if loading fails, so only the resources opened so far are released.
+   */
+  private void release() {
+    try {
+      if (checkpointer != null) {
+        checkpointer.close();
+      }
+      synchronized (this) {
+        journal.close();
+        historyJournal.close();
+        if (changeLog != null) {
+          changeLog.close();
+        }
+        if (shardedSnapshot != null) {
+          shardedSnapshot.close();
+        }
+        if (descriptionStore != null) {
+          try {
+            descriptionStore.close();
+          } catch (IOException e) {
+            throw new ManagerSaveException("An error occurred during closing the file.", e);
+          }
+        }
+        if (pagedStore != null) {
+          try {
+            pagedStore.close();
+          } catch (IOException e) {
+            throw new ManagerSaveException("An error occurred during closing the file.", e);
+          }
+        }
+      }
+    } finally {
+      releaseLock();
+    }
   }
 
   @Override
-  public void clearEpics() {
-    super.clearEpics();
-    save();
+  public synchronized void clearTasks() {
+    inOperation(() -> {
+      markDirty(tasks.keySet());
+      tasks.values().forEach(this::releaseDescription);
+      super.clearTasks();
+      persistClear(TaskType.TASK);
+    });
   }
 
   @Override
-  public void clearSubtasks() {
-    super.clearSubtasks();
-    save();
+  public synchronized void clearEpics() {
+    inOperation(() -> {
+      markDirty(epics.keySet());
+      markDirty(subtasks.keySet());
+      epics.values().forEach(this::releaseDescription);
+      subtasks.values().forEach(this::releaseDescription);
+      super.clearEpics();
+      persistClear(TaskType.EPIC);
+    });
   }
 
   @Override
-  public void deleteTask(final int id) {
-    super.deleteTask(id);
-    save();
+  public synchronized void clearSubtasks() {
+    inOperation(() -> {
+      epics.keySet().forEach(this::preserveEpic);
+      markDirty(subtasks.keySet());
+      subtasks.values().forEach(this::releaseDescription);
+      super.clearSubtasks();
+      persistClear(TaskType.SUBTASK);
+    });
   }
 
   @Override
-  public void deleteEpic(final int id) {
-    super.deleteEpic(id);
-    save();
+  public synchronized void deleteTask(final int id) {
+    inOperation(() -> {
+      releaseDescription(tasks.get(id));
+      super.deleteTask(id);
+      persistDelete(id);
+    });
   }
 
   @Override
-  public void deleteSubtask(final int id) {
-    super.deleteSubtask(id);
-    save();
+  public synchronized void deleteEpic(final int id) {
+    inOperation(() -> {
+      if (epics.containsKey(id)) {
+        markDirty(epics.get(id).getSubtasks().stream().map(Task::getId).toList());
+        releaseDescription(epics.get(id));
+        epics.get(id).getSubtasks().forEach(this::releaseDescription);
+      }
+      super.deleteEpic(id);
+      persistDelete(id);
+    });
   }
 
   @Override
-  public Task getTaskById(final int id) {
+  public synchronized void deleteSubtask(final int id) {
+    inOperation(() -> {
+      if (subtasks.containsKey(id)) {
+        preserveEpic(subtasks.get(id).getEpicId());
+      }
+      markDirty(List.of(id));
+      releaseDescription(subtasks.get(id));
+      super.deleteSubtask(id);
+      persistDelete(id);
+    });
+  }
+
+  @Override
+  public synchronized Task getTaskById(final int id) {
     Task task = super.getTaskById(id);
-    save();
+    persistView(id);
     return task;
   }
 
   @Override
-  public Epic getEpicById(final int id) {
+  public synchronized Epic getEpicById(final int id) {
     Epic epic = super.getEpicById(id);
-    save();
+    persistView(id);
     return epic;
   }
 
   @Override
-  public Subtask getSubtaskById(final int id) {
+  public synchronized Subtask getSubtaskById(final int id) {
     Subtask subtask = super.getSubtaskById(id);
-    save();
+    persistView(id);
     return subtask;
   }
 
   @Override
-  public Task addTask(final Task task) {
-    Task t = super.addTask(task);
-    save();
-    return t;
+  public synchronized TaskView getTaskView(final int id) {
+    TaskView task = super.getTaskView(id);
+    persistView(id);
+    return task;
   }
 
   @Override
-  public Epic addEpic(final Epic epic) {
-    final Epic e = super.addEpic(epic);
-    save();
-    return e;
+  public synchronized EpicRecord getEpicView(final int id) {
+    EpicRecord epic = super.getEpicView(id);
+    persistView(id);
+    return epic;
   }
 
   @Override
-  public Subtask addSubtask(final Subtask subtask) {
-    final Subtask st = super.addSubtask(subtask);
-    save();
-    return st;
+  public synchronized SubtaskRecord getSubtaskView(final int id) {
+    SubtaskRecord subtask = super.getSubtaskView(id);
+    persistView(id);
+    return subtask;
   }
 
   @Override
-  public void updateTask(final Task task) {
-    super.updateTask(task);
-    save();
+  public synchronized Task addTask(final Task task) {
+    return inOperation(() -> {
+      Task t = super.addTask(task);
+      persistPut(t.getId());
+      return t;
+    });
   }
 
+  /**
+   * Adds the epic and its embedded subtasks as one operation, which is persisted once.
+   */
   @Override
-  public void updateEpic(final Epic epic) {
-    super.updateEpic(epic);
-    save();
+  public synchronized Epic addEpic(final Epic epic) {
+    return inOperation(() -> {
+      try {
+        return super.addEpic(epic);
+      } finally {
+        /* The epic stays in memory even if one of its subtasks has failed to be added. */
+        persistPut(epic.getId());
+      }
+    });
   }
 
   @Override
-  public void updateSubtask(final Subtask subtask) {
-    super.updateSubtask(subtask);
-    save();
+  public synchronized Subtask addSubtask(final Subtask subtask) {
+    return inOperation(() -> {
+      preserveEpic(subtask.getEpicId());
+      final Subtask st = super.addSubtask(subtask);
+      persistPut(st.getId());
+      return st;
+    });
+  }
+
+  @Override
+  public synchronized void updateTask(final Task task) {
+    inOperation(() -> {
+      final Task replaced = tasks.get(task.getId());
+      super.updateTask(task);
+      releaseDescription(replaced);
+      persistPut(task.getId());
+    });
   }
 
+  @Override
+  public synchronized void updateEpic(final Epic epic) {
+    inOperation(() -> {
+      preserveEpic(epic.getId());
+      super.updateEpic(epic);
+      persistPut(epic.getId());
+    });
+  }
+
+  @Override
+  public synchronized void updateSubtask(final Subtask subtask) {
+    inOperation(() -> {
+      preserveEpic(subtask.getEpicId());
+      final Subtask replaced = subtasks.get(subtask.getId());
+      super.updateSubtask(subtask);
+      releaseDescription(replaced);
+      persistPut(subtask.getId());
+    });
+  }
+
+  /**
+   * Takes the exclusive lock of the lock file next to the snapshot, which is held until the manager
+   * is closed, so that no other process writes the same files.
+   *
+   * @throws ManagerLoadException if another manager holds the lock
+   */
+  private static FileLock lock(final File file) {
+    final Path path = Path.of(file.getPath() + LOCK_SUFFIX);
+    FileChannel channel = null;
+    try {
+      channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+      final FileLock lock = channel.tryLock();
+      if (lock != null) {
+        return lock;
+      }
+    } catch (OverlappingFileLockException e) {
+      /* The lock is held by another manager of this process. */
+    } catch (IOException e) {
+      closeQuietly(channel);
+      throw new ManagerLoadException("An error occurred during locking the file.", e);
+    }
+    closeQuietly(channel);
+    throw new ManagerLoadException("The file is locked by another writer: " + file);
+  }
+
+  private void releaseLock() {
+    if (writerLock != null && writerLock.channel().isOpen()) {
+      try {
+        writerLock.channel().close();
+      } catch (IOException e) {
+        throw new ManagerSaveException("An error occurred during unlocking the file.", e);
+      }
+    }
+  }
+
+  private static void closeQuietly(final FileChannel channel) {
+    if (channel == null) {
+      return;
+    }
+    try {
+      channel.close();
+    } catch (IOException e) {
+      /* The channel holds no lock, there is nothing left to release. */
+    }
+  }
+
+  /**
+   * Loads the snapshot. If it is damaged or missing, the state is recovered from the backup, the
+   * previous snapshot kept by the {@link SnapshotFile}. The prioritized tasks are built once all
+   * tasks are loaded.
+   */
   private void load() {
-    try (final BufferedReader br = new BufferedReader(
-        new FileReader(file, StandardCharsets.UTF_8))) {
-      loadSection(br, TASKS_CSV_HEADER, HISTORY_HEADER);
-      loadSection(br, HISTORY_HEADER, PRIORITIZED_HEADER);
-      loadSection(br, PRIORITIZED_HEADER, "");
+    bulkLoading = true;
+    try {
+      if (config.getSnapshotFormat() == SnapshotFormat.PAGED) {
+        loadPages();
+      } else if (shardedSnapshot != null) {
+        loadShards();
+      } else {
+        loadSnapshotOrBackup();
+      }
+    } finally {
+      bulkLoading = false;
+    }
+    rebuildPrioritized();
+    setCounterLastUsed();
+  }
+
+  private void loadSnapshotOrBackup() {
+    try {
+      loadSnapshot(file);
+    } catch (ManagerLoadException | IllegalArgumentException | DateTimeException e) {
+      final File backup = snapshotFile.backup();
+      if (!backup.exists()) {
+        throw e;
+      }
+      if (config.isJournalEnabled() && !journal.hasCovered()) {
+        throw new ManagerLoadException("The snapshot is damaged and the journal leading from its"
+            + " backup is missing: " + file, e);
+      }
+      clearRestored();
+      try {
+        loadSnapshot(backup);
+      } catch (RuntimeException backupFailure) {
+        e.addSuppressed(backupFailure);
+        throw e;
+      }
+      recoveredFromBackup = true;
+    }
+  }
+
+  private void loadSnapshot(final File snapshot) {
+    try {
+      if (config.getSnapshotFormat() == SnapshotFormat.BINARY) {
+        BinarySnapshot.read(snapshot, this::restorePut, this::restoreView);
+        return;
+      }
+      CsvSnapshot.verify(snapshot);
+      if (config.getLoadParallelism() > 1 && (snapshot.length() >= PARALLEL_LOAD_MIN_BYTES
+          || CompressedBlocks.isCompressed(snapshot))) {
+        new ParallelCsvSnapshotReader(config.getLoadParallelism(), PARALLEL_LOAD_MIN_BYTES / 4)
+            .read(snapshot, this::restorePut, this::restoreView);
+      } else {
+        CsvSnapshot.read(snapshot, this::restorePut, this::restoreView);
+      }
     } catch (IOException e) {
       throw new ManagerLoadException("An Error occurred during reading the file", e);
     }
-    setCounterLastUsed();
   }
 
-  private void save() {
-    try (final Writer fileWriter = new FileWriter(file, StandardCharsets.UTF_8)) {
-      saveSection(fileWriter, TASKS_CSV_HEADER, getAllTasks());
-      saveSection(fileWriter, HISTORY_HEADER, historyManager.getHistory());
-      saveSection(fileWriter, PRIORITIZED_HEADER, new ArrayList<>(prioritizedTasks));
+  /**
+   * Opens the page file. The page file restores its own torn writes, so it has no backup.
+   */
+  private void loadPages() {
+    try {
+      pagedStore = PagedTaskStore.open(file, this::restorePut);
     } catch (IOException e) {
-      throw new ManagerSaveException("An error occurred during saving to the file.", e);
+      throw new ManagerLoadException("An Error occurred during reading the file", e);
     }
   }
 
-  private void saveSection(final Writer fileWriter, final String header,
-      final List<Task> tasksToSave) throws IOException {
-    fileWriter.write(header + System.lineSeparator());
-    tasksToSave.forEach(task -> {
-      try {
-        fileWriter.write(task.toCsvLine() + System.lineSeparator());
-      } catch (IOException e) {
-        throw new ManagerSaveException(
-            "An error occurred during saving tasks from taskManager to the file.", e);
+  /**
+   * Loads the shards. A snapshot written before the storage was split into shards is loaded instead
+   * if there are no shards yet, is split into shards by the next save and is deleted once the
+   * shards are written. Such a snapshot left next to the shards, e.g. by a crash right after the
+   * split, is stale and is deleted on loading. Damaged shards are replaced by the shards of the
+   * previous save as a damaged snapshot is replaced by its backup.
+   */
+  private void loadShards() {
+    try {
+      dirtyShards.or(shardedSnapshot.read(this::restorePut,
+          !config.isJournalEnabled() || journal.hasCovered()));
+    } catch (IOException e) {
+      throw new ManagerLoadException("An Error occurred during reading the file", e);
+    }
+    recoveredFromBackup = shardedSnapshot.isRecovered();
+    if (!shardedSnapshot.exists() && file.length() > 0) {
+      loadSnapshotOrBackup();
+      historyJournal.rewrite(historyManager.getHistory().stream()
+          .map(task -> String.valueOf(task.getId()))
+          .toList());
+      dirtyShards.set(0, config.getShardCount());
+      singleSnapshotSuperseded = true;
+    } else if (shardedSnapshot.exists()
+        && (file.length() > 0 || snapshotFile.backup().exists())) {
+      deleteSingleSnapshot();
+    }
+  }
+
+  /**
+   * Deletes the snapshot and its backup superseded by the shards, so they are never loaded again
+   * in place of the shards.
+   */
+  private void deleteSingleSnapshot() {
+    try {
+      Files.deleteIfExists(file.toPath());
+      Files.deleteIfExists(snapshotFile.backup().toPath());
+    } catch (IOException e) {
+      throw new ManagerSaveException("An error occurred during deleting the file.", e);
+    }
+    singleSnapshotSuperseded = false;
+  }
+
+  private void clearRestored() {
+    tasks.clear();
+    epics.clear();
+    subtasks.clear();
+    prioritizedTasks.clear();
+    historyManager.getHistory().forEach(task -> historyManager.remove(task.getId()));
+  }
+
+  /**
+   * Replays the records left in the journal after the last compaction and the tasks viewed after
+   * the last snapshot over the state loaded from the snapshot, and folds the journal into a fresh
+   * snapshot. A state recovered from the backup gets the covered journal segments, which lead from
+   * the backup to the damaged snapshot, first, and is written to a fresh snapshot as well.
+   */
+  private void replayJournal() {
+    if (recoveredFromBackup) {
+      journal.replayCovered(this::applyJournalRecord);
+    }
+    final int sealed = journal.replaySealed(this::applyJournalRecord);
+    journal.replay(this::applyJournalRecord);
+    historyJournal.replaySealed(record -> restoreView(Integer.parseInt(record)));
+    historyJournal.replay(record -> restoreView(Integer.parseInt(record)));
+    if (sealed > 0 || journal.size() > 0 || recoveredFromBackup || !dirtyShards.isEmpty()) {
+      setCounterLastUsed();
+      if (sealed > 0 || journal.size() > 0) {
+        markAllDirty();
       }
-    });
+      compact();
+    }
+  }
+
+  /**
+   * Applies a record of the journal or of a sealed segment. The snapshot may already contain the
+   * state the record leads to, if a compaction or a checkpoint stopped after writing it, so a
+   * subtask of an epic removed later is skipped: every other record can be applied twice.
+   */
+  private void applyJournalRecord(final String record) {
+    applyRecord(record, task -> {
+      if (applyPut(task)) {
+        storeDescription(findTask(task.getId()));
+      }
+    }, this::applyDelete, this::applyClear);
+  }
+
+  /**
+   * Parses a record of the journal and passes it to the action of its kind.
+   */
+  static void applyRecord(final String record, final Consumer<Task> put,
+      final IntConsumer delete, final Consumer<TaskType> clear) {
+    final int separator = record.indexOf(',');
+    if (separator < 0) {
+      throw new ManagerLoadException("Invalid journal record: " + record);
+    }
+    final String payload = record.substring(separator + 1);
+    switch (record.substring(0, separator)) {
+      case PUT_RECORD -> put.accept(CsvSnapshot.parseTask(payload));
+      case DELETE_RECORD -> delete.accept(Integer.parseInt(payload));
+      case CLEAR_RECORD -> clear.accept(TaskType.valueOf(payload));
+      default -> throw new ManagerLoadException("Invalid journal record: " + record);
+    }
   }
 
-  private void loadSection(final BufferedReader br, final String start, final String end)
-      throws IOException {
-    final List<String> taskData = new ArrayList<>();
+  /**
+   * Puts a task read from the snapshot, replacing the previous version of it.
+   */
+  private void restorePut(final Task task) {
+    if (!applyPut(task)) {
+      throw new ManagerLoadException(
+          "The file contains a subtask of unknown epic: " + ((Subtask) task).toCsvLine());
+    }
+    storeDescription(findTask(task.getId()));
+  }
 
-    while (br.ready()) {
-      String line = br.readLine();
-      if (line.equals(end)) {
-        break;
+  private void restoreView(final int id) {
+    historyManager.add(findTask(id));
+  }
+
+  /**
+   * Builds the prioritized tasks from the loaded tasks in one pass. The tasks are sorted once and
+   * handed to the {@link IntervalIndex}, which builds its tree from them in linear time instead of
+   * searching for the place of every task. The time conflicts are not checked again: the tasks
+   * were checked when they were added.
+   */
+  private void rebuildPrioritized() {
+    final List<Task> sorted = new ArrayList<>(tasks.size() + subtasks.size());
+    Stream.concat(tasks.values().stream(), subtasks.values().stream())
+        .filter(task -> task.getStartTime() != null)
+        .forEach(sorted::add);
+    sorted.sort(IntervalIndex.ORDER);
+    prioritizedTasks.rebuild(sorted);
+  }
+
+  /**
+   * Leaves the prioritized tasks alone during a bulk load, they are built once it is over.
+   */
+  @Override
+  protected void reprioritize(final Task previous, final Task task) {
+    if (!bulkLoading) {
+      super.reprioritize(previous, task);
+    }
+  }
+
+  private void persistPut(final int id) {
+    pendingPuts.add(id);
+    markDirty(List.of(id));
+  }
+
+  private void persistDelete(final int id) {
+    pendingRemovals.add(DELETE_RECORD + "," + id);
+    markDirty(List.of(id));
+  }
+
+  /**
+   * Registers the tasks to be written to the page file or the shards by the next save. A task
+   * missing in memory by then is removed from the file. A subtask has to be registered before it is
+   * removed, since its shard is the shard of its epic.
+   */
+  private void markDirty(final Collection<Integer> ids) {
+    if (pagedStore != null) {
+      dirtyIds.addAll(ids);
+    }
+    if (shardedSnapshot != null) {
+      for (Integer id : ids) {
+        final Task task = findTask(id);
+        dirtyShards.set(task != null ? shardedSnapshot.shardOf(task)
+            : shardedSnapshot.shardOfKey(id));
       }
-      taskData.add(line);
     }
-    if (!taskData.isEmpty()) {
-      this.restore(taskData, start);
+  }
+
+  /**
+   * Registers all tasks to be written by the next save, after the changes of the journal have been
+   * replayed without being tracked. The unchanged records are skipped by the page file.
+   */
+  private void markAllDirty() {
+    if (pagedStore != null) {
+      markDirty(pagedStore.ids());
+      markDirty(tasks.keySet());
+      markDirty(epics.keySet());
+      markDirty(subtasks.keySet());
+    }
+    if (shardedSnapshot != null) {
+      dirtyShards.set(0, config.getShardCount());
+    }
+  }
+
+  private void persistClear(final TaskType type) {
+    pendingRemovals.add(CLEAR_RECORD + "," + type);
+  }
+
+  /**
+   * Schedules the unscheduled tasks as one operation, which is persisted once, see
+   * {@link TaskManager#scheduleUnscheduled(LocalDateTime)}.
+   */
+  @Override
+  public synchronized List<Task> scheduleUnscheduled(final LocalDateTime after) {
+    return inOperation(() -> super.scheduleUnscheduled(after));
+  }
+
+  /**
+   * Saves a viewed task to the history journal, a GET operation never rewrites the snapshot.
+   */
+  private void persistView(final int id) {
+    historyJournal.append(String.valueOf(id));
+    if (flusher != null) {
+      flusher.markDirty();
+      return;
+    }
+    commitHistory();
+  }
+
+  private void inOperation(final Runnable operation) {
+    inOperation(() -> {
+      operation.run();
+      return null;
+    });
+  }
+
+  /**
+   * Runs a modifying operation as one unit. The operations it calls on this manager, such as
+   * {@code addSubtask} called by {@code addEpic} for every embedded subtask, only collect their
+   * changes, which are persisted once when the outermost operation completes, even abruptly.
+   */
+  private <T> T inOperation(final Supplier<T> operation) {
+    operationDepth++;
+    try {
+      return operation.get();
+    } finally {
+      if (--operationDepth == 0) {
+        persistOperation();
+      }
     }
   }
 
-  private void restore(final List<String> tasks, final String header) {
-    switch (header) {
-      case TASKS_CSV_HEADER -> restoreByTaskType(tasks);
-      case HISTORY_HEADER -> restoreTasks(tasks, header, historyManager::add);
-      case PRIORITIZED_HEADER -> restoreTasks(tasks, header, prioritizedTasks::add);
+  /**
+   * Saves the changes collected by the outermost operation: appends them to the journal when it is
+   * enabled, otherwise rewrites the snapshot file. In write-behind mode the operation is only
+   * registered to be flushed later.
+   * <p>
+   * The journal gets the removals first and then the current state of the added or updated tasks,
+   * epics before subtasks, as it is done in the snapshot. A task removed by the same operation is
+   * not written.
+   */
+  private void persistOperation() {
+    if (pendingRemovals.isEmpty() && pendingPuts.isEmpty()) {
+      return;
+    }
+    if (config.isJournalEnabled() || changeLog != null) {
+      final List<String> records = new ArrayList<>(pendingRemovals);
+      addPutRecords(records, tasks);
+      addPutRecords(records, epics);
+      addPutRecords(records, subtasks);
+      if (config.isJournalEnabled()) {
+        records.forEach(journal::append);
+      }
+      if (changeLog != null) {
+        changeLog.append(records);
+      }
+    }
+    if (!config.isJournalEnabled()) {
+      snapshotDirty = true;
+    }
+    if (descriptionStore != null) {
+      pendingPuts.forEach(id -> storeDescription(findTask(id)));
+      if (descriptionStore.needsCompaction()) {
+        descriptionStore.compact(getAllTasks());
+      }
+    }
+    pendingRemovals.clear();
+    pendingPuts.clear();
+    if (flusher != null) {
+      flusher.markDirty();
+      return;
     }
+    flush();
   }
 
-  private void restoreByTaskType(final List<String> tasks) {
-    for (String eachLine : tasks) {
-      if (eachLine.equals(TASKS_CSV_HEADER) || eachLine.isBlank()) {
-        continue;
+  private void addPutRecords(final List<String> records,
+      final Map<Integer, ? extends Task> tasksById) {
+    for (Integer id : pendingPuts) {
+      final Task task = tasksById.get(id);
+      if (task != null) {
+        records.add(PUT_RECORD + "," + task.toCsvLine());
       }
+    }
+  }
 
-      final Task taskFromFile = this.fromString(eachLine);
-      final TaskType typeFromFile = taskFromFile.getType();
+  /**
+   * Commits the viewed tasks and, when the history journal has grown much longer than the history
+   * itself, rewrites it with the current history.
+   */
+  private void commitHistory() {
+    historyJournal.commit(config.getDurability());
+    if (historyJournal.size() <= config.getCompactionThreshold()) {
+      return;
+    }
+    final List<String> historyIds = historyManager.getHistory().stream()
+        .map(task -> String.valueOf(task.getId()))
+        .toList();
+    if (historyJournal.size() > 2 * historyIds.size()) {
+      historyJournal.rewrite(historyIds);
+    }
+  }
 
-      switch (typeFromFile) {
-        case TASK -> this.tasks.put(taskFromFile.getId(), taskFromFile);
-        case EPIC -> this.epics.put(taskFromFile.getId(), (Epic) taskFromFile);
-        case SUBTASK -> {
-          this.subtasks.put(taskFromFile.getId(), (Subtask) taskFromFile);
-          int epicId = ((Subtask) taskFromFile).getEpicId();
-          this.epics.get(epicId).addSubtask((Subtask) taskFromFile);
-        }
+  /**
+   * Seals the journal and folds it into a fresh snapshot on the checkpointer thread. Only taking
+   * the state and sealing the journals hold the lock, the snapshot is written outside of it with
+   * the epics changed meanwhile preserved as for an online backup.
+   */
+  private void checkpointInBackground() {
+    final OnlineBackup state;
+    final long sealedGeneration;
+    final long sealedHistoryGeneration;
+    synchronized (this) {
+      journal.commit(config.getDurability());
+      historyJournal.commit(config.getDurability());
+      state = new OnlineBackup(getAllTasks(), historyManager.getHistory());
+      backups.add(state);
+      sealedRecords += journal.size();
+      sealedGeneration = journal.seal();
+      sealedHistoryGeneration = historyJournal.seal();
+    }
+    try {
+      writeSnapshot(out -> state.writeTo(out, config.getSnapshotFormat()));
+    } catch (IOException e) {
+      throw new ManagerSaveException("An error occurred during saving to the file.", e);
+    } finally {
+      backups.remove(state);
+    }
+    synchronized (this) {
+      journal.cover(sealedGeneration);
+      historyJournal.dropSealed(sealedHistoryGeneration);
+      sealedRecords = 0;
+    }
+  }
+
+  /**
+   * Folds the journal into a fresh snapshot. The journal is sealed first and its segment is marked
+   * covered only once the snapshot is written, so a crash in between leaves the segment to be
+   * replayed over the new snapshot, which already covers it.
+   */
+  private void compact() {
+    final long generation = journal.seal();
+    save();
+    journal.cover(generation);
+  }
+
+  private void save() {
+    if (pagedStore != null) {
+      savePages();
+      return;
+    }
+    if (shardedSnapshot != null) {
+      saveShards();
+      return;
+    }
+    try {
+      if (config.getSnapshotFormat() == SnapshotFormat.BINARY) {
+        writeSnapshot(out -> BinarySnapshot.write(out, getAllTasks(),
+            historyManager.getHistory()));
+      } else {
+        writeSnapshot(out -> CsvSnapshot.write(out, getAllTasks(),
+            historyManager.getHistory()));
       }
+    } catch (IOException e) {
+      throw new ManagerSaveException("An error occurred during saving to the file.", e);
     }
+    snapshotDirty = false;
+    historyJournal.truncate();
+  }
+
+  /**
+   * Replaces the snapshot file with the one written by the {@code writer}, compressed if the
+   * compression is enabled.
+   */
+  private void writeSnapshot(final SnapshotWriter writer) throws IOException {
+    snapshotFile.write(config.isCompressionEnabled() ? CompressedBlocks.compressing(writer)
+        : writer, config.getDurability());
   }
 
-  private void restoreTasks(final List<String> tasksLines, final String header,
-      Consumer<Task> action) {
-    for (String eachLine : tasksLines) {
-      if (eachLine.equals(header) || eachLine.isBlank()) {
-        continue;
+  /**
+   * Writes the records of the changed tasks to the page file. The history journal is kept, since
+   * the page file does not store the history.
+   */
+  private void savePages() {
+    final List<Task> puts = new ArrayList<>();
+    final List<Integer> removals = new ArrayList<>();
+    for (Integer id : dirtyIds) {
+      final Task task = findTask(id);
+      if (task != null) {
+        puts.add(task);
+      } else {
+        removals.add(id);
       }
+    }
+    try {
+      pagedStore.write(puts, removals, config.getDurability());
+    } catch (IOException e) {
+      throw new ManagerSaveException("An error occurred during saving to the file.", e);
+    }
+    dirtyIds.clear();
+    snapshotDirty = false;
+  }
 
-      Task taskToRestore = this.fromString(eachLine);
+  /**
+   * Rewrites the shards of the changed tasks. The history journal is kept, since the shards do not
+   * store the history.
+   */
+  private void saveShards() {
+    try {
+      shardedSnapshot.write(getAllTasks(), dirtyShards, config.getDurability());
+    } catch (IOException e) {
+      throw new ManagerSaveException("An error occurred during saving to the file.", e);
+    }
+    dirtyShards.clear();
+    snapshotDirty = false;
+    if (singleSnapshotSuperseded) {
+      deleteSingleSnapshot();
+    }
+  }
 
-      if (TaskType.EPIC.equals(taskToRestore.getType())) {
-        taskToRestore = epics.get(taskToRestore.getId());
+  /**
+   * Replaces all tasks with the tasks of the {@code past} state as one operation. The
+   * {@link IdAllocator} never moves back, so the ids given after the restored state are not given
+   * again.
+   */
+  private void restore(final PointInTimeView past) {
+    inOperation(() -> {
+      clearTasks();
+      clearEpics();
+      Stream.of(past.getEpics(), past.getTasks(), past.getSubtasks())
+          .flatMap(List::stream)
+          .forEach(task -> {
+            restorePut(task);
+            persistPut(task.getId());
+          });
+    });
+    setCounterLastUsed();
+  }
+
+  /**
+   * Lets the running backups keep the state of the epic, which is about to be changed in place.
+   */
+  private void preserveEpic(final int id) {
+    if (!backups.isEmpty()) {
+      final Epic epic = epics.get(id);
+      backups.forEach(backup -> backup.preserve(epic));
+    }
+  }
+
+  private ChangeLog changeLog() {
+    if (changeLog == null) {
+      throw new IllegalStateException("The change log is not enabled.");
+    }
+    return changeLog;
+  }
+
+  private DescriptionStore openDescriptionStore() {
+    try {
+      return new DescriptionStore(file, config.getDescriptionCacheSize());
+    } catch (IOException e) {
+      throw new ManagerLoadException("An Error occurred during opening the descriptions file", e);
+    }
+  }
+
+  /**
+   * Moves the long description of a persisted task to the description store. The epic of a moved
+   * subtask drops its view, which holds the description.
+   */
+  private void storeDescription(final Task task) {
+    if (descriptionStore == null || task == null || task.getDescriptionSource() != null) {
+      return;
+    }
+    descriptionStore.store(task);
+    if (task instanceof Subtask subtask && subtask.getDescriptionSource() != null) {
+      final Epic epic = epics.get(subtask.getEpicId());
+      if (epic != null) {
+        epic.updateSubtask(subtask);
       }
-      action.accept(taskToRestore);
     }
   }
 
+  /**
+   * Gives a task leaving the manager its description back, the description store may drop it.
+   */
+  private void releaseDescription(final Task task) {
+    if (task != null && task.getDescriptionSource() != null) {
+      task.setDescription(task.getDescription());
+    }
+  }
+
+  private Task findTask(final int id) {
+    return tasks.containsKey(id) ? tasks.get(id)
+        : (epics.containsKey(id) ? epics.get(id) : subtasks.get(id));
+  }
+
   private void setCounterLastUsed() {
-    counter = Stream.concat(
+    ids.advanceTo(Stream.concat(
             Stream.concat(this.tasks.keySet().stream(), this.epics.keySet().stream()),
             this.subtasks.keySet().stream())
         .max(Comparator.naturalOrder())
-        .orElse(0);
-  }
-
-  private Task fromString(final String stringCsv) {
-    Objects.requireNonNull(stringCsv);
-    if (!Pattern.matches(TASKS_LINE_FORMAT, stringCsv)) {
-      throw new IllegalArgumentException("Invalid CSV format of the line with task: " + stringCsv);
-    }
-    final String[] taskData = stringCsv.split(",");
-    final int id = Integer.parseInt(taskData[0]);
-    final TaskType type = TaskType.valueOf(taskData[1]);
-    final String title = taskData[2];
-    final TaskStatus status = TaskStatus.valueOf(taskData[3]);
-    final String description = taskData[4];
-    final Duration duration = Duration.ofMinutes(Long.parseLong(taskData[5]));
-    final LocalDateTime startTime =
-        taskData[6].equals("null") ? null : LocalDateTime.parse(taskData[6]);
-    switch (type) {
-      case TASK -> {
-        final Task task = new Task();
-        task.setId(id);
-        task.setTitle(title);
-        task.setDescription(description);
-        task.setStatus(status);
-        task.setDuration(duration);
-        task.setStartTime(startTime);
-        return task;
-      }
-      case EPIC -> {
-        final Epic epic = new Epic();
-        epic.setId(id);
-        epic.setTitle(title);
-        epic.setDescription(description);
-        epic.setStatus(status);
-        epic.setDuration(duration);
-        epic.setStartTime(startTime);
-        return epic;
-      }
-      case SUBTASK -> {
-        final Subtask subtask = new Subtask();
-        subtask.setId(id);
-        subtask.setTitle(title);
-        subtask.setDescription(description);
-        subtask.setStatus(status);
-        subtask.setDuration(duration);
-        subtask.setStartTime(startTime);
-        subtask.setEpicId(Integer.parseInt(taskData[7]));
-        return subtask;
-      }
-    }
-    throw new IllegalArgumentException("Unknown task type: " + type);
+        .orElse(0));
   }
 
   private List<Task> getAllTasks() {
@@ -322,4 +1220,4 @@ public class FileBackedTaskManager extends InMemoryTaskManager {
         subtasks.values().stream()
     ).toList();
   }
-}
\ No newline at end of file
+}
@@ -0,0 +1,407 @@
+package ru.yandex.practicum.tasktracker.service;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import ru.yandex.practicum.tasktracker.exception.ManagerLoadException;
+import ru.yandex.practicum.tasktracker.model.Epic;
+import ru.yandex.practicum.tasktracker.model.EpicRecord;
+import ru.yandex.practicum.tasktracker.model.Subtask;
+import ru.yandex.practicum.tasktracker.model.SubtaskRecord;
+import ru.yandex.practicum.tasktracker.model.Task;
+import ru.yandex.practicum.tasktracker.model.TaskView;
+
+/**
+ * Read-only task manager that follows the files of a {@link FileBackedTaskManager} written by
+ * another process on the same host, so that extra servers can take a share of the reads.
+ * <p>
+ * The follower loads the snapshot and the journal as the writer does on loading, then a daemon
+ * thread polls the files every {@link StorageConfig#getFollowInterval()}. The records appended to
+ * the journal since the last poll are applied to the maps one by one. Once the writer replaces the
+ * snapshot or starts a new journal, on a compaction, a checkpoint or every save without the
+ * journal, the state is loaded anew. Only complete records with intact checksums are applied and
+ * the files are never changed, so the follower needs no lock; the writer may hold its exclusive
+ * one, see {@link StorageConfig#isLockEnabled()}.
+ * <p>
+ * Every change the writer had persisted when the last successful poll started is visible, so the
+ * replication lag is bounded by the poll interval and the time a poll takes, plus the write-behind
+ * interval of the writer if it commits in groups. The lag is reported by
+ * {@link #getReplicationMetrics()}.
+ * <p>
+ * The modifying operations throw {@link UnsupportedOperationException}. The history of viewed tasks
+ * is the follower's own, the views on the writer are not followed. The paged store and the sharded
+ * snapshot are not followed.
+ *
+ * @see ReplicationMetrics
+ */
+public class FollowerTaskManager extends InMemoryTaskManager implements AutoCloseable {
+
+  private static final int MAX_RELOAD_ATTEMPTS = 5;
+  private final File file;
+  private final SnapshotFormat format;
+  private final TaskJournal journal;
+  private final ScheduledExecutorService executor;
+  private final AtomicLong failures = new AtomicLong();
+  private FileVersion snapshotVersion;
+  private FileVersion journalVersion;
+  private long journalPosition;
+  private long appliedRecords;
+  private long reloads;
+  private long syncedAtNanos;
+
+  private FollowerTaskManager(final File file, final StorageConfig config) {
+    this.file = file;
+    this.format = config.getSnapshotFormat();
+    this.journal = new TaskJournal(file, FileBackedTaskManager.JOURNAL_SUFFIX);
+    sync();
+    this.executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+      final Thread thread = new Thread(runnable, "task-manager-follower");
+      thread.setDaemon(true);
+      return thread;
+    });
+    final long interval = config.getFollowInterval().toMillis();
+    executor.scheduleWithFixedDelay(this::poll, interval, interval, TimeUnit.MILLISECONDS);
+  }
+
+  /**
+   * Loads the state written to the file in the given format and starts following it.
+   *
+   * @throws IllegalArgumentException if the storage can not be followed
+   * @throws ManagerLoadException     if the files could not be read
+   */
+  public static FollowerTaskManager follow(final File file, final StorageConfig config) {
+    Objects.requireNonNull(file);
+    Objects.requireNonNull(config);
+    if (config.getSnapshotFormat() == SnapshotFormat.PAGED || config.getShardCount() > 1) {
+      throw new IllegalArgumentException("Only a single snapshot file can be followed.");
+    }
+    return new FollowerTaskManager(file, config);
+  }
+
+  /**
+   * Applies the changes the writer has persisted since the last poll. It is called by the
+   * background thread, and can be called to catch up at once.
+   *
+   * @throws ManagerLoadException if the files could not be read, the previous state is kept then
+   */
+  public synchronized void sync() {
+    final long start = System.nanoTime();
+    final FileVersion snapshot = FileVersion.of(file.toPath());
+    final FileVersion currentJournal = FileVersion.of(journal.path());
+    if (!snapshot.equals(snapshotVersion) || currentJournal.replaces(journalVersion)
+        || currentJournal.size() < journalPosition) {
+      reload(snapshot, currentJournal);
+    } else {
+      final List<Runnable> changes = new ArrayList<>();
+      journalPosition = journal.tail(journalPosition, record -> parse(record, changes));
+      journalVersion = currentJournal;
+      changes.forEach(Runnable::run);
+      appliedRecords += changes.size();
+    }
+    syncedAtNanos = start;
+  }
+
+  /**
+   * Returns the progress of following the files: the lag is the time since the start of the last
+   * successful poll.
+   */
+  public synchronized ReplicationMetrics getReplicationMetrics() {
+    final long pendingBytes = Math.max(0,
+        FileVersion.of(journal.path()).size() - journalPosition);
+    return new ReplicationMetrics(appliedRecords, reloads, failures.get(), pendingBytes,
+        TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - syncedAtNanos));
+  }
+
+  /**
+   * Stops following the files.
+   */
+  @Override
+  public void close() {
+    executor.shutdown();
+    try {
+      if (!executor.awaitTermination(1, TimeUnit.MINUTES)) {
+        executor.shutdownNow();
+      }
+    } catch (InterruptedException e) {
+      executor.shutdownNow();
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  @Override
+  public synchronized List<Task> getTasks() {
+    return super.getTasks();
+  }
+
+  @Override
+  public synchronized List<Epic> getEpics() {
+    return super.getEpics();
+  }
+
+  @Override
+  public synchronized List<Subtask> getSubtasks() {
+    return super.getSubtasks();
+  }
+
+  @Override
+  public synchronized List<Task> getPrioritizedTasks() {
+    return super.getPrioritizedTasks();
+  }
+
+  @Override
+  public synchronized List<Task> getPrioritizedTasks(final ScheduleWindow window) {
+    return super.getPrioritizedTasks(window);
+  }
+
+  @Override
+  public synchronized LocalDateTime findFreeSlot(final LocalDateTime after,
+      final Duration duration) {
+    return super.findFreeSlot(after, duration);
+  }
+
+  @Override
+  public synchronized List<Task> getHistory() {
+    return super.getHistory();
+  }
+
+  @Override
+  public synchronized Task getTaskById(final int id) {
+    return super.getTaskById(id);
+  }
+
+  @Override
+  public synchronized Epic getEpicById(final int id) {
+    return super.getEpicById(id);
+  }
+
+  @Override
+  public synchronized Subtask getSubtaskById(final int id) {
+    return super.getSubtaskById(id);
+  }
+
+  @Override
+  public synchronized TaskView getTaskView(final int id) {
+    return super.getTaskView(id);
+  }
+
+  @Override
+  public synchronized EpicRecord getEpicView(final int id) {
+    return super.getEpicView(id);
+  }
+
+  @Override
+  public synchronized SubtaskRecord getSubtaskView(final int id) {
+    return super.getSubtaskView(id);
+  }
+
+  @Override
+  public synchronized List<TaskView> getTaskViews() {
+    return super.getTaskViews();
+  }
+
+  @Override
+  public synchronized List<EpicRecord> getEpicViews() {
+    return super.getEpicViews();
+  }
+
+  @Override
+  public synchronized List<SubtaskRecord> getSubtaskViews() {
+    return super.getSubtaskViews();
+  }
+
+  @Override
+  public synchronized Set<Subtask> getSubtasksByEpicId(final int epicId) {
+    return super.getSubtasksByEpicId(epicId);
+  }
+
+  @Override
+  public Task addTask(final Task task) {
+    throw readOnly();
+  }
+
+  @Override
+  public Epic addEpic(final Epic epic) {
+    throw readOnly();
+  }
+
+  @Override
+  public Subtask addSubtask(final Subtask subtask) {
+    throw readOnly();
+  }
+
+  @Override
+  public void updateTask(final Task task) {
+    throw readOnly();
+  }
+
+  @Override
+  public void updateEpic(final Epic epic) {
+    throw readOnly();
+  }
+
+  @Override
+  public void updateSubtask(final Subtask subtask) {
+    throw readOnly();
+  }
+
+  @Override
+  public List<Task> scheduleUnscheduled(final LocalDateTime after) {
+    throw readOnly();
+  }
+
+  @Override
+  public void clearTasks() {
+    throw readOnly();
+  }
+
+  @Override
+  public void clearEpics() {
+    throw readOnly();
+  }
+
+  @Override
+  public void clearSubtasks() {
+    throw readOnly();
+  }
+
+  @Override
+  public void deleteTask(final int id) {
+    throw readOnly();
+  }
+
+  @Override
+  public void deleteEpic(final int id) {
+    throw readOnly();
+  }
+
+  @Override
+  public void deleteSubtask(final int id) {
+    throw readOnly();
+  }
+
+  private void poll() {
+    try {
+      sync();
+    } catch (RuntimeException e) {
+      failures.incrementAndGet();
+    }
+  }
+
+  /**
+   * Replaces the state with the one of the snapshot, the sealed journals and the journal. The
+   * files are read and parsed before the state is touched, so a failure keeps the previous state.
+   * The reading is repeated if the writer has replaced the snapshot or the journal meanwhile, so
+   * the state always matches the files of one moment.
+   */
+  private void reload(final FileVersion snapshot, final FileVersion currentJournal) {
+    FileVersion expectedSnapshot = snapshot;
+    FileVersion expectedJournal = currentJournal;
+    for (int attempt = 0; attempt < MAX_RELOAD_ATTEMPTS; attempt++) {
+      final List<Task> snapshotTasks = new ArrayList<>();
+      final List<Runnable> changes = new ArrayList<>();
+      readSnapshot(expectedSnapshot, snapshotTasks);
+      journal.tailSealed(record -> parse(record, changes));
+      final long position = journal.tail(0, record -> parse(record, changes));
+      final FileVersion snapshotAfter = FileVersion.of(file.toPath());
+      final FileVersion journalAfter = FileVersion.of(journal.path());
+      if (snapshotAfter.equals(expectedSnapshot) && !journalAfter.replaces(expectedJournal)) {
+        tasks.clear();
+        epics.clear();
+        subtasks.clear();
+        prioritizedTasks.clear();
+        snapshotTasks.forEach(this::restorePut);
+        changes.forEach(Runnable::run);
+        snapshotVersion = expectedSnapshot;
+        journalVersion = journalAfter;
+        journalPosition = position;
+        reloads++;
+        return;
+      }
+      expectedSnapshot = snapshotAfter;
+      expectedJournal = journalAfter;
+    }
+    throw new ManagerLoadException("The files kept changing while being read: " + file);
+  }
+
+  private void readSnapshot(final FileVersion snapshot, final List<Task> snapshotTasks) {
+    if (!snapshot.exists()) {
+      return;
+    }
+    try {
+      if (format == SnapshotFormat.BINARY) {
+        BinarySnapshot.read(file, snapshotTasks::add, id -> { });
+      } else {
+        CsvSnapshot.verify(file);
+        CsvSnapshot.read(file, snapshotTasks::add, id -> { });
+      }
+    } catch (IOException e) {
+      throw new ManagerLoadException("An Error occurred during reading the file", e);
+    }
+  }
+
+  /**
+   * Parses the journal record into the change it makes, which is applied once all records are
+   * parsed.
+   */
+  private void parse(final String record, final List<Runnable> changes) {
+    FileBackedTaskManager.applyRecord(record,
+        task -> changes.add(() -> applyPut(task)),
+        id -> changes.add(() -> applyDelete(id)),
+        type -> changes.add(() -> applyClear(type)));
+  }
+
+  /**
+   * Puts a task of the snapshot, as the writer does on loading.
+   */
+  private void restorePut(final Task task) {
+    if (!applyPut(task)) {
+      throw new ManagerLoadException(
+          "The file contains a subtask of unknown epic: " + ((Subtask) task).toCsvLine());
+    }
+  }
+
+  private static UnsupportedOperationException readOnly() {
+    return new UnsupportedOperationException("The follower is read-only.");
+  }
+
+  /**
+   * Identity of a version of a file: a replaced file has another key on the file systems that
+   * provide one, and another size or modification time otherwise.
+   */
+  private record FileVersion(boolean exists, Object key, long size, FileTime modified) {
+
+    private static FileVersion of(final Path path) {
+      try {
+        final BasicFileAttributes attributes = Files.readAttributes(path,
+            BasicFileAttributes.class);
+        return new FileVersion(true, attributes.fileKey(), attributes.size(),
+            attributes.lastModifiedTime());
+      } catch (NoSuchFileException e) {
+        return new FileVersion(false, null, 0, null);
+      } catch (IOException e) {
+        throw new ManagerLoadException("An Error occurred during reading the file", e);
+      }
+    }
+
+    /**
+     * Returns whether this file has replaced the {@code previous} one, rather than grown from it.
+     */
+    private boolean replaces(final FileVersion previous) {
+      return previous != null && previous.exists && !Objects.equals(key, previous.key);
+    }
+  }
+}
@@ -0,0 +1,103 @@
+package ru.yandex.practicum.tasktracker.service;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Allocator of the ids of one task manager.
+ * <p>
+ * The ids are 64-bit and are reserved in blocks of {@link #getBlockSize()} ids. Every thread takes
+ * the ids one by one from a block of its own, so giving an id touches no shared state, and only
+ * reserving the next block is one atomic addition shared by the threads. A single thread gets
+ * consecutive ids; several threads get ids from different blocks, so the ids are unique but not
+ * ordered by the time they are given, and the ids left in the blocks of the threads are never
+ * given.
+ * <p>
+ * {@link #advanceTo(long)} moves the allocator past the ids already in use, for example the ids of
+ * the loaded tasks, and makes every thread take a fresh block. The allocator never moves back, so
+ * an id is never given twice.
+ *
+ * @see InMemoryTaskManager
+ * @see ConcurrentTaskManager
+ */
+final class IdAllocator {
+
+  static final int DEFAULT_BLOCK_SIZE = 64;
+  private final int blockSize;
+  private final AtomicLong nextBlock = new AtomicLong(1);
+  private final AtomicLong generation = new AtomicLong();
+  private final ThreadLocal<Block> blocks = ThreadLocal.withInitial(Block::new);
+
+  IdAllocator() {
+    this(DEFAULT_BLOCK_SIZE);
+  }
+
+  /**
+   * @throws IllegalArgumentException if {@code blockSize} is not positive
+   */
+  IdAllocator(final int blockSize) {
+    if (blockSize < 1) {
+      throw new IllegalArgumentException("The block size must be positive: " + blockSize);
+    }
+    this.blockSize = blockSize;
+  }
+
+  int getBlockSize() {
+    return blockSize;
+  }
+
+  /**
+   * Returns the next id of the block of the current thread, reserving a new block if it is used
+   * up.
+   *
+   * @throws IllegalStateException if the 64-bit ids are exhausted
+   */
+  long nextId() {
+    final Block block = blocks.get();
+    if (block.next == block.end || block.generation != generation.get()) {
+      block.generation = generation.get();
+      block.next = nextBlock.getAndAdd(blockSize);
+      if (block.next <= 0) {
+        block.end = block.next;
+        throw new IllegalStateException("The ids are exhausted.");
+      }
+      block.end = block.next + blockSize;
+    }
+    return block.next++;
+  }
+
+  /**
+   * Returns the next id as an {@code int}, for the managers whose tasks have {@code int} ids.
+   *
+   * @throws IllegalStateException if the {@code int} ids are exhausted
+   */
+  int nextIntId() {
+    final long id = nextId();
+    if (id > Integer.MAX_VALUE) {
+      throw new IllegalStateException("The ids are exhausted.");
+    }
+    return (int) id;
+  }
+
+  /**
+   * Makes the ids given from now on greater than {@code lastUsed}. Does nothing if they already
+   * are, except that every thread takes a fresh block.
+   */
+  void advanceTo(final long lastUsed) {
+    nextBlock.accumulateAndGet(lastUsed + 1, Math::max);
+    generation.incrementAndGet();
+  }
+
+  /**
+   * Returns the last id reserved by the threads, no id greater than it has been given.
+   */
+  long lastReserved() {
+    return nextBlock.get() - 1;
+  }
+
+  private static final class Block {
+
+    private long generation = -1;
+    private long next;
+    private long end;
+  }
+}
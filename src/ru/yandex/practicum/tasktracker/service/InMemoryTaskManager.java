@@ -1,7 +1,8 @@
 package ru.yandex.practicum.tasktracker.service;
 
+import java.time.Duration;
+import java.time.LocalDateTime;
 import java.util.ArrayList;
-import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
@@ -9,13 +10,16 @@ import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
 import java.util.Set;
-import java.util.TreeSet;
 import ru.yandex.practicum.tasktracker.exception.TaskNotFoundException;
 import ru.yandex.practicum.tasktracker.exception.TaskPrioritizationException;
 import ru.yandex.practicum.tasktracker.exception.TaskValidationException;
 import ru.yandex.practicum.tasktracker.model.Epic;
+import ru.yandex.practicum.tasktracker.model.EpicRecord;
 import ru.yandex.practicum.tasktracker.model.Subtask;
+import ru.yandex.practicum.tasktracker.model.SubtaskRecord;
 import ru.yandex.practicum.tasktracker.model.Task;
+import ru.yandex.practicum.tasktracker.model.TaskType;
+import ru.yandex.practicum.tasktracker.model.TaskView;
 
 /**
  * The {@code InMemoryTaskManager} class implements the {@link TaskManager} interface and provides
@@ -23,13 +27,17 @@ import ru.yandex.practicum.tasktracker.model.Task;
  * <p>
  * This class maintains three maps to store tasks, epics, and subtasks respectively. It also
  * utilizes a {@link HistoryManager} to keep track of the history of viewing operations performed on
- * tasks.
+ * tasks. The tasks with a start time are kept in an {@link IntervalIndex}, which finds the time
+ * conflicts of a task and the free slots between the tasks.
  * <p>
  * Operations such as adding, updating, and deleting tasks, epics, and subtasks are supported.
  * Additionally, methods are provided to retrieve all tasks, epics, and subtasks, clear all tasks,
  * epics, and subtasks, retrieve tasks, epics, and subtasks by their IDs, retrieve subtasks
  * associated with a specific epic ID, and retrieve the history of viewing operations performed on
  * tasks.
+ * <p>
+ * Every manager gives its own ids through an {@link IdAllocator}, so several boards can live in one
+ * process.
  *
  * @see TaskManager
  * @see Task
@@ -39,13 +47,12 @@ import ru.yandex.practicum.tasktracker.model.Task;
  */
 public class InMemoryTaskManager implements TaskManager {
 
-  protected static int counter = 0;
   protected final Map<Integer, Task> tasks = new HashMap<>();
   protected final Map<Integer, Epic> epics = new HashMap<>();
   protected final Map<Integer, Subtask> subtasks = new HashMap<>();
   protected final HistoryManager historyManager = Managers.getDefaultHistory();
-  protected final Set<Task> prioritizedTasks = new TreeSet<>(
-      Comparator.comparing(Task::getStartTime));
+  protected final IdAllocator ids = new IdAllocator();
+  protected final IntervalIndex prioritizedTasks = new IntervalIndex();
 
   @Override
   public List<Task> getTasks() {
@@ -67,6 +74,16 @@ public class InMemoryTaskManager implements TaskManager {
     return new ArrayList<>(prioritizedTasks);
   }
 
+  @Override
+  public List<Task> getPrioritizedTasks(final ScheduleWindow window) {
+    return prioritizedTasks.page(window);
+  }
+
+  @Override
+  public LocalDateTime findFreeSlot(final LocalDateTime after, final Duration duration) {
+    return prioritizedTasks.firstGap(after, duration);
+  }
+
   /**
    * Retrieves the history of tasks from the history manager. This method fetches the history list
    * from the history manager, resolves each task to its corresponding object from the appropriate
@@ -87,68 +104,32 @@ public class InMemoryTaskManager implements TaskManager {
 
   @Override
   public void clearTasks() {
-    tasks.values().forEach(t -> {
-      historyManager.remove(t.getId());
-      removePrioritized(t);
-    });
-    tasks.clear();
+    removeAllTasks();
   }
 
   @Override
   public void clearEpics() {
-    subtasks.values().forEach(st -> {
-      historyManager.remove(st.getId());
-      removePrioritized(st);
-    });
-    epics.keySet().forEach(historyManager::remove);
-    subtasks.clear();
-    epics.clear();
+    removeAllEpics();
   }
 
   @Override
   public void clearSubtasks() {
-    epics.values().forEach(Epic::clearSubtasks);
-    subtasks.values().forEach(st -> {
-      historyManager.remove(st.getId());
-      removePrioritized(st);
-    });
-    subtasks.clear();
+    removeAllSubtasks();
   }
 
   @Override
   public void deleteTask(final int id) {
-    Task removedTask = tasks.remove(id);
-    if (removedTask == null) {
-      return;
-    }
-    historyManager.remove(id);
-    removePrioritized(removedTask);
+    removeTask(id);
   }
 
   @Override
   public void deleteEpic(final int id) {
-    final Epic epic = epics.remove(id);
-    if (epic == null) {
-      return;
-    }
-    epic.getSubtasks().forEach(s -> {
-      subtasks.remove(s.getId());
-      historyManager.remove(s.getId());
-      removePrioritized(s);
-    });
-    historyManager.remove(id);
+    removeEpic(id);
   }
 
   @Override
   public void deleteSubtask(final int id) {
-    final Subtask subtask = subtasks.remove(id);
-    if (subtask == null) {
-      return;
-    }
-    final int epicId = subtask.getEpicId();
-    epics.get(epicId).removeSubtask(subtask);
-    historyManager.remove(id);
-    removePrioritized(subtask);
+    removeSubtask(id);
   }
 
   @Override
@@ -184,18 +165,66 @@ public class InMemoryTaskManager implements TaskManager {
         () -> new TaskNotFoundException("Epic with Id " + epicId + " was not found."));
   }
 
+  @Override
+  public TaskView getTaskView(final int id) {
+    final Task task = tasks.get(id);
+    if (task == null) {
+      throw new TaskNotFoundException("Task with Id " + id + " was not found.");
+    }
+    historyManager.add(task);
+    return task.view();
+  }
+
+  @Override
+  public EpicRecord getEpicView(final int id) {
+    final Epic epic = epics.get(id);
+    if (epic == null) {
+      throw new TaskNotFoundException("Epic with Id " + id + " was not found.");
+    }
+    historyManager.add(epic);
+    return epic.view();
+  }
+
+  @Override
+  public SubtaskRecord getSubtaskView(final int id) {
+    final Subtask subtask = subtasks.get(id);
+    if (subtask == null) {
+      throw new TaskNotFoundException("Subtask with Id " + id + " was not found.");
+    }
+    historyManager.add(subtask);
+    return subtask.view();
+  }
+
+  @Override
+  public List<TaskView> getTaskViews() {
+    return tasks.values().stream().map(Task::view).toList();
+  }
+
+  @Override
+  public List<EpicRecord> getEpicViews() {
+    return epics.values().stream().map(Epic::view).toList();
+  }
+
+  @Override
+  public List<SubtaskRecord> getSubtaskViews() {
+    return subtasks.values().stream().map(Subtask::view).toList();
+  }
+
   @Override
   public Task addTask(final Task task) throws TaskPrioritizationException {
     task.setId(generateId());
-    addPrioritized(task);
-    tasks.put(task.getId(), task.copy());
+    final Task taskToAdd = task.copy();
+    addPrioritized(taskToAdd);
+    tasks.put(task.getId(), taskToAdd);
     return task;
   }
 
   @Override
   public Epic addEpic(final Epic epic) {
     epic.setId(generateId());
-    epics.put(epic.getId(), epic.copy());
+    final Epic epicToAdd = epic.copy();
+    epicToAdd.clearSubtasks();
+    epics.put(epic.getId(), epicToAdd);
     final Set<Subtask> subtasksFromNewEpic = new HashSet<>(epic.getSubtasks());
     epic.clearSubtasks();
     subtasksFromNewEpic.forEach(s -> {
@@ -213,7 +242,7 @@ public class InMemoryTaskManager implements TaskManager {
     }
     subtask.setId(generateId());
     Subtask subtaskToAdd = subtask.copy();
-    addPrioritized(subtask);
+    addPrioritized(subtaskToAdd);
     epics.get(epicId).addSubtask(subtaskToAdd);
     subtasks.put(subtask.getId(), subtaskToAdd);
     return subtask;
@@ -228,8 +257,9 @@ public class InMemoryTaskManager implements TaskManager {
           "The task " + taskToUpdate + "does not exist in the TaskManager");
     }
     removePrioritized(taskInMemory);
-    addPrioritized(taskToUpdate.copy());
-    tasks.put(taskToUpdate.getId(), taskToUpdate.copy());
+    final Task updatedTask = taskToUpdate.copy();
+    addPrioritized(updatedTask);
+    tasks.put(taskToUpdate.getId(), updatedTask);
   }
 
   /**
@@ -265,8 +295,141 @@ public class InMemoryTaskManager implements TaskManager {
     epics.get(subtask.getEpicId()).updateSubtask(subtaskToUpdate);
   }
 
+  /**
+   * Puts a task read from a snapshot or a journal record, replacing the previous version of it. An
+   * epic keeps its subtasks, only its title and description are replaced. The time conflicts are
+   * not checked: the tasks were checked when they were added.
+   * <p>
+   * A subtask of a missing epic is not put. A journal may be replayed over a snapshot which already
+   * has the epic removed, so its records skip such a subtask; a snapshot holds every epic before
+   * its subtasks, so its reader treats such a subtask as damage.
+   *
+   * @return {@code false} if the task is a subtask of a missing epic and has not been put
+   */
+  protected boolean applyPut(final Task task) {
+    switch (task.getType()) {
+      case TASK -> reprioritize(tasks.put(task.getId(), task), task);
+      case EPIC -> {
+        final Epic epic = epics.get(task.getId());
+        if (epic != null) {
+          epic.setTitle(task.getTitle());
+          epic.setDescription(task.getDescription());
+        } else {
+          epics.put(task.getId(), (Epic) task);
+        }
+      }
+      case SUBTASK -> {
+        final Subtask subtask = (Subtask) task;
+        final Epic epic = epics.get(subtask.getEpicId());
+        if (epic == null) {
+          return false;
+        }
+        reprioritize(subtasks.put(subtask.getId(), subtask), subtask);
+        epic.removeSubtask(subtask);
+        epic.addSubtask(subtask);
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Deletes the task, epic or subtask of a journal record. A missing id is ignored, the record may
+   * be replayed over a state which already has it deleted.
+   */
+  protected void applyDelete(final int id) {
+    if (tasks.containsKey(id)) {
+      removeTask(id);
+    } else if (epics.containsKey(id)) {
+      removeEpic(id);
+    } else if (subtasks.containsKey(id)) {
+      removeSubtask(id);
+    }
+  }
+
+  /**
+   * Clears the tasks of the type of a journal record.
+   */
+  protected void applyClear(final TaskType type) {
+    switch (type) {
+      case TASK -> removeAllTasks();
+      case EPIC -> removeAllEpics();
+      case SUBTASK -> removeAllSubtasks();
+    }
+  }
+
+  /**
+   * Replaces the {@code previous} version of a task put by {@link #applyPut(Task)} with the new one
+   * in the {@link #prioritizedTasks}.
+   */
+  protected void reprioritize(final Task previous, final Task task) {
+    removePrioritized(previous);
+    if (task.getStartTime() != null) {
+      prioritizedTasks.add(task);
+    }
+  }
+
+  private void removeAllTasks() {
+    tasks.values().forEach(t -> {
+      historyManager.remove(t.getId());
+      removePrioritized(t);
+    });
+    tasks.clear();
+  }
+
+  private void removeAllEpics() {
+    subtasks.values().forEach(st -> {
+      historyManager.remove(st.getId());
+      removePrioritized(st);
+    });
+    epics.keySet().forEach(historyManager::remove);
+    subtasks.clear();
+    epics.clear();
+  }
+
+  private void removeAllSubtasks() {
+    epics.values().forEach(Epic::clearSubtasks);
+    subtasks.values().forEach(st -> {
+      historyManager.remove(st.getId());
+      removePrioritized(st);
+    });
+    subtasks.clear();
+  }
+
+  private void removeTask(final int id) {
+    Task removedTask = tasks.remove(id);
+    if (removedTask == null) {
+      return;
+    }
+    historyManager.remove(id);
+    removePrioritized(removedTask);
+  }
+
+  private void removeEpic(final int id) {
+    final Epic epic = epics.remove(id);
+    if (epic == null) {
+      return;
+    }
+    epic.getSubtasks().forEach(s -> {
+      subtasks.remove(s.getId());
+      historyManager.remove(s.getId());
+      removePrioritized(s);
+    });
+    historyManager.remove(id);
+  }
+
+  private void removeSubtask(final int id) {
+    final Subtask subtask = subtasks.remove(id);
+    if (subtask == null) {
+      return;
+    }
+    final int epicId = subtask.getEpicId();
+    epics.get(epicId).removeSubtask(subtask);
+    historyManager.remove(id);
+    removePrioritized(subtask);
+  }
+
   private int generateId() {
-    return ++counter;
+    return ids.nextIntId();
   }
 
   /**
@@ -299,25 +462,15 @@ public class InMemoryTaskManager implements TaskManager {
     if (taskToCheck.getStartTime() == null) {
       return false;
     }
-    final Task floor = ((TreeSet<Task>) prioritizedTasks).floor(taskToCheck);
-    final Task ceiling = ((TreeSet<Task>) prioritizedTasks).ceiling(taskToCheck);
-
-    if (hasTimeConflict(taskToCheck, floor)) {
+    final Task conflict = prioritizedTasks.firstOverlapping(taskToCheck.getStartTime(),
+        taskToCheck.getEndTime());
+    if (conflict != null) {
       throw new TaskPrioritizationException(
-          "Task has time conflict with existing task with ID " + floor.getId());
-    }
-    if (hasTimeConflict(taskToCheck, ceiling)) {
-      throw new TaskPrioritizationException(
-          "Task has time conflict with existing task with ID " + ceiling.getId());
+          "Task has time conflict with existing task with ID " + conflict.getId());
     }
     return true;
   }
 
-  private boolean hasTimeConflict(final Task task1, final Task task2) {
-    return task2 != null && task1.getStartTime().isBefore(task2.getEndTime()) &&
-        task1.getEndTime().isAfter(task2.getStartTime());
-  }
-
   private void removePrioritized(Task task) {
     if (task != null && task.getStartTime() != null) {
       prioritizedTasks.remove(task);
@@ -0,0 +1,480 @@
+package ru.yandex.practicum.tasktracker.service;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.AbstractSet;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.ConcurrentModificationException;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import ru.yandex.practicum.tasktracker.model.Task;
+
+/**
+ * Index of the prioritized tasks: an interval tree of the time the tasks take.
+ * <p>
+ * The tasks are kept in an AVL tree ordered by the start time and then by the id, see
+ * {@link #ORDER}, so tasks starting at the same time are different entries. Every node also keeps
+ * the latest end time of its subtree, which lets a search skip the subtrees ending before the
+ * window it looks at. So {@link #firstOverlapping(LocalDateTime, LocalDateTime)} finds a time
+ * conflict on one path from the root in O(log n), and
+ * {@link #overlapping(LocalDateTime, LocalDateTime)} and {@link #containing(LocalDateTime)} return
+ * the k tasks found in O(log n + k) for tasks that do not overlap each other, as the prioritized
+ * tasks do. A node keeps the longest free gap between the tasks of its subtree as well, rounded
+ * up to whole seconds, so {@link #firstGap(LocalDateTime, Duration)} skips every subtree without
+ * room for a task and finds a free slot in O(log n) for such tasks too.
+ * <p>
+ * A task is a half-open interval from its start time to its end time. The index keeps the start and
+ * the end time a task had when it was added, so a task has to be removed and added again to move
+ * it. Iterating the index gives the tasks in their order. The index is not synchronized.
+ *
+ * @see InMemoryTaskManager#getPrioritizedTasks()
+ */
+final class IntervalIndex extends AbstractSet<Task> {
+
+  /**
+   * The order of the tasks in the index: by the start time, then by the id.
+   */
+  static final Comparator<Task> ORDER = Comparator.comparing(Task::getStartTime)
+      .thenComparingInt(Task::getId);
+  private Node root;
+  private int size;
+  private int modCount;
+  private boolean changed;
+  private LocalDateTime gapStart;
+
+  @Override
+  public int size() {
+    return size;
+  }
+
+  /**
+   * Adds the task, unless a task with the same start time and id is in the index already.
+   *
+   * @throws NullPointerException if the task has no start time
+   */
+  @Override
+  public boolean add(final Task task) {
+    Objects.requireNonNull(task.getStartTime(), "The task has no start time.");
+    changed = false;
+    root = insert(root, task);
+    if (changed) {
+      size++;
+      modCount++;
+    }
+    return changed;
+  }
+
+  @Override
+  public boolean remove(final Object o) {
+    if (!(o instanceof Task task) || task.getStartTime() == null) {
+      return false;
+    }
+    return removeKey(task.getStartTime(), task.getId());
+  }
+
+  @Override
+  public boolean contains(final Object o) {
+    if (!(o instanceof Task task) || task.getStartTime() == null) {
+      return false;
+    }
+    Node node = root;
+    while (node != null) {
+      final int cmp = compare(task.getStartTime(), task.getId(), node);
+      if (cmp == 0) {
+        return true;
+      }
+      node = cmp < 0 ? node.left : node.right;
+    }
+    return false;
+  }
+
+  @Override
+  public void clear() {
+    root = null;
+    size = 0;
+    modCount++;
+  }
+
+  @Override
+  public Iterator<Task> iterator() {
+    return new InOrderIterator();
+  }
+
+  /**
+   * Replaces the tasks of the index with the given ones in linear time, building the tree without
+   * searching for the place of every task.
+   *
+   * @param sorted the tasks with a start time, sorted by {@link #ORDER} without duplicates
+   */
+  void rebuild(final List<Task> sorted) {
+    root = build(sorted, 0, sorted.size());
+    size = sorted.size();
+    modCount++;
+  }
+
+  /**
+   * Returns the first task in the order that overlaps the window from {@code from} inclusive to
+   * {@code to} exclusive, or {@code null} if there is none.
+   */
+  Task firstOverlapping(final LocalDateTime from, final LocalDateTime to) {
+    Node node = root;
+    while (node != null && node.maxEnd.isAfter(from)) {
+      /* A left subtree ending after the window start holds a task starting no later than the
+         node. If that task does not overlap, neither do the node and the right subtree. */
+      if (node.left != null && node.left.maxEnd.isAfter(from)) {
+        node = node.left;
+        continue;
+      }
+      if (!node.start.isBefore(to)) {
+        return null;
+      }
+      if (node.end.isAfter(from)) {
+        return node.task;
+      }
+      node = node.right;
+    }
+    return null;
+  }
+
+  /**
+   * Returns the tasks overlapping the window from {@code from} inclusive to {@code to} exclusive,
+   * in their order. A task taking no time overlaps the window if it starts in it.
+   */
+  List<Task> overlapping(final LocalDateTime from, final LocalDateTime to) {
+    final List<Task> result = new ArrayList<>();
+    collect(root, from, to, false, null, Integer.MAX_VALUE, result);
+    return result;
+  }
+
+  /**
+   * Returns the tasks going on at the {@code time}: started at it or before and ending after it.
+   */
+  List<Task> containing(final LocalDateTime time) {
+    final List<Task> result = new ArrayList<>();
+    collect(root, time, time, true, null, Integer.MAX_VALUE, result);
+    return result;
+  }
+
+  /**
+   * Returns the page of the tasks overlapping the window. The subtrees before the cursor are
+   * skipped and the search stops at the limit, so a page costs O(log n + limit) for tasks that do
+   * not overlap each other.
+   */
+  List<Task> page(final ScheduleWindow window) {
+    final List<Task> result = new ArrayList<>(Math.min(window.limit(), 64));
+    collect(root, window.start(), window.end(), false, window.after(), window.limit(), result);
+    return result;
+  }
+
+  /**
+   * Returns the earliest time at or after {@code after} from which a task of the {@code duration}
+   * overlaps no task of the index.
+   *
+   * @throws IllegalArgumentException if the duration is negative
+   */
+  LocalDateTime firstGap(final LocalDateTime after, final Duration duration) {
+    Objects.requireNonNull(after, "The time to search after is null.");
+    if (duration.isNegative()) {
+      throw new IllegalArgumentException("Duration cannot be negative.");
+    }
+    gapStart = after;
+    final long seconds = duration.getSeconds() + (duration.getNano() > 0 ? 1 : 0);
+    final LocalDateTime slot = findGap(root, duration, seconds);
+    return slot != null ? slot : gapStart;
+  }
+
+  private boolean removeKey(final LocalDateTime start, final int id) {
+    changed = false;
+    root = delete(root, start, id);
+    if (changed) {
+      size--;
+      modCount++;
+    }
+    return changed;
+  }
+
+  private void collect(final Node node, final LocalDateTime from, final LocalDateTime to,
+      final boolean closedTo, final ScheduleWindow.Cursor after, final int limit,
+      final List<Task> result) {
+    if (node == null || result.size() == limit || node.maxEnd.isBefore(from)
+        || closedTo && node.maxEnd.equals(from)) {
+      return;
+    }
+    final boolean afterCursor = after == null
+        || compare(after.startTime(), after.id(), node) < 0;
+    if (afterCursor) {
+      collect(node.left, from, to, closedTo, after, limit, result);
+    }
+    if (result.size() == limit || (closedTo ? node.start.isAfter(to) : !node.start.isBefore(to))) {
+      return;
+    }
+    if (afterCursor && (node.end.isAfter(from) || !closedTo && node.start.equals(from))) {
+      result.add(node.task);
+    }
+    collect(node.right, from, to, closedTo, after, limit, result);
+  }
+
+  /**
+   * Searches the subtree for the first gap of the {@code duration} starting at the
+   * {@link #gapStart} or later. The {@link #gapStart} is the earliest time no task before the
+   * subtree takes, it is moved past the subtree if the gap is not there. A subtree is skipped when
+   * its longest gap is shorter than the {@code seconds}, the duration rounded up.
+   */
+  private LocalDateTime findGap(final Node node, final Duration duration, final long seconds) {
+    if (node == null || !node.maxEnd.isAfter(gapStart)) {
+      return null;
+    }
+    if (!node.minStart.isBefore(gapStart) && !fits(gapStart, node.minStart, duration)
+        && node.maxGapSeconds < seconds) {
+      gapStart = node.maxEnd;
+      return null;
+    }
+    final LocalDateTime slot = findGap(node.left, duration, seconds);
+    if (slot != null) {
+      return slot;
+    }
+    if (fits(gapStart, node.start, duration)) {
+      return gapStart;
+    }
+    if (node.end.isAfter(gapStart)) {
+      gapStart = node.end;
+    }
+    return findGap(node.right, duration, seconds);
+  }
+
+  private static boolean fits(final LocalDateTime from, final LocalDateTime to,
+      final Duration duration) {
+    return !from.plus(duration).isAfter(to);
+  }
+
+  private Node insert(final Node node, final Task task) {
+    if (node == null) {
+      changed = true;
+      return new Node(task);
+    }
+    final int cmp = compare(task.getStartTime(), task.getId(), node);
+    if (cmp < 0) {
+      node.left = insert(node.left, task);
+    } else if (cmp > 0) {
+      node.right = insert(node.right, task);
+    } else {
+      return node;
+    }
+    return balance(node);
+  }
+
+  private Node delete(final Node node, final LocalDateTime start, final int id) {
+    if (node == null) {
+      return null;
+    }
+    final int cmp = compare(start, id, node);
+    if (cmp < 0) {
+      node.left = delete(node.left, start, id);
+    } else if (cmp > 0) {
+      node.right = delete(node.right, start, id);
+    } else {
+      changed = true;
+      if (node.left == null || node.right == null) {
+        return node.left != null ? node.left : node.right;
+      }
+      Node successor = node.right;
+      while (successor.left != null) {
+        successor = successor.left;
+      }
+      node.right = deleteFirst(node.right);
+      successor.left = node.left;
+      successor.right = node.right;
+      return balance(successor);
+    }
+    return balance(node);
+  }
+
+  private Node deleteFirst(final Node node) {
+    if (node.left == null) {
+      return node.right;
+    }
+    node.left = deleteFirst(node.left);
+    return balance(node);
+  }
+
+  private static Node build(final List<Task> sorted, final int from, final int to) {
+    if (from == to) {
+      return null;
+    }
+    final int middle = (from + to) >>> 1;
+    final Node node = new Node(sorted.get(middle));
+    node.left = build(sorted, from, middle);
+    node.right = build(sorted, middle + 1, to);
+    update(node);
+    return node;
+  }
+
+  private static int compare(final LocalDateTime start, final int id, final Node node) {
+    final int cmp = start.compareTo(node.start);
+    return cmp != 0 ? cmp : Integer.compare(id, node.task.getId());
+  }
+
+  private static Node balance(final Node node) {
+    update(node);
+    final int factor = height(node.left) - height(node.right);
+    if (factor > 1) {
+      if (height(node.left.left) < height(node.left.right)) {
+        node.left = rotateLeft(node.left);
+      }
+      return rotateRight(node);
+    }
+    if (factor < -1) {
+      if (height(node.right.right) < height(node.right.left)) {
+        node.right = rotateRight(node.right);
+      }
+      return rotateLeft(node);
+    }
+    return node;
+  }
+
+  private static Node rotateRight(final Node node) {
+    final Node left = node.left;
+    node.left = left.right;
+    left.right = node;
+    update(node);
+    update(left);
+    return left;
+  }
+
+  private static Node rotateLeft(final Node node) {
+    final Node right = node.right;
+    node.right = right.left;
+    right.left = node;
+    update(node);
+    update(right);
+    return right;
+  }
+
+  private static void update(final Node node) {
+    node.height = 1 + Math.max(height(node.left), height(node.right));
+    node.minStart = node.left != null ? node.left.minStart : node.start;
+    node.minStartCeil = node.left != null ? node.left.minStartCeil : node.startCeil;
+    LocalDateTime maxEnd = node.end;
+    long maxEndFloor = node.endFloor;
+    long maxGap = 0;
+    if (node.left != null) {
+      maxGap = Math.max(node.left.maxGapSeconds, node.startCeil - node.left.maxEndFloor);
+      if (node.left.maxEnd.isAfter(maxEnd)) {
+        maxEnd = node.left.maxEnd;
+      }
+      maxEndFloor = Math.max(maxEndFloor, node.left.maxEndFloor);
+    }
+    if (node.right != null) {
+      maxGap = Math.max(Math.max(maxGap, node.right.maxGapSeconds),
+          node.right.minStartCeil - maxEndFloor);
+      if (node.right.maxEnd.isAfter(maxEnd)) {
+        maxEnd = node.right.maxEnd;
+      }
+      maxEndFloor = Math.max(maxEndFloor, node.right.maxEndFloor);
+    }
+    node.maxEnd = maxEnd;
+    node.maxEndFloor = maxEndFloor;
+    node.maxGapSeconds = maxGap;
+  }
+
+  private static int height(final Node node) {
+    return node == null ? 0 : node.height;
+  }
+
+  private static final class Node {
+
+    private final Task task;
+    private final LocalDateTime start;
+    private final LocalDateTime end;
+    private final long startCeil;
+    private final long endFloor;
+    private LocalDateTime minStart;
+    private LocalDateTime maxEnd;
+    private long minStartCeil;
+    private long maxEndFloor;
+    private long maxGapSeconds;
+    private Node left;
+    private Node right;
+    private int height = 1;
+
+    private Node(final Task task) {
+      this.task = task;
+      this.start = task.getStartTime();
+      this.end = task.getEndTime();
+      this.startCeil = start.toEpochSecond(ZoneOffset.UTC) + (start.getNano() > 0 ? 1 : 0);
+      this.endFloor = end.toEpochSecond(ZoneOffset.UTC);
+      this.minStart = start;
+      this.maxEnd = end;
+      this.minStartCeil = startCeil;
+      this.maxEndFloor = endFloor;
+    }
+  }
+
+  /**
+   * Iterator of the tasks in their order. Removing a task through the iterator finds the next one
+   * again from the root.
+   */
+  private final class InOrderIterator implements Iterator<Task> {
+
+    private final Deque<Node> path = new ArrayDeque<>();
+    private Node last;
+    private int expectedModCount = modCount;
+
+    private InOrderIterator() {
+      pushLeft(root);
+    }
+
+    @Override
+    public boolean hasNext() {
+      return !path.isEmpty();
+    }
+
+    @Override
+    public Task next() {
+      if (expectedModCount != modCount) {
+        throw new ConcurrentModificationException();
+      }
+      if (path.isEmpty()) {
+        throw new NoSuchElementException();
+      }
+      last = path.pop();
+      pushLeft(last.right);
+      return last.task;
+    }
+
+    @Override
+    public void remove() {
+      if (last == null) {
+        throw new IllegalStateException();
+      }
+      if (expectedModCount != modCount) {
+        throw new ConcurrentModificationException();
+      }
+      removeKey(last.start, last.task.getId());
+      expectedModCount = modCount;
+      path.clear();
+      Node node = root;
+      while (node != null) {
+        if (compare(last.start, last.task.getId(), node) < 0) {
+          path.push(node);
+          node = node.left;
+        } else {
+          node = node.right;
+        }
+      }
+      last = null;
+    }
+
+    private void pushLeft(final Node from) {
+      for (Node node = from; node != null; node = node.left) {
+        path.push(node);
+      }
+    }
+  }
+}
@@ -7,11 +7,14 @@ import java.time.Duration;
 import java.time.LocalDateTime;
 import ru.yandex.practicum.tasktracker.server.adapter.DurationAdapter;
 import ru.yandex.practicum.tasktracker.server.adapter.LocaleDateTimeAdapter;
+import ru.yandex.practicum.tasktracker.server.adapter.TaskAdapterFactory;
 
 /**
  * Utility class, is used for getting default implementations of various managers. Provides methods
- * to retrieve default instances of {@link TaskManager}, {@link HistoryManager}, and create
- * {@link FileBackedTaskManager} instances from the specified file.
+ * to retrieve default instances of {@link TaskManager}, {@link HistoryManager}, the
+ * {@link ConcurrentTaskManager}, and create
+ * {@link FileBackedTaskManager}, {@link FollowerTaskManager} and {@link BTreeTaskManager} instances
+ * from the specified file.
  */
 
 public class Managers {
@@ -24,18 +27,52 @@ public class Managers {
     return new InMemoryTaskManager();
   }
 
+  /**
+   * Returns the thread-safe {@link ConcurrentTaskManager}, for a server that handles requests on
+   * several threads.
+   */
+  public static TaskManager getConcurrentTaskManager() {
+    return new ConcurrentTaskManager();
+  }
+
   public static HistoryManager getDefaultHistory() {
     return new InMemoryHistoryManager();
   }
 
+  /**
+   * Returns the {@link FileBackedTaskManager} configured by the system properties, see
+   * {@link StorageConfig#fromProperties(java.util.Properties)}.
+   */
   public static TaskManager getFileBackedTaskManager(final File file) {
-    return FileBackedTaskManager.loadFromFile(file);
+    return FileBackedTaskManager.loadFromFile(file,
+        StorageConfig.fromProperties(System.getProperties()));
+  }
+
+  public static TaskManager getFileBackedTaskManager(final File file, final StorageConfig config) {
+    return FileBackedTaskManager.loadFromFile(file, config);
+  }
+
+  /**
+   * Returns the read-only {@link FollowerTaskManager} of the files of a
+   * {@link FileBackedTaskManager} configured by the same system properties.
+   */
+  public static TaskManager getFollowerTaskManager(final File file) {
+    return FollowerTaskManager.follow(file, StorageConfig.fromProperties(System.getProperties()));
+  }
+
+  /**
+   * Returns the {@link BTreeTaskManager}, which keeps the tasks on disk and only a bounded cache of
+   * them in the heap.
+   */
+  public static TaskManager getBTreeTaskManager(final File file) {
+    return BTreeTaskManager.open(file);
   }
 
   public static Gson getGson() {
     GsonBuilder gsonBuilder = new GsonBuilder();
     gsonBuilder.registerTypeAdapter(LocalDateTime.class, new LocaleDateTimeAdapter())
         .registerTypeAdapter(Duration.class, new DurationAdapter())
+        .registerTypeAdapterFactory(new TaskAdapterFactory())
         .serializeNulls();
     return gsonBuilder.create();
   }
@@ -0,0 +1,137 @@
+package ru.yandex.practicum.tasktracker.service;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.AbstractCollection;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import ru.yandex.practicum.tasktracker.model.Epic;
+import ru.yandex.practicum.tasktracker.model.Task;
+
+/**
+ * Backup of the state of a {@link FileBackedTaskManager} as of the moment it was started, written
+ * while the manager keeps accepting modifications.
+ * <p>
+ * The manager hands over the references to its tasks and the viewed tasks, which costs one pass
+ * over the references under the lock of the manager. The tasks and subtasks are never changed in
+ * place by the manager, an update stores a new copy, so the references keep their state. An epic
+ * is changed in place, by an update and by a change of its subtasks, so the manager calls
+ * {@link #preserve(Epic)} before it changes an epic: the epic is copied unless it has already been
+ * written or copied. The backup writes the copy if there is one and a copy taken at the moment of
+ * writing otherwise, so every change of an epic costs at most one copy per running backup.
+ * <p>
+ * The backup is written in a {@link SnapshotFormat} of a single file, so it can be loaded as the
+ * file of a manager.
+ *
+ * @see BackupReport
+ */
+final class OnlineBackup {
+
+  private final List<Task> tasks;
+  private final List<Task> history;
+  private final Map<Integer, Epic> preImages = new HashMap<>();
+  private final Set<Integer> writtenEpics = new HashSet<>();
+
+  /**
+   * Creates the backup of the {@code tasks}, epics before subtasks, and the {@code history}, which
+   * must not be changed afterwards.
+   */
+  OnlineBackup(final List<Task> tasks, final List<Task> history) {
+    this.tasks = tasks;
+    this.history = history;
+  }
+
+  /**
+   * Keeps the state of the epic, which is about to be changed, unless it has been written already.
+   */
+  synchronized void preserve(final Epic epic) {
+    if (epic != null && !writtenEpics.contains(epic.getId())
+        && !preImages.containsKey(epic.getId())) {
+      preImages.put(epic.getId(), epic.copy());
+    }
+  }
+
+  /**
+   * Writes the backup to the {@code out} in the CSV or binary {@code format} and flushes it.
+   */
+  BackupReport writeTo(final OutputStream out, final SnapshotFormat format) throws IOException {
+    final long start = System.nanoTime();
+    final CountingOutputStream countingOut = new CountingOutputStream(out);
+    if (format == SnapshotFormat.BINARY) {
+      BinarySnapshot.write(countingOut, resolvedTasks(), history);
+    } else if (format == SnapshotFormat.CSV) {
+      CsvSnapshot.write(countingOut, resolvedTasks(), history);
+    } else {
+      throw new IllegalArgumentException("A backup can not be written in the format " + format);
+    }
+    return BackupReport.of(countingOut.count, tasks.size(), System.nanoTime() - start);
+  }
+
+  /**
+   * Returns the tasks in the state they had when the backup was started, resolved one by one
+   * while they are written.
+   */
+  private Collection<Task> resolvedTasks() {
+    return new AbstractCollection<>() {
+      @Override
+      public Iterator<Task> iterator() {
+        final Iterator<Task> iterator = tasks.iterator();
+        return new Iterator<>() {
+          @Override
+          public boolean hasNext() {
+            return iterator.hasNext();
+          }
+
+          @Override
+          public Task next() {
+            return resolve(iterator.next());
+          }
+        };
+      }
+
+      @Override
+      public int size() {
+        return tasks.size();
+      }
+    };
+  }
+
+  /**
+   * Returns the task in the state it had when the backup was started.
+   */
+  private synchronized Task resolve(final Task task) {
+    if (!(task instanceof Epic epic)) {
+      return task;
+    }
+    writtenEpics.add(epic.getId());
+    final Epic preImage = preImages.remove(epic.getId());
+    return preImage != null ? preImage : epic.copy();
+  }
+
+  private static final class CountingOutputStream extends FilterOutputStream {
+
+    private long count;
+
+    private CountingOutputStream(final OutputStream out) {
+      super(out);
+    }
+
+    @Override
+    public void write(final int b) throws IOException {
+      out.write(b);
+      count++;
+    }
+
+    @Override
+    public void write(final byte[] b, final int off, final int len) throws IOException {
+      out.write(b, off, len);
+      count += len;
+    }
+  }
+}
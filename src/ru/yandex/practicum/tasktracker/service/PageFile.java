@@ -0,0 +1,263 @@
+package ru.yandex.practicum.tasktracker.service;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.TreeSet;
+import java.util.zip.CRC32C;
+import ru.yandex.practicum.tasktracker.exception.ManagerLoadException;
+
+/**
+ * File of fixed-size pages, which are read and written individually.
+ * <p>
+ * Page {@code 0} is the header of the file. Every page starts with the CRC32C checksum of the rest
+ * of the page and the page type; the owner stores its content after {@link #PAGE_HEADER_SIZE}
+ * bytes. A page of the {@link #FREE_PAGE} type is unused and is handed out again by
+ * {@link #allocate} before the file grows.
+ * <p>
+ * A group of pages is written in place only after it has been written to the double-write file
+ * next to the page file (with the {@code .dwb} suffix), so a crash in the middle of writing never
+ * leaves a torn page behind: {@link #open} copies the pages of a complete double-write file in
+ * place again and discards an incomplete one.
+ *
+ * @see PagedTaskStore
+ */
+final class PageFile implements Closeable {
+
+  static final int PAGE_SIZE = 4096;
+  static final int PAGE_HEADER_SIZE = 8;
+  static final byte FREE_PAGE = 0;
+  private static final byte HEADER_PAGE = 127;
+  private static final int MAGIC = 0x544B5047;
+  private static final int VERSION = 1;
+  private static final int TYPE_OFFSET = 4;
+  private static final String DOUBLE_WRITE_SUFFIX = ".dwb";
+  private final File file;
+  private final FileChannel channel;
+  private final Path doubleWritePath;
+  private final NavigableSet<Integer> freePages = new TreeSet<>();
+  private int pageCount;
+
+  private PageFile(final File file, final FileChannel channel) {
+    this.file = file;
+    this.channel = channel;
+    this.doubleWritePath = Path.of(file.getPath() + DOUBLE_WRITE_SUFFIX);
+  }
+
+  /**
+   * Opens the page file, creating it if it is empty, and passes every used page except the header
+   * to the {@code visitor} in the order of the page numbers.
+   *
+   * @throws ManagerLoadException if the file is not a page file or a page is damaged
+   */
+  static PageFile open(final File file, final PageVisitor visitor) throws IOException {
+    final FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ,
+        StandardOpenOption.WRITE, StandardOpenOption.CREATE);
+    final PageFile pageFile = new PageFile(file, channel);
+    try {
+      pageFile.recoverDoubleWrite();
+      pageFile.load(visitor);
+    } catch (IOException | RuntimeException e) {
+      channel.close();
+      throw e;
+    }
+    return pageFile;
+  }
+
+  int pageCount() {
+    return pageCount;
+  }
+
+  /**
+   * Returns an empty page of the given type, reusing a free page if there is one. The page is
+   * stored only by {@link #write}.
+   */
+  Page allocate(final byte type) {
+    final Integer free = freePages.pollFirst();
+    final Page page = new Page(free == null ? pageCount++ : free, ByteBuffer.allocate(PAGE_SIZE));
+    page.buffer().put(TYPE_OFFSET, type);
+    return page;
+  }
+
+  /**
+   * Marks the page as free. The page is stored only by {@link #write}.
+   */
+  void free(final Page page) {
+    Arrays.fill(page.buffer().array(), (byte) 0);
+    freePages.add(page.number());
+  }
+
+  /**
+   * Reads the page with the given number.
+   *
+   * @throws ManagerLoadException if the page is damaged
+   */
+  Page read(final int number) throws IOException {
+    final ByteBuffer buffer = ByteBuffer.allocate(PAGE_SIZE);
+    readFully(channel, buffer, (long) number * PAGE_SIZE);
+    final Page page = new Page(number, buffer.clear());
+    verify(page);
+    return page;
+  }
+
+  /**
+   * Writes the pages as one group: first to the double-write file and then in place.
+   */
+  void write(final Map<Integer, Page> pages, final Durability durability) throws IOException {
+    if (pages.isEmpty()) {
+      return;
+    }
+    pages.values().forEach(PageFile::seal);
+    writeDoubleWrite(pages, durability);
+    for (Page page : pages.values()) {
+      writeFully(channel, page.buffer().duplicate().clear(), (long) page.number() * PAGE_SIZE);
+    }
+    if (durability == Durability.FSYNC) {
+      channel.force(false);
+    }
+    Files.delete(doubleWritePath);
+  }
+
+  @Override
+  public void close() throws IOException {
+    channel.close();
+  }
+
+  private void load(final PageVisitor visitor) throws IOException {
+    final long size = channel.size();
+    if (size == 0) {
+      final Page header = new Page(0, ByteBuffer.allocate(PAGE_SIZE));
+      header.buffer().put(TYPE_OFFSET, HEADER_PAGE)
+          .putInt(PAGE_HEADER_SIZE, MAGIC)
+          .putInt(PAGE_HEADER_SIZE + 4, VERSION)
+          .putInt(PAGE_HEADER_SIZE + 8, PAGE_SIZE);
+      pageCount = 1;
+      write(Map.of(0, header), Durability.FLUSH);
+      return;
+    }
+    if (size % PAGE_SIZE != 0) {
+      throw new ManagerLoadException("The page file is damaged: " + file);
+    }
+    pageCount = Math.toIntExact(size / PAGE_SIZE);
+    final ByteBuffer header = read(0).buffer();
+    if (header.getInt(PAGE_HEADER_SIZE) != MAGIC || header.getInt(PAGE_HEADER_SIZE + 4) != VERSION
+        || header.getInt(PAGE_HEADER_SIZE + 8) != PAGE_SIZE) {
+      throw new ManagerLoadException("The file is not a page file: " + file);
+    }
+    for (int number = 1; number < pageCount; number++) {
+      final Page page = read(number);
+      if (page.type() == FREE_PAGE) {
+        freePages.add(number);
+      } else {
+        visitor.visit(page);
+      }
+    }
+  }
+
+  /**
+   * Copies the pages of a complete double-write file in place. An incomplete double-write file
+   * means that the pages in place have not been touched yet.
+   */
+  private void recoverDoubleWrite() throws IOException {
+    if (!Files.exists(doubleWritePath)) {
+      return;
+    }
+    final ByteBuffer content = ByteBuffer.wrap(Files.readAllBytes(doubleWritePath));
+    final int entrySize = Integer.BYTES + PAGE_SIZE;
+    final int trailerSize = 2 * Integer.BYTES;
+    if (content.limit() >= trailerSize && (content.limit() - trailerSize) % entrySize == 0) {
+      final int count = (content.limit() - trailerSize) / entrySize;
+      final CRC32C crc = new CRC32C();
+      crc.update(content.duplicate().limit(content.limit() - Integer.BYTES));
+      if (content.getInt(content.limit() - trailerSize) == count
+          && content.getInt(content.limit() - Integer.BYTES) == (int) crc.getValue()) {
+        for (int i = 0; i < count; i++) {
+          final int number = content.getInt(i * entrySize);
+          final ByteBuffer page = content.duplicate()
+              .position(i * entrySize + Integer.BYTES)
+              .limit((i + 1) * entrySize);
+          writeFully(channel, page, (long) number * PAGE_SIZE);
+        }
+        channel.force(false);
+      }
+    }
+    Files.delete(doubleWritePath);
+  }
+
+  private void writeDoubleWrite(final Map<Integer, Page> pages, final Durability durability)
+      throws IOException {
+    final ByteBuffer content = ByteBuffer.allocate(
+        pages.size() * (Integer.BYTES + PAGE_SIZE) + 2 * Integer.BYTES);
+    for (Page page : pages.values()) {
+      content.putInt(page.number()).put(page.buffer().duplicate().clear());
+    }
+    content.putInt(pages.size());
+    final CRC32C crc = new CRC32C();
+    crc.update(content.duplicate().flip());
+    content.putInt((int) crc.getValue()).flip();
+    try (final FileChannel doubleWrite = FileChannel.open(doubleWritePath,
+        StandardOpenOption.WRITE, StandardOpenOption.CREATE,
+        StandardOpenOption.TRUNCATE_EXISTING)) {
+      writeFully(doubleWrite, content, 0);
+      if (durability == Durability.FSYNC) {
+        doubleWrite.force(false);
+      }
+    }
+  }
+
+  private void verify(final Page page) {
+    final CRC32C crc = new CRC32C();
+    crc.update(page.buffer().duplicate().position(TYPE_OFFSET));
+    if (page.buffer().getInt(0) != (int) crc.getValue()) {
+      throw new ManagerLoadException("The page " + page.number() + " is damaged: " + file);
+    }
+  }
+
+  private static void seal(final Page page) {
+    final CRC32C crc = new CRC32C();
+    crc.update(page.buffer().duplicate().clear().position(TYPE_OFFSET));
+    page.buffer().putInt(0, (int) crc.getValue());
+  }
+
+  private static void readFully(final FileChannel channel, final ByteBuffer buffer,
+      final long position) throws IOException {
+    while (buffer.hasRemaining()) {
+      if (channel.read(buffer, position + buffer.position()) < 0) {
+        throw new ManagerLoadException("The page file is truncated.");
+      }
+    }
+  }
+
+  private static void writeFully(final FileChannel channel, final ByteBuffer buffer,
+      final long position) throws IOException {
+    final int start = buffer.position();
+    while (buffer.hasRemaining()) {
+      channel.write(buffer, position + buffer.position() - start);
+    }
+  }
+
+  /**
+   * A page read from the file or allocated in it. The content starts after
+   * {@link #PAGE_HEADER_SIZE} bytes of the {@link #buffer()}.
+   */
+  record Page(int number, ByteBuffer buffer) {
+
+    byte type() {
+      return buffer.get(TYPE_OFFSET);
+    }
+  }
+
+  @FunctionalInterface
+  interface PageVisitor {
+
+    void visit(Page page) throws IOException;
+  }
+}
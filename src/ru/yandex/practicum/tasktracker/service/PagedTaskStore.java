@@ -0,0 +1,368 @@
+package ru.yandex.practicum.tasktracker.service;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.function.Consumer;
+import ru.yandex.practicum.tasktracker.model.Subtask;
+import ru.yandex.practicum.tasktracker.model.Task;
+import ru.yandex.practicum.tasktracker.service.PageFile.Page;
+
+/**
+ * Task records kept in the slotted pages of a {@link PageFile} and updated in place.
+ * <p>
+ * After the page header, a data page holds the number of slots, the start of the record area and
+ * the slot directory: the offset and the length of every record, the length is {@code 0} for a
+ * free slot. The records fill the page from its end. Every record starts with its kind: an inline
+ * record is followed by the record of the {@link BinarySnapshot}, a record that does not fit in a
+ * page is kept in a chain of overflow pages and its slot holds only the number of the first page
+ * and the length of the record.
+ * <p>
+ * The index of the slots by id and the free-space map are built from the pages on opening and
+ * are kept in memory. {@link #write} touches only the pages holding the changed records, and a
+ * record with the same bytes as the stored one is not written at all, so the cost of a write
+ * depends on the number of changes rather than on the number of tasks. A changed record stays in
+ * its slot while it fits, otherwise it moves to the page with the least free space that is enough
+ * for it.
+ *
+ * @see FileBackedTaskManager
+ */
+final class PagedTaskStore implements Closeable {
+
+  private static final byte DATA_PAGE = 1;
+  private static final byte OVERFLOW_PAGE = 2;
+  private static final int SLOT_COUNT_OFFSET = PageFile.PAGE_HEADER_SIZE;
+  private static final int DATA_START_OFFSET = SLOT_COUNT_OFFSET + Short.BYTES;
+  private static final int SLOTS_OFFSET = DATA_START_OFFSET + Short.BYTES;
+  private static final int SLOT_SIZE = 2 * Short.BYTES;
+  private static final int MAX_SLOT_LENGTH = PageFile.PAGE_SIZE - SLOTS_OFFSET - SLOT_SIZE;
+  private static final byte INLINE_RECORD = 0;
+  private static final byte OVERFLOW_RECORD = 1;
+  private static final int NEXT_PAGE_OFFSET = PageFile.PAGE_HEADER_SIZE;
+  private static final int CHUNK_LENGTH_OFFSET = NEXT_PAGE_OFFSET + Integer.BYTES;
+  private static final int CHUNK_OFFSET = CHUNK_LENGTH_OFFSET + Integer.BYTES;
+  private static final int CHUNK_CAPACITY = PageFile.PAGE_SIZE - CHUNK_OFFSET;
+  private static final int NO_PAGE = -1;
+
+  private final PageFile pageFile;
+  private final Map<Integer, Long> index = new HashMap<>();
+  private final Map<Integer, Integer> freeBytes = new HashMap<>();
+  private final NavigableSet<Long> freeSpace = new TreeSet<>();
+  private final ByteArrayOutputStream recordBytes = new ByteArrayOutputStream();
+  private final DataOutputStream recordOut = new DataOutputStream(recordBytes);
+
+  private PagedTaskStore(final PageFile pageFile) {
+    this.pageFile = pageFile;
+  }
+
+  /**
+   * Opens the store, creating it if the file is empty, and passes every stored task to the
+   * {@code taskAction}: the tasks and epics first, then the subtasks.
+   */
+  static PagedTaskStore open(final File file, final Consumer<Task> taskAction)
+      throws IOException {
+    final List<Task> tasksAndEpics = new ArrayList<>();
+    final List<Task> subtasks = new ArrayList<>();
+    final Map<Integer, Page> dataPages = new LinkedHashMap<>();
+    final PageFile pageFile = PageFile.open(file, page -> {
+      if (page.type() == DATA_PAGE) {
+        dataPages.put(page.number(), page);
+      }
+    });
+    final PagedTaskStore store = new PagedTaskStore(pageFile);
+    try {
+      for (Page page : dataPages.values()) {
+        for (int slot = 0; slot < slotCount(page); slot++) {
+          if (slotLength(page, slot) == 0) {
+            continue;
+          }
+          final Task task = store.readRecord(page, slot);
+          store.index.put(task.getId(), address(page.number(), slot));
+          (task instanceof Subtask ? subtasks : tasksAndEpics).add(task);
+        }
+        store.updateFreeSpace(page);
+      }
+    } catch (IOException | RuntimeException e) {
+      pageFile.close();
+      throw e;
+    }
+    tasksAndEpics.forEach(taskAction);
+    subtasks.forEach(taskAction);
+    return store;
+  }
+
+  /**
+   * Returns the ids of all stored tasks.
+   */
+  Set<Integer> ids() {
+    return index.keySet();
+  }
+
+  int pageCount() {
+    return pageFile.pageCount();
+  }
+
+  /**
+   * Stores the current state of the {@code puts} and removes the records of the {@code removals}.
+   *
+   * @return the number of written pages
+   */
+  int write(final Collection<? extends Task> puts, final Collection<Integer> removals,
+      final Durability durability) throws IOException {
+    final Map<Integer, Page> dirtyPages = new HashMap<>();
+    for (Integer id : removals) {
+      final Long address = index.remove(id);
+      if (address != null) {
+        removeRecord(page(pageOf(address), dirtyPages), slotOf(address), dirtyPages);
+      }
+    }
+    for (Task task : puts) {
+      put(task, dirtyPages);
+    }
+    pageFile.write(dirtyPages, durability);
+    return dirtyPages.size();
+  }
+
+  @Override
+  public void close() throws IOException {
+    pageFile.close();
+  }
+
+  private void put(final Task task, final Map<Integer, Page> dirtyPages) throws IOException {
+    final byte[] record = encode(task);
+    final Long address = index.get(task.getId());
+    if (address != null) {
+      final Page page = dirtyPages.containsKey(pageOf(address)) ? dirtyPages.get(pageOf(address))
+          : pageFile.read(pageOf(address));
+      final int slot = slotOf(address);
+      final int offset = slotOffset(page, slot);
+      final byte[] content = page.buffer().array();
+      if (content[offset] == INLINE_RECORD && record.length + 1 <= slotLength(page, slot)) {
+        if (record.length + 1 == slotLength(page, slot) && Arrays.equals(content, offset + 1,
+            offset + 1 + record.length, record, 0, record.length)) {
+          return;
+        }
+        System.arraycopy(record, 0, content, offset + 1, record.length);
+        setSlot(page, slot, offset, record.length + 1);
+        dirtyPages.put(page.number(), page);
+        updateFreeSpace(page);
+        return;
+      }
+      dirtyPages.put(page.number(), page);
+      removeRecord(page, slot, dirtyPages);
+    }
+    final byte[] slotContent;
+    if (record.length + 1 <= MAX_SLOT_LENGTH) {
+      slotContent = new byte[record.length + 1];
+      slotContent[0] = INLINE_RECORD;
+      System.arraycopy(record, 0, slotContent, 1, record.length);
+    } else {
+      slotContent = ByteBuffer.allocate(1 + 2 * Integer.BYTES)
+          .put(OVERFLOW_RECORD)
+          .putInt(writeChain(record, dirtyPages))
+          .putInt(record.length)
+          .array();
+    }
+    final Long candidate = freeSpace.ceiling((long) (slotContent.length + SLOT_SIZE) << 32);
+    final Page page = candidate == null ? newDataPage(dirtyPages)
+        : page((int) candidate.longValue(), dirtyPages);
+    index.put(task.getId(), address(page.number(), addRecord(page, slotContent)));
+    updateFreeSpace(page);
+  }
+
+  private byte[] encode(final Task task) throws IOException {
+    recordBytes.reset();
+    BinarySnapshot.writeTask(recordOut, task);
+    recordOut.flush();
+    return recordBytes.toByteArray();
+  }
+
+  private Task readRecord(final Page page, final int slot) throws IOException {
+    final int offset = slotOffset(page, slot);
+    final ByteBuffer buffer = page.buffer();
+    if (buffer.get(offset) == INLINE_RECORD) {
+      return BinarySnapshot.readTask(ByteBuffer.wrap(buffer.array(), offset + 1,
+          slotLength(page, slot) - 1));
+    }
+    final byte[] record = new byte[buffer.getInt(offset + 1 + Integer.BYTES)];
+    int position = 0;
+    int next = buffer.getInt(offset + 1);
+    while (next != NO_PAGE) {
+      final ByteBuffer chunk = pageFile.read(next).buffer();
+      final int length = chunk.getInt(CHUNK_LENGTH_OFFSET);
+      System.arraycopy(chunk.array(), CHUNK_OFFSET, record, position, length);
+      position += length;
+      next = chunk.getInt(NEXT_PAGE_OFFSET);
+    }
+    return BinarySnapshot.readTask(ByteBuffer.wrap(record));
+  }
+
+  /**
+   * Writes the record to a chain of overflow pages and returns the number of the first page.
+   */
+  private int writeChain(final byte[] record, final Map<Integer, Page> dirtyPages) {
+    final List<Page> chain = new ArrayList<>();
+    for (int position = 0; position < record.length; position += CHUNK_CAPACITY) {
+      final Page page = pageFile.allocate(OVERFLOW_PAGE);
+      final int length = Math.min(CHUNK_CAPACITY, record.length - position);
+      page.buffer().putInt(NEXT_PAGE_OFFSET, NO_PAGE).putInt(CHUNK_LENGTH_OFFSET, length);
+      System.arraycopy(record, position, page.buffer().array(), CHUNK_OFFSET, length);
+      if (!chain.isEmpty()) {
+        chain.get(chain.size() - 1).buffer().putInt(NEXT_PAGE_OFFSET, page.number());
+      }
+      chain.add(page);
+      dirtyPages.put(page.number(), page);
+    }
+    return chain.get(0).number();
+  }
+
+  private void removeRecord(final Page page, final int slot, final Map<Integer, Page> dirtyPages)
+      throws IOException {
+    final int offset = slotOffset(page, slot);
+    if (page.buffer().get(offset) == OVERFLOW_RECORD) {
+      int next = page.buffer().getInt(offset + 1);
+      while (next != NO_PAGE) {
+        final Page chunk = page(next, dirtyPages);
+        next = chunk.buffer().getInt(NEXT_PAGE_OFFSET);
+        pageFile.free(chunk);
+      }
+    }
+    setSlot(page, slot, 0, 0);
+    int count = slotCount(page);
+    while (count > 0 && slotLength(page, count - 1) == 0) {
+      count--;
+    }
+    page.buffer().putShort(SLOT_COUNT_OFFSET, (short) count);
+    if (count == 0) {
+      removeFreeSpace(page.number());
+      pageFile.free(page);
+    } else {
+      updateFreeSpace(page);
+    }
+  }
+
+  /**
+   * Puts the content into a free slot of the page, compacting the record area if the free space
+   * is fragmented, and returns the slot.
+   */
+  private int addRecord(final Page page, final byte[] content) {
+    final int count = slotCount(page);
+    int slot = 0;
+    while (slot < count && slotLength(page, slot) != 0) {
+      slot++;
+    }
+    final int slotsEnd = SLOTS_OFFSET + SLOT_SIZE * Math.max(count, slot + 1);
+    if (dataStart(page) - slotsEnd < content.length) {
+      compact(page);
+    }
+    final int offset = dataStart(page) - content.length;
+    System.arraycopy(content, 0, page.buffer().array(), offset, content.length);
+    page.buffer().putShort(DATA_START_OFFSET, (short) offset);
+    page.buffer().putShort(SLOT_COUNT_OFFSET, (short) Math.max(count, slot + 1));
+    setSlot(page, slot, offset, content.length);
+    return slot;
+  }
+
+  /**
+   * Moves the records of the page to its end, leaving the free space in one piece.
+   */
+  private void compact(final Page page) {
+    final byte[] content = page.buffer().array();
+    final byte[] copy = content.clone();
+    int dataStart = PageFile.PAGE_SIZE;
+    for (int slot = 0; slot < slotCount(page); slot++) {
+      final int length = slotLength(page, slot);
+      if (length != 0) {
+        dataStart -= length;
+        System.arraycopy(copy, slotOffset(page, slot), content, dataStart, length);
+        setSlot(page, slot, dataStart, length);
+      }
+    }
+    page.buffer().putShort(DATA_START_OFFSET, (short) dataStart);
+  }
+
+  private Page newDataPage(final Map<Integer, Page> dirtyPages) {
+    final Page page = pageFile.allocate(DATA_PAGE);
+    page.buffer().putShort(SLOT_COUNT_OFFSET, (short) 0)
+        .putShort(DATA_START_OFFSET, (short) PageFile.PAGE_SIZE);
+    dirtyPages.put(page.number(), page);
+    return page;
+  }
+
+  /**
+   * Returns the page to be changed, which is written by the current {@link #write}.
+   */
+  private Page page(final int number, final Map<Integer, Page> dirtyPages) throws IOException {
+    Page page = dirtyPages.get(number);
+    if (page == null) {
+      page = pageFile.read(number);
+      dirtyPages.put(number, page);
+    }
+    return page;
+  }
+
+  private void updateFreeSpace(final Page page) {
+    removeFreeSpace(page.number());
+    int live = 0;
+    for (int slot = 0; slot < slotCount(page); slot++) {
+      live += slotLength(page, slot);
+    }
+    final int free = PageFile.PAGE_SIZE - SLOTS_OFFSET - SLOT_SIZE * slotCount(page) - live;
+    freeBytes.put(page.number(), free);
+    freeSpace.add(((long) free << 32) | page.number());
+  }
+
+  private void removeFreeSpace(final int pageNumber) {
+    final Integer free = freeBytes.remove(pageNumber);
+    if (free != null) {
+      freeSpace.remove(((long) free << 32) | pageNumber);
+    }
+  }
+
+  private static int slotCount(final Page page) {
+    return page.buffer().getShort(SLOT_COUNT_OFFSET);
+  }
+
+  private static int dataStart(final Page page) {
+    return page.buffer().getShort(DATA_START_OFFSET);
+  }
+
+  private static int slotOffset(final Page page, final int slot) {
+    return page.buffer().getShort(SLOTS_OFFSET + SLOT_SIZE * slot);
+  }
+
+  private static int slotLength(final Page page, final int slot) {
+    return page.buffer().getShort(SLOTS_OFFSET + SLOT_SIZE * slot + Short.BYTES);
+  }
+
+  private static void setSlot(final Page page, final int slot, final int offset,
+      final int length) {
+    page.buffer().putShort(SLOTS_OFFSET + SLOT_SIZE * slot, (short) offset)
+        .putShort(SLOTS_OFFSET + SLOT_SIZE * slot + Short.BYTES, (short) length);
+  }
+
+  private static long address(final int page, final int slot) {
+    return ((long) page << 16) | slot;
+  }
+
+  private static int pageOf(final long address) {
+    return (int) (address >>> 16);
+  }
+
+  private static int slotOf(final long address) {
+    return (int) (address & 0xFFFF);
+  }
+}
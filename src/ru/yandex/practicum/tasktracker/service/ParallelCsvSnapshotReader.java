@@ -0,0 +1,309 @@
+package ru.yandex.practicum.tasktracker.service;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+import java.util.function.IntConsumer;
+import ru.yandex.practicum.tasktracker.model.Task;
+
+/**
+ * Reads a {@link CsvSnapshot} on several threads.
+ * <p>
+ * The file is split into byte ranges on line boundaries, about {@value #CHUNKS_PER_THREAD} ranges
+ * per thread, so that a slow range does not hold the others. The ranges are read and parsed on a
+ * {@link ForkJoinPool} in two passes: the first one finds the section headers, which tells every
+ * range the section it starts in, and the second one parses the lines of the tasks and the
+ * history. The parsed tasks and ids are then passed to the actions on the calling thread in the
+ * order of the file, so the result is the same as of {@link CsvSnapshot#read}: the actions may link
+ * subtasks to their epics and rebuild the prioritized tasks without synchronization.
+ * <p>
+ * A compressed snapshot is split into its {@link CompressedBlocks blocks} instead, which end on
+ * line boundaries as well, and every block is inflated in the first pass.
+ *
+ * @see CsvSnapshot
+ */
+final class ParallelCsvSnapshotReader {
+
+  private static final int CHUNKS_PER_THREAD = 4;
+  private static final int BOUNDARY_WINDOW = 4096;
+  private static final byte[] FORMAT_HEADER = bytes(CsvSnapshot.FORMAT_HEADER);
+  private static final byte[] TASKS_HEADER = bytes(CsvSnapshot.TASKS_CSV_HEADER);
+  private static final byte[] HISTORY_HEADER = bytes(CsvSnapshot.HISTORY_HEADER);
+  private static final byte[] PRIORITIZED_HEADER = bytes(CsvSnapshot.PRIORITIZED_HEADER);
+  private static final byte[] CHECKSUM_PREFIX = bytes(CsvSnapshot.CHECKSUM_PREFIX);
+
+  private final int parallelism;
+  private final long minChunkBytes;
+
+  /**
+   * @param parallelism   the number of threads parsing the file
+   * @param minChunkBytes the size below which a range is not split further
+   */
+  ParallelCsvSnapshotReader(final int parallelism, final long minChunkBytes) {
+    if (parallelism <= 0 || minChunkBytes <= 0) {
+      throw new IllegalArgumentException("Parallelism and chunk size should be positive.");
+    }
+    this.parallelism = parallelism;
+    this.minChunkBytes = minChunkBytes;
+  }
+
+  /**
+   * Reads the snapshot file, passing every task to the {@code taskAction} and every id of the
+   * history to the {@code historyAction}, in the order they are written.
+   *
+   * @throws IllegalArgumentException if a line of the file has an invalid format
+   */
+  void read(final File file, final Consumer<Task> taskAction, final IntConsumer historyAction)
+      throws IOException {
+    final List<Chunk> chunks;
+    final ForkJoinPool pool = new ForkJoinPool(parallelism);
+    final boolean compressed = CompressedBlocks.isCompressed(file);
+    try (final FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+      chunks = compressed ? splitBlocks(channel, file) : split(channel);
+      runAll(pool, chunks, chunk -> chunk.readAndFindHeaders(channel));
+      byte[] section = TASKS_HEADER;
+      for (Chunk chunk : chunks) {
+        chunk.startSection = section;
+        section = chunk.lastHeader == null ? section : chunk.lastHeader;
+      }
+      runAll(pool, chunks, Chunk::parse);
+    } finally {
+      pool.shutdown();
+    }
+    for (Chunk chunk : chunks) {
+      chunk.tasks.forEach(taskAction);
+    }
+    for (Chunk chunk : chunks) {
+      for (int i = 0; i < chunk.historySize; i++) {
+        historyAction.accept(chunk.history[i]);
+      }
+    }
+  }
+
+  /**
+   * Splits the file into ranges, every range except the first one starts right after a line
+   * separator.
+   */
+  private List<Chunk> split(final FileChannel channel) throws IOException {
+    final long size = channel.size();
+    final long count = Math.max(1,
+        Math.min((long) parallelism * CHUNKS_PER_THREAD, size / minChunkBytes));
+    final List<Chunk> chunks = new ArrayList<>();
+    long start = 0;
+    for (long i = 1; i <= count && start < size; i++) {
+      final long end = i == count ? size
+          : nextLineStart(channel, Math.max(start, size * i / count));
+      if (end > start) {
+        final long from = start;
+        chunks.add(new Chunk(rangeChannel -> readRange(rangeChannel, from, end)));
+        start = end;
+      }
+    }
+    return chunks;
+  }
+
+  /**
+   * Splits the compressed file into its blocks.
+   */
+  private static List<Chunk> splitBlocks(final FileChannel channel, final File file)
+      throws IOException {
+    return CompressedBlocks.blocks(channel, file).stream()
+        .map(block -> new Chunk(blockChannel -> CompressedBlocks.inflate(blockChannel, block,
+            file)))
+        .toList();
+  }
+
+  private static byte[] readRange(final FileChannel channel, final long start, final long end)
+      throws IOException {
+    final byte[] bytes = new byte[Math.toIntExact(end - start)];
+    final ByteBuffer buffer = ByteBuffer.wrap(bytes);
+    while (buffer.hasRemaining()) {
+      if (channel.read(buffer, start + buffer.position()) < 0) {
+        throw new EOFException("The file was truncated while being read.");
+      }
+    }
+    return bytes;
+  }
+
+  private static long nextLineStart(final FileChannel channel, final long position)
+      throws IOException {
+    final ByteBuffer window = ByteBuffer.allocate(BOUNDARY_WINDOW);
+    long offset = position;
+    while (true) {
+      window.clear();
+      final int read = channel.read(window, offset);
+      if (read < 0) {
+        return channel.size();
+      }
+      for (int i = 0; i < read; i++) {
+        if (window.get(i) == '\n') {
+          return offset + i + 1;
+        }
+      }
+      offset += read;
+    }
+  }
+
+  /**
+   * Runs the action for every chunk on the pool and rethrows the first failure. A failure is
+   * returned as the result of its task: a {@link ForkJoinPool} would otherwise rethrow a copy of
+   * it, wrapping the original one.
+   */
+  private static void runAll(final ForkJoinPool pool, final List<Chunk> chunks,
+      final ChunkAction action) throws IOException {
+    final List<Future<Exception>> results = pool.invokeAll(chunks.stream()
+        .<Callable<Exception>>map(chunk -> () -> {
+          try {
+            action.apply(chunk);
+            return null;
+          } catch (IOException | RuntimeException e) {
+            return e;
+          }
+        })
+        .toList());
+    for (Future<Exception> result : results) {
+      final Exception failure;
+      try {
+        failure = result.get();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new InterruptedIOException("Loading of the snapshot was interrupted.");
+      } catch (ExecutionException e) {
+        throw new IllegalStateException("Loading of the snapshot has failed.", e.getCause());
+      }
+      if (failure instanceof IOException ioException) {
+        throw ioException;
+      }
+      if (failure != null) {
+        throw (RuntimeException) failure;
+      }
+    }
+  }
+
+  private static byte[] bytes(final String value) {
+    return value.getBytes(StandardCharsets.UTF_8);
+  }
+
+  @FunctionalInterface
+  private interface ChunkAction {
+
+    void apply(Chunk chunk) throws IOException;
+  }
+
+  @FunctionalInterface
+  private interface ChunkLoader {
+
+    byte[] load(FileChannel channel) throws IOException;
+  }
+
+  /**
+   * A range of lines of the file together with the results of parsing it.
+   */
+  private static final class Chunk {
+
+    private final ChunkLoader loader;
+    private final List<Task> tasks = new ArrayList<>();
+    private byte[] bytes;
+    private byte[] startSection;
+    private byte[] lastHeader;
+    private int[] history = new int[0];
+    private int historySize;
+
+    private Chunk(final ChunkLoader loader) {
+      this.loader = loader;
+    }
+
+    private void readAndFindHeaders(final FileChannel channel) throws IOException {
+      bytes = loader.load(channel);
+      int from = 0;
+      while (from < bytes.length) {
+        final int lineEnd = lineEnd(from);
+        final int to = contentEnd(from, lineEnd);
+        if (isLine(from, to, HISTORY_HEADER)) {
+          lastHeader = HISTORY_HEADER;
+        } else if (isLine(from, to, PRIORITIZED_HEADER)) {
+          lastHeader = PRIORITIZED_HEADER;
+        }
+        from = lineEnd + 1;
+      }
+    }
+
+    private void parse() {
+      byte[] section = startSection;
+      int from = 0;
+      while (from < bytes.length) {
+        final int lineEnd = lineEnd(from);
+        final int to = contentEnd(from, lineEnd);
+        if (isLine(from, to, HISTORY_HEADER)) {
+          section = HISTORY_HEADER;
+        } else if (isLine(from, to, PRIORITIZED_HEADER)) {
+          section = PRIORITIZED_HEADER;
+        } else if (!isBlank(from, to) && !isLine(from, to, FORMAT_HEADER)
+            && !isLine(from, to, TASKS_HEADER) && !startsWith(from, to, CHECKSUM_PREFIX)) {
+          if (section == TASKS_HEADER) {
+            tasks.add(CsvSnapshot.parseTask(new String(bytes, from, to - from,
+                StandardCharsets.UTF_8)));
+          } else if (section == HISTORY_HEADER) {
+            addHistory(CsvSnapshot.parseId(new String(bytes, from, to - from,
+                StandardCharsets.UTF_8)));
+          }
+        }
+        from = lineEnd + 1;
+      }
+      bytes = null;
+    }
+
+    private void addHistory(final int id) {
+      if (historySize == history.length) {
+        history = Arrays.copyOf(history, Math.max(16, historySize * 2));
+      }
+      history[historySize++] = id;
+    }
+
+    /**
+     * Returns the index of the line separator ending the line, or the length of the range.
+     */
+    private int lineEnd(final int from) {
+      int i = from;
+      while (i < bytes.length && bytes[i] != '\n') {
+        i++;
+      }
+      return i;
+    }
+
+    private int contentEnd(final int from, final int lineEnd) {
+      return lineEnd > from && bytes[lineEnd - 1] == '\r' ? lineEnd - 1 : lineEnd;
+    }
+
+    private boolean isLine(final int from, final int to, final byte[] line) {
+      return Arrays.equals(bytes, from, to, line, 0, line.length);
+    }
+
+    private boolean startsWith(final int from, final int to, final byte[] prefix) {
+      return to - from >= prefix.length
+          && Arrays.equals(bytes, from, from + prefix.length, prefix, 0, prefix.length);
+    }
+
+    private boolean isBlank(final int from, final int to) {
+      for (int i = from; i < to; i++) {
+        if (!Character.isWhitespace(bytes[i])) {
+          return false;
+        }
+      }
+      return true;
+    }
+  }
+}
@@ -0,0 +1,97 @@
+package ru.yandex.practicum.tasktracker.service;
+
+import ru.yandex.practicum.tasktracker.exception.ManagerLoadException;
+import ru.yandex.practicum.tasktracker.model.Epic;
+import ru.yandex.practicum.tasktracker.model.Subtask;
+import ru.yandex.practicum.tasktracker.model.Task;
+
+/**
+ * Read-only state of a {@link FileBackedTaskManager} as of a past mutation, built by the
+ * {@link ChangeLog} from a checkpoint and the records that follow it.
+ * <p>
+ * The view has no history of viewed tasks at first, the history is not a mutation. The modifying
+ * operations throw {@link UnsupportedOperationException}.
+ */
+final class PointInTimeView extends InMemoryTaskManager {
+
+  private static final String READ_ONLY_MESSAGE = "A point-in-time view is read-only.";
+
+  /**
+   * Puts a task of the checkpoint or of a record, replacing the previous version of it. The records
+   * of the change log follow their checkpoint without overlapping it, so a subtask of a missing
+   * epic is damage.
+   */
+  void put(final Task task) {
+    if (!applyPut(task)) {
+      throw new ManagerLoadException(
+          "The change log contains a subtask of unknown epic: " + ((Subtask) task).toCsvLine());
+    }
+  }
+
+  /**
+   * Applies a record of the {@link FileBackedTaskManager} journal.
+   */
+  void apply(final String record) {
+    FileBackedTaskManager.applyRecord(record, this::put, this::applyDelete, this::applyClear);
+  }
+
+  @Override
+  public void clearTasks() {
+    throw new UnsupportedOperationException(READ_ONLY_MESSAGE);
+  }
+
+  @Override
+  public void clearEpics() {
+    throw new UnsupportedOperationException(READ_ONLY_MESSAGE);
+  }
+
+  @Override
+  public void clearSubtasks() {
+    throw new UnsupportedOperationException(READ_ONLY_MESSAGE);
+  }
+
+  @Override
+  public void deleteTask(final int id) {
+    throw new UnsupportedOperationException(READ_ONLY_MESSAGE);
+  }
+
+  @Override
+  public void deleteEpic(final int id) {
+    throw new UnsupportedOperationException(READ_ONLY_MESSAGE);
+  }
+
+  @Override
+  public void deleteSubtask(final int id) {
+    throw new UnsupportedOperationException(READ_ONLY_MESSAGE);
+  }
+
+  @Override
+  public Task addTask(final Task task) {
+    throw new UnsupportedOperationException(READ_ONLY_MESSAGE);
+  }
+
+  @Override
+  public Epic addEpic(final Epic epic) {
+    throw new UnsupportedOperationException(READ_ONLY_MESSAGE);
+  }
+
+  @Override
+  public Subtask addSubtask(final Subtask subtask) {
+    throw new UnsupportedOperationException(READ_ONLY_MESSAGE);
+  }
+
+  @Override
+  public void updateTask(final Task task) {
+    throw new UnsupportedOperationException(READ_ONLY_MESSAGE);
+  }
+
+  @Override
+  public void updateEpic(final Epic epic) {
+    throw new UnsupportedOperationException(READ_ONLY_MESSAGE);
+  }
+
+  @Override
+  public void updateSubtask(final Subtask subtask) {
+    throw new UnsupportedOperationException(READ_ONLY_MESSAGE);
+  }
+}
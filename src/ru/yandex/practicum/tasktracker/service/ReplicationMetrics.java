@@ -0,0 +1,14 @@
+package ru.yandex.practicum.tasktracker.service;
+
+/**
+ * State of a {@link FollowerTaskManager}: the number of journal records applied one by one, the
+ * number of full reloads and of failed polls, the size of the journal not yet applied and the
+ * time since the start of the last successful poll, which bounds the replication lag: every change
+ * the writer had persisted by then is visible.
+ *
+ * @see FollowerTaskManager#getReplicationMetrics()
+ */
+public record ReplicationMetrics(long appliedRecords, long reloads, long failures,
+    long pendingBytes, long lagMillis) {
+
+}
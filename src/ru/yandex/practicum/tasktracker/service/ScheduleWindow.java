@@ -0,0 +1,126 @@
+package ru.yandex.practicum.tasktracker.service;
+
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import ru.yandex.practicum.tasktracker.model.Task;
+
+/**
+ * A page of the prioritized tasks, see {@link TaskManager#getPrioritizedTasks(ScheduleWindow)}: at
+ * most {@code limit} tasks that overlap the window from {@code from} inclusive to {@code to}
+ * exclusive, following the {@code after} cursor in the order of the prioritized tasks. A task
+ * taking no time overlaps the window if it starts in it.
+ * <p>
+ * A {@code null} bound leaves the window open on that side, and a {@code null} cursor starts from
+ * the first task. The next page is asked with the cursor of the last task of a full page, see
+ * {@link Cursor#of(Task)}.
+ *
+ * @param from  the start of the window, or {@code null}
+ * @param to    the end of the window, or {@code null}
+ * @param after the cursor the tasks follow, or {@code null}
+ * @param limit the greatest number of the tasks, positive
+ */
+public record ScheduleWindow(LocalDateTime from, LocalDateTime to, Cursor after, int limit) {
+
+  /**
+   * @throws IllegalArgumentException if the {@code limit} is not positive or the window ends
+   *                                  before it starts
+   */
+  public ScheduleWindow {
+    if (limit < 1) {
+      throw new IllegalArgumentException("The limit must be positive: " + limit);
+    }
+    if (from != null && to != null && to.isBefore(from)) {
+      throw new IllegalArgumentException("The window ends before it starts: " + from + " - " + to);
+    }
+  }
+
+  /**
+   * Returns the first page of the tasks overlapping the window.
+   */
+  public static ScheduleWindow between(final LocalDateTime from, final LocalDateTime to,
+      final int limit) {
+    return new ScheduleWindow(from, to, null, limit);
+  }
+
+  /**
+   * Returns the page of the same window following the cursor.
+   */
+  public ScheduleWindow after(final Cursor cursor) {
+    return new ScheduleWindow(from, to, cursor, limit);
+  }
+
+  /**
+   * Returns the start of the window, {@link LocalDateTime#MIN} for an open one.
+   */
+  public LocalDateTime start() {
+    return from == null ? LocalDateTime.MIN : from;
+  }
+
+  /**
+   * Returns the end of the window, {@link LocalDateTime#MAX} for an open one.
+   */
+  public LocalDateTime end() {
+    return to == null ? LocalDateTime.MAX : to;
+  }
+
+  /**
+   * Returns whether the prioritized task belongs to the page apart from the limit: it overlaps the
+   * window and follows the cursor.
+   */
+  public boolean includes(final Task task) {
+    return task.getStartTime() != null && task.getStartTime().isBefore(end())
+        && (task.getEndTime().isAfter(start()) || task.getStartTime().equals(start()))
+        && (after == null || after.isBefore(task));
+  }
+
+  /**
+   * Position in the prioritized tasks: the start time and the id of the last task of a page. It is
+   * written as the start time and the id separated by {@code '_'}.
+   */
+  public record Cursor(LocalDateTime startTime, int id) {
+
+    public Cursor {
+      if (startTime == null) {
+        throw new IllegalArgumentException("The cursor has no start time.");
+      }
+    }
+
+    /**
+     * Returns the cursor of the prioritized task.
+     */
+    public static Cursor of(final Task task) {
+      return new Cursor(task.getStartTime(), task.getId());
+    }
+
+    /**
+     * Reads the cursor written by {@link #toString()}.
+     *
+     * @throws IllegalArgumentException if the text is not a cursor
+     */
+    public static Cursor parse(final String text) {
+      final int separator = text.lastIndexOf('_');
+      if (separator < 0) {
+        throw new IllegalArgumentException("Invalid cursor " + text);
+      }
+      try {
+        return new Cursor(LocalDateTime.parse(text.substring(0, separator)),
+            Integer.parseInt(text.substring(separator + 1)));
+      } catch (DateTimeParseException e) {
+        throw new IllegalArgumentException("Invalid cursor " + text, e);
+      }
+    }
+
+    /**
+     * Returns whether the task comes after the cursor in the order of the prioritized tasks.
+     */
+    public boolean isBefore(final Task task) {
+      final int cmp = startTime.compareTo(task.getStartTime());
+      return cmp < 0 || cmp == 0 && id < task.getId();
+    }
+
+    @Override
+    public String toString() {
+      return startTime + "_" + id;
+    }
+  }
+}
@@ -0,0 +1,471 @@
+package ru.yandex.practicum.tasktracker.service;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.DateTimeException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+import ru.yandex.practicum.tasktracker.exception.ManagerLoadException;
+import ru.yandex.practicum.tasktracker.model.Subtask;
+import ru.yandex.practicum.tasktracker.model.Task;
+import ru.yandex.practicum.tasktracker.service.SnapshotFile.SnapshotWriter;
+
+/**
+ * Snapshot of a {@link FileBackedTaskManager} split into several shard files.
+ * <p>
+ * A task is put into the shard chosen by the hash of its id, a subtask into the shard of its epic,
+ * so every shard can be loaded on its own: it holds the epics of all its subtasks. The shard files
+ * are written in the CSV or the binary {@link SnapshotFormat}, without the history, which stays in
+ * the history journal of the manager. With compression, every shard is written in the layout of
+ * {@link CompressedBlocks}.
+ * <p>
+ * The shards are written in generations. A save writes the changed shards to new files named
+ * after the snapshot file with the {@code .shard-<number>.<generation>} suffix, and then replaces
+ * the manifest (with the {@code .shards} suffix), which lists the generation of the file of every
+ * shard. The manifest is a {@link SnapshotFile}: it is replaced atomically, so the loaded shards
+ * are always the ones of a single save, and the previous manifest is kept as its backup along with
+ * the files it lists. If the manifest or one of its shards is damaged, the shards of the backup are
+ * loaded instead. The files of a save that has not replaced the manifest are deleted on loading.
+ * <p>
+ * The shards are read and written concurrently on a {@link ForkJoinPool}, and {@link #write} writes
+ * only the shards that have changed. Shards written before the manifest was introduced, with the
+ * {@code .shard-<number>} suffix, are loaded and replaced by the first save.
+ *
+ * @see StorageConfig#getShardCount()
+ */
+final class ShardedSnapshot implements Closeable {
+
+  private static final String SHARD_SUFFIX = ".shard-";
+  private static final String MANIFEST_SUFFIX = ".shards";
+  private static final String MANIFEST_HEADER = "shards,crc32c";
+  private static final int HASH_MULTIPLIER = 0x9E3779B9;
+  private final File file;
+  private final SnapshotFormat format;
+  private final int shardCount;
+  private final boolean compressed;
+  private final ForkJoinPool pool;
+  private final SnapshotFile manifest;
+  private long[] generations = new long[0];
+  private long[] backupGenerations = new long[0];
+  private long lastGeneration;
+  private int legacyShards;
+  private boolean recovered;
+
+  /**
+   * @throws IllegalArgumentException if the format can not be split into shards
+   */
+  ShardedSnapshot(final File file, final SnapshotFormat format, final int shardCount,
+      final boolean compressed, final int parallelism) {
+    if (format == SnapshotFormat.PAGED) {
+      throw new IllegalArgumentException("The page file can not be split into shards.");
+    }
+    this.file = file;
+    this.format = format;
+    this.shardCount = shardCount;
+    this.compressed = compressed;
+    this.pool = new ForkJoinPool(Math.max(1, Math.min(parallelism, shardCount)));
+    this.manifest = new SnapshotFile(manifestFile());
+  }
+
+  /**
+   * Returns the shard of the task: the shard of its epic for a subtask.
+   */
+  int shardOf(final Task task) {
+    return shardOfKey(task instanceof Subtask subtask ? subtask.getEpicId() : task.getId());
+  }
+
+  /**
+   * Returns the shard of a task or an epic with the given id.
+   */
+  int shardOfKey(final int id) {
+    return Math.floorMod(id * HASH_MULTIPLIER, shardCount);
+  }
+
+  /**
+   * Returns whether any shard file exists.
+   */
+  boolean exists() {
+    return generations.length > 0 || legacyShards > 0;
+  }
+
+  /**
+   * Returns {@code true} if the shards of the backup have been loaded by {@link #read}.
+   */
+  boolean isRecovered() {
+    return recovered;
+  }
+
+  /**
+   * Reads the shard files listed by the manifest concurrently and passes their tasks to the
+   * {@code taskAction} on the calling thread, shard by shard, in the order they are written. If the
+   * manifest or one of its shards is damaged, the shards listed by the backup of the manifest are
+   * read instead, unless {@code backupAllowed} is {@code false}.
+   *
+   * @return the shards to be written again: all of them if the shards of the backup have been read
+   *     or if the files have been split into another number of shards
+   * @throws ManagerLoadException if the shards are damaged and can not be recovered
+   */
+  BitSet read(final Consumer<Task> taskAction, final boolean backupAllowed) throws IOException {
+    if (!manifestFile().exists() && !manifest.backup().exists()) {
+      return readLegacy(taskAction);
+    }
+    List<Shard> shards;
+    try {
+      generations = readManifest(manifestFile());
+      shards = readGeneration(generations);
+      backupGenerations = manifest.backup().exists() ? readManifestOrEmpty(manifest.backup())
+          : new long[0];
+    } catch (ManagerLoadException | IllegalArgumentException | DateTimeException e) {
+      if (!manifest.backup().exists()) {
+        throw e;
+      }
+      if (!backupAllowed) {
+        throw new ManagerLoadException("The shards are damaged and can not be recovered from "
+            + "their backup: " + file, e);
+      }
+      try {
+        generations = readManifest(manifest.backup());
+        shards = readGeneration(generations);
+      } catch (RuntimeException backupFailure) {
+        e.addSuppressed(backupFailure);
+        throw e;
+      }
+      backupGenerations = generations;
+      recovered = true;
+    }
+    deleteUnlisted();
+    final BitSet staleShards = new BitSet(shardCount);
+    for (Shard shard : shards) {
+      shard.tasks.forEach(taskAction);
+    }
+    if (recovered || generations.length != shardCount) {
+      staleShards.set(0, shardCount);
+    }
+    return staleShards;
+  }
+
+  /**
+   * Writes the {@code dirtyShards} concurrently to the files of a new generation, each with the
+   * {@code tasks} that belong to it, and replaces the manifest with the one listing them. All
+   * shards are written if the number of shards has changed. The files listed neither by the new
+   * manifest nor by its backup are deleted.
+   */
+  void write(final List<Task> tasks, final BitSet dirtyShards, final Durability durability)
+      throws IOException {
+    final BitSet written = new BitSet(shardCount);
+    if (generations.length == shardCount) {
+      written.or(dirtyShards);
+    } else {
+      written.set(0, shardCount);
+    }
+    final Shard[] shards = new Shard[shardCount];
+    final List<Shard> changed = new ArrayList<>();
+    final long generation = lastGeneration + 1;
+    written.stream().filter(index -> index < shardCount).forEach(index -> {
+      shards[index] = new Shard(index, shardFile(index, generation));
+      changed.add(shards[index]);
+    });
+    if (changed.isEmpty()) {
+      return;
+    }
+    lastGeneration = generation;
+    for (Task task : tasks) {
+      final Shard shard = shards[shardOf(task)];
+      if (shard != null) {
+        shard.tasks.add(task);
+      }
+    }
+    if (changed.size() == 1) {
+      changed.get(0).write(durability);
+    } else {
+      runAll(changed, shard -> shard.write(durability));
+    }
+    final long[] next = Arrays.copyOf(generations, shardCount);
+    changed.forEach(shard -> next[shard.index] = generation);
+    manifest.write(out -> out.write(manifestBytes(next)), durability);
+    for (int index = 0; index < backupGenerations.length; index++) {
+      if (!lists(generations, index, backupGenerations[index])
+          && !lists(next, index, backupGenerations[index])) {
+        Files.deleteIfExists(shardFile(index, backupGenerations[index]).toPath());
+      }
+    }
+    for (int index = 0; index < legacyShards; index++) {
+      Files.deleteIfExists(legacyShardFile(index).toPath());
+      Files.deleteIfExists(new SnapshotFile(legacyShardFile(index)).backup().toPath());
+    }
+    legacyShards = 0;
+    backupGenerations = generations;
+    generations = next;
+  }
+
+  @Override
+  public void close() {
+    pool.shutdown();
+  }
+
+  private File manifestFile() {
+    return new File(file.getPath() + MANIFEST_SUFFIX);
+  }
+
+  private File shardFile(final int index, final long generation) {
+    return new File(file.getPath() + SHARD_SUFFIX + index + "." + generation);
+  }
+
+  private File legacyShardFile(final int index) {
+    return new File(file.getPath() + SHARD_SUFFIX + index);
+  }
+
+  /**
+   * Reads the shards written before the manifest was introduced, each one recovered from its own
+   * backup if it is damaged.
+   */
+  private BitSet readLegacy(final Consumer<Task> taskAction) throws IOException {
+    int count = 0;
+    while (legacyShardFile(count).exists()
+        || new SnapshotFile(legacyShardFile(count)).backup().exists()) {
+      count++;
+    }
+    legacyShards = count;
+    final List<Shard> shards = IntStream.range(0, count)
+        .mapToObj(index -> new Shard(index, legacyShardFile(index)))
+        .toList();
+    runAll(shards, Shard::read);
+    shards.forEach(shard -> shard.tasks.forEach(taskAction));
+    deleteUnlisted();
+    final BitSet staleShards = new BitSet(shardCount);
+    if (count > 0) {
+      staleShards.set(0, shardCount);
+    }
+    return staleShards;
+  }
+
+  private List<Shard> readGeneration(final long[] shardGenerations) {
+    final List<Shard> shards = IntStream.range(0, shardGenerations.length)
+        .mapToObj(index -> new Shard(index, shardFile(index, shardGenerations[index])))
+        .toList();
+    try {
+      runAll(shards, Shard::read);
+    } catch (IOException e) {
+      throw new ManagerLoadException("An Error occurred during reading the file", e);
+    }
+    return shards;
+  }
+
+  /**
+   * Deletes the shard files listed neither by the manifest nor by its backup, which a save has
+   * left behind before it replaced the manifest, and remembers the last generation on disk.
+   */
+  private void deleteUnlisted() throws IOException {
+    final String prefix = file.getName() + SHARD_SUFFIX;
+    final Path directory = file.toPath().toAbsolutePath().getParent();
+    try (final Stream<Path> files = Files.list(directory)) {
+      for (Path path : files.toList()) {
+        final String name = path.getFileName().toString();
+        final int separator = name.lastIndexOf('.');
+        if (!name.startsWith(prefix) || separator < prefix.length()) {
+          continue;
+        }
+        final int index;
+        final long generation;
+        try {
+          index = Integer.parseInt(name, prefix.length(), separator, 10);
+          generation = Long.parseLong(name, separator + 1, name.length(), 10);
+        } catch (NumberFormatException e) {
+          continue;
+        }
+        lastGeneration = Math.max(lastGeneration, generation);
+        if (!lists(generations, index, generation)
+            && !lists(backupGenerations, index, generation)) {
+          Files.deleteIfExists(path);
+        }
+      }
+    }
+  }
+
+  private static boolean lists(final long[] shardGenerations, final int index,
+      final long generation) {
+    return index < shardGenerations.length && shardGenerations[index] == generation;
+  }
+
+  /**
+   * Returns the manifest listing the generations of the shards, the last line of which is the
+   * CRC32C checksum of the preceding bytes.
+   */
+  private static byte[] manifestBytes(final long[] shardGenerations) {
+    final String content = MANIFEST_HEADER + '\n' + Arrays.stream(shardGenerations)
+        .mapToObj(String::valueOf)
+        .collect(Collectors.joining(",")) + '\n';
+    final byte[] bytes = content.getBytes(StandardCharsets.US_ASCII);
+    return (content + CsvSnapshot.CHECKSUM_PREFIX + Long.toHexString(checksum(bytes)) + '\n')
+        .getBytes(StandardCharsets.US_ASCII);
+  }
+
+  /**
+   * Returns the generations of the shards listed by the manifest.
+   *
+   * @throws ManagerLoadException if the manifest is missing or damaged
+   */
+  private static long[] readManifest(final File manifestFile) {
+    final byte[] bytes;
+    try {
+      bytes = Files.readAllBytes(manifestFile.toPath());
+    } catch (IOException e) {
+      throw new ManagerLoadException("An Error occurred during reading the file", e);
+    }
+    final String content = new String(bytes, StandardCharsets.US_ASCII);
+    final String[] lines = content.split("\n");
+    if (lines.length != 3 || !lines[0].equals(MANIFEST_HEADER)
+        || !lines[2].startsWith(CsvSnapshot.CHECKSUM_PREFIX)) {
+      throw new ManagerLoadException("The manifest of the shards is damaged: " + manifestFile);
+    }
+    final int checkedLength = lines[0].length() + lines[1].length() + 2;
+    try {
+      if (Long.parseLong(lines[2].substring(CsvSnapshot.CHECKSUM_PREFIX.length()), 16)
+          != checksum(Arrays.copyOf(bytes, checkedLength))) {
+        throw new ManagerLoadException("The manifest of the shards is damaged: " + manifestFile);
+      }
+      return lines[1].isEmpty() ? new long[0]
+          : Arrays.stream(lines[1].split(",")).mapToLong(Long::parseLong).toArray();
+    } catch (NumberFormatException e) {
+      throw new ManagerLoadException("The manifest of the shards is damaged: " + manifestFile, e);
+    }
+  }
+
+  private static long[] readManifestOrEmpty(final File manifestFile) {
+    try {
+      return readManifest(manifestFile);
+    } catch (ManagerLoadException e) {
+      return new long[0];
+    }
+  }
+
+  private static long checksum(final byte[] bytes) {
+    final CRC32C crc = new CRC32C();
+    crc.update(bytes);
+    return crc.getValue();
+  }
+
+  /**
+   * Runs the action for every shard on the pool and rethrows the first failure. A failure is
+   * returned as the result of its task: a {@link ForkJoinPool} would otherwise rethrow a copy of
+   * it, wrapping the original one.
+   */
+  private void runAll(final List<Shard> shards, final ShardAction action) throws IOException {
+    final List<Future<Exception>> results = pool.invokeAll(shards.stream()
+        .<Callable<Exception>>map(shard -> () -> {
+          try {
+            action.apply(shard);
+            return null;
+          } catch (IOException | RuntimeException e) {
+            return e;
+          }
+        })
+        .toList());
+    for (Future<Exception> result : results) {
+      final Exception failure;
+      try {
+        failure = result.get();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new InterruptedIOException("Access to the shards was interrupted.");
+      } catch (ExecutionException e) {
+        throw new IllegalStateException("Access to the shards has failed.", e.getCause());
+      }
+      if (failure instanceof IOException ioException) {
+        throw ioException;
+      }
+      if (failure != null) {
+        throw (RuntimeException) failure;
+      }
+    }
+  }
+
+  @FunctionalInterface
+  private interface ShardAction {
+
+    void apply(Shard shard) throws IOException;
+  }
+
+  /**
+   * A shard file together with the tasks read from it or to be written to it.
+   */
+  private final class Shard {
+
+    private final int index;
+    private final File shardFile;
+    private final List<Task> tasks = new ArrayList<>();
+
+    private Shard(final int index, final File shardFile) {
+      this.index = index;
+      this.shardFile = shardFile;
+    }
+
+    /**
+     * Reads the shard, or its backup if the shard is damaged or missing. Only the shards written
+     * before the manifest was introduced have backups of their own.
+     */
+    private void read() {
+      try {
+        readFile(shardFile);
+      } catch (ManagerLoadException | IllegalArgumentException | DateTimeException e) {
+        final File backup = new SnapshotFile(shardFile).backup();
+        if (!backup.exists()) {
+          throw e;
+        }
+        tasks.clear();
+        try {
+          readFile(backup);
+        } catch (RuntimeException backupFailure) {
+          e.addSuppressed(backupFailure);
+          throw e;
+        }
+      }
+    }
+
+    private void readFile(final File source) {
+      try {
+        if (format == SnapshotFormat.BINARY) {
+          BinarySnapshot.read(source, tasks::add, id -> { });
+        } else {
+          CsvSnapshot.verify(source);
+          CsvSnapshot.read(source, tasks::add, id -> { });
+        }
+      } catch (IOException e) {
+        throw new ManagerLoadException("An Error occurred during reading the file", e);
+      }
+    }
+
+    /**
+     * Writes the shard to its new file, which is not listed by the manifest yet, so it is written
+     * in place.
+     */
+    private void write(final Durability durability) throws IOException {
+      final SnapshotWriter writer = format == SnapshotFormat.BINARY
+          ? out -> BinarySnapshot.write(out, tasks, List.of())
+          : out -> CsvSnapshot.write(out, tasks, List.of());
+      try (final FileOutputStream out = new FileOutputStream(shardFile)) {
+        (compressed ? CompressedBlocks.compressing(writer) : writer).write(out);
+        if (durability == Durability.FSYNC) {
+          out.getFD().sync();
+        }
+      }
+    }
+  }
+}
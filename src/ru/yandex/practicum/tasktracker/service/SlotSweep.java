@@ -0,0 +1,51 @@
+package ru.yandex.practicum.tasktracker.service;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Objects;
+import ru.yandex.practicum.tasktracker.model.Task;
+
+/**
+ * Search for a free slot walking the prioritized tasks in their order, see
+ * {@link TaskManager#findFreeSlot(LocalDateTime, Duration)}. The walk starts from the last task
+ * starting at the time to search after or before it, and stops at the first task the slot fits
+ * before.
+ */
+final class SlotSweep {
+
+  private final Duration duration;
+  private LocalDateTime free;
+
+  /**
+   * @throws IllegalArgumentException if the duration is negative
+   */
+  SlotSweep(final LocalDateTime after, final Duration duration) {
+    Objects.requireNonNull(after, "The time to search after is null.");
+    if (duration.isNegative()) {
+      throw new IllegalArgumentException("Duration cannot be negative.");
+    }
+    this.free = after;
+    this.duration = duration;
+  }
+
+  /**
+   * Returns whether the slot fits before the next task of the walk, moves the slot past the task
+   * otherwise.
+   */
+  boolean fitsBefore(final Task task) {
+    if (!free.plus(duration).isAfter(task.getStartTime())) {
+      return true;
+    }
+    if (task.getEndTime().isAfter(free)) {
+      free = task.getEndTime();
+    }
+    return false;
+  }
+
+  /**
+   * Returns the start of the slot: the earliest time no task walked so far takes.
+   */
+  LocalDateTime slot() {
+    return free;
+  }
+}
@@ -0,0 +1,92 @@
+package ru.yandex.practicum.tasktracker.service;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Snapshot file of a {@link FileBackedTaskManager}, which is replaced atomically.
+ * <p>
+ * A new snapshot is written to a temporary file next to the snapshot (with the {@code .tmp}
+ * suffix), which is renamed over the snapshot only when it is complete, so a crash in the middle of
+ * writing never leaves a partially written snapshot behind. The previous snapshot is kept as a
+ * backup (with the {@code .bak} suffix), which the owner loads if the snapshot turns out to be
+ * damaged.
+ *
+ * @see CsvSnapshot
+ * @see BinarySnapshot
+ */
+final class SnapshotFile {
+
+  private static final String TEMP_SUFFIX = ".tmp";
+  private static final String BACKUP_SUFFIX = ".bak";
+  private final Path path;
+  private final Path tempPath;
+  private final Path backupPath;
+
+  SnapshotFile(final File file) {
+    this.path = file.toPath();
+    this.tempPath = Path.of(file.getPath() + TEMP_SUFFIX);
+    this.backupPath = Path.of(file.getPath() + BACKUP_SUFFIX);
+  }
+
+  File backup() {
+    return backupPath.toFile();
+  }
+
+  /**
+   * Writes a new snapshot with the {@code writer}, which must flush everything it writes, and puts
+   * it in place of the current one. With {@link Durability#FSYNC} the new snapshot and its
+   * directory entry are forced to the storage device.
+   */
+  void write(final SnapshotWriter writer, final Durability durability) throws IOException {
+    try (final FileOutputStream out = new FileOutputStream(tempPath.toFile())) {
+      writer.write(out);
+      if (durability == Durability.FSYNC) {
+        out.getFD().sync();
+      }
+    }
+    keepBackup();
+    Files.move(tempPath, path, StandardCopyOption.ATOMIC_MOVE);
+    if (durability == Durability.FSYNC) {
+      syncDirectory();
+    }
+  }
+
+  /**
+   * Links the current snapshot as the backup, so the snapshot file exists at any moment. The file
+   * is moved instead when the file system does not support links.
+   */
+  private void keepBackup() throws IOException {
+    if (!Files.exists(path)) {
+      return;
+    }
+    Files.deleteIfExists(backupPath);
+    try {
+      Files.createLink(backupPath, path);
+    } catch (UnsupportedOperationException | IOException e) {
+      Files.move(path, backupPath, StandardCopyOption.REPLACE_EXISTING);
+    }
+  }
+
+  private void syncDirectory() {
+    final Path directory = path.toAbsolutePath().getParent();
+    try (final FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+      channel.force(true);
+    } catch (IOException e) {
+      /* Some platforms, e.g. Windows, do not open directories, the rename is left to them. */
+    }
+  }
+
+  @FunctionalInterface
+  interface SnapshotWriter {
+
+    void write(OutputStream out) throws IOException;
+  }
+}
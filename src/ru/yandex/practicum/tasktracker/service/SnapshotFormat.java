@@ -0,0 +1,17 @@
+package ru.yandex.practicum.tasktracker.service;
+
+/**
+ * Format of the snapshot file of a {@link FileBackedTaskManager}.
+ *
+ * @see StorageConfig
+ * @see BinarySnapshot
+ * @see PagedTaskStore
+ */
+public enum SnapshotFormat {
+  /* Human-readable lines produced by Task.toCsvLine(). */
+  CSV,
+  /* Fixed-width binary records, loaded through a memory-mapped file. */
+  BINARY,
+  /* Slotted pages, in which only the changed records are written. */
+  PAGED
+}
@@ -0,0 +1,396 @@
+package ru.yandex.practicum.tasktracker.service;
+
+import java.time.Duration;
+import java.util.Objects;
+import java.util.Properties;
+
+/**
+ * Settings that define how a {@link FileBackedTaskManager} persists its state.
+ * <p>
+ * By default every modifying operation rewrites the whole snapshot file. When the journal is
+ * enabled, every operation appends one compact record to the journal file instead, and the journal
+ * is folded into a fresh snapshot once it reaches {@link #getCompactionThreshold()} records. The
+ * same threshold bounds the journal of viewed tasks, which is kept in every mode.
+ * <p>
+ * With background checkpoints enabled as well, the journal that reached the threshold is sealed
+ * and folded into the snapshot by a {@link Checkpointer} thread, so the operation that crossed the
+ * threshold does not wait for the snapshot to be written. They need the journal and a single CSV
+ * or binary snapshot file, a {@link FileBackedTaskManager} rejects them otherwise.
+ * <p>
+ * With the lock enabled, the manager holds an exclusive lock of its files until it is closed, so a
+ * second writer in another process fails to load them. A {@link FollowerTaskManager} reads the
+ * files of such a writer and polls them for changes every {@link #getFollowInterval()}.
+ * <p>
+ * With write-behind enabled, modifying operations only mark the manager dirty and a background
+ * {@link WriteBehindFlusher} commits them as one group every {@link #getFlushInterval()} or every
+ * {@link #getFlushOperations()} operations, whichever comes first. {@link #getDurability()} defines
+ * how far each commit is pushed: a group in write-behind mode, a single operation otherwise.
+ * <p>
+ * A large CSV snapshot is parsed by {@link #getLoadParallelism()} threads on loading, the number of
+ * available processors by default.
+ * <p>
+ * With {@link #getShardCount()} above one, the CSV or binary snapshot is split into that many shard
+ * files, which are written and loaded concurrently, see {@link ShardedSnapshot}.
+ * <p>
+ * With compression enabled, the CSV or binary snapshot, or every shard of it, is written in
+ * blocks compressed independently of each other, which are still loaded on several threads, see
+ * {@link CompressedBlocks}. A snapshot is loaded in either layout whatever this setting.
+ * <p>
+ * With the description store enabled, long descriptions are kept in a file instead of the heap
+ * and are read on demand through a cache of {@link #getDescriptionCacheSize()} descriptions, see
+ * {@link DescriptionStore}.
+ * <p>
+ * With the change log enabled, every persisted mutation is numbered and kept in a log with a
+ * checkpoint every {@link #getCheckpointInterval()} records, so the state as of any of the last
+ * {@link #getRetainedCheckpoints()} checkpoints and the mutations after them can be viewed and
+ * restored, see {@link ChangeLog}.
+ * <p>
+ * The settings can be read from {@link Properties}, such as the system properties, with
+ * {@link #fromProperties(Properties)}. Every property is optional and has the {@code tasktracker.}
+ * prefix, e.g. {@code -Dtasktracker.storage.format=BINARY}.
+ *
+ * @see FileBackedTaskManager
+ * @see TaskJournal
+ * @see Durability
+ */
+public class StorageConfig {
+
+  public static final int DEFAULT_COMPACTION_THRESHOLD = 1000;
+  public static final Duration DEFAULT_FLUSH_INTERVAL = Duration.ofSeconds(1);
+  public static final int DEFAULT_FLUSH_OPERATIONS = 100;
+  public static final String FORMAT_PROPERTY = "tasktracker.storage.format";
+  public static final String JOURNAL_PROPERTY = "tasktracker.storage.journal";
+  public static final String COMPACTION_THRESHOLD_PROPERTY =
+      "tasktracker.storage.compactionThreshold";
+  public static final String BACKGROUND_CHECKPOINT_PROPERTY =
+      "tasktracker.storage.backgroundCheckpoint";
+  public static final String LOCK_PROPERTY = "tasktracker.storage.lock";
+  public static final String FOLLOW_INTERVAL_PROPERTY = "tasktracker.storage.followIntervalMillis";
+  public static final Duration DEFAULT_FOLLOW_INTERVAL = Duration.ofMillis(100);
+  public static final String WRITE_BEHIND_PROPERTY = "tasktracker.storage.writeBehind";
+  public static final String FLUSH_INTERVAL_PROPERTY = "tasktracker.storage.flushIntervalMillis";
+  public static final String FLUSH_OPERATIONS_PROPERTY = "tasktracker.storage.flushOperations";
+  public static final String DURABILITY_PROPERTY = "tasktracker.storage.durability";
+  public static final String LOAD_PARALLELISM_PROPERTY = "tasktracker.storage.loadParallelism";
+  public static final String SHARDS_PROPERTY = "tasktracker.storage.shards";
+  public static final String COMPRESSION_PROPERTY = "tasktracker.storage.compression";
+  public static final String DESCRIPTION_STORE_PROPERTY = "tasktracker.storage.descriptionStore";
+  public static final String DESCRIPTION_CACHE_SIZE_PROPERTY =
+      "tasktracker.storage.descriptionCacheSize";
+  public static final int DEFAULT_DESCRIPTION_CACHE_SIZE = 1024;
+  public static final String CHANGE_LOG_PROPERTY = "tasktracker.storage.changeLog";
+  public static final String CHECKPOINT_INTERVAL_PROPERTY =
+      "tasktracker.storage.checkpointInterval";
+  public static final String RETAINED_CHECKPOINTS_PROPERTY =
+      "tasktracker.storage.retainedCheckpoints";
+  public static final int DEFAULT_CHECKPOINT_INTERVAL = 1000;
+  public static final int DEFAULT_RETAINED_CHECKPOINTS = 24;
+
+  private boolean journalEnabled;
+  private int compactionThreshold = DEFAULT_COMPACTION_THRESHOLD;
+  private boolean backgroundCheckpointEnabled;
+  private boolean lockEnabled;
+  private Duration followInterval = DEFAULT_FOLLOW_INTERVAL;
+  private boolean writeBehindEnabled;
+  private Duration flushInterval = DEFAULT_FLUSH_INTERVAL;
+  private int flushOperations = DEFAULT_FLUSH_OPERATIONS;
+  private Durability durability = Durability.FLUSH;
+  private SnapshotFormat snapshotFormat = SnapshotFormat.CSV;
+  private int loadParallelism = Runtime.getRuntime().availableProcessors();
+  private int shardCount = 1;
+  private boolean compressionEnabled;
+  private boolean descriptionStoreEnabled;
+  private int descriptionCacheSize = DEFAULT_DESCRIPTION_CACHE_SIZE;
+  private boolean changeLogEnabled;
+  private int checkpointInterval = DEFAULT_CHECKPOINT_INTERVAL;
+  private int retainedCheckpoints = DEFAULT_RETAINED_CHECKPOINTS;
+
+  /**
+   * Returns the default settings: every modifying operation rewrites the snapshot file.
+   */
+  public static StorageConfig snapshot() {
+    return new StorageConfig();
+  }
+
+  /**
+   * Returns the settings with an append-only journal that is compacted into the snapshot every
+   * {@link #DEFAULT_COMPACTION_THRESHOLD} records.
+   */
+  public static StorageConfig journal() {
+    return new StorageConfig().setJournalEnabled(true);
+  }
+
+  /**
+   * Returns the settings defined by the properties, the missing ones keep their default values.
+   *
+   * @throws IllegalArgumentException if a property has an invalid value
+   */
+  public static StorageConfig fromProperties(final Properties properties) {
+    final StorageConfig config = new StorageConfig();
+    final String format = properties.getProperty(FORMAT_PROPERTY);
+    if (format != null) {
+      config.setSnapshotFormat(SnapshotFormat.valueOf(format.trim().toUpperCase()));
+    }
+    final String journal = properties.getProperty(JOURNAL_PROPERTY);
+    if (journal != null) {
+      config.setJournalEnabled(Boolean.parseBoolean(journal.trim()));
+    }
+    final String compactionThreshold = properties.getProperty(COMPACTION_THRESHOLD_PROPERTY);
+    if (compactionThreshold != null) {
+      config.setCompactionThreshold(Integer.parseInt(compactionThreshold.trim()));
+    }
+    final String backgroundCheckpoint = properties.getProperty(BACKGROUND_CHECKPOINT_PROPERTY);
+    if (backgroundCheckpoint != null) {
+      config.setBackgroundCheckpointEnabled(Boolean.parseBoolean(backgroundCheckpoint.trim()));
+    }
+    final String lock = properties.getProperty(LOCK_PROPERTY);
+    if (lock != null) {
+      config.setLockEnabled(Boolean.parseBoolean(lock.trim()));
+    }
+    final String followInterval = properties.getProperty(FOLLOW_INTERVAL_PROPERTY);
+    if (followInterval != null) {
+      config.setFollowInterval(Duration.ofMillis(Long.parseLong(followInterval.trim())));
+    }
+    final String writeBehind = properties.getProperty(WRITE_BEHIND_PROPERTY);
+    if (writeBehind != null) {
+      config.setWriteBehindEnabled(Boolean.parseBoolean(writeBehind.trim()));
+    }
+    final String flushInterval = properties.getProperty(FLUSH_INTERVAL_PROPERTY);
+    if (flushInterval != null) {
+      config.setFlushInterval(Duration.ofMillis(Long.parseLong(flushInterval.trim())));
+    }
+    final String flushOperations = properties.getProperty(FLUSH_OPERATIONS_PROPERTY);
+    if (flushOperations != null) {
+      config.setFlushOperations(Integer.parseInt(flushOperations.trim()));
+    }
+    final String durability = properties.getProperty(DURABILITY_PROPERTY);
+    if (durability != null) {
+      config.setDurability(Durability.valueOf(durability.trim().toUpperCase()));
+    }
+    final String loadParallelism = properties.getProperty(LOAD_PARALLELISM_PROPERTY);
+    if (loadParallelism != null) {
+      config.setLoadParallelism(Integer.parseInt(loadParallelism.trim()));
+    }
+    final String shards = properties.getProperty(SHARDS_PROPERTY);
+    if (shards != null) {
+      config.setShardCount(Integer.parseInt(shards.trim()));
+    }
+    final String compression = properties.getProperty(COMPRESSION_PROPERTY);
+    if (compression != null) {
+      config.setCompressionEnabled(Boolean.parseBoolean(compression.trim()));
+    }
+    final String descriptionStore = properties.getProperty(DESCRIPTION_STORE_PROPERTY);
+    if (descriptionStore != null) {
+      config.setDescriptionStoreEnabled(Boolean.parseBoolean(descriptionStore.trim()));
+    }
+    final String descriptionCacheSize = properties.getProperty(DESCRIPTION_CACHE_SIZE_PROPERTY);
+    if (descriptionCacheSize != null) {
+      config.setDescriptionCacheSize(Integer.parseInt(descriptionCacheSize.trim()));
+    }
+    final String changeLog = properties.getProperty(CHANGE_LOG_PROPERTY);
+    if (changeLog != null) {
+      config.setChangeLogEnabled(Boolean.parseBoolean(changeLog.trim()));
+    }
+    final String checkpointInterval = properties.getProperty(CHECKPOINT_INTERVAL_PROPERTY);
+    if (checkpointInterval != null) {
+      config.setCheckpointInterval(Integer.parseInt(checkpointInterval.trim()));
+    }
+    final String retainedCheckpoints = properties.getProperty(RETAINED_CHECKPOINTS_PROPERTY);
+    if (retainedCheckpoints != null) {
+      config.setRetainedCheckpoints(Integer.parseInt(retainedCheckpoints.trim()));
+    }
+    return config;
+  }
+
+  public boolean isJournalEnabled() {
+    return journalEnabled;
+  }
+
+  public StorageConfig setJournalEnabled(final boolean journalEnabled) {
+    this.journalEnabled = journalEnabled;
+    return this;
+  }
+
+  public boolean isBackgroundCheckpointEnabled() {
+    return backgroundCheckpointEnabled;
+  }
+
+  public StorageConfig setBackgroundCheckpointEnabled(final boolean backgroundCheckpointEnabled) {
+    this.backgroundCheckpointEnabled = backgroundCheckpointEnabled;
+    return this;
+  }
+
+  public int getCompactionThreshold() {
+    return compactionThreshold;
+  }
+
+  public StorageConfig setCompactionThreshold(final int compactionThreshold) {
+    if (compactionThreshold <= 0) {
+      throw new IllegalArgumentException("Compaction threshold should be positive.");
+    }
+    this.compactionThreshold = compactionThreshold;
+    return this;
+  }
+
+  public boolean isLockEnabled() {
+    return lockEnabled;
+  }
+
+  public StorageConfig setLockEnabled(final boolean lockEnabled) {
+    this.lockEnabled = lockEnabled;
+    return this;
+  }
+
+  public Duration getFollowInterval() {
+    return followInterval;
+  }
+
+  public StorageConfig setFollowInterval(final Duration followInterval) {
+    Objects.requireNonNull(followInterval, "Can not set follow interval to null.");
+    if (followInterval.isNegative() || followInterval.isZero()) {
+      throw new IllegalArgumentException("Follow interval should be positive.");
+    }
+    this.followInterval = followInterval;
+    return this;
+  }
+
+  public boolean isWriteBehindEnabled() {
+    return writeBehindEnabled;
+  }
+
+  public StorageConfig setWriteBehindEnabled(final boolean writeBehindEnabled) {
+    this.writeBehindEnabled = writeBehindEnabled;
+    return this;
+  }
+
+  public Duration getFlushInterval() {
+    return flushInterval;
+  }
+
+  public StorageConfig setFlushInterval(final Duration flushInterval) {
+    Objects.requireNonNull(flushInterval, "Can not set flush interval to null.");
+    if (flushInterval.isNegative() || flushInterval.isZero()) {
+      throw new IllegalArgumentException("Flush interval should be positive.");
+    }
+    this.flushInterval = flushInterval;
+    return this;
+  }
+
+  public int getFlushOperations() {
+    return flushOperations;
+  }
+
+  public StorageConfig setFlushOperations(final int flushOperations) {
+    if (flushOperations <= 0) {
+      throw new IllegalArgumentException("Number of operations per flush should be positive.");
+    }
+    this.flushOperations = flushOperations;
+    return this;
+  }
+
+  public Durability getDurability() {
+    return durability;
+  }
+
+  public StorageConfig setDurability(final Durability durability) {
+    this.durability = Objects.requireNonNull(durability, "Can not set durability to null.");
+    return this;
+  }
+
+  public SnapshotFormat getSnapshotFormat() {
+    return snapshotFormat;
+  }
+
+  public StorageConfig setSnapshotFormat(final SnapshotFormat snapshotFormat) {
+    this.snapshotFormat = Objects.requireNonNull(snapshotFormat,
+        "Can not set snapshot format to null.");
+    return this;
+  }
+
+  public int getLoadParallelism() {
+    return loadParallelism;
+  }
+
+  public StorageConfig setLoadParallelism(final int loadParallelism) {
+    if (loadParallelism <= 0) {
+      throw new IllegalArgumentException("Load parallelism should be positive.");
+    }
+    this.loadParallelism = loadParallelism;
+    return this;
+  }
+
+  public int getShardCount() {
+    return shardCount;
+  }
+
+  public StorageConfig setShardCount(final int shardCount) {
+    if (shardCount <= 0) {
+      throw new IllegalArgumentException("Number of shards should be positive.");
+    }
+    this.shardCount = shardCount;
+    return this;
+  }
+
+  public boolean isCompressionEnabled() {
+    return compressionEnabled;
+  }
+
+  public StorageConfig setCompressionEnabled(final boolean compressionEnabled) {
+    this.compressionEnabled = compressionEnabled;
+    return this;
+  }
+
+  public boolean isDescriptionStoreEnabled() {
+    return descriptionStoreEnabled;
+  }
+
+  public StorageConfig setDescriptionStoreEnabled(final boolean descriptionStoreEnabled) {
+    this.descriptionStoreEnabled = descriptionStoreEnabled;
+    return this;
+  }
+
+  public int getDescriptionCacheSize() {
+    return descriptionCacheSize;
+  }
+
+  public StorageConfig setDescriptionCacheSize(final int descriptionCacheSize) {
+    if (descriptionCacheSize <= 0) {
+      throw new IllegalArgumentException("Description cache size should be positive.");
+    }
+    this.descriptionCacheSize = descriptionCacheSize;
+    return this;
+  }
+
+  public boolean isChangeLogEnabled() {
+    return changeLogEnabled;
+  }
+
+  public StorageConfig setChangeLogEnabled(final boolean changeLogEnabled) {
+    this.changeLogEnabled = changeLogEnabled;
+    return this;
+  }
+
+  public int getCheckpointInterval() {
+    return checkpointInterval;
+  }
+
+  public StorageConfig setCheckpointInterval(final int checkpointInterval) {
+    if (checkpointInterval <= 0) {
+      throw new IllegalArgumentException("Checkpoint interval should be positive.");
+    }
+    this.checkpointInterval = checkpointInterval;
+    return this;
+  }
+
+  public int getRetainedCheckpoints() {
+    return retainedCheckpoints;
+  }
+
+  public StorageConfig setRetainedCheckpoints(final int retainedCheckpoints) {
+    if (retainedCheckpoints <= 0) {
+      throw new IllegalArgumentException("Number of retained checkpoints should be positive.");
+    }
+    this.retainedCheckpoints = retainedCheckpoints;
+    return this;
+  }
+}
@@ -0,0 +1,496 @@
+package ru.yandex.practicum.tasktracker.service;
+
+import java.io.BufferedWriter;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+import ru.yandex.practicum.tasktracker.exception.ManagerLoadException;
+import ru.yandex.practicum.tasktracker.exception.ManagerSaveException;
+
+/**
+ * Append-only journal of the changes made by a {@link FileBackedTaskManager} since its last
+ * snapshot: the modifying operations or the viewed tasks.
+ * <p>
+ * The journal lives next to the snapshot file (with the given suffix) and contains one line per
+ * record. Appending a record costs O(1) I/O regardless of the number of tasks. Appended
+ * records are buffered until the owner {@link #commit(Durability) commits} them, so a group of
+ * records can be committed at once. The owner replays the records over the snapshot on loading and
+ * {@link #seal() seals} the journal before it writes a fresh snapshot, dropping the sealed segment
+ * once the snapshot is written. The snapshot may thus already cover the records replayed after a
+ * crash, so the owner applies them in a way that can be repeated.
+ * <p>
+ * The file starts with the {@link #HEADER} line, and every next line starts with the CRC32C
+ * checksum of the record, e.g. {@code 1a2b3c4d:DELETE,5}. A record is complete only with its line
+ * separator. Replaying stops at the first damaged or incomplete record, such as the tail torn by a
+ * crash in the middle of writing or a line whose checksum is damaged, and cuts the journal file
+ * there, so the next records are appended after the last good one. Only a file without the header,
+ * written before the checksum was introduced, may have lines without a checksum, which are
+ * replayed as they are.
+ * <p>
+ * Sealing moves the records appended so far into a numbered segment (with the
+ * {@code .sealed-<n>} suffix), and the next records start the journal anew. A background
+ * checkpoint writes the snapshot the sealed records lead to while the operations go on. The sealed
+ * segments are replayed before the journal.
+ * <p>
+ * Once the snapshot is written, the sealed segments it covers are {@link #cover(long) renamed}
+ * (with the {@code .covered-<n>} suffix) and kept until the next snapshot: they lead from the
+ * previous snapshot, kept as the backup, to the current one, so the owner
+ * {@link #replayCovered(Consumer) replays} them if it has to fall back to the backup.
+ *
+ * @see FileBackedTaskManager
+ * @see StorageConfig
+ */
+class TaskJournal {
+
+  static final String HEADER = "#journal,crc32c";
+  private static final byte[] HEADER_BYTES = HEADER.getBytes(StandardCharsets.US_ASCII);
+  private static final int CHECKSUM_LENGTH = 8;
+  private static final char CHECKSUM_SEPARATOR = ':';
+  private static final int READ_BUFFER_SIZE = 1 << 13;
+  private static final String SEALED_SUFFIX = ".sealed-";
+  private static final String COVERED_SUFFIX = ".covered-";
+  private final File snapshotFile;
+  private final String suffix;
+  private final Path path;
+  private FileOutputStream out;
+  private Writer writer;
+  private int size;
+
+  TaskJournal(final File snapshotFile, final String suffix) {
+    this.snapshotFile = snapshotFile;
+    this.suffix = suffix;
+    this.path = Path.of(snapshotFile.getPath() + suffix);
+  }
+
+  /**
+   * Returns the number of records appended since the last {@link #truncate()}.
+   */
+  int size() {
+    return size;
+  }
+
+  void append(final String record) {
+    try {
+      if (writer == null) {
+        final boolean empty = !Files.exists(path) || Files.size(path) == 0;
+        out = new FileOutputStream(path.toFile(), true);
+        writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+        if (empty) {
+          writer.write(HEADER + System.lineSeparator());
+        }
+      }
+      writer.write(toLine(record));
+      size++;
+    } catch (IOException e) {
+      throw new ManagerSaveException("An error occurred during writing to the journal.", e);
+    }
+  }
+
+  /**
+   * Pushes the records appended so far as far as the {@code durability} requires.
+   */
+  void commit(final Durability durability) {
+    if (writer == null || durability == Durability.NONE) {
+      return;
+    }
+    try {
+      writer.flush();
+      if (durability == Durability.FSYNC) {
+        out.getFD().sync();
+      }
+    } catch (IOException e) {
+      throw new ManagerSaveException("An error occurred during writing to the journal.", e);
+    }
+  }
+
+  /**
+   * Passes every record of the journal file to the {@code action} in the order they were
+   * appended, up to the first damaged or incomplete record. Does nothing if the journal file does
+   * not exist.
+   */
+  void replay(final Consumer<String> action) {
+    replayWhile(record -> {
+      action.accept(record);
+      return true;
+    });
+  }
+
+  /**
+   * Passes the records of the journal file to the {@code action} as {@link #replay(Consumer)} does,
+   * until the {@code action} returns {@code false}. The rest of the file is left unread.
+   */
+  void replayWhile(final Predicate<String> action) {
+    if (!Files.exists(path)) {
+      return;
+    }
+    long validLength = 0;
+    final long fileLength;
+    boolean stopped = false;
+    try (final FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+      fileLength = channel.size();
+      final boolean checked = hasHeader(channel);
+      boolean header = checked;
+      final InputStream in = Channels.newInputStream(channel);
+      long position = 0;
+      final byte[] buffer = new byte[READ_BUFFER_SIZE];
+      final ByteArrayOutputStream line = new ByteArrayOutputStream();
+      boolean damaged = false;
+      int read;
+      while (!damaged && !stopped && (read = in.read(buffer)) >= 0) {
+        int lineStart = 0;
+        for (int i = 0; i < read && !damaged && !stopped; i++) {
+          if (buffer[i] != '\n') {
+            continue;
+          }
+          line.write(buffer, lineStart, i - lineStart);
+          final String record = header ? "" : parseLine(line.toByteArray(), checked);
+          header = false;
+          line.reset();
+          lineStart = i + 1;
+          if (record == null) {
+            damaged = true;
+            continue;
+          }
+          validLength = position + lineStart;
+          if (!record.isBlank()) {
+            size++;
+            stopped = !action.test(record);
+          }
+        }
+        line.write(buffer, lineStart, read - lineStart);
+        position += read;
+      }
+    } catch (IOException e) {
+      throw new ManagerLoadException("An Error occurred during reading the journal", e);
+    }
+    if (!stopped && validLength < fileLength) {
+      cut(validLength);
+    }
+  }
+
+  /**
+   * Passes the complete and intact records that follow the {@code position} of the journal file to
+   * the {@code action} without changing the file, which another process may be appending to. The
+   * reading stops before the first incomplete or damaged record, which may still be being written.
+   * Does nothing if the journal file does not exist.
+   *
+   * @return the position after the last passed record, where the next call should continue
+   */
+  long tail(final long position, final Consumer<String> action) {
+    long next = position;
+    try (final FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+      final boolean checked = hasHeader(channel);
+      boolean header = checked && position == 0;
+      final InputStream in = Channels.newInputStream(channel.position(position));
+      long offset = position;
+      final byte[] buffer = new byte[READ_BUFFER_SIZE];
+      final ByteArrayOutputStream line = new ByteArrayOutputStream();
+      int read;
+      while ((read = in.read(buffer)) >= 0) {
+        int lineStart = 0;
+        for (int i = 0; i < read; i++) {
+          if (buffer[i] != '\n') {
+            continue;
+          }
+          line.write(buffer, lineStart, i - lineStart);
+          final String record = header ? "" : parseLine(line.toByteArray(), checked);
+          header = false;
+          line.reset();
+          lineStart = i + 1;
+          if (record == null) {
+            return next;
+          }
+          next = offset + lineStart;
+          if (!record.isBlank()) {
+            action.accept(record);
+          }
+        }
+        line.write(buffer, lineStart, read - lineStart);
+        offset += read;
+      }
+    } catch (NoSuchFileException e) {
+      return next;
+    } catch (IOException e) {
+      throw new ManagerLoadException("An Error occurred during reading the journal", e);
+    }
+    return next;
+  }
+
+  /**
+   * Passes the records of the sealed segments to the {@code action} as {@link #tail} does, the
+   * oldest segment first, without changing the files.
+   */
+  void tailSealed(final Consumer<String> action) {
+    for (Long generation : sealedGenerations()) {
+      sealedSegment(generation).tail(0, action);
+    }
+  }
+
+  Path path() {
+    return path;
+  }
+
+  /**
+   * Discards all records, the sealed and the covered segments included. Must be called only after
+   * the state they describe has been saved to the snapshot.
+   */
+  void truncate() {
+    close();
+    try {
+      Files.deleteIfExists(path);
+      size = 0;
+    } catch (IOException e) {
+      throw new ManagerSaveException("An error occurred during truncating the journal.", e);
+    }
+    dropSealed(Long.MAX_VALUE);
+    deleteSegments(COVERED_SUFFIX, generations(COVERED_SUFFIX));
+  }
+
+  /**
+   * Moves the records appended so far to a new sealed segment, the next records start an empty
+   * journal. The segment is created even if there are no records. The records must have been
+   * committed.
+   *
+   * @return the number of the segment, which covers the records of all segments before it
+   */
+  long seal() {
+    close();
+    final long generation = Stream.concat(sealedGenerations().stream(),
+        generations(COVERED_SUFFIX).stream()).mapToLong(Long::longValue).max().orElse(0) + 1;
+    try {
+      if (Files.exists(path)) {
+        Files.move(path, sealedSegment(generation).path, StandardCopyOption.ATOMIC_MOVE);
+      } else {
+        Files.createFile(sealedSegment(generation).path);
+      }
+    } catch (IOException e) {
+      throw new ManagerSaveException("An error occurred during sealing the journal.", e);
+    }
+    size = 0;
+    return generation;
+  }
+
+  /**
+   * Passes the records of the sealed segments to the {@code action}, the oldest segment first.
+   *
+   * @return the number of the replayed records
+   */
+  int replaySealed(final Consumer<String> action) {
+    int records = 0;
+    for (Long generation : sealedGenerations()) {
+      final TaskJournal segment = sealedSegment(generation);
+      segment.replay(action);
+      records += segment.size();
+    }
+    return records;
+  }
+
+  /**
+   * Deletes the sealed segments up to the given number, which the snapshot already covers.
+   */
+  void dropSealed(final long upTo) {
+    deleteSegments(SEALED_SUFFIX, sealedGenerations().stream()
+        .filter(generation -> generation <= upTo)
+        .toList());
+  }
+
+  /**
+   * Renames the sealed segments up to the given number, which the snapshot just written covers,
+   * into the covered segments, and deletes the segments covered by the previous snapshot. A crash
+   * in between leaves the older covered segments too, which are replayed along with the newer
+   * ones.
+   */
+  void cover(final long upTo) {
+    final List<Long> previous = generations(COVERED_SUFFIX);
+    try {
+      for (Long generation : sealedGenerations()) {
+        if (generation <= upTo) {
+          Files.move(sealedSegment(generation).path, segment(COVERED_SUFFIX, generation).path,
+              StandardCopyOption.ATOMIC_MOVE);
+        }
+      }
+    } catch (IOException e) {
+      throw new ManagerSaveException("An error occurred during truncating the journal.", e);
+    }
+    deleteSegments(COVERED_SUFFIX, previous);
+  }
+
+  /**
+   * Returns {@code true} if the segments leading from the backup to the snapshot are kept.
+   */
+  boolean hasCovered() {
+    return !generations(COVERED_SUFFIX).isEmpty();
+  }
+
+  /**
+   * Passes the records of the covered segments to the {@code action}, the oldest segment first.
+   * The snapshot the backup was replaced with already contains the state they lead to.
+   */
+  void replayCovered(final Consumer<String> action) {
+    for (Long generation : generations(COVERED_SUFFIX)) {
+      segment(COVERED_SUFFIX, generation).replay(action);
+    }
+  }
+
+  /**
+   * Replaces all records with the given ones, which must describe the same state.
+   */
+  void rewrite(final List<String> records) {
+    close();
+    final Path tempPath = Path.of(path + ".tmp");
+    try {
+      Files.writeString(tempPath, records.stream().map(TaskJournal::toLine)
+              .collect(Collectors.joining("", HEADER + System.lineSeparator(), "")),
+          StandardCharsets.UTF_8);
+      Files.move(tempPath, path, StandardCopyOption.REPLACE_EXISTING);
+      size = records.size();
+    } catch (IOException e) {
+      throw new ManagerSaveException("An error occurred during rewriting the journal.", e);
+    }
+  }
+
+  /**
+   * Flushes the buffered records and releases the journal file.
+   */
+  void close() {
+    if (writer == null) {
+      return;
+    }
+    try {
+      writer.close();
+    } catch (IOException e) {
+      throw new ManagerSaveException("An error occurred during closing the journal.", e);
+    } finally {
+      writer = null;
+      out = null;
+    }
+  }
+
+  /**
+   * Returns {@code true} if the journal file starts with the {@link #HEADER} line, so every record
+   * of it must have a checksum.
+   */
+  private static boolean hasHeader(final FileChannel channel) throws IOException {
+    final ByteBuffer head = ByteBuffer.allocate(HEADER_BYTES.length + 2);
+    while (head.hasRemaining()) {
+      if (channel.read(head, head.position()) < 0) {
+        break;
+      }
+    }
+    final byte[] bytes = head.array();
+    final int length = HEADER_BYTES.length;
+    if (head.position() <= length
+        || !Arrays.equals(bytes, 0, length, HEADER_BYTES, 0, length)) {
+      return false;
+    }
+    return bytes[length] == '\n'
+        || bytes[length] == '\r' && head.position() > length + 1 && bytes[length + 1] == '\n';
+  }
+
+  /**
+   * Returns the record of the line, or {@code null} if the record is damaged. A line without a
+   * checksum is damaged in a {@code checked} journal, and is taken as it is otherwise.
+   */
+  private static String parseLine(final byte[] line, final boolean checked) {
+    int length = line.length;
+    if (length > 0 && line[length - 1] == '\r') {
+      length--;
+    }
+    if (length > CHECKSUM_LENGTH && line[CHECKSUM_LENGTH] == CHECKSUM_SEPARATOR) {
+      final CRC32C crc = new CRC32C();
+      crc.update(line, CHECKSUM_LENGTH + 1, length - CHECKSUM_LENGTH - 1);
+      final String checksum = new String(line, 0, CHECKSUM_LENGTH, StandardCharsets.US_ASCII);
+      if (!checksum.equals(toHex(crc.getValue()))) {
+        return null;
+      }
+      return new String(line, CHECKSUM_LENGTH + 1, length - CHECKSUM_LENGTH - 1,
+          StandardCharsets.UTF_8);
+    }
+    if (checked) {
+      return null;
+    }
+    return new String(line, 0, length, StandardCharsets.UTF_8);
+  }
+
+  private TaskJournal sealedSegment(final long generation) {
+    return segment(SEALED_SUFFIX, generation);
+  }
+
+  private TaskJournal segment(final String segmentSuffix, final long generation) {
+    return new TaskJournal(snapshotFile, suffix + segmentSuffix + generation);
+  }
+
+  private List<Long> sealedGenerations() {
+    return generations(SEALED_SUFFIX);
+  }
+
+  private void deleteSegments(final String segmentSuffix, final List<Long> generations) {
+    try {
+      for (Long generation : generations) {
+        Files.deleteIfExists(segment(segmentSuffix, generation).path);
+      }
+    } catch (IOException e) {
+      throw new ManagerSaveException("An error occurred during truncating the journal.", e);
+    }
+  }
+
+  /**
+   * Returns the numbers of the segments with the given suffix in ascending order.
+   */
+  private List<Long> generations(final String segmentSuffix) {
+    final String prefix = path.getFileName() + segmentSuffix;
+    final Path directory = path.toAbsolutePath().getParent();
+    try (final Stream<Path> files = Files.list(directory)) {
+      return files.map(file -> file.getFileName().toString())
+          .filter(name -> name.startsWith(prefix) && name.length() > prefix.length()
+              && name.substring(prefix.length()).chars().allMatch(Character::isDigit))
+          .map(name -> Long.parseLong(name.substring(prefix.length())))
+          .sorted()
+          .toList();
+    } catch (IOException e) {
+      throw new ManagerLoadException("An Error occurred during reading the journal", e);
+    }
+  }
+
+  private static String toLine(final String record) {
+    final CRC32C crc = new CRC32C();
+    crc.update(record.getBytes(StandardCharsets.UTF_8));
+    return toHex(crc.getValue()) + CHECKSUM_SEPARATOR + record + System.lineSeparator();
+  }
+
+  private static String toHex(final long checksum) {
+    final String hex = Long.toHexString(checksum);
+    return "0".repeat(CHECKSUM_LENGTH - hex.length()) + hex;
+  }
+
+  /**
+   * Cuts the damaged tail of the journal file.
+   */
+  private void cut(final long length) {
+    try (final FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+      channel.truncate(length);
+    } catch (IOException e) {
+      throw new ManagerLoadException("An Error occurred during cutting the damaged journal", e);
+    }
+  }
+}
@@ -1,10 +1,18 @@
 package ru.yandex.practicum.tasktracker.service;
 
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.List;
 import java.util.Set;
+import java.util.stream.Stream;
 import ru.yandex.practicum.tasktracker.model.Epic;
+import ru.yandex.practicum.tasktracker.model.EpicRecord;
 import ru.yandex.practicum.tasktracker.model.Subtask;
+import ru.yandex.practicum.tasktracker.model.SubtaskRecord;
 import ru.yandex.practicum.tasktracker.model.Task;
+import ru.yandex.practicum.tasktracker.model.TaskView;
 
 /**
  * The {@code TaskManager} interface manages tasks of different types including {@link Task},
@@ -19,6 +27,12 @@ import ru.yandex.practicum.tasktracker.model.Task;
  * epic.
  * <p>
  * The interface also provides a method to retrieve the history of operations performed on tasks.
+ * <p>
+ * The tasks returned by {@link #getTaskById(int)} and the other getters by id are mutable copies a
+ * caller may change and update. The lists of the tasks may hold the stored tasks themselves, so a
+ * caller must not change them. The views returned by {@link #getTaskView(int)} and the other view
+ * getters are immutable, see {@link TaskView}, so the managers share them with the readers instead
+ * of copying.
  *
  * @see Task
  * @see Epic
@@ -34,6 +48,66 @@ public interface TaskManager {
 
   List<Task> getPrioritizedTasks();
 
+  /**
+   * Returns a page of the prioritized tasks: the tasks overlapping the time window of the
+   * {@code window} that follow its cursor, at most its limit of them, in the order of
+   * {@link #getPrioritizedTasks()}.
+   * <p>
+   * This implementation filters the whole list, the managers with an index of the prioritized
+   * tasks read only the part of it the page covers.
+   */
+  default List<Task> getPrioritizedTasks(final ScheduleWindow window) {
+    return getPrioritizedTasks().stream()
+        .filter(window::includes)
+        .limit(window.limit())
+        .toList();
+  }
+
+  /**
+   * Returns the earliest start time at or after {@code after} from which a task of the
+   * {@code duration} has no time conflict with the prioritized tasks.
+   * <p>
+   * This implementation walks the whole list, the managers with an index of the prioritized tasks
+   * find the slot without reading the tasks it skips.
+   *
+   * @throws IllegalArgumentException if the duration is negative
+   */
+  default LocalDateTime findFreeSlot(final LocalDateTime after, final Duration duration) {
+    final SlotSweep sweep = new SlotSweep(after, duration);
+    for (Task task : getPrioritizedTasks()) {
+      if (sweep.fitsBefore(task)) {
+        break;
+      }
+    }
+    return sweep.slot();
+  }
+
+  /**
+   * Gives a start time to every task and subtask without one, in the order of their ids: each of
+   * them gets the earliest free slot at or after {@code after}, see
+   * {@link #findFreeSlot(LocalDateTime, Duration)}, and is updated with it.
+   *
+   * @return the scheduled tasks with their start times
+   */
+  default List<Task> scheduleUnscheduled(final LocalDateTime after) {
+    final List<Task> unscheduled = Stream.concat(getTasks().stream(), getSubtasks().stream())
+        .filter(task -> task.getStartTime() == null)
+        .sorted(Comparator.comparingInt(Task::getId))
+        .map(Task::copy)
+        .toList();
+    final List<Task> scheduled = new ArrayList<>(unscheduled.size());
+    for (Task task : unscheduled) {
+      task.setStartTime(findFreeSlot(after, task.getDuration()));
+      if (task instanceof Subtask subtask) {
+        updateSubtask(subtask);
+      } else {
+        updateTask(task);
+      }
+      scheduled.add(task);
+    }
+    return scheduled;
+  }
+
   List<Task> getHistory();
 
   Task getTaskById(final int id);
@@ -44,6 +118,46 @@ public interface TaskManager {
 
   Set<Subtask> getSubtasksByEpicId(final int id);
 
+  /**
+   * Returns the immutable view of the task with the id and adds the task to the history, as
+   * {@link #getTaskById(int)} does.
+   * <p>
+   * This implementation takes the view of a copy of the task, the managers keeping the tasks in
+   * memory return the view of the task they hold, taken once and shared until the task changes.
+   */
+  default TaskView getTaskView(final int id) {
+    return getTaskById(id).view();
+  }
+
+  /**
+   * Returns the immutable view of the epic with the id, see {@link #getTaskView(int)}.
+   */
+  default EpicRecord getEpicView(final int id) {
+    return getEpicById(id).view();
+  }
+
+  /**
+   * Returns the immutable view of the subtask with the id, see {@link #getTaskView(int)}.
+   */
+  default SubtaskRecord getSubtaskView(final int id) {
+    return getSubtaskById(id).view();
+  }
+
+  /**
+   * Returns the immutable views of all tasks, see {@link #getTaskView(int)}.
+   */
+  default List<TaskView> getTaskViews() {
+    return getTasks().stream().map(Task::view).toList();
+  }
+
+  default List<EpicRecord> getEpicViews() {
+    return getEpics().stream().map(Epic::view).toList();
+  }
+
+  default List<SubtaskRecord> getSubtaskViews() {
+    return getSubtasks().stream().map(Subtask::view).toList();
+  }
+
   Task addTask(final Task task);
 
   Epic addEpic(final Epic epic);
@@ -0,0 +1,104 @@
+package ru.yandex.practicum.tasktracker.service;
+
+import java.time.Duration;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import ru.yandex.practicum.tasktracker.exception.ManagerSaveException;
+
+/**
+ * Background flusher of the write-behind mode of a {@link FileBackedTaskManager}.
+ * <p>
+ * Modifying operations only call {@link #markDirty()}. A single daemon thread coalesces them and
+ * runs the flush action once per interval, or as soon as the given number of operations is
+ * pending. At most one such early flush is queued at a time. The flush action is responsible for its own synchronization with the operations.
+ * <p>
+ * A failure of the flush action does not stop the flusher: the changes stay dirty to be retried on
+ * the next run. The operations have already been applied in memory, so the failure is not
+ * reported to them, but to {@link #checkHealth()} until a later run succeeds, and by
+ * {@link #close()}, which flushes on the calling thread.
+ *
+ * @see StorageConfig
+ */
+class WriteBehindFlusher {
+
+  private final Runnable flushAction;
+  private final int maxPendingOperations;
+  private final ScheduledExecutorService executor;
+  private final AtomicInteger pendingOperations = new AtomicInteger();
+  private final AtomicBoolean flushQueued = new AtomicBoolean();
+  private final AtomicReference<RuntimeException> failure = new AtomicReference<>();
+
+  WriteBehindFlusher(final Runnable flushAction, final Duration interval,
+      final int maxPendingOperations) {
+    this.flushAction = flushAction;
+    this.maxPendingOperations = maxPendingOperations;
+    this.executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+      final Thread thread = new Thread(runnable, "task-manager-flusher");
+      thread.setDaemon(true);
+      return thread;
+    });
+    executor.scheduleWithFixedDelay(this::flush, interval.toMillis(), interval.toMillis(),
+        TimeUnit.MILLISECONDS);
+  }
+
+  /**
+   * Registers one modifying operation that has to be flushed.
+   */
+  void markDirty() {
+    if (pendingOperations.incrementAndGet() >= maxPendingOperations
+        && flushQueued.compareAndSet(false, true)) {
+      executor.execute(this::flush);
+    }
+  }
+
+  /**
+   * Reports the failure of the last background flush, if no flush has succeeded since.
+   *
+   * @throws ManagerSaveException if the last background flush has failed
+   */
+  void checkHealth() {
+    final RuntimeException e = failure.get();
+    if (e != null) {
+      throw new ManagerSaveException("An error occurred during saving in the background.", e);
+    }
+  }
+
+  /**
+   * Stops the background thread and flushes the pending operations on the calling thread.
+   *
+   * @throws ManagerSaveException if the pending operations cannot be flushed
+   */
+  void close() {
+    executor.shutdown();
+    try {
+      if (!executor.awaitTermination(1, TimeUnit.MINUTES)) {
+        executor.shutdownNow();
+      }
+    } catch (InterruptedException e) {
+      executor.shutdownNow();
+      Thread.currentThread().interrupt();
+    }
+    if (pendingOperations.getAndSet(0) > 0) {
+      flushAction.run();
+    }
+  }
+
+  private void flush() {
+    flushQueued.set(false);
+    final int flushed = pendingOperations.getAndSet(0);
+    if (flushed == 0) {
+      return;
+    }
+    try {
+      flushAction.run();
+      failure.set(null);
+    } catch (RuntimeException e) {
+      pendingOperations.addAndGet(flushed);
+      failure.set(e);
+    }
+  }
+}
@@ -3,8 +3,12 @@ package ru.yandex.practicum.tasktracker.builder;
 import java.time.Duration;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.Assertions;
 import ru.yandex.practicum.tasktracker.model.Epic;
 import ru.yandex.practicum.tasktracker.model.Subtask;
 import ru.yandex.practicum.tasktracker.model.Task;
@@ -177,4 +181,56 @@ public class TestDataBuilder {
     return ids;
   }
 
+  /**
+   * Provides the CSV lines of the tasks sorted by id, so the tasks of two managers are compared
+   * with all their fields.
+   *
+   * @return {@code List<String>}
+   */
+  public static List<String> toLines(List<? extends Task> tasks) {
+    return tasks.stream()
+        .sorted(Comparator.comparingInt(Task::getId))
+        .map(Task::toCsvLine)
+        .toList();
+  }
+
+  /**
+   * Provides the CSV lines of all tasks, epics and subtasks of the manager sorted by id.
+   *
+   * @return {@code List<String>}
+   */
+  public static List<String> allTasks(TaskManager taskManager) {
+    return toLines(Stream.of(taskManager.getTasks(), taskManager.getEpics(),
+            taskManager.getSubtasks())
+        .<Task>flatMap(List::stream)
+        .toList());
+  }
+
+  /**
+   * Asserts that the {@code actual} manager, e.g. restored from a file, has the same tasks with
+   * the same fields, history, prioritized list and subtasks of the epics as the {@code expected}
+   * one.
+   */
+  public static void assertSameState(TaskManager expected, TaskManager actual) {
+    Assertions.assertAll(
+        () -> Assertions.assertIterableEquals(toLines(expected.getTasks()),
+            toLines(actual.getTasks()), "Tasks should be restored."),
+        () -> Assertions.assertIterableEquals(toLines(expected.getEpics()),
+            toLines(actual.getEpics()), "Epics should be restored."),
+        () -> Assertions.assertIterableEquals(toLines(expected.getSubtasks()),
+            toLines(actual.getSubtasks()), "Subtasks should be restored."),
+        () -> Assertions.assertIterableEquals(expected.getHistory(), actual.getHistory(),
+            "History should be restored."),
+        () -> Assertions.assertIterableEquals(expected.getPrioritizedTasks(),
+            actual.getPrioritizedTasks(), "Prioritized list should be same."),
+        () -> {
+          for (Epic epic : expected.getEpics()) {
+            Assertions.assertEquals(
+                expected.getSubtasks().stream().filter(s -> s.getEpicId() == epic.getId())
+                    .collect(Collectors.toSet()),
+                actual.getSubtasksByEpicId(epic.getId()), "Epic subtasks should be restored.");
+          }
+        }
+    );
+  }
 }
@@ -2,9 +2,12 @@ package ru.yandex.practicum.tasktracker.model;
 
 import java.time.Duration;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.Random;
 import java.util.stream.Stream;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.Assertions;
@@ -123,6 +126,65 @@ class EpicTest {
     );
   }
 
+  @Test
+  @DisplayName("status, duration, startTime and endTime follow the subtasks changed on the epic.")
+  void aggregatesShouldFollowSubtasksAddedUpdatedAndRemoved() {
+    final Random random = new Random(24);
+    final Epic standalone = new Epic();
+    final List<Subtask> added = new ArrayList<>();
+    for (int i = 0; i < 2000; i++) {
+      final Subtask subtask = TestDataBuilder.buildSubtask(1 + random.nextInt(300), "s", "d", 1);
+      subtask.setStatus(TaskStatus.values()[random.nextInt(TaskStatus.values().length)]);
+      subtask.setDuration(Duration.ofMinutes(random.nextInt(60)));
+      subtask.setStartTime(random.nextInt(4) == 0 ? null
+          : BASE_TEST_TIME.plusMinutes(random.nextInt(10_000)));
+      switch (random.nextInt(4)) {
+        case 0 -> standalone.removeSubtask(subtask);
+        case 1 -> standalone.updateSubtask(subtask);
+        default -> standalone.addSubtask(subtask);
+      }
+      added.clear();
+      added.addAll(standalone.getSubtasks());
+      final TaskStatus expectedStatus =
+          added.stream().allMatch(s -> s.getStatus() == TaskStatus.NEW) ? TaskStatus.NEW
+              : added.stream().allMatch(s -> s.getStatus() == TaskStatus.DONE) ? TaskStatus.DONE
+                  : TaskStatus.IN_PROGRESS;
+
+      Assertions.assertEquals(expectedStatus, standalone.getStatus(), "Status differs.");
+      Assertions.assertEquals(added.stream().map(Subtask::getDuration)
+          .reduce(Duration.ZERO, Duration::plus), standalone.getDuration(), "Duration differs.");
+      Assertions.assertEquals(added.stream().map(Subtask::getStartTime).filter(Objects::nonNull)
+          .min(LocalDateTime::compareTo).orElse(null), standalone.getStartTime(),
+          "Start time differs.");
+      Assertions.assertEquals(added.stream().map(Subtask::getEndTime).filter(Objects::nonNull)
+          .max(LocalDateTime::compareTo).orElse(null), standalone.getEndTime(),
+          "End time differs.");
+    }
+  }
+
+  @Test
+  @DisplayName("copy() - keeps the aggregates apart from the original epic.")
+  void copyShouldKeepAggregatesApart() {
+    addNewSubtasksToTheEpic();
+    updateSubtaskWithTimeValues(subtask1, BASE_TEST_TIME, 25);
+    final Epic original = taskManager.getEpicById(epic.getId());
+    final Epic copy = original.copy();
+
+    subtask1.setStatus(TaskStatus.DONE);
+    copy.updateSubtask(subtask1);
+    copy.removeSubtask(subtask2);
+
+    Assertions.assertAll(
+        () -> Assertions.assertEquals(TaskStatus.DONE, copy.getStatus(), "Copy should change."),
+        () -> Assertions.assertEquals(TaskStatus.NEW, original.getStatus(),
+            "Original status should stay."),
+        () -> Assertions.assertEquals(2, original.getSubtasks().size(),
+            "Original subtasks should stay."),
+        () -> Assertions.assertEquals(BASE_TEST_TIME.plusMinutes(25), original.getEndTime(),
+            "Original end time should stay.")
+    );
+  }
+
   static Stream<Arguments> provideDataForTimeCalculation() {
     final Map<Integer, List<String>> messages = new HashMap<>();
     messages.put(1, List.of("Epic without subtasks - duration should be zero.",
@@ -24,4 +24,17 @@ class TaskTest {
     Assertions.assertNotEquals(task1, task2,
         "Tasks with different ID are expected to be not equal, but they are.");
   }
+
+  @Test
+  void verifyViewIsTakenAgainAfterChange() {
+    Task task = TestDataBuilder.buildTask(1, "Task1", "Description1", TaskStatus.NEW);
+    TaskView view = task.view();
+
+    Assertions.assertSame(view, task.view(), "The view is expected to be shared.");
+    task.setStatus(TaskStatus.DONE);
+    Assertions.assertEquals(TaskStatus.DONE, task.view().status(),
+        "The view is expected to follow the change of the task.");
+    Assertions.assertEquals(TaskStatus.NEW, view.status(),
+        "The view taken before the change is expected to stay the same.");
+  }
 }
\ No newline at end of file
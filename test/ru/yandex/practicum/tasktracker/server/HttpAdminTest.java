@@ -0,0 +1,286 @@
+package ru.yandex.practicum.tasktracker.server;
+
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.net.Socket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.time.Duration;
+import java.util.zip.GZIPInputStream;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import ru.yandex.practicum.tasktracker.builder.TestDataBuilder;
+import ru.yandex.practicum.tasktracker.service.FileBackedTaskManager;
+import ru.yandex.practicum.tasktracker.service.FollowerTaskManager;
+import ru.yandex.practicum.tasktracker.service.Managers;
+import ru.yandex.practicum.tasktracker.service.StorageConfig;
+
+public class HttpAdminTest {
+
+  private static final String BASE_ENDPOINT = "http://localhost:8080/admin/backup";
+  private FileBackedTaskManager manager;
+  private HttpTaskServer taskServer;
+  private File file;
+
+  @BeforeEach
+  void setUp() throws IOException {
+    file = File.createTempFile("adminFile", ".csv");
+    file.deleteOnExit();
+    manager = FileBackedTaskManager.loadFromFile(file);
+    taskServer = new HttpTaskServer(manager);
+    taskServer.start();
+  }
+
+  @AfterEach
+  void tearDown() {
+    taskServer.stop();
+  }
+
+  @Test
+  @DisplayName("GET /admin/backup should stream a snapshot of the TaskManager")
+  public void getBackupStreamsSnapshot() throws IOException, InterruptedException {
+    /* Given */
+    TestDataBuilder.addTaskDataToTheTaskManager(manager);
+    final File backupFile = File.createTempFile("adminBackup", ".csv");
+    backupFile.deleteOnExit();
+    /* When */
+    final HttpResponse<String> response = sendGetRequest(BASE_ENDPOINT);
+    Files.writeString(backupFile.toPath(), response.body());
+    final FileBackedTaskManager restored = FileBackedTaskManager.loadFromFile(backupFile);
+    /* Then */
+    Assertions.assertAll(
+        () -> Assertions.assertEquals(200, response.statusCode(),
+            "HTTP status code should be 200."),
+        () -> Assertions.assertEquals(manager.getTasks().size(), restored.getTasks().size(),
+            "Tasks should be restored from the backup."),
+        () -> Assertions.assertEquals(manager.getEpics().size(), restored.getEpics().size(),
+            "Epics should be restored from the backup."),
+        () -> Assertions.assertEquals(manager.getSubtasks().size(),
+            restored.getSubtasks().size(), "Subtasks should be restored from the backup.")
+    );
+  }
+
+  @Test
+  @DisplayName("GET /admin/backup should compress the snapshot for a client accepting gzip")
+  public void getBackupCompressesSnapshotForGzipClient() throws IOException, InterruptedException {
+    /* Given */
+    TestDataBuilder.addTaskDataToTheTaskManager(manager);
+    final File backupFile = File.createTempFile("adminBackup", ".csv");
+    backupFile.deleteOnExit();
+    final HttpRequest request = HttpRequest.newBuilder()
+        .uri(URI.create(BASE_ENDPOINT))
+        .header("Accept-Encoding", "gzip")
+        .GET()
+        .build();
+    /* When */
+    final HttpResponse<byte[]> response = HttpClient.newHttpClient()
+        .send(request, HttpResponse.BodyHandlers.ofByteArray());
+    try (final InputStream in = new GZIPInputStream(new ByteArrayInputStream(response.body()))) {
+      Files.write(backupFile.toPath(), in.readAllBytes());
+    }
+    final FileBackedTaskManager restored = FileBackedTaskManager.loadFromFile(backupFile);
+    /* Then */
+    Assertions.assertAll(
+        () -> Assertions.assertEquals(200, response.statusCode(),
+            "HTTP status code should be 200."),
+        () -> Assertions.assertEquals("gzip",
+            response.headers().firstValue("Content-Encoding").orElse(null),
+            "Backup should be compressed."),
+        () -> Assertions.assertEquals(manager.getSubtasks().size(),
+            restored.getSubtasks().size(), "Subtasks should be restored from the backup.")
+    );
+  }
+
+  @Test
+  @DisplayName("GET /admin/backup should not hold up a modification while it is streamed")
+  public void getBackupDoesNotHoldUpModification() throws IOException, InterruptedException {
+    /* Given */
+    taskServer.stop();
+    manager = FileBackedTaskManager.loadFromFile(file, StorageConfig.journal()
+        .setCompactionThreshold(100_000));
+    taskServer = new HttpTaskServer(manager);
+    taskServer.start();
+    final String description = "d".repeat(1000);
+    for (int i = 0; i < 20_000; i++) {
+      manager.addTask(TestDataBuilder.buildTask("t" + i, description));
+    }
+    try (final Socket slowClient = new Socket("localhost", HttpTaskServer.PORT)) {
+      slowClient.getOutputStream().write("GET /admin/backup HTTP/1.1\r\nHost: localhost\r\n\r\n"
+          .getBytes(StandardCharsets.US_ASCII));
+      final String statusLine = new BufferedReader(new InputStreamReader(
+          slowClient.getInputStream(), StandardCharsets.US_ASCII)).readLine();
+      /* When */
+      final HttpResponse<String> response = HttpClient.newHttpClient().send(
+          HttpRequest.newBuilder()
+              .uri(URI.create("http://localhost:8080/tasks"))
+              .timeout(Duration.ofSeconds(10))
+              .POST(HttpRequest.BodyPublishers.ofString(
+                  Managers.getGson().toJson(TestDataBuilder.buildTask("new", "d"))))
+              .build(),
+          HttpResponse.BodyHandlers.ofString());
+      /* Then */
+      Assertions.assertAll(
+          () -> Assertions.assertTrue(statusLine.endsWith("200 OK"),
+              "Backup should be in flight."),
+          () -> Assertions.assertEquals(201, response.statusCode(),
+              "Modification should be handled while the backup is streamed.")
+      );
+    }
+  }
+
+  @Test
+  @DisplayName("GET /admin/backup/last should return the throughput of the last backup")
+  public void getLastBackupReturnsReport() throws IOException, InterruptedException {
+    /* Given */
+    TestDataBuilder.addTaskDataToTheTaskManager(manager);
+    final HttpResponse<String> backup = sendGetRequest(BASE_ENDPOINT);
+    /* When */
+    final HttpResponse<String> response = sendGetRequest(BASE_ENDPOINT + "/last");
+    final JsonObject report = JsonParser.parseString(response.body()).getAsJsonObject();
+    /* Then */
+    Assertions.assertAll(
+        () -> Assertions.assertEquals(200, response.statusCode(),
+            "HTTP status code should be 200."),
+        () -> Assertions.assertEquals(backup.body().length(), report.get("bytes").getAsLong(),
+            "Report should contain the size of the backup."),
+        () -> Assertions.assertTrue(report.has("megabytesPerSecond"),
+            "Report should contain the throughput.")
+    );
+  }
+
+  @Test
+  @DisplayName("GET /admin/backup/last should return 404 before the first backup")
+  public void getLastBackupReturns404BeforeFirstBackup() throws IOException, InterruptedException {
+    final HttpResponse<String> response = sendGetRequest(BASE_ENDPOINT + "/last");
+
+    Assertions.assertEquals(404, response.statusCode(), "HTTP status code should be 404.");
+  }
+
+  @Test
+  @DisplayName("GET /admin/backup should return 404 for a TaskManager without a file")
+  public void getBackupReturns404ForInMemoryTaskManager()
+      throws IOException, InterruptedException {
+    taskServer.stop();
+    taskServer = new HttpTaskServer(Managers.getDefault());
+    taskServer.start();
+
+    final HttpResponse<String> response = sendGetRequest(BASE_ENDPOINT);
+
+    Assertions.assertEquals(404, response.statusCode(), "HTTP status code should be 404.");
+  }
+
+  @Test
+  @DisplayName("GET /admin/checkpoint should return the metrics of the background checkpoints")
+  public void getCheckpointReturnsMetrics() throws IOException, InterruptedException {
+    /* Given */
+    taskServer.stop();
+    manager.close();
+    manager = FileBackedTaskManager.loadFromFile(file, StorageConfig.journal()
+        .setCompactionThreshold(2)
+        .setBackgroundCheckpointEnabled(true));
+    taskServer = new HttpTaskServer(manager);
+    taskServer.start();
+    TestDataBuilder.addTaskDataToTheTaskManager(manager);
+    manager.close();
+    /* When */
+    final HttpResponse<String> response = sendGetRequest("http://localhost:8080/admin/checkpoint");
+    final JsonObject metrics = JsonParser.parseString(response.body()).getAsJsonObject();
+    /* Then */
+    Assertions.assertAll(
+        () -> Assertions.assertEquals(200, response.statusCode(),
+            "HTTP status code should be 200."),
+        () -> Assertions.assertTrue(metrics.get("checkpoints").getAsLong() > 0,
+            "Metrics should count the checkpoints."),
+        () -> Assertions.assertTrue(metrics.has("lagRecords"), "Metrics should contain the lag.")
+    );
+  }
+
+  @Test
+  @DisplayName("GET /admin/checkpoint should return 404 without background checkpoints")
+  public void getCheckpointReturns404WithoutBackgroundCheckpoints()
+      throws IOException, InterruptedException {
+    final HttpResponse<String> response = sendGetRequest("http://localhost:8080/admin/checkpoint");
+
+    Assertions.assertEquals(404, response.statusCode(), "HTTP status code should be 404.");
+  }
+
+  @Test
+  @DisplayName("GET /admin/replication should return the lag of a follower, which rejects writes")
+  public void getReplicationReturnsMetricsOfFollower() throws IOException, InterruptedException {
+    /* Given */
+    TestDataBuilder.addTaskDataToTheTaskManager(manager);
+    taskServer.stop();
+    final FollowerTaskManager follower = FollowerTaskManager.follow(file, StorageConfig.snapshot());
+    taskServer = new HttpTaskServer(follower);
+    taskServer.start();
+    /* When */
+    final HttpResponse<String> response =
+        sendGetRequest("http://localhost:8080/admin/replication");
+    final JsonObject metrics = JsonParser.parseString(response.body()).getAsJsonObject();
+    final HttpResponse<String> post = HttpClient.newHttpClient().send(HttpRequest.newBuilder()
+            .POST(HttpRequest.BodyPublishers.ofString("{}"))
+            .uri(URI.create("http://localhost:8080/tasks"))
+            .build(),
+        HttpResponse.BodyHandlers.ofString());
+    follower.close();
+    /* Then */
+    Assertions.assertAll(
+        () -> Assertions.assertEquals(200, response.statusCode(),
+            "HTTP status code should be 200."),
+        () -> Assertions.assertEquals(1, metrics.get("reloads").getAsLong(),
+            "Metrics should count the reloads."),
+        () -> Assertions.assertTrue(metrics.has("lagMillis"), "Metrics should contain the lag."),
+        () -> Assertions.assertEquals(405, post.statusCode(), "Follower should reject writes.")
+    );
+  }
+
+  @Test
+  @DisplayName("stop() should close the TaskManager, writing its pending changes")
+  public void stopClosesTaskManager() throws IOException {
+    /* Given */
+    taskServer.stop();
+    manager = FileBackedTaskManager.loadFromFile(file, StorageConfig.snapshot()
+        .setWriteBehindEnabled(true)
+        .setFlushInterval(Duration.ofHours(1))
+        .setFlushOperations(1000));
+    taskServer = new HttpTaskServer(manager);
+    taskServer.start();
+    TestDataBuilder.addTaskDataToTheTaskManager(manager);
+    /* When */
+    taskServer.stop();
+    final FileBackedTaskManager restored = FileBackedTaskManager.loadFromFile(file);
+    /* Then */
+    TestDataBuilder.assertSameState(manager, restored);
+  }
+
+  @Test
+  @DisplayName("GET /admin/replication should return 404 for a writer")
+  public void getReplicationReturns404ForWriter() throws IOException, InterruptedException {
+    final HttpResponse<String> response =
+        sendGetRequest("http://localhost:8080/admin/replication");
+
+    Assertions.assertEquals(404, response.statusCode(), "HTTP status code should be 404.");
+  }
+
+  private HttpResponse<String> sendGetRequest(final String uri)
+      throws IOException, InterruptedException {
+    final HttpRequest request = HttpRequest.newBuilder()
+        .GET()
+        .uri(URI.create(uri))
+        .build();
+    return HttpClient.newHttpClient().send(request, HttpResponse.BodyHandlers.ofString());
+  }
+}
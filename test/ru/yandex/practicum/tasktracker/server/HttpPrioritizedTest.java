@@ -1,9 +1,14 @@
 package ru.yandex.practicum.tasktracker.server;
 
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
 import com.google.gson.reflect.TypeToken;
 import java.io.IOException;
+import java.net.URI;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.time.LocalDateTime;
 import java.util.List;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.BeforeEach;
@@ -11,6 +16,8 @@ import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import ru.yandex.practicum.tasktracker.builder.TestDataBuilder;
 import ru.yandex.practicum.tasktracker.model.Task;
+import ru.yandex.practicum.tasktracker.model.TaskStatus;
+import ru.yandex.practicum.tasktracker.server.handlers.PrioritizedHandler;
 
 public class HttpPrioritizedTest extends HttpHistoryTest {
 
@@ -60,7 +67,96 @@ public class HttpPrioritizedTest extends HttpHistoryTest {
     Assertions.assertIterableEquals(expected, actual, "Should return same list of task objects.");
   }
 
-}
+  @Test
+  @DisplayName("GET /prioritized?from=&to=&limit= should return the pages of the window")
+  public void getWindowReturnsPagesWithNextCursor() throws IOException, InterruptedException {
+    /* Given */
+    final LocalDateTime start = LocalDateTime.of(2024, 5, 20, 9, 0);
+    for (int i = 0; i < 5; i++) {
+      manager.addTask(TestDataBuilder.buildTask(0, "task" + i, "d", TaskStatus.NEW,
+          Duration.ofMinutes(30), start.plusDays(i)));
+    }
+    final String window = BASE_ENDPOINT + "?from=" + start.plusDays(1) + "&to=" + start.plusDays(4)
+        + "&limit=2";
+    /* When */
+    final HttpResponse<String> first = sendRequest(createGetRequest(window));
+    final String cursor = first.headers().firstValue(PrioritizedHandler.NEXT_CURSOR).orElseThrow();
+    final HttpResponse<String> second = sendRequest(createGetRequest(window + "&after=" + cursor));
+    /* Then */
+    assertStatusCode(first, 200);
+    assertStatusCode(second, 200);
+    final List<Task> expected = manager.getPrioritizedTasks();
+    Assertions.assertAll(
+        () -> Assertions.assertIterableEquals(expected.subList(1, 3),
+            parseAllTaskTypesFromResponse(first), "First page should hold two tasks."),
+        () -> Assertions.assertIterableEquals(expected.subList(3, 4),
+            parseAllTaskTypesFromResponse(second), "Second page should hold the rest."),
+        () -> Assertions.assertTrue(second.headers().firstValue(PrioritizedHandler.NEXT_CURSOR)
+            .isEmpty(), "Last page should have no next cursor.")
+    );
+  }
+
+  @Test
+  @DisplayName("GET /prioritized with an invalid window should return 400")
+  public void getInvalidWindowReturns400() throws IOException, InterruptedException {
+    for (String query : List.of("?limit=0", "?from=yesterday", "?page=2",
+        "?from=2024-05-21T10:00&to=2024-05-20T10:00")) {
+      final HttpResponse<String> response = sendRequest(createGetRequest(BASE_ENDPOINT + query));
 
+      Assertions.assertEquals(400, response.statusCode(), "Should reject " + query);
+    }
+  }
 
+  @Test
+  @DisplayName("GET /prioritized/slot should return the earliest free slot of the duration")
+  public void getSlotReturnsEarliestFreeSlot() throws IOException, InterruptedException {
+    /* Given */
+    final LocalDateTime start = LocalDateTime.of(2024, 5, 20, 9, 0);
+    manager.addTask(TestDataBuilder.buildTask(0, "t1", "d", TaskStatus.NEW,
+        Duration.ofMinutes(30), start));
+    manager.addTask(TestDataBuilder.buildTask(0, "t2", "d", TaskStatus.NEW,
+        Duration.ofMinutes(30), start.plusMinutes(40)));
+    /* When */
+    final HttpResponse<String> response = sendRequest(createGetRequest(
+        BASE_ENDPOINT + "/slot?after=" + start + "&duration=15"));
+    final HttpResponse<String> missing = sendRequest(createGetRequest(
+        BASE_ENDPOINT + "/slot?duration=15"));
+    /* Then */
+    assertStatusCode(response, 200);
+    assertStatusCode(missing, 400);
+    final JsonObject slot = JsonParser.parseString(response.body()).getAsJsonObject();
+    Assertions.assertAll(
+        () -> Assertions.assertEquals(gson.toJsonTree(start.plusMinutes(70)),
+            slot.get("startTime"), "Slot should follow the tasks."),
+        () -> Assertions.assertEquals(gson.toJsonTree(start.plusMinutes(85)),
+            slot.get("endTime"), "Slot should last the duration.")
+    );
+  }
 
+  @Test
+  @DisplayName("POST /prioritized/schedule should give free slots to the unscheduled tasks")
+  public void postScheduleGivesSlotsToUnscheduledTasks() throws IOException, InterruptedException {
+    /* Given */
+    final LocalDateTime start = LocalDateTime.of(2024, 5, 20, 9, 0);
+    manager.addTask(TestDataBuilder.buildTask(0, "t1", "d", TaskStatus.NEW,
+        Duration.ofMinutes(30), start));
+    final Task unscheduled = TestDataBuilder.buildTask(0, "t2", "d", TaskStatus.NEW);
+    unscheduled.setDuration(Duration.ofMinutes(30));
+    manager.addTask(unscheduled);
+    final HttpRequest request = HttpRequest.newBuilder()
+        .POST(HttpRequest.BodyPublishers.noBody())
+        .uri(URI.create(BASE_ENDPOINT + "/schedule?after=" + start))
+        .build();
+    /* When */
+    final HttpResponse<String> response = sendRequest(request);
+    /* Then */
+    assertStatusCode(response, 200);
+    final List<Task> scheduled = parseAllTaskTypesFromResponse(response);
+    Assertions.assertAll(
+        () -> Assertions.assertEquals(1, scheduled.size(), "One task should be scheduled."),
+        () -> Assertions.assertEquals(start.plusMinutes(30),
+            manager.getTaskById(unscheduled.getId()).getStartTime(),
+            "Task should get the slot after the scheduled one.")
+    );
+  }
+}
@@ -0,0 +1,108 @@
+package ru.yandex.practicum.tasktracker.service;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import ru.yandex.practicum.tasktracker.service.BPlusTree.Entry;
+import ru.yandex.practicum.tasktracker.service.BPlusTree.Key;
+
+class BPlusTreeTest {
+
+  private File file;
+  private BTreePageCache cache;
+
+  @BeforeEach
+  void setUp() throws IOException {
+    file = File.createTempFile("bplusTree", ".pages");
+    Files.delete(file.toPath());
+    cache = BTreePageCache.open(file, 4, Durability.NONE);
+  }
+
+  @AfterEach
+  void tearDown() throws IOException {
+    cache.close();
+    Files.deleteIfExists(file.toPath());
+  }
+
+  @Test
+  @DisplayName("Random puts and removals keep the same entries as a TreeMap.")
+  void randomOperationsShouldMatchTreeMap() throws IOException {
+    final BPlusTree tree = BPlusTree.create(cache);
+    final TreeMap<Key, byte[]> expected = new TreeMap<>();
+    final Random random = new Random(42);
+    for (int i = 0; i < 20_000; i++) {
+      final Key key = new Key(random.nextInt(50), random.nextInt(200));
+      if (random.nextInt(3) == 0) {
+        Assertions.assertEquals(expected.remove(key) != null, tree.remove(key),
+            "Removal should report whether the key was present.");
+      } else {
+        final byte[] value = new byte[random.nextInt(10) == 0 ? 3000 : random.nextInt(40)];
+        random.nextBytes(value);
+        expected.put(key, value);
+        tree.put(key, value);
+      }
+      if (i % 100 == 0) {
+        cache.commit();
+      }
+    }
+    cache.commit();
+    final int root = tree.root();
+    cache.close();
+    cache = BTreePageCache.open(file, 4, Durability.NONE);
+    final BPlusTree reopened = BPlusTree.open(cache, root);
+    final Key probe = new Key(25, 100);
+
+    Assertions.assertAll(
+        () -> Assertions.assertEquals(toStrings(expected), toStrings(scan(reopened))),
+        () -> Assertions.assertEquals(expected.floorKey(probe), keyOf(reopened.floor(probe))),
+        () -> Assertions.assertEquals(expected.ceilingKey(probe), keyOf(reopened.ceiling(probe))),
+        () -> Assertions.assertTrue(reopened.depth() > 1, "Tree should grow beyond one leaf.")
+    );
+  }
+
+  @Test
+  @DisplayName("Removing every key leaves an empty tree of one page.")
+  void removingAllKeysShouldShrinkTree() {
+    final BPlusTree tree = BPlusTree.create(cache);
+    for (int i = 0; i < 5000; i++) {
+      tree.put(new Key(0, i), new byte[16]);
+    }
+    for (int i = 0; i < 5000; i++) {
+      tree.remove(new Key(0, i));
+    }
+    cache.commit();
+
+    Assertions.assertAll(
+        () -> Assertions.assertTrue(scan(tree).isEmpty(), "Tree should be empty."),
+        () -> Assertions.assertEquals(1, tree.depth(), "Root should be a leaf."),
+        () -> Assertions.assertNull(tree.floor(Key.MAX), "Empty tree has no floor.")
+    );
+  }
+
+  private static TreeMap<Key, byte[]> scan(final BPlusTree tree) {
+    final TreeMap<Key, byte[]> entries = new TreeMap<>();
+    tree.scan(Key.MIN, Key.MAX, (key, value) -> entries.put(key, value) == null);
+    return entries;
+  }
+
+  private static List<String> toStrings(final Map<Key, byte[]> entries) {
+    final List<String> strings = new ArrayList<>();
+    entries.forEach((key, value) -> strings.add(key + "=" + Arrays.toString(value)));
+    return strings;
+  }
+
+  private static Key keyOf(final Entry entry) {
+    return entry == null ? null : entry.key();
+  }
+}
@@ -0,0 +1,148 @@
+package ru.yandex.practicum.tasktracker.service;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import ru.yandex.practicum.tasktracker.builder.TestDataBuilder;
+import ru.yandex.practicum.tasktracker.model.Epic;
+import ru.yandex.practicum.tasktracker.model.Subtask;
+import ru.yandex.practicum.tasktracker.model.Task;
+import ru.yandex.practicum.tasktracker.model.TaskStatus;
+
+class BTreeTaskManagerTest extends TaskManagerTest<BTreeTaskManager> {
+
+  private static final int CACHE_PAGES = 8;
+  private File file;
+
+  @BeforeEach
+  @Override
+  void setUp() {
+    try {
+      file = File.createTempFile("btreeFile", ".pages");
+      Files.delete(file.toPath());
+      taskManager = BTreeTaskManager.open(file, CACHE_PAGES, Durability.FLUSH);
+    } catch (IOException e) {
+      System.out.println(e.getMessage());
+    }
+  }
+
+  @AfterEach
+  void tearDown() throws IOException {
+    taskManager.close();
+    Files.deleteIfExists(file.toPath());
+    Files.deleteIfExists(Path.of(file.getPath() + ".dwb"));
+  }
+
+  @Test
+  @DisplayName("Tasks, subtasks of epics, priorities and ids survive reopening.")
+  void stateShouldSurviveReopening() {
+    TestDataBuilder.addTaskDataToTheTaskManager(taskManager);
+    final List<String> tasks = TestDataBuilder.toLines(taskManager.getTasks());
+    final List<String> epics = TestDataBuilder.toLines(taskManager.getEpics());
+    final List<String> subtasks = TestDataBuilder.toLines(taskManager.getSubtasks());
+    final List<Task> prioritized = taskManager.getPrioritizedTasks();
+    final int lastId = taskManager.addTask(TestDataBuilder.buildTask("last", "d")).getId();
+    taskManager.deleteTask(lastId);
+    taskManager.close();
+
+    taskManager = BTreeTaskManager.open(file, CACHE_PAGES, Durability.FLUSH);
+
+    Assertions.assertAll(
+        () -> Assertions.assertIterableEquals(tasks,
+            TestDataBuilder.toLines(taskManager.getTasks()),
+            "Tasks should be restored."),
+        () -> Assertions.assertIterableEquals(epics,
+            TestDataBuilder.toLines(taskManager.getEpics()),
+            "Epics should be restored."),
+        () -> Assertions.assertIterableEquals(subtasks,
+            TestDataBuilder.toLines(taskManager.getSubtasks()),
+            "Subtasks should be restored."),
+        () -> Assertions.assertIterableEquals(prioritized, taskManager.getPrioritizedTasks(),
+            "Prioritized tasks should be restored."),
+        () -> Assertions.assertEquals(lastId + 1,
+            taskManager.addTask(TestDataBuilder.buildTask("next", "d")).getId(),
+            "Ids should not be given again.")
+    );
+  }
+
+  @Test
+  @DisplayName("A board larger than the cache is kept on disk in order.")
+  void boardLargerThanCacheShouldBeKeptInOrder() {
+    final Epic epic = taskManager.addEpic(TestDataBuilder.buildEpic("epic", "d"));
+    final List<Integer> ids = new ArrayList<>();
+    for (int i = 0; i < 3000; i++) {
+      final Task task = i % 3 == 0
+          ? TestDataBuilder.buildSubtask("subtask " + i, "d", epic.getId(), Duration.ofMinutes(1),
+          BASE_TEST_TIME.minusMinutes(i))
+          : TestDataBuilder.buildTask(0, "task " + i, "d", TaskStatus.NEW, Duration.ofMinutes(1),
+              BASE_TEST_TIME.minusMinutes(i));
+      ids.add((task instanceof Subtask subtask ? taskManager.addSubtask(subtask)
+          : taskManager.addTask(task)).getId());
+    }
+    for (int i = 0; i < ids.size(); i += 2) {
+      if (i % 3 == 0) {
+        taskManager.deleteSubtask(ids.get(i));
+      } else {
+        taskManager.deleteTask(ids.get(i));
+      }
+    }
+    final List<Task> prioritized = taskManager.getPrioritizedTasks();
+
+    Assertions.assertAll(
+        () -> Assertions.assertEquals(1500, prioritized.size(),
+            "Remaining tasks should be prioritized."),
+        () -> Assertions.assertIterableEquals(prioritized.stream()
+                .sorted(Comparator.comparing(Task::getStartTime)).toList(), prioritized,
+            "Tasks should be ordered by start time."),
+        () -> Assertions.assertEquals(500, taskManager.getSubtasksByEpicId(epic.getId()).size(),
+            "Remaining subtasks should belong to the epic."),
+        () -> Assertions.assertTrue(taskManager.cachedPages() <= CACHE_PAGES,
+            "Cache should stay within its capacity.")
+    );
+  }
+
+  @Test
+  @DisplayName("A long description is kept in overflow pages, which are reused.")
+  void longDescriptionShouldBeKeptInReusedOverflowPages() {
+    final String description = "d".repeat(20_000);
+    final Task task = taskManager.addTask(TestDataBuilder.buildTask("task", description));
+    taskManager.updateTask(task);
+    final int pageCount = taskManager.pageCount();
+    for (int i = 0; i < 10; i++) {
+      task.setTitle("title " + i);
+      taskManager.updateTask(task);
+    }
+
+    Assertions.assertAll(
+        () -> Assertions.assertEquals(description,
+            taskManager.getTaskById(task.getId()).getDescription(),
+            "Description should be restored."),
+        () -> Assertions.assertEquals(pageCount, taskManager.pageCount(),
+            "Freed overflow pages should be reused.")
+    );
+  }
+
+  @Test
+  @DisplayName("A failed update keeps the task prioritized.")
+  void conflictingUpdateShouldKeepTaskPrioritized() {
+    final Task first = taskManager.addTask(TestDataBuilder.buildTask(0, "first", "d",
+        TaskStatus.NEW, Duration.ofMinutes(30), BASE_TEST_TIME));
+    final Task second = taskManager.addTask(TestDataBuilder.buildTask(0, "second", "d",
+        TaskStatus.NEW, Duration.ofMinutes(30), BASE_TEST_TIME.plusHours(1)));
+    second.setStartTime(BASE_TEST_TIME.plusMinutes(15));
+
+    Assertions.assertThrows(RuntimeException.class, () -> taskManager.updateTask(second));
+    Assertions.assertEquals(List.of(first, second), taskManager.getPrioritizedTasks(),
+        "Both tasks should stay prioritized.");
+  }
+}
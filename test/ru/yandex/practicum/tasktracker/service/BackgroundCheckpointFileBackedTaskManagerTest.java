@@ -0,0 +1,196 @@
+package ru.yandex.practicum.tasktracker.service;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.List;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import ru.yandex.practicum.tasktracker.builder.TestDataBuilder;
+import ru.yandex.practicum.tasktracker.exception.ManagerSaveException;
+import ru.yandex.practicum.tasktracker.model.Epic;
+import ru.yandex.practicum.tasktracker.model.Task;
+
+class BackgroundCheckpointFileBackedTaskManagerTest
+    extends TaskManagerTest<FileBackedTaskManager> {
+
+  private static final int COMPACTION_THRESHOLD = 4;
+  @TempDir
+  Path directory;
+  private File file;
+  private Path journal;
+
+  @BeforeEach
+  @Override
+  void setUp() {
+    try {
+      file = Files.createFile(directory.resolve("checkpointedFile.csv")).toFile();
+      journal = Path.of(file.getPath() + ".journal");
+      taskManager = FileBackedTaskManager.loadFromFile(file, withBackgroundCheckpoints());
+    } catch (IOException e) {
+      System.out.println(e.getMessage());
+    }
+  }
+
+  @AfterEach
+  void tearDown() {
+    taskManager.close();
+  }
+
+  @Test
+  @DisplayName("Checkpoints fold the journal into the snapshot and the state survives reloading.")
+  void checkpointShouldFoldJournalIntoSnapshot() throws IOException {
+    for (int i = 0; i < COMPACTION_THRESHOLD * 10; i++) {
+      taskManager.addTask(TestDataBuilder.buildTask("task " + i, "d"));
+    }
+    TestDataBuilder.addTaskDataToTheTaskManager(taskManager);
+    final List<String> expected = TestDataBuilder.allTasks(taskManager);
+    taskManager.close();
+    final CheckpointMetrics metrics = taskManager.getCheckpointMetrics();
+    final long journalRecords = Files.exists(journal) ? Files.readAllLines(journal).size() - 1 : 0;
+
+    final FileBackedTaskManager reloaded = FileBackedTaskManager.loadFromFile(file,
+        withBackgroundCheckpoints());
+
+    Assertions.assertAll(
+        () -> Assertions.assertTrue(metrics.checkpoints() > 0, "Checkpoints should be counted."),
+        () -> Assertions.assertEquals(0, metrics.failures(), "No checkpoint should fail."),
+        () -> Assertions.assertEquals(journalRecords, metrics.lagRecords(),
+            "Lag should be the records left in the journal."),
+        () -> Assertions.assertTrue(Files.size(file.toPath()) > 0, "Snapshot should be written."),
+        () -> Assertions.assertTrue(filesOf(file).stream()
+                .noneMatch(path -> path.getFileName().toString().contains(".sealed-")),
+            "Sealed journals should be deleted."),
+        () -> Assertions.assertIterableEquals(expected, TestDataBuilder.allTasks(reloaded),
+            "State should survive reloading.")
+    );
+    reloaded.close();
+  }
+
+  @Test
+  @DisplayName("loadFromFile() replays a journal sealed by an interrupted checkpoint.")
+  void loadFromFileShouldReplaySealedJournal() throws IOException {
+    taskManager.close();
+    final FileBackedTaskManager writer = FileBackedTaskManager.loadFromFile(file,
+        StorageConfig.journal());
+    writer.addTask(TestDataBuilder.buildTask("first", "d"));
+    writer.addTask(TestDataBuilder.buildTask("second", "d"));
+    final List<String> expected = TestDataBuilder.allTasks(writer);
+    writer.close();
+    Files.move(journal, Path.of(journal + ".sealed-1"));
+
+    taskManager = FileBackedTaskManager.loadFromFile(file, withBackgroundCheckpoints());
+
+    Assertions.assertAll(
+        () -> Assertions.assertIterableEquals(expected, TestDataBuilder.allTasks(taskManager),
+            "Sealed journal should be replayed."),
+        () -> Assertions.assertFalse(Files.exists(Path.of(journal + ".sealed-1")),
+            "Sealed journal should be folded into the snapshot.")
+    );
+  }
+
+  @Test
+  @DisplayName("loadFromFile() replays a sealed journal the snapshot already covers.")
+  void loadFromFileShouldReplaySealedJournalCoveredBySnapshot() throws IOException {
+    taskManager.close();
+    final FileBackedTaskManager writer = FileBackedTaskManager.loadFromFile(file,
+        StorageConfig.journal());
+    final Epic epic = writer.addEpic(TestDataBuilder.buildEpic("epic", "d"));
+    writer.addSubtask(TestDataBuilder.buildSubtask("subtask", "d", epic.getId()));
+    writer.deleteEpic(epic.getId());
+    final Task task = writer.addTask(TestDataBuilder.buildTask("task", "d"));
+    writer.close();
+    final Path copy = Path.of(journal + ".copy");
+    Files.copy(journal, copy, StandardCopyOption.REPLACE_EXISTING);
+    FileBackedTaskManager.loadFromFile(file, StorageConfig.journal()).close();
+    Files.move(copy, Path.of(journal + ".sealed-1"));
+
+    taskManager = FileBackedTaskManager.loadFromFile(file, withBackgroundCheckpoints());
+
+    Assertions.assertAll(
+        () -> Assertions.assertTrue(taskManager.getEpics().isEmpty(),
+            "Removed epic should stay removed."),
+        () -> Assertions.assertTrue(taskManager.getSubtasks().isEmpty(),
+            "Subtask of the removed epic should be skipped."),
+        () -> Assertions.assertEquals(List.of(task.toCsvLine()),
+            TestDataBuilder.toLines(taskManager.getTasks()), "Task should be restored once.")
+    );
+  }
+
+  @Test
+  @DisplayName("getCheckpointMetrics() fails without background checkpoints.")
+  void getCheckpointMetricsShouldFailWithoutBackgroundCheckpoints() {
+    final FileBackedTaskManager withoutCheckpoints = FileBackedTaskManager.loadFromFile(file,
+        StorageConfig.journal());
+
+    Assertions.assertThrows(IllegalStateException.class,
+        withoutCheckpoints::getCheckpointMetrics);
+    withoutCheckpoints.close();
+  }
+
+  @Test
+  @DisplayName("Background checkpoints are rejected without the journal or a single snapshot file.")
+  void backgroundCheckpointsShouldBeRejectedWithoutJournalOrSingleSnapshot() {
+    Assertions.assertAll(
+        () -> Assertions.assertThrows(IllegalArgumentException.class,
+            () -> FileBackedTaskManager.loadFromFile(file, StorageConfig.snapshot()
+                .setBackgroundCheckpointEnabled(true)), "Journal should be required."),
+        () -> Assertions.assertThrows(IllegalArgumentException.class,
+            () -> FileBackedTaskManager.loadFromFile(file, withBackgroundCheckpoints()
+                .setSnapshotFormat(SnapshotFormat.PAGED)), "Page file should be rejected."),
+        () -> Assertions.assertThrows(IllegalArgumentException.class,
+            () -> FileBackedTaskManager.loadFromFile(file, withBackgroundCheckpoints()
+                .setShardCount(2)), "Shards should be rejected.")
+    );
+  }
+
+  @Test
+  @DisplayName("Failed checkpoint is reported by checkHealth(), not by the next operation.")
+  void failedCheckpointShouldBeReportedByHealthCheck() throws IOException, InterruptedException {
+    final Path blocker = Files.createDirectory(Path.of(file.getPath() + ".tmp"));
+    for (int i = 0; i < COMPACTION_THRESHOLD; i++) {
+      taskManager.addTask(TestDataBuilder.buildTask("task " + i, "d"));
+    }
+    final long deadline = System.currentTimeMillis() + 5_000;
+    while (taskManager.getCheckpointMetrics().failures() == 0
+        && System.currentTimeMillis() < deadline) {
+      Thread.sleep(10);
+    }
+
+    Assertions.assertAll(
+        () -> Assertions.assertDoesNotThrow(
+            () -> taskManager.addTask(TestDataBuilder.buildTask("next", "d")),
+            "Next operation should not report the failed checkpoint."),
+        () -> Assertions.assertThrows(ManagerSaveException.class, taskManager::checkHealth,
+            "Failed checkpoint should be reported by the health check.")
+    );
+    Files.delete(blocker);
+    taskManager.close();
+    final FileBackedTaskManager reloaded = FileBackedTaskManager.loadFromFile(file,
+        withBackgroundCheckpoints());
+
+    Assertions.assertEquals(COMPACTION_THRESHOLD + 1, reloaded.getTasks().size(),
+        "Journal should keep the operations of the failed checkpoint.");
+    reloaded.close();
+  }
+
+  private static StorageConfig withBackgroundCheckpoints() {
+    return StorageConfig.journal()
+        .setCompactionThreshold(COMPACTION_THRESHOLD)
+        .setBackgroundCheckpointEnabled(true);
+  }
+
+  private static List<Path> filesOf(final File file) throws IOException {
+    try (final Stream<Path> files = Files.list(file.toPath().getParent())) {
+      return files.filter(path -> path.getFileName().toString().startsWith(file.getName()))
+          .toList();
+    }
+  }
+}
@@ -0,0 +1,134 @@
+package ru.yandex.practicum.tasktracker.service;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Properties;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import ru.yandex.practicum.tasktracker.builder.TestDataBuilder;
+import ru.yandex.practicum.tasktracker.exception.ManagerLoadException;
+
+class BinaryFileBackedTaskManagerTest extends TaskManagerTest<FileBackedTaskManager> {
+
+  private File file;
+
+  @BeforeEach
+  @Override
+  void setUp() {
+    try {
+      file = File.createTempFile("binaryFile", ".bin");
+      file.deleteOnExit();
+      Path.of(file.getPath() + ".bak").toFile().deleteOnExit();
+      taskManager = FileBackedTaskManager.loadFromFile(file, binary());
+    } catch (IOException e) {
+      System.out.println(e.getMessage());
+    }
+  }
+
+  @Test
+  @DisplayName("Binary snapshot restores all fields of the tasks and the history.")
+  void binarySnapshotShouldRestoreTasksAndHistory() {
+    TestDataBuilder.addTaskDataToTheTaskManager(taskManager);
+    taskManager.getSubtaskById(taskManager.getSubtasks().get(0).getId());
+    taskManager.getEpicById(taskManager.getEpics().get(0).getId());
+    taskManager.getTaskById(taskManager.getTasks().get(0).getId());
+
+    final FileBackedTaskManager restored = FileBackedTaskManager.loadFromFile(file, binary());
+
+    Assertions.assertAll(
+        () -> Assertions.assertIterableEquals(TestDataBuilder.toLines(taskManager.getTasks()),
+            TestDataBuilder.toLines(restored.getTasks()), "Tasks should be restored."),
+        () -> Assertions.assertIterableEquals(TestDataBuilder.toLines(taskManager.getEpics()),
+            TestDataBuilder.toLines(restored.getEpics()), "Epics should be restored."),
+        () -> Assertions.assertIterableEquals(TestDataBuilder.toLines(taskManager.getSubtasks()),
+            TestDataBuilder.toLines(restored.getSubtasks()), "Subtasks should be restored."),
+        () -> Assertions.assertIterableEquals(taskManager.getHistory(), restored.getHistory(),
+            "History should be restored."),
+        () -> Assertions.assertIterableEquals(taskManager.getPrioritizedTasks(),
+            restored.getPrioritizedTasks(), "Prioritized list should be same.")
+    );
+  }
+
+  @Test
+  @DisplayName("Binary snapshot is not read as a CSV file.")
+  void loadingFileWithWrongMagicShouldThrowException() throws IOException {
+    Files.writeString(file.toPath(), "id,type,title,status,description,epic");
+
+    Assertions.assertThrows(ManagerLoadException.class,
+        () -> FileBackedTaskManager.loadFromFile(file, binary()));
+  }
+
+  @Test
+  @DisplayName("Damaged binary snapshot is replaced by the previous one.")
+  void damagedSnapshotShouldBeRecoveredFromBackup() throws IOException {
+    TestDataBuilder.addTaskDataToTheTaskManager(taskManager);
+    final List<String> expectedTasks = TestDataBuilder.toLines(taskManager.getTasks());
+    taskManager.addTask(TestDataBuilder.buildTask("last", "d"));
+    damage(file);
+
+    final FileBackedTaskManager restored = FileBackedTaskManager.loadFromFile(file, binary());
+
+    Assertions.assertAll(
+        () -> Assertions.assertIterableEquals(expectedTasks,
+            TestDataBuilder.toLines(restored.getTasks()),
+            "State of the previous snapshot should be restored."),
+        () -> Assertions.assertEquals(taskManager.getSubtasks().size(),
+            restored.getSubtasks().size(), "Subtasks should be restored."),
+        () -> Assertions.assertEquals(restored.getTasks().size(),
+            FileBackedTaskManager.loadFromFile(file, binary()).getTasks().size(),
+            "Recovered state should be written to the snapshot.")
+    );
+  }
+
+  @Test
+  @DisplayName("Damaged binary snapshot without a backup is reported.")
+  void damagedSnapshotWithoutBackupShouldThrowException() throws IOException {
+    TestDataBuilder.addTaskDataToTheTaskManager(taskManager);
+    damage(file);
+    Files.delete(Path.of(file.getPath() + ".bak"));
+
+    final Exception exception = Assertions.assertThrows(ManagerLoadException.class,
+        () -> FileBackedTaskManager.loadFromFile(file, binary()));
+
+    Assertions.assertTrue(exception.getMessage().startsWith("The binary snapshot is damaged"),
+        "Exception message should point at the damaged snapshot.");
+  }
+
+  @Test
+  @DisplayName("Snapshot format is selected by the properties.")
+  void fromPropertiesShouldSelectSnapshotFormat() {
+    final Properties properties = new Properties();
+    properties.setProperty(StorageConfig.FORMAT_PROPERTY, "binary");
+    properties.setProperty(StorageConfig.DURABILITY_PROPERTY, "FSYNC");
+
+    final StorageConfig config = StorageConfig.fromProperties(properties);
+
+    Assertions.assertAll(
+        () -> Assertions.assertEquals(SnapshotFormat.BINARY, config.getSnapshotFormat(),
+            "Format should be read from the properties."),
+        () -> Assertions.assertEquals(Durability.FSYNC, config.getDurability(),
+            "Durability should be read from the properties."),
+        () -> Assertions.assertEquals(SnapshotFormat.CSV,
+            StorageConfig.fromProperties(new Properties()).getSnapshotFormat(),
+            "CSV should be the default format.")
+    );
+  }
+
+  /**
+   * Flips a byte in the middle of the file, as a failing disk would do.
+   */
+  private static void damage(final File file) throws IOException {
+    final byte[] bytes = Files.readAllBytes(file.toPath());
+    bytes[bytes.length / 2] ^= 0x5A;
+    Files.write(file.toPath(), bytes);
+  }
+
+  private static StorageConfig binary() {
+    return StorageConfig.snapshot().setSnapshotFormat(SnapshotFormat.BINARY);
+  }
+}
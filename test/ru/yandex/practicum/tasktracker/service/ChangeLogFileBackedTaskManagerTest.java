@@ -0,0 +1,278 @@
+package ru.yandex.practicum.tasktracker.service;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import ru.yandex.practicum.tasktracker.builder.TestDataBuilder;
+import ru.yandex.practicum.tasktracker.model.Task;
+import ru.yandex.practicum.tasktracker.model.TaskStatus;
+
+class ChangeLogFileBackedTaskManagerTest extends TaskManagerTest<FileBackedTaskManager> {
+
+  private static final int CHECKPOINT_INTERVAL = 3;
+  private static final int RETAINED_CHECKPOINTS = 4;
+  @TempDir
+  Path directory;
+  private File file;
+
+  @BeforeEach
+  @Override
+  void setUp() {
+    try {
+      file = Files.createFile(directory.resolve("changeLogFile.csv")).toFile();
+      taskManager = FileBackedTaskManager.loadFromFile(file, withChangeLog());
+    } catch (IOException e) {
+      System.out.println(e.getMessage());
+    }
+  }
+
+  @AfterEach
+  void tearDown() {
+    taskManager.close();
+  }
+
+  @Test
+  @DisplayName("Every persisted mutation gets the next sequence number.")
+  void mutationShouldGetNextSequenceNumber() {
+    final long start = taskManager.getSequence();
+    final Task task = taskManager.addTask(TestDataBuilder.buildTask("task", "d"));
+    taskManager.getTaskById(task.getId());
+    taskManager.deleteTask(task.getId());
+
+    Assertions.assertEquals(start + 2, taskManager.getSequence(),
+        "Only the mutations should be numbered.");
+  }
+
+  @Test
+  @DisplayName("asOf() returns the state as of every retained mutation.")
+  void asOfShouldReturnStateAsOfEveryMutation() {
+    final List<List<String>> states = new ArrayList<>();
+    final long start = taskManager.getSequence();
+    states.add(TestDataBuilder.toLines(taskManager.getTasks()));
+    final Task task = taskManager.addTask(TestDataBuilder.buildTask("task", "d"));
+    states.add(TestDataBuilder.toLines(taskManager.getTasks()));
+    for (int i = 0; i < 8; i++) {
+      task.setTitle("title " + i);
+      taskManager.updateTask(task);
+      states.add(TestDataBuilder.toLines(taskManager.getTasks()));
+    }
+    taskManager.addTask(TestDataBuilder.buildTask("other", "d"));
+    states.add(TestDataBuilder.toLines(taskManager.getTasks()));
+    taskManager.deleteTask(task.getId());
+    states.add(TestDataBuilder.toLines(taskManager.getTasks()));
+
+    for (int i = 0; i < states.size(); i++) {
+      Assertions.assertIterableEquals(states.get(i),
+          TestDataBuilder.toLines(taskManager.asOf(start + i).getTasks()),
+          "State as of the mutation " + (start + i) + " should be restored.");
+    }
+  }
+
+  @Test
+  @DisplayName("asOf() keeps epics and their subtasks together.")
+  void asOfShouldRestoreEpicsAndSubtasks() {
+    TestDataBuilder.addTaskDataToTheTaskManager(taskManager);
+    final long sequence = taskManager.getSequence();
+    final List<String> epics = TestDataBuilder.toLines(taskManager.getEpics());
+    final List<String> subtasks = TestDataBuilder.toLines(taskManager.getSubtasks());
+    taskManager.clearSubtasks();
+
+    final TaskManager past = taskManager.asOf(sequence);
+
+    Assertions.assertAll(
+        () -> Assertions.assertIterableEquals(epics, TestDataBuilder.toLines(past.getEpics()),
+            "Epics should be restored."),
+        () -> Assertions.assertIterableEquals(subtasks, TestDataBuilder.toLines(past.getSubtasks()),
+            "Subtasks should be restored."),
+        () -> Assertions.assertEquals(subtasks.size(), past.getEpics().stream()
+                .mapToInt(epic -> past.getSubtasksByEpicId(epic.getId()).size()).sum(),
+            "Subtasks should belong to their epics.")
+    );
+  }
+
+  @Test
+  @DisplayName("asOf() returns the state as of a time.")
+  void asOfShouldReturnStateAsOfTime() throws InterruptedException {
+    taskManager.addTask(TestDataBuilder.buildTask("first", "d"));
+    final List<String> expected = TestDataBuilder.toLines(taskManager.getTasks());
+    Thread.sleep(5);
+    final Instant time = Instant.now();
+    Thread.sleep(5);
+    taskManager.addTask(TestDataBuilder.buildTask("second", "d"));
+
+    Assertions.assertIterableEquals(expected,
+        TestDataBuilder.toLines(taskManager.asOf(time).getTasks()),
+        "State as of the time should be restored.");
+  }
+
+  @Test
+  @DisplayName("Only the retained checkpoints are kept.")
+  void onlyRetainedCheckpointsShouldBeKept() throws IOException {
+    for (int i = 0; i < CHECKPOINT_INTERVAL * RETAINED_CHECKPOINTS * 2; i++) {
+      taskManager.addTask(TestDataBuilder.buildTask("task " + i, "d"));
+    }
+
+    try (final Stream<Path> files = Files.list(directory)) {
+      Assertions.assertEquals(RETAINED_CHECKPOINTS, files.filter(path -> path.getFileName()
+              .toString().startsWith(file.getName() + ".checkpoint-")).count(),
+          "Only the retained checkpoints should be kept.");
+    }
+    Assertions.assertThrows(IllegalArgumentException.class, () -> taskManager.asOf(1),
+        "Dropped state should not be returned.");
+  }
+
+  @Test
+  @DisplayName("Sequence numbers and past states survive reloading.")
+  void changeLogShouldSurviveReloading() {
+    final Task task = taskManager.addTask(TestDataBuilder.buildTask("task", "d"));
+    final long sequence = taskManager.getSequence();
+    final List<String> expected = TestDataBuilder.toLines(taskManager.getTasks());
+    task.setStatus(TaskStatus.DONE);
+    taskManager.updateTask(task);
+    taskManager.close();
+
+    taskManager = FileBackedTaskManager.loadFromFile(file, withChangeLog());
+
+    Assertions.assertAll(
+        () -> Assertions.assertEquals(sequence + 1, taskManager.getSequence(),
+            "Sequence number should be restored."),
+        () -> Assertions.assertIterableEquals(expected,
+            TestDataBuilder.toLines(taskManager.asOf(sequence).getTasks()),
+            "Past state should be restored.")
+    );
+  }
+
+  @Test
+  @DisplayName("Reopening continues the last segment instead of pushing out the retained states.")
+  void reopeningShouldNotPushOutRetainedStates() throws IOException {
+    TestDataBuilder.addTaskDataToTheTaskManager(taskManager);
+    while (checkpointSequences().size() < RETAINED_CHECKPOINTS
+        || checkpointSequences().get(RETAINED_CHECKPOINTS - 1) != taskManager.getSequence()) {
+      taskManager.addTask(TestDataBuilder.buildTask("task", "d"));
+    }
+    taskManager.addTask(TestDataBuilder.buildTask("not checkpointed", "d"));
+    final List<Long> checkpoints = checkpointSequences();
+    final long sequence = taskManager.getSequence();
+    final List<String> expected = TestDataBuilder.toLines(
+        taskManager.asOf(checkpoints.get(0)).getTasks());
+
+    for (int i = 0; i < RETAINED_CHECKPOINTS * 2; i++) {
+      taskManager.close();
+      taskManager = FileBackedTaskManager.loadFromFile(file, withChangeLog());
+    }
+
+    Assertions.assertAll(
+        () -> Assertions.assertIterableEquals(checkpoints, checkpointSequences(),
+            "No checkpoint should be written or dropped."),
+        () -> Assertions.assertEquals(sequence, taskManager.getSequence(),
+            "Sequence number should be restored."),
+        () -> Assertions.assertIterableEquals(expected,
+            TestDataBuilder.toLines(taskManager.asOf(checkpoints.get(0)).getTasks()),
+            "Oldest state should be retained.")
+    );
+  }
+
+  @Test
+  @DisplayName("State changed without the change log is checkpointed on reopening.")
+  void stateChangedWithoutChangeLogShouldBeCheckpointed() {
+    taskManager.addTask(TestDataBuilder.buildTask("logged", "d"));
+    taskManager.close();
+    final FileBackedTaskManager withoutLog = FileBackedTaskManager.loadFromFile(file);
+    withoutLog.addTask(TestDataBuilder.buildTask("not logged", "d"));
+    withoutLog.close();
+
+    taskManager = FileBackedTaskManager.loadFromFile(file, withChangeLog());
+
+    Assertions.assertIterableEquals(TestDataBuilder.toLines(taskManager.getTasks()),
+        TestDataBuilder.toLines(taskManager.asOf(taskManager.getSequence()).getTasks()),
+        "Loaded state should be the state as of the last mutation.");
+  }
+
+  @Test
+  @DisplayName("restoreAsOf() brings back and persists the past state.")
+  void restoreAsOfShouldBringBackPastState() {
+    TestDataBuilder.addTaskDataToTheTaskManager(taskManager);
+    final long sequence = taskManager.getSequence();
+    final List<String> tasks = TestDataBuilder.toLines(taskManager.getTasks());
+    final List<String> epics = TestDataBuilder.toLines(taskManager.getEpics());
+    final List<String> subtasks = TestDataBuilder.toLines(taskManager.getSubtasks());
+    final List<Task> prioritized = taskManager.getPrioritizedTasks();
+    taskManager.clearTasks();
+    taskManager.clearEpics();
+    final Task added = taskManager.addTask(TestDataBuilder.buildTask("added", "d"));
+
+    taskManager.restoreAsOf(sequence);
+    final Task next = taskManager.addTask(TestDataBuilder.buildTask("next", "d"));
+    final FileBackedTaskManager reloaded = FileBackedTaskManager.loadFromFile(file);
+
+    Assertions.assertAll(
+        () -> Assertions.assertIterableEquals(tasks, TestDataBuilder.toLines(taskManager.getTasks())
+            .stream().filter(line -> !line.contains("next")).toList(),
+            "Tasks should be restored."),
+        () -> Assertions.assertIterableEquals(epics, TestDataBuilder.toLines(reloaded.getEpics()),
+            "Restored epics should be persisted."),
+        () -> Assertions.assertIterableEquals(subtasks,
+            TestDataBuilder.toLines(reloaded.getSubtasks()),
+            "Restored subtasks should be persisted."),
+        () -> Assertions.assertIterableEquals(prioritized, reloaded.getPrioritizedTasks(),
+            "Prioritized tasks should be restored."),
+        () -> Assertions.assertTrue(next.getId() > added.getId(), "Ids should not be reused.")
+    );
+  }
+
+  @Test
+  @DisplayName("A point-in-time view is read-only.")
+  void viewShouldBeReadOnly() {
+    final Task task = taskManager.addTask(TestDataBuilder.buildTask("task", "d"));
+    final TaskManager past = taskManager.asOf(taskManager.getSequence());
+
+    Assertions.assertAll(
+        () -> Assertions.assertThrows(UnsupportedOperationException.class,
+            () -> past.addTask(TestDataBuilder.buildTask("new", "d"))),
+        () -> Assertions.assertThrows(UnsupportedOperationException.class,
+            () -> past.deleteTask(task.getId())),
+        () -> Assertions.assertThrows(UnsupportedOperationException.class, past::clearEpics)
+    );
+  }
+
+  @Test
+  @DisplayName("asOf() fails for a future mutation and without the change log.")
+  void asOfShouldFailForFutureMutationAndWithoutChangeLog() {
+    final FileBackedTaskManager withoutLog = FileBackedTaskManager.loadFromFile(file);
+
+    Assertions.assertAll(
+        () -> Assertions.assertThrows(IllegalArgumentException.class,
+            () -> taskManager.asOf(taskManager.getSequence() + 1)),
+        () -> Assertions.assertThrows(IllegalStateException.class, () -> withoutLog.asOf(0))
+    );
+  }
+
+  private List<Long> checkpointSequences() throws IOException {
+    final String prefix = file.getName() + ".checkpoint-";
+    try (final Stream<Path> files = Files.list(directory)) {
+      return files.map(path -> path.getFileName().toString())
+          .filter(name -> name.startsWith(prefix))
+          .map(name -> Long.parseLong(name.substring(prefix.length())))
+          .sorted()
+          .toList();
+    }
+  }
+
+  private static StorageConfig withChangeLog() {
+    return StorageConfig.snapshot()
+        .setChangeLogEnabled(true)
+        .setCheckpointInterval(CHECKPOINT_INTERVAL)
+        .setRetainedCheckpoints(RETAINED_CHECKPOINTS);
+  }
+}
@@ -0,0 +1,205 @@
+package ru.yandex.practicum.tasktracker.service;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+import ru.yandex.practicum.tasktracker.builder.TestDataBuilder;
+import ru.yandex.practicum.tasktracker.model.Task;
+
+class CompressedFileBackedTaskManagerTest extends TaskManagerTest<FileBackedTaskManager> {
+
+  @TempDir
+  Path directory;
+  private File file;
+
+  @BeforeEach
+  @Override
+  void setUp() {
+    try {
+      file = Files.createFile(directory.resolve("compressedFile.csv")).toFile();
+      taskManager = FileBackedTaskManager.loadFromFile(file, compressed());
+    } catch (IOException e) {
+      System.out.println(e.getMessage());
+    }
+  }
+
+  @AfterEach
+  void tearDown() {
+    taskManager.close();
+  }
+
+  @ParameterizedTest
+  @EnumSource(value = SnapshotFormat.class, names = {"CSV", "BINARY"})
+  @DisplayName("A compressed snapshot restores the tasks and the history in any settings.")
+  void compressedSnapshotShouldRestoreTasksAndHistory(final SnapshotFormat format)
+      throws IOException {
+    taskManager = FileBackedTaskManager.loadFromFile(file, compressed().setSnapshotFormat(format));
+    TestDataBuilder.addTaskDataToTheTaskManager(taskManager);
+    taskManager.getSubtaskById(taskManager.getSubtasks().get(0).getId());
+    taskManager.getTaskById(taskManager.getTasks().get(0).getId());
+    taskManager.addTask(TestDataBuilder.buildTask("last", "d"));
+    final List<String> expected = TestDataBuilder.allTasks(taskManager);
+
+    final FileBackedTaskManager reloaded = FileBackedTaskManager.loadFromFile(file,
+        StorageConfig.snapshot().setSnapshotFormat(format));
+
+    Assertions.assertAll(
+        () -> Assertions.assertTrue(CompressedBlocks.isCompressed(file),
+            "Snapshot should be compressed."),
+        () -> Assertions.assertIterableEquals(expected, TestDataBuilder.allTasks(reloaded),
+            "Tasks should be restored."),
+        () -> Assertions.assertIterableEquals(taskManager.getHistory(), reloaded.getHistory(),
+            "History should be restored."),
+        () -> Assertions.assertIterableEquals(taskManager.getPrioritizedTasks(),
+            reloaded.getPrioritizedTasks(), "Prioritized tasks should be restored.")
+    );
+  }
+
+  @Test
+  @DisplayName("A large snapshot is compressed into several blocks, which are loaded in parallel.")
+  void largeSnapshotShouldBeCompressedIntoBlocksLoadedInParallel() throws IOException {
+    CsvSnapshotLoadBenchmarkTest.writeSnapshot(file, 20_000);
+    final long plainSize = Files.size(file.toPath());
+    taskManager = FileBackedTaskManager.loadFromFile(file, compressed());
+    taskManager.addTask(TestDataBuilder.buildTask("task", "d"));
+    final List<String> expected = TestDataBuilder.allTasks(taskManager);
+    final int blocks;
+    try (final FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+      blocks = CompressedBlocks.blocks(channel, file).size();
+    }
+
+    final FileBackedTaskManager sequential = FileBackedTaskManager.loadFromFile(file,
+        compressed().setLoadParallelism(1));
+    final FileBackedTaskManager parallel = FileBackedTaskManager.loadFromFile(file,
+        compressed().setLoadParallelism(4));
+
+    Assertions.assertAll(
+        () -> Assertions.assertTrue(Files.size(file.toPath()) * 4 < plainSize,
+            "Snapshot should be several times smaller."),
+        () -> Assertions.assertTrue(blocks > 1, "Snapshot should be split into blocks."),
+        () -> Assertions.assertIterableEquals(expected, TestDataBuilder.allTasks(sequential),
+            "Tasks should be restored on one thread."),
+        () -> Assertions.assertIterableEquals(expected, TestDataBuilder.allTasks(parallel),
+            "Tasks should be restored on several threads."),
+        () -> Assertions.assertIterableEquals(sequential.getPrioritizedTasks(),
+            parallel.getPrioritizedTasks(), "Prioritized list should be same.")
+    );
+  }
+
+  @Test
+  @DisplayName("A compressed manager loads a plain snapshot and compresses it on the next save.")
+  void plainSnapshotShouldBeCompressedOnNextSave() throws IOException {
+    taskManager.close();
+    final FileBackedTaskManager plain = FileBackedTaskManager.loadFromFile(file);
+    TestDataBuilder.addTaskDataToTheTaskManager(plain);
+    final List<String> expected = TestDataBuilder.allTasks(plain);
+    plain.close();
+
+    taskManager = FileBackedTaskManager.loadFromFile(file, compressed());
+    final boolean compressedBeforeSave = CompressedBlocks.isCompressed(file);
+    final List<String> loaded = TestDataBuilder.allTasks(taskManager);
+    taskManager.deleteTask(taskManager.getTasks().get(0).getId());
+    taskManager.close();
+
+    Assertions.assertAll(
+        () -> Assertions.assertFalse(compressedBeforeSave, "Snapshot should be plain at first."),
+        () -> Assertions.assertIterableEquals(expected, loaded,
+            "Plain snapshot should be loaded."),
+        () -> Assertions.assertTrue(CompressedBlocks.isCompressed(file),
+            "Snapshot should be compressed by the next save."),
+        () -> Assertions.assertEquals(expected.size() - 1,
+            TestDataBuilder.allTasks(FileBackedTaskManager.loadFromFile(file)).size(),
+            "Compressed snapshot should be loaded.")
+    );
+  }
+
+  @Test
+  @DisplayName("A damaged block is detected and the previous snapshot is loaded.")
+  void damagedBlockShouldFallBackToBackup() throws IOException {
+    TestDataBuilder.addTaskDataToTheTaskManager(taskManager);
+    final List<String> previous = TestDataBuilder.allTasks(taskManager);
+    taskManager.addTask(TestDataBuilder.buildTask("last", "d"));
+    taskManager.close();
+    try (final RandomAccessFile damaged = new RandomAccessFile(file, "rw")) {
+      final long position = damaged.length() / 2;
+      damaged.seek(position);
+      final int value = damaged.read();
+      damaged.seek(position);
+      damaged.write(value ^ 0xFF);
+    }
+
+    taskManager = FileBackedTaskManager.loadFromFile(file, compressed());
+
+    Assertions.assertIterableEquals(previous, TestDataBuilder.allTasks(taskManager),
+        "Previous snapshot should be loaded.");
+  }
+
+  @Test
+  @DisplayName("A compressed binary snapshot is read block by block, its records span the blocks.")
+  void compressedBinarySnapshotShouldBeReadAcrossBlocks() throws IOException {
+    final File snapshot = directory.resolve("binary.bin").toFile();
+    final List<Task> tasks = new ArrayList<>();
+    for (int i = 1; i <= 3_000; i++) {
+      final Task task = TestDataBuilder.buildTask("task " + i, "description ".repeat(20) + i);
+      task.setId(i);
+      tasks.add(task);
+    }
+    try (final OutputStream out = new FileOutputStream(snapshot)) {
+      CompressedBlocks.compressing(blockOut -> BinarySnapshot.write(blockOut, tasks, List.of()))
+          .write(out);
+    }
+    final int blocks;
+    try (final FileChannel channel = FileChannel.open(snapshot.toPath(),
+        StandardOpenOption.READ)) {
+      blocks = CompressedBlocks.blocks(channel, snapshot).size();
+    }
+
+    final List<Task> read = new ArrayList<>();
+    BinarySnapshot.read(snapshot, read::add, id -> { });
+
+    Assertions.assertAll(
+        () -> Assertions.assertTrue(blocks > 1, "Snapshot should be split into blocks."),
+        () -> Assertions.assertIterableEquals(tasks.stream().map(Task::toCsvLine).toList(),
+            read.stream().map(Task::toCsvLine).toList(), "Tasks should be restored.")
+    );
+  }
+
+  @Test
+  @DisplayName("Shards are compressed and restore the tasks.")
+  void shardsShouldBeCompressed() throws IOException {
+    taskManager = FileBackedTaskManager.loadFromFile(file, compressed().setShardCount(3));
+    TestDataBuilder.addTaskDataToTheTaskManager(taskManager);
+    final List<String> expected = TestDataBuilder.allTasks(taskManager);
+    taskManager.close();
+
+    taskManager = FileBackedTaskManager.loadFromFile(file, compressed().setShardCount(3));
+
+    Assertions.assertAll(
+        () -> Assertions.assertTrue(CompressedBlocks.isCompressed(
+                ShardedFileBackedTaskManagerTest.shardFile(file, 0)),
+            "Shards should be compressed."),
+        () -> Assertions.assertIterableEquals(expected, TestDataBuilder.allTasks(taskManager),
+            "Tasks should be restored from the shards.")
+    );
+  }
+
+  private static StorageConfig compressed() {
+    return StorageConfig.snapshot().setCompressionEnabled(true);
+  }
+}
@@ -0,0 +1,200 @@
+package ru.yandex.practicum.tasktracker.service;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import ru.yandex.practicum.tasktracker.builder.TestDataBuilder;
+import ru.yandex.practicum.tasktracker.exception.TaskPrioritizationException;
+import ru.yandex.practicum.tasktracker.model.Epic;
+import ru.yandex.practicum.tasktracker.model.Subtask;
+import ru.yandex.practicum.tasktracker.model.Task;
+import ru.yandex.practicum.tasktracker.model.TaskStatus;
+
+class ConcurrentTaskManagerTest extends TaskManagerTest<ConcurrentTaskManager> {
+
+  private static final int THREADS = 8;
+  private ExecutorService executor;
+
+  @BeforeEach
+  @Override
+  void setUp() {
+    taskManager = new ConcurrentTaskManager();
+    executor = Executors.newFixedThreadPool(THREADS);
+  }
+
+  @AfterEach
+  void tearDown() throws InterruptedException {
+    executor.shutdownNow();
+    executor.awaitTermination(1, TimeUnit.MINUTES);
+  }
+
+  @Test
+  @DisplayName("Subtasks added to different epics on several threads are all kept.")
+  void subtasksAddedConcurrentlyShouldAllBeKept() throws Exception {
+    final List<Epic> epics = new ArrayList<>();
+    for (int i = 0; i < THREADS; i++) {
+      epics.add(taskManager.addEpic(TestDataBuilder.buildEpic("epic " + i, "d")));
+    }
+
+    runConcurrently(thread -> {
+      final int epicId = epics.get(thread).getId();
+      for (int i = 0; i < 500; i++) {
+        taskManager.addSubtask(TestDataBuilder.buildSubtask("subtask " + i, "d", epicId,
+            Duration.ofMinutes(1), BASE_TEST_TIME.plusMinutes(thread * 1000L + i)));
+        if (i % 5 == 0) {
+          taskManager.getEpicById(epicId);
+          taskManager.getPrioritizedTasks();
+        }
+      }
+    });
+
+    Assertions.assertAll(
+        () -> Assertions.assertEquals(THREADS * 500, taskManager.getSubtasks().size(),
+            "Every subtask should be kept."),
+        () -> Assertions.assertEquals(THREADS * 500, taskManager.getPrioritizedTasks().size(),
+            "Every subtask should be prioritized."),
+        () -> epics.forEach(epic -> Assertions.assertEquals(500,
+            taskManager.getSubtasksByEpicId(epic.getId()).size(),
+            "Every epic should hold its subtasks.")),
+        () -> Assertions.assertEquals(THREADS * 500, taskManager.getSubtasks().stream()
+            .mapToInt(Task::getId).distinct().count(), "Ids should be unique.")
+    );
+  }
+
+  @Test
+  @DisplayName("Of the tasks scheduled at the same time on several threads only one is kept.")
+  void conflictingTasksAddedConcurrentlyShouldNotOverlap() throws Exception {
+    final AtomicInteger conflicts = new AtomicInteger();
+
+    runConcurrently(thread -> {
+      for (int i = 0; i < 200; i++) {
+        try {
+          taskManager.addTask(TestDataBuilder.buildTask(0, "task " + i, "d", TaskStatus.NEW,
+              Duration.ofMinutes(30), BASE_TEST_TIME.plusMinutes(i * 20L + thread)));
+        } catch (TaskPrioritizationException e) {
+          conflicts.incrementAndGet();
+        }
+      }
+    });
+    final List<Task> prioritized = taskManager.getPrioritizedTasks();
+
+    Assertions.assertAll(
+        () -> Assertions.assertEquals(THREADS * 200, prioritized.size() + conflicts.get(),
+            "Every task should be either kept or rejected."),
+        () -> Assertions.assertEquals(prioritized.size(), taskManager.getTasks().size(),
+            "Only the kept tasks should be stored."),
+        () -> {
+          for (int i = 1; i < prioritized.size(); i++) {
+            Assertions.assertFalse(prioritized.get(i).getStartTime()
+                    .isBefore(prioritized.get(i - 1).getEndTime()),
+                "Kept tasks should not overlap.");
+          }
+        }
+    );
+  }
+
+  @Test
+  @DisplayName("Concurrent updates, deletions and reads keep the state consistent.")
+  void concurrentUpdatesShouldKeepStateConsistent() throws Exception {
+    final Epic epic = taskManager.addEpic(TestDataBuilder.buildEpic("epic", "d"));
+    final List<Integer> taskIds = new ArrayList<>();
+    final List<Integer> subtaskIds = new ArrayList<>();
+    for (int i = 0; i < THREADS * 50; i++) {
+      taskIds.add(taskManager.addTask(TestDataBuilder.buildTask(0, "task " + i, "d",
+          TaskStatus.NEW, Duration.ofMinutes(1), BASE_TEST_TIME.plusHours(i))).getId());
+      subtaskIds.add(taskManager.addSubtask(TestDataBuilder.buildSubtask("subtask " + i, "d",
+          epic.getId(), Duration.ofMinutes(1), BASE_TEST_TIME.plusHours(i).plusMinutes(30)))
+          .getId());
+    }
+
+    runConcurrently(thread -> {
+      for (int i = thread; i < taskIds.size(); i += THREADS) {
+        final Task task = taskManager.getTaskById(taskIds.get(i));
+        task.setStartTime(task.getStartTime().plusMinutes(5));
+        taskManager.updateTask(task);
+        final Subtask subtask = taskManager.getSubtaskById(subtaskIds.get(i));
+        subtask.setStatus(TaskStatus.DONE);
+        taskManager.updateSubtask(subtask);
+        if (i % 2 == 0) {
+          taskManager.deleteTask(task.getId());
+          taskManager.deleteSubtask(subtask.getId());
+        }
+        taskManager.getEpics();
+        taskManager.getHistory();
+      }
+    });
+    final List<Task> expected = new ArrayList<>(taskManager.getTasks());
+    expected.addAll(taskManager.getSubtasks());
+    expected.sort(Comparator.comparing(Task::getStartTime));
+
+    Assertions.assertAll(
+        () -> Assertions.assertEquals(taskIds.size() / 2, taskManager.getTasks().size(),
+            "Half of the tasks should remain."),
+        () -> Assertions.assertIterableEquals(expected, taskManager.getPrioritizedTasks(),
+            "Prioritized tasks should match the stored ones."),
+        () -> Assertions.assertEquals(TaskStatus.DONE,
+            taskManager.getEpicById(epic.getId()).getStatus(),
+            "Epic should see every update of its subtasks."),
+        () -> Assertions.assertEquals(subtaskIds.size() / 2,
+            taskManager.getSubtasksByEpicId(epic.getId()).size(),
+            "Epic should lose the deleted subtasks.")
+    );
+  }
+
+  @Test
+  @DisplayName("A conflicting update keeps the previous version prioritized.")
+  void conflictingUpdateShouldKeepPreviousVersion() {
+    final Task first = taskManager.addTask(TestDataBuilder.buildTask(0, "first", "d",
+        TaskStatus.NEW, Duration.ofMinutes(30), BASE_TEST_TIME));
+    final Task second = taskManager.addTask(TestDataBuilder.buildTask(0, "second", "d",
+        TaskStatus.NEW, Duration.ofMinutes(30), BASE_TEST_TIME.plusHours(1)));
+    second.setStartTime(BASE_TEST_TIME.plusMinutes(15));
+
+    Assertions.assertThrows(TaskPrioritizationException.class,
+        () -> taskManager.updateTask(second));
+    Assertions.assertAll(
+        () -> Assertions.assertEquals(List.of(first, second), taskManager.getPrioritizedTasks(),
+            "Both tasks should stay prioritized."),
+        () -> Assertions.assertEquals(BASE_TEST_TIME.plusHours(1),
+            taskManager.getTaskById(second.getId()).getStartTime(),
+            "Previous version should be kept.")
+    );
+  }
+
+  private void runConcurrently(final ThreadAction action) throws Exception {
+    final CountDownLatch start = new CountDownLatch(1);
+    final List<Future<Void>> futures = new ArrayList<>();
+    for (int i = 0; i < THREADS; i++) {
+      final int thread = i;
+      final Callable<Void> call = () -> {
+        start.await();
+        action.run(thread);
+        return null;
+      };
+      futures.add(executor.submit(call));
+    }
+    start.countDown();
+    for (Future<Void> future : futures) {
+      future.get(1, TimeUnit.MINUTES);
+    }
+  }
+
+  @FunctionalInterface
+  private interface ThreadAction {
+
+    void run(int thread);
+  }
+}
@@ -0,0 +1,83 @@
+package ru.yandex.practicum.tasktracker.service;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import ru.yandex.practicum.tasktracker.model.Epic;
+import ru.yandex.practicum.tasktracker.model.Subtask;
+import ru.yandex.practicum.tasktracker.model.Task;
+import ru.yandex.practicum.tasktracker.model.TaskStatus;
+
+/**
+ * Measures the load throughput of the CSV snapshot. Runs only with
+ * {@code -Dtasktracker.benchmark=true}.
+ */
+@Tag("benchmark")
+@EnabledIfSystemProperty(named = "tasktracker.benchmark", matches = "true")
+class CsvSnapshotLoadBenchmarkTest {
+
+  private static final LocalDateTime BASE_TIME = LocalDateTime.of(2024, 1, 1, 0, 0, 30);
+  private static final int SUBTASKS_PER_EPIC = 9;
+
+  @ParameterizedTest
+  @ValueSource(ints = {100_000, 1_000_000})
+  void loadThroughput(final int lines) throws IOException {
+    final File file = File.createTempFile("benchmark", ".csv");
+    file.deleteOnExit();
+    writeSnapshot(file, lines);
+
+    for (int parallelism : new int[]{1, Math.max(2, Runtime.getRuntime().availableProcessors())}) {
+      final long start = System.nanoTime();
+      final FileBackedTaskManager manager = FileBackedTaskManager.loadFromFile(file,
+          StorageConfig.snapshot().setLoadParallelism(parallelism));
+      final long elapsedNanos = System.nanoTime() - start;
+
+      final double seconds = elapsedNanos / 1e9;
+      System.out.printf("CSV load on %d threads: %,d lines in %.3f s, %,.0f lines/s, %.1f MB/s%n",
+          parallelism, lines, seconds, lines / seconds,
+          Files.size(file.toPath()) / seconds / (1 << 20));
+      Assertions.assertEquals(lines, manager.getTasks().size() + manager.getEpics().size()
+          + manager.getSubtasks().size(), "All tasks should be loaded.");
+    }
+  }
+
+  /**
+   * Writes an epic followed by its subtasks, every subtask starting after the previous one ends.
+   */
+  static void writeSnapshot(final File file, final int lines) throws IOException {
+    try (final BufferedWriter writer = Files.newBufferedWriter(file.toPath(),
+        StandardCharsets.UTF_8)) {
+      writer.write(CsvSnapshot.TASKS_CSV_HEADER + System.lineSeparator());
+      int epicId = 0;
+      for (int id = 1; id <= lines; id++) {
+        final Task task;
+        if ((id - 1) % (SUBTASKS_PER_EPIC + 1) == 0) {
+          task = new Epic();
+          epicId = id;
+        } else {
+          final Subtask subtask = new Subtask();
+          subtask.setEpicId(epicId);
+          subtask.setDuration(Duration.ofMinutes(15));
+          subtask.setStartTime(BASE_TIME.plusMinutes(30L * id));
+          task = subtask;
+        }
+        task.setId(id);
+        task.setTitle("title" + id);
+        task.setDescription("description of the task " + id);
+        task.setStatus(TaskStatus.NEW);
+        writer.write(task.toCsvLine() + System.lineSeparator());
+      }
+      writer.write(CsvSnapshot.HISTORY_HEADER + System.lineSeparator());
+      writer.write(CsvSnapshot.PRIORITIZED_HEADER + System.lineSeparator());
+    }
+  }
+}
@@ -0,0 +1,114 @@
+package ru.yandex.practicum.tasktracker.service;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import ru.yandex.practicum.tasktracker.builder.TestDataBuilder;
+import ru.yandex.practicum.tasktracker.exception.ManagerLoadException;
+import ru.yandex.practicum.tasktracker.model.Subtask;
+import ru.yandex.practicum.tasktracker.model.Task;
+import ru.yandex.practicum.tasktracker.model.TaskStatus;
+
+class CsvSnapshotTest {
+
+  @ParameterizedTest
+  @ValueSource(strings = {"2024-01-05T10:15", "2024-01-05T10:15:30", "2024-01-05T10:15:30.5",
+      "2024-01-05T10:15:30.123456789", "+12024-01-05T10:15"})
+  @DisplayName("parseTask() restores the start time written by toCsvLine().")
+  void parseTaskShouldRestoreStartTime(final String startTime) {
+    final Task task = TestDataBuilder.buildTask(7, "task", "d", TaskStatus.DONE,
+        Duration.ofMinutes(45), LocalDateTime.parse(startTime));
+
+    final Task parsed = CsvSnapshot.parseTask(task.toCsvLine());
+
+    Assertions.assertAll(
+        () -> Assertions.assertEquals(task.toCsvLine(), parsed.toCsvLine(),
+            "All fields should be restored."),
+        () -> Assertions.assertEquals(task.getStartTime(), parsed.getStartTime(),
+            "Start time should be restored.")
+    );
+  }
+
+  @Test
+  @DisplayName("parseTask() restores a subtask without start time.")
+  void parseTaskShouldRestoreSubtask() {
+    final Subtask subtask = TestDataBuilder.buildSubtask(5, "subtask", "notes", 3);
+
+    final Task parsed = CsvSnapshot.parseTask(subtask.toCsvLine());
+
+    Assertions.assertAll(
+        () -> Assertions.assertInstanceOf(Subtask.class, parsed, "Subtask should be created."),
+        () -> Assertions.assertEquals(3, ((Subtask) parsed).getEpicId(),
+            "Epic id should be restored."),
+        () -> Assertions.assertNull(parsed.getStartTime(), "Start time should be null.")
+    );
+  }
+
+  @ParameterizedTest
+  @ValueSource(strings = {"1,TASK,title,NEW,d,15,null", "1,TASK,title,NEW,d,15,null, ,extra",
+      "1,TASK,,NEW,d,15,null, ", "1,TASK,'title',NEW,d,15,null, ", "1,TASK,title,NEW,d,15,null,"})
+  @DisplayName("parseTask() rejects a line without exactly eight non-empty fields.")
+  void parseTaskShouldRejectInvalidLine(final String line) {
+    final Exception exception = Assertions.assertThrows(IllegalArgumentException.class,
+        () -> CsvSnapshot.parseTask(line));
+
+    Assertions.assertEquals("Invalid CSV format of the line with task: " + line,
+        exception.getMessage(), "Exception message should contain the line.");
+  }
+
+  @Test
+  @DisplayName("verify() rejects a snapshot whose checksum line is cut off.")
+  void verifyShouldRejectSnapshotWithoutChecksumLine() throws IOException {
+    final File file = writeSnapshot();
+    final String content = Files.readString(file.toPath());
+    Files.writeString(file.toPath(),
+        content.substring(0, content.lastIndexOf(CsvSnapshot.CHECKSUM_PREFIX)));
+
+    Assertions.assertThrows(ManagerLoadException.class, () -> CsvSnapshot.verify(file),
+        "Snapshot without the checksum line should be rejected.");
+  }
+
+  @Test
+  @DisplayName("verify() rejects a snapshot whose checksum line is truncated.")
+  void verifyShouldRejectSnapshotWithTruncatedChecksumLine() throws IOException {
+    final File file = writeSnapshot();
+    final String content = Files.readString(file.toPath()).stripTrailing();
+    Files.writeString(file.toPath(), content.substring(0, content.length() - 3));
+
+    Assertions.assertThrows(ManagerLoadException.class, () -> CsvSnapshot.verify(file),
+        "Snapshot with the truncated checksum line should be rejected.");
+  }
+
+  @Test
+  @DisplayName("verify() accepts a snapshot of the previous layout without the checksum line.")
+  void verifyShouldAcceptSnapshotOfPreviousLayout() throws IOException {
+    final File file = File.createTempFile("legacySnapshot", ".csv");
+    file.deleteOnExit();
+    Files.writeString(file.toPath(), CsvSnapshot.TASKS_CSV_HEADER + System.lineSeparator()
+        + TestDataBuilder.buildTask(1, "task", "d", TaskStatus.NEW, Duration.ZERO, null)
+        .toCsvLine() + System.lineSeparator() + CsvSnapshot.HISTORY_HEADER
+        + System.lineSeparator());
+
+    Assertions.assertDoesNotThrow(() -> CsvSnapshot.verify(file),
+        "Snapshot written before the checksum should not be checked.");
+  }
+
+  private static File writeSnapshot() throws IOException {
+    final File file = File.createTempFile("snapshot", ".csv");
+    file.deleteOnExit();
+    final ByteArrayOutputStream out = new ByteArrayOutputStream();
+    CsvSnapshot.write(out, List.of(TestDataBuilder.buildTask(1, "task", "d", TaskStatus.NEW,
+        Duration.ofMinutes(15), LocalDateTime.of(2024, 1, 5, 10, 15))), List.of());
+    Files.write(file.toPath(), out.toByteArray());
+    return file;
+  }
+}
@@ -0,0 +1,172 @@
+package ru.yandex.practicum.tasktracker.service;
+
+import com.google.gson.JsonParser;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import ru.yandex.practicum.tasktracker.builder.TestDataBuilder;
+import ru.yandex.practicum.tasktracker.model.Epic;
+import ru.yandex.practicum.tasktracker.model.EpicRecord;
+import ru.yandex.practicum.tasktracker.model.Subtask;
+import ru.yandex.practicum.tasktracker.model.Task;
+
+class DescriptionStoreFileBackedTaskManagerTest extends TaskManagerTest<FileBackedTaskManager> {
+
+  private static final String LONG_DESCRIPTION = "description ".repeat(100);
+  private File file;
+  private Path descriptions;
+
+  @BeforeEach
+  @Override
+  void setUp() {
+    try {
+      file = File.createTempFile("descriptionStore", ".csv");
+      file.deleteOnExit();
+      Path.of(file.getPath() + ".bak").toFile().deleteOnExit();
+      descriptions = Path.of(file.getPath() + ".descriptions");
+      taskManager = FileBackedTaskManager.loadFromFile(file, withDescriptionStore());
+    } catch (IOException e) {
+      System.out.println(e.getMessage());
+    }
+  }
+
+  @AfterEach
+  void tearDown() {
+    taskManager.close();
+  }
+
+  @Test
+  @DisplayName("Long description is moved to the description store and read on demand.")
+  void longDescriptionShouldBeReadFromStore() {
+    final Task task = taskManager.addTask(TestDataBuilder.buildTask("task", LONG_DESCRIPTION));
+    final Task shortTask = taskManager.addTask(TestDataBuilder.buildTask("short", "d"));
+
+    final Task stored = findStored(task.getId());
+
+    Assertions.assertAll(
+        () -> Assertions.assertNotNull(stored.getDescriptionSource(),
+            "Long description should be kept in the store."),
+        () -> Assertions.assertEquals(LONG_DESCRIPTION, stored.getDescription(),
+            "Description should be read from the store."),
+        () -> Assertions.assertNull(findStored(shortTask.getId()).getDescriptionSource(),
+            "Short description should stay in the task."),
+        () -> Assertions.assertNull(taskManager.getTaskById(task.getId()).getDescriptionSource(),
+            "Copy of the task should hold its description.")
+    );
+  }
+
+  @Test
+  @DisplayName("Descriptions of the loaded tasks are moved to the description store.")
+  void loadedDescriptionsShouldBeReadFromStore() {
+    final Task task = taskManager.addTask(TestDataBuilder.buildTask("task", LONG_DESCRIPTION));
+    taskManager.close();
+
+    taskManager = FileBackedTaskManager.loadFromFile(file, withDescriptionStore());
+    final Task restored = findStored(task.getId());
+
+    Assertions.assertAll(
+        () -> Assertions.assertNotNull(restored.getDescriptionSource(),
+            "Loaded description should be kept in the store."),
+        () -> Assertions.assertEquals(LONG_DESCRIPTION, restored.getDescription(),
+            "Loaded description should be read from the store.")
+    );
+  }
+
+  @Test
+  @DisplayName("Removed task gets its description back.")
+  void removedTaskShouldKeepItsDescription() {
+    final Task task = taskManager.addTask(TestDataBuilder.buildTask("task", LONG_DESCRIPTION));
+    final Task stored = findStored(task.getId());
+
+    taskManager.deleteTask(task.getId());
+
+    Assertions.assertAll(
+        () -> Assertions.assertNull(stored.getDescriptionSource(),
+            "Removed task should hold its description."),
+        () -> Assertions.assertEquals(LONG_DESCRIPTION, stored.getDescription(),
+            "Removed task should keep its description.")
+    );
+  }
+
+  @Test
+  @DisplayName("Garbage of the updated descriptions is compacted.")
+  void updatedDescriptionsShouldBeCompacted() {
+    final Task task = taskManager.addTask(TestDataBuilder.buildTask("task", LONG_DESCRIPTION));
+    final Task other = taskManager.addTask(TestDataBuilder.buildTask("other", LONG_DESCRIPTION));
+    final String lastDescription = "last ".repeat(200);
+
+    for (int i = 0; i < 3000; i++) {
+      task.setDescription(i == 2999 ? lastDescription : LONG_DESCRIPTION + i);
+      taskManager.updateTask(task);
+    }
+
+    Assertions.assertAll(
+        () -> Assertions.assertTrue(descriptions.toFile().length() < 1 << 21,
+            "Description file should be compacted."),
+        () -> Assertions.assertEquals(lastDescription, findStored(task.getId()).getDescription(),
+            "Updated description should be read after compaction."),
+        () -> Assertions.assertEquals(LONG_DESCRIPTION, findStored(other.getId()).getDescription(),
+            "Other description should be read after compaction.")
+    );
+  }
+
+  @Test
+  @DisplayName("Epic view is not kept while a subtask reads its description on demand.")
+  void epicViewShouldNotBeKeptWithSubtaskDescriptionInStore() {
+    final Epic epic = taskManager.addEpic(TestDataBuilder.buildEpic("epic", "d"));
+    final Subtask subtask = taskManager.addSubtask(
+        TestDataBuilder.buildSubtask("subtask", LONG_DESCRIPTION, epic.getId()));
+
+    final EpicRecord view = taskManager.getEpicView(epic.getId());
+
+    Assertions.assertAll(
+        () -> Assertions.assertNotSame(view, taskManager.getEpicView(epic.getId()),
+            "Epic view holding the description of the subtask should not be kept."),
+        () -> Assertions.assertEquals(LONG_DESCRIPTION, view.subtasks().get(0).description(),
+            "Subtask description should be read from the store."),
+        () -> Assertions.assertNotNull(taskManager.getSubtasks().stream()
+                .filter(s -> s.getId() == subtask.getId())
+                .findFirst().orElseThrow().getDescriptionSource(),
+            "Subtask description should be kept in the store.")
+    );
+  }
+
+  @Test
+  @DisplayName("Description read on demand is serialized to JSON.")
+  void descriptionFromStoreShouldBeSerialized() {
+    final Task task = taskManager.addTask(TestDataBuilder.buildTask("task", LONG_DESCRIPTION));
+
+    final String json = Managers.getGson().toJson(List.of(findStored(task.getId())));
+
+    Assertions.assertEquals(LONG_DESCRIPTION, JsonParser.parseString(json).getAsJsonArray()
+            .get(0).getAsJsonObject().get("description").getAsString(),
+        "Description should be serialized.");
+  }
+
+  @Test
+  @DisplayName("Description file is removed on closing.")
+  void descriptionFileShouldBeRemovedOnClosing() {
+    taskManager.addTask(TestDataBuilder.buildTask("task", LONG_DESCRIPTION));
+
+    taskManager.close();
+
+    Assertions.assertFalse(descriptions.toFile().exists(), "Description file should be removed.");
+  }
+
+  private Task findStored(final int id) {
+    return taskManager.getTasks().stream()
+        .filter(task -> task.getId() == id)
+        .findFirst()
+        .orElseThrow();
+  }
+
+  private static StorageConfig withDescriptionStore() {
+    return StorageConfig.snapshot().setDescriptionStoreEnabled(true).setDescriptionCacheSize(16);
+  }
+}
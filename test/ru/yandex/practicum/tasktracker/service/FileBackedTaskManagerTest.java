@@ -1,6 +1,9 @@
 package ru.yandex.practicum.tasktracker.service;
 
+import java.io.ByteArrayOutputStream;
 import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FilterOutputStream;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
@@ -121,6 +124,200 @@ class FileBackedTaskManagerTest extends TaskManagerTest<FileBackedTaskManager> {
     );
   }
 
+  @Test
+  void damagedSnapshotShouldBeRecoveredFromPreviousSnapshot() throws IOException {
+    final Path backup = Path.of(file.getPath() + ".bak");
+    backup.toFile().deleteOnExit();
+    TestDataBuilder.addTaskDataToTheTaskManager(taskManager);
+    final int tasksNumber = taskManager.getTasks().size();
+    taskManager.addTask(TestDataBuilder.buildTask("last", "d"));
+    Files.writeString(file.toPath(), Files.readString(file.toPath()).replace("last", "lost"));
+
+    final FileBackedTaskManager restored = FileBackedTaskManager.loadFromFile(file);
+
+    Assertions.assertAll(
+        () -> Assertions.assertEquals(tasksNumber, restored.getTasks().size(),
+            "State of the previous snapshot should be restored."),
+        () -> Assertions.assertEquals(taskManager.getSubtasks().size(),
+            restored.getSubtasks().size(), "Subtasks should be restored."),
+        () -> Assertions.assertFalse(Files.exists(Path.of(file.getPath() + ".tmp")),
+            "Temporary file should be renamed into place.")
+    );
+  }
+
+  @Test
+  void getByIdShouldNotRewriteSnapshotAndShouldRestoreHistory() throws IOException {
+    final List<Integer> ids = TestDataBuilder.addTaskDataToTheTaskManager(taskManager);
+    final String snapshotBefore = Files.readString(file.toPath());
+
+    taskManager.getSubtaskById(ids.get(2));
+    taskManager.getTaskById(ids.get(1));
+    taskManager.getEpicById(ids.get(0));
+    final List<Task> expectedHistory = taskManager.getHistory();
+
+    final String snapshotAfter = Files.readString(file.toPath());
+    final List<Task> actualHistory = FileBackedTaskManager.loadFromFile(file).getHistory();
+
+    Assertions.assertAll(
+        () -> Assertions.assertEquals(snapshotBefore, snapshotAfter,
+            "Snapshot should not be rewritten."),
+        () -> Assertions.assertIterableEquals(expectedHistory, actualHistory,
+            "History should be restored in the same order.")
+    );
+  }
+
+  @Test
+  void historyJournalShouldBeCompactedWhenItGrowsLongerThanHistory() throws IOException {
+    taskManager = FileBackedTaskManager.loadFromFile(file,
+        StorageConfig.snapshot().setCompactionThreshold(3));
+    final Task task = taskManager.addTask(TestDataBuilder.buildTask("t1", "d1"));
+    final Path historyJournal = Path.of(file.getPath() + ".history");
+
+    for (int i = 0; i < 10; i++) {
+      taskManager.getTaskById(task.getId());
+    }
+
+    Assertions.assertAll(
+        () -> Assertions.assertTrue(Files.readAllLines(historyJournal).size() < 10,
+            "History journal should be compacted."),
+        () -> Assertions.assertIterableEquals(List.of(task),
+            FileBackedTaskManager.loadFromFile(file).getHistory(), "History should be restored.")
+    );
+  }
+
+  @Test
+  void snapshotShouldStoreHistoryIdsWithoutPrioritizedTasks() throws IOException {
+    final List<Integer> ids = TestDataBuilder.addTaskDataToTheTaskManager(taskManager);
+    taskManager.getTaskById(ids.get(1));
+    taskManager.getSubtaskById(ids.get(2));
+    taskManager.addTask(TestDataBuilder.buildTask("last", "d"));
+
+    final List<String> lines = Files.readAllLines(file.toPath());
+    final FileBackedTaskManager restored = FileBackedTaskManager.loadFromFile(file);
+
+    Assertions.assertAll(
+        () -> Assertions.assertEquals(List.of("history", String.valueOf(ids.get(1)),
+                String.valueOf(ids.get(2))),
+            lines.subList(lines.indexOf("history"), lines.size() - 1),
+            "History should be written as ids."),
+        () -> Assertions.assertFalse(lines.contains("prioritized"),
+            "Prioritized tasks should not be written."),
+        () -> Assertions.assertIterableEquals(taskManager.getPrioritizedTasks(),
+            restored.getPrioritizedTasks(), "Prioritized tasks should be rebuilt."),
+        () -> Assertions.assertIterableEquals(taskManager.getHistory(), restored.getHistory(),
+            "History should be restored.")
+    );
+  }
+
+  @Test
+  void snapshotOfPreviousLayoutShouldBeLoaded() throws IOException {
+    Files.writeString(file.toPath(), """
+        id,type,name,status,description,duration,startTime,epic
+        1,TASK,t1,NEW,d1,15,2024-01-01T10:00,\s
+        2,EPIC,e1,NEW,d2,0,null,\s
+        3,SUBTASK,s1,DONE,d3,30,2024-01-01T09:00,2
+        history
+        3,SUBTASK,s1,DONE,d3,30,2024-01-01T09:00,2
+        1,TASK,t1,NEW,d1,15,2024-01-01T10:00,\s
+        prioritized
+        3,SUBTASK,s1,DONE,d3,30,2024-01-01T09:00,2
+        1,TASK,t1,NEW,d1,15,2024-01-01T10:00,\s
+        """);
+
+    final FileBackedTaskManager restored = FileBackedTaskManager.loadFromFile(file);
+
+    Assertions.assertAll(
+        () -> Assertions.assertEquals(List.of(3, 1),
+            restored.getHistory().stream().map(Task::getId).toList(),
+            "History should be restored from the whole lines."),
+        () -> Assertions.assertEquals(List.of(3, 1),
+            restored.getPrioritizedTasks().stream().map(Task::getId).toList(),
+            "Prioritized tasks should be rebuilt from the tasks.")
+    );
+  }
+
+  @Test
+  void backupShouldBeLoadedAsSnapshot() throws IOException {
+    TestDataBuilder.addTaskDataToTheTaskManager(taskManager);
+    taskManager.getEpicById(taskManager.getEpics().get(0).getId());
+    final File backupFile = File.createTempFile("backup", ".csv");
+    backupFile.deleteOnExit();
+
+    final BackupReport report;
+    try (final FileOutputStream out = new FileOutputStream(backupFile)) {
+      report = taskManager.backup(out);
+    }
+    final FileBackedTaskManager restored = FileBackedTaskManager.loadFromFile(backupFile);
+
+    Assertions.assertAll(
+        () -> Assertions.assertEquals(backupFile.length(), report.bytes(),
+            "Report should count the written bytes."),
+        () -> Assertions.assertEquals(taskManager.getTasks().size()
+                + taskManager.getEpics().size() + taskManager.getSubtasks().size(),
+            report.tasks(), "Report should count the written tasks."),
+        () -> Assertions.assertTrue(report.megabytesPerSecond() > 0,
+            "Report should contain the throughput."),
+        () -> Assertions.assertIterableEquals(TestDataBuilder.toLines(taskManager.getEpics()),
+            TestDataBuilder.toLines(restored.getEpics()),
+            "Epics should be restored from the backup."),
+        () -> Assertions.assertIterableEquals(TestDataBuilder.toLines(taskManager.getSubtasks()),
+            TestDataBuilder.toLines(restored.getSubtasks()),
+            "Subtasks should be restored from the backup."),
+        () -> Assertions.assertIterableEquals(taskManager.getHistory(), restored.getHistory(),
+            "History should be restored from the backup.")
+    );
+  }
+
+  @Test
+  void backupShouldKeepStateAsOfItsStartWhileManagerIsModified() throws IOException {
+    for (int i = 0; i < 2000; i++) {
+      taskManager.addTask(TestDataBuilder.buildTask("task " + i, "description of task " + i));
+    }
+    final Epic epic = taskManager.addEpic(TestDataBuilder.buildEpic("epic", "d"));
+    final Subtask subtask = taskManager.addSubtask(
+        TestDataBuilder.buildSubtask("subtask", "d", epic.getId()));
+    final List<String> expectedTasks = TestDataBuilder.toLines(taskManager.getTasks());
+    final List<String> expectedEpics = TestDataBuilder.toLines(taskManager.getEpics());
+    final List<String> expectedSubtasks = TestDataBuilder.toLines(taskManager.getSubtasks());
+    final ByteArrayOutputStream backup = new ByteArrayOutputStream();
+    final boolean[] modified = {false};
+
+    /* The first bytes reach the stream long before the epic is written. */
+    taskManager.backup(new FilterOutputStream(backup) {
+      @Override
+      public void write(final byte[] b, final int off, final int len) throws IOException {
+        if (!modified[0]) {
+          modified[0] = true;
+          final Epic changedEpic = taskManager.getEpicById(epic.getId());
+          changedEpic.setTitle("changed");
+          taskManager.updateEpic(changedEpic);
+          subtask.setStatus(TaskStatus.DONE);
+          taskManager.updateSubtask(subtask);
+          taskManager.addSubtask(TestDataBuilder.buildSubtask("new", "d", epic.getId()));
+          taskManager.deleteTask(taskManager.getTasks().get(0).getId());
+        }
+        out.write(b, off, len);
+      }
+    });
+    final File backupFile = File.createTempFile("backup", ".csv");
+    backupFile.deleteOnExit();
+    Files.write(backupFile.toPath(), backup.toByteArray());
+    final FileBackedTaskManager restored = FileBackedTaskManager.loadFromFile(backupFile);
+
+    Assertions.assertAll(
+        () -> Assertions.assertTrue(modified[0], "Manager should be modified during the backup."),
+        () -> Assertions.assertIterableEquals(expectedTasks,
+            TestDataBuilder.toLines(restored.getTasks()),
+            "Tasks should be backed up as of the start."),
+        () -> Assertions.assertIterableEquals(expectedEpics,
+            TestDataBuilder.toLines(restored.getEpics()),
+            "Epics should be backed up as of the start."),
+        () -> Assertions.assertIterableEquals(expectedSubtasks,
+            TestDataBuilder.toLines(restored.getSubtasks()),
+            "Subtasks should be backed up as of the start.")
+    );
+  }
+
   @ParameterizedTest
   @MethodSource("provideDifferentTypesTasks")
   <T extends Task> void saveSavesTasksToTheFileInCSVFormat(T testTask) throws IOException {
@@ -156,38 +353,27 @@ class FileBackedTaskManagerTest extends TaskManagerTest<FileBackedTaskManager> {
           %s,%s,%s,%s,%s,%s,%s,%s
           %s,%s,%s,%s,%s,%s,%s,%s
           history
-          prioritized
-          %s,%s,%s,%s,%s,%s,%s,%s
           """.formatted(epicForId.getId(), epicForId.getType(), epicForId.getTitle(),
           epicForId.getStatus(), epicForId.getDescription(), epicForId.getDuration().toMinutes(),
           epicForId.getStartTime(), " ",
           testTask.getId(), testTask.getType(), testTask.getTitle(),
           testTask.getStatus(),
           testTask.getDescription(), testTask.getDuration().toMinutes(), testTask.getStartTime(),
-          epic, testTask.getId(), testTask.getType(), testTask.getTitle(),
-          testTask.getStatus(),
-          testTask.getDescription(), testTask.getDuration().toMinutes(), testTask.getStartTime(),
           epic);
     } else if (TaskType.TASK == testTask.getType()) {
       expected = """
           id,type,name,status,description,duration,startTime,epic
           %s,%s,%s,%s,%s,%s,%s,%s
           history
-          prioritized
-          %s,%s,%s,%s,%s,%s,%s,%s
           """.formatted(testTask.getId(), testTask.getType(), testTask.getTitle(),
           testTask.getStatus(),
           testTask.getDescription(), testTask.getDuration().toMinutes(), testTask.getStartTime(),
-          epic, testTask.getId(), testTask.getType(), testTask.getTitle(),
-          testTask.getStatus(),
-          testTask.getDescription(), testTask.getDuration().toMinutes(), testTask.getStartTime(),
           epic);
     } else {
       expected = """
           id,type,name,status,description,duration,startTime,epic
           %s,%s,%s,%s,%s,%s,%s,%s
           history
-          prioritized
           """.formatted(testTask.getId(), testTask.getType(), testTask.getTitle(),
           testTask.getStatus(),
           testTask.getDescription(), testTask.getDuration().toMinutes(), testTask.getStartTime(),
@@ -195,8 +381,12 @@ class FileBackedTaskManagerTest extends TaskManagerTest<FileBackedTaskManager> {
     }
 
     final String actual = Files.readString(file.toPath());
+    final int checksumLineStart = actual.lastIndexOf("crc32c,");
 
-    Assertions.assertEquals(expected, actual, "Wrong format saved.");
+    Assertions.assertEquals(CsvSnapshot.FORMAT_HEADER + System.lineSeparator() + expected,
+        actual.substring(0, checksumLineStart), "Wrong format saved.");
+    Assertions.assertTrue(actual.substring(checksumLineStart).matches("crc32c,[0-9a-f]{8}\\R"),
+        "Snapshot should end with the checksum line.");
   }
 
   private static List<Task> provideDifferentTypesTasks() {
@@ -236,5 +426,4 @@ class FileBackedTaskManagerTest extends TaskManagerTest<FileBackedTaskManager> {
     int idToView = ids.get(TaskType.EPIC);
     manager.getEpicById(idToView);
   }
-
-}
\ No newline at end of file
+}
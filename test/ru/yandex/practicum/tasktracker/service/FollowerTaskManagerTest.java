@@ -0,0 +1,187 @@
+package ru.yandex.practicum.tasktracker.service;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import ru.yandex.practicum.tasktracker.builder.TestDataBuilder;
+import ru.yandex.practicum.tasktracker.exception.ManagerLoadException;
+import ru.yandex.practicum.tasktracker.model.Task;
+
+class FollowerTaskManagerTest {
+
+  private static final Duration IDLE = Duration.ofHours(1);
+  @TempDir
+  Path directory;
+  private File file;
+  private FileBackedTaskManager writer;
+  private FollowerTaskManager follower;
+
+  @BeforeEach
+  void setUp() throws IOException {
+    file = Files.createFile(directory.resolve("followedFile.csv")).toFile();
+  }
+
+  @AfterEach
+  void tearDown() {
+    if (follower != null) {
+      follower.close();
+    }
+    if (writer != null) {
+      writer.close();
+    }
+  }
+
+  @Test
+  @DisplayName("The follower applies the records appended to the journal one by one.")
+  void followerShouldApplyJournalRecords() {
+    final StorageConfig config = StorageConfig.journal().setCompactionThreshold(1000)
+        .setFollowInterval(IDLE);
+    writer = FileBackedTaskManager.loadFromFile(file, config);
+    follower = FollowerTaskManager.follow(file, config);
+    TestDataBuilder.addTaskDataToTheTaskManager(writer);
+    writer.deleteTask(writer.getTasks().get(0).getId());
+
+    follower.sync();
+    final ReplicationMetrics metrics = follower.getReplicationMetrics();
+
+    Assertions.assertAll(
+        () -> Assertions.assertIterableEquals(TestDataBuilder.allTasks(writer),
+            TestDataBuilder.allTasks(follower),
+            "Follower should see every change."),
+        () -> Assertions.assertIterableEquals(writer.getPrioritizedTasks(),
+            follower.getPrioritizedTasks(), "Prioritized tasks should be same."),
+        () -> Assertions.assertTrue(metrics.appliedRecords() > 0,
+            "Records should be applied one by one."),
+        () -> Assertions.assertEquals(1, metrics.reloads(), "Only the first sync should reload."),
+        () -> Assertions.assertEquals(0, metrics.pendingBytes(), "Nothing should be pending.")
+    );
+  }
+
+  @Test
+  @DisplayName("The follower reloads the state after the journal is compacted.")
+  void followerShouldReloadAfterCompaction() {
+    final StorageConfig config = StorageConfig.journal().setCompactionThreshold(3)
+        .setFollowInterval(IDLE);
+    writer = FileBackedTaskManager.loadFromFile(file, config);
+    writer.addTask(TestDataBuilder.buildTask("first", "d"));
+    follower = FollowerTaskManager.follow(file, config);
+    TestDataBuilder.addTaskDataToTheTaskManager(writer);
+
+    follower.sync();
+
+    Assertions.assertAll(
+        () -> Assertions.assertIterableEquals(TestDataBuilder.allTasks(writer),
+            TestDataBuilder.allTasks(follower),
+            "Follower should see every change."),
+        () -> Assertions.assertTrue(follower.getReplicationMetrics().reloads() > 1,
+            "Compaction should make the follower reload.")
+    );
+  }
+
+  @Test
+  @DisplayName("Without the journal the follower reloads every new snapshot.")
+  void followerShouldReloadSnapshots() {
+    final StorageConfig config = StorageConfig.snapshot().setFollowInterval(IDLE);
+    writer = FileBackedTaskManager.loadFromFile(file, config);
+    follower = FollowerTaskManager.follow(file, config);
+    TestDataBuilder.addTaskDataToTheTaskManager(writer);
+    final int reloads = (int) follower.getReplicationMetrics().reloads();
+
+    follower.sync();
+
+    Assertions.assertAll(
+        () -> Assertions.assertIterableEquals(TestDataBuilder.allTasks(writer),
+            TestDataBuilder.allTasks(follower),
+            "Follower should see the last snapshot."),
+        () -> Assertions.assertEquals(reloads + 1, follower.getReplicationMetrics().reloads(),
+            "New snapshot should be reloaded.")
+    );
+  }
+
+  @Test
+  @DisplayName("The follower catches up in the background within a bounded lag.")
+  void followerShouldCatchUpInBackground() throws InterruptedException {
+    final StorageConfig config = StorageConfig.journal()
+        .setFollowInterval(Duration.ofMillis(20));
+    writer = FileBackedTaskManager.loadFromFile(file, config);
+    follower = FollowerTaskManager.follow(file, config);
+    TestDataBuilder.addTaskDataToTheTaskManager(writer);
+    final List<String> expected = TestDataBuilder.allTasks(writer);
+
+    final long deadline = System.nanoTime() + Duration.ofSeconds(5).toNanos();
+    while (!expected.equals(TestDataBuilder.allTasks(follower)) && System.nanoTime() < deadline) {
+      Thread.sleep(10);
+    }
+
+    Assertions.assertAll(
+        () -> Assertions.assertIterableEquals(expected, TestDataBuilder.allTasks(follower),
+            "Follower should catch up."),
+        () -> Assertions.assertTrue(follower.getReplicationMetrics().lagMillis() < 5_000,
+            "Lag should be bounded by the polling."),
+        () -> Assertions.assertEquals(0, follower.getReplicationMetrics().failures(),
+            "Polls should not fail.")
+    );
+  }
+
+  @Test
+  @DisplayName("The follower is read-only and keeps its own history.")
+  void followerShouldBeReadOnly() {
+    final StorageConfig config = StorageConfig.journal().setFollowInterval(IDLE);
+    writer = FileBackedTaskManager.loadFromFile(file, config);
+    TestDataBuilder.addTaskDataToTheTaskManager(writer);
+    follower = FollowerTaskManager.follow(file, config);
+    final Task task = follower.getTasks().get(0);
+
+    follower.getTaskById(task.getId());
+
+    Assertions.assertAll(
+        () -> Assertions.assertThrows(UnsupportedOperationException.class,
+            () -> follower.addTask(TestDataBuilder.buildTask("task", "d"))),
+        () -> Assertions.assertThrows(UnsupportedOperationException.class,
+            () -> follower.updateTask(task)),
+        () -> Assertions.assertThrows(UnsupportedOperationException.class,
+            () -> follower.deleteTask(task.getId())),
+        () -> Assertions.assertThrows(UnsupportedOperationException.class,
+            follower::clearEpics),
+        () -> Assertions.assertEquals(List.of(task), follower.getHistory(),
+            "Follower should keep its own history."),
+        () -> Assertions.assertTrue(writer.getHistory().isEmpty(),
+            "Writer history should not change.")
+    );
+  }
+
+  @Test
+  @DisplayName("A locked file cannot be opened by a second writer until the first one is closed.")
+  void lockedFileShouldRejectSecondWriter() {
+    final StorageConfig config = StorageConfig.journal().setLockEnabled(true);
+    writer = FileBackedTaskManager.loadFromFile(file, config);
+    writer.addTask(TestDataBuilder.buildTask("task", "d"));
+
+    Assertions.assertThrows(ManagerLoadException.class,
+        () -> FileBackedTaskManager.loadFromFile(file, config));
+    writer.close();
+    writer = FileBackedTaskManager.loadFromFile(file, config);
+    Assertions.assertEquals(1, writer.getTasks().size(), "Second writer should load the tasks.");
+  }
+
+  @Test
+  @DisplayName("Paged and sharded storage cannot be followed.")
+  void pagedAndShardedStorageShouldNotBeFollowed() {
+    Assertions.assertAll(
+        () -> Assertions.assertThrows(IllegalArgumentException.class,
+            () -> FollowerTaskManager.follow(file, StorageConfig.snapshot().setShardCount(2))),
+        () -> Assertions.assertThrows(IllegalArgumentException.class,
+            () -> FollowerTaskManager.follow(file, StorageConfig.snapshot()
+                .setSnapshotFormat(SnapshotFormat.PAGED)))
+    );
+  }
+}
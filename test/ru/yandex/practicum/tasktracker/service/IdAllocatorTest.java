@@ -0,0 +1,93 @@
+package ru.yandex.practicum.tasktracker.service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.LongStream;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+class IdAllocatorTest {
+
+  @Test
+  @DisplayName("A single thread gets consecutive ids across the blocks.")
+  void singleThreadShouldGetConsecutiveIds() {
+    final IdAllocator ids = new IdAllocator(4);
+
+    final List<Long> given = LongStream.range(0, 10).map(i -> ids.nextId()).boxed().toList();
+
+    Assertions.assertAll(
+        () -> Assertions.assertEquals(LongStream.rangeClosed(1, 10).boxed().toList(), given,
+            "Ids should be consecutive."),
+        () -> Assertions.assertEquals(12, ids.lastReserved(), "Three blocks should be reserved.")
+    );
+  }
+
+  @Test
+  @DisplayName("Several threads get unique ids from blocks of their own.")
+  void threadsShouldGetUniqueIds() throws Exception {
+    final IdAllocator ids = new IdAllocator(16);
+    final Set<Long> given = ConcurrentHashMap.newKeySet();
+    final ExecutorService executor = Executors.newFixedThreadPool(8);
+    final List<Future<?>> futures = new ArrayList<>();
+    for (int thread = 0; thread < 8; thread++) {
+      futures.add(executor.submit(() -> {
+        for (int i = 0; i < 10_000; i++) {
+          Assertions.assertTrue(given.add(ids.nextId()), "Id should not be given twice.");
+        }
+      }));
+    }
+    for (Future<?> future : futures) {
+      future.get(1, TimeUnit.MINUTES);
+    }
+    executor.shutdown();
+
+    Assertions.assertAll(
+        () -> Assertions.assertEquals(80_000, given.size(), "Every id should be unique."),
+        () -> Assertions.assertTrue(ids.lastReserved() >= given.stream()
+            .mapToLong(Long::longValue).max().orElseThrow(), "Ids should be reserved.")
+    );
+  }
+
+  @Test
+  @DisplayName("The allocator moves past the used ids and never back.")
+  void allocatorShouldAdvanceButNeverMoveBack() {
+    final IdAllocator ids = new IdAllocator();
+    ids.nextId();
+
+    ids.advanceTo(100);
+    final long afterAdvance = ids.nextId();
+    ids.advanceTo(5);
+    final long afterMoveBack = ids.nextId();
+
+    Assertions.assertAll(
+        () -> Assertions.assertEquals(101, afterAdvance, "Id should follow the used ones."),
+        () -> Assertions.assertTrue(afterMoveBack > afterAdvance,
+            "Allocator should not move back.")
+    );
+  }
+
+  @Test
+  @DisplayName("The int ids are exhausted with an exception instead of an overflow.")
+  void intIdsShouldNotOverflow() {
+    final IdAllocator ids = new IdAllocator();
+    ids.advanceTo(Integer.MAX_VALUE - 1);
+
+    Assertions.assertEquals(Integer.MAX_VALUE, ids.nextIntId(), "Last int id should be given.");
+    Assertions.assertThrows(IllegalStateException.class, ids::nextIntId);
+    Assertions.assertEquals(Integer.MAX_VALUE + 1L, ids.nextId() - 1,
+        "Allocator should keep giving 64-bit ids.");
+  }
+
+  @Test
+  @DisplayName("A block size that is not positive is rejected.")
+  void nonPositiveBlockSizeShouldBeRejected() {
+    Assertions.assertThrows(IllegalArgumentException.class, () -> new IdAllocator(0));
+  }
+}
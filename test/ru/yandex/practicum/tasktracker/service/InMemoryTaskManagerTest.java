@@ -1,6 +1,17 @@
 package ru.yandex.practicum.tasktracker.service;
 
+import java.time.Duration;
+import java.util.List;
+import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import ru.yandex.practicum.tasktracker.builder.TestDataBuilder;
+import ru.yandex.practicum.tasktracker.model.Epic;
+import ru.yandex.practicum.tasktracker.model.Subtask;
+import ru.yandex.practicum.tasktracker.model.Task;
+import ru.yandex.practicum.tasktracker.model.TaskStatus;
+import ru.yandex.practicum.tasktracker.model.TaskView;
 
 class InMemoryTaskManagerTest extends TaskManagerTest<InMemoryTaskManager> {
 
@@ -10,4 +21,48 @@ class InMemoryTaskManagerTest extends TaskManagerTest<InMemoryTaskManager> {
     taskManager = new InMemoryTaskManager();
   }
 
-}
\ No newline at end of file
+  @Test
+  @DisplayName("Every manager gives its own ids.")
+  void everyManagerShouldGiveItsOwnIds() {
+    final InMemoryTaskManager other = new InMemoryTaskManager();
+
+    final int first = taskManager.addTask(TestDataBuilder.buildTask("t1", "d1")).getId();
+    final int otherFirst = other.addTask(TestDataBuilder.buildTask("t2", "d2")).getId();
+    final int second = taskManager.addTask(TestDataBuilder.buildTask("t3", "d3")).getId();
+
+    Assertions.assertAll(
+        () -> Assertions.assertEquals(1, first, "Ids should start from 1."),
+        () -> Assertions.assertEquals(1, otherFirst, "Ids of another manager should start from 1."),
+        () -> Assertions.assertEquals(2, second, "Ids should be consecutive.")
+    );
+  }
+
+  @Test
+  @DisplayName("Reads share one view until the task is changed.")
+  void readsShouldShareViewUntilChange() {
+    final Task task = taskManager.addTask(TestDataBuilder.buildTask("t", "d"));
+    final Epic epic = taskManager.addEpic(TestDataBuilder.buildEpic("e", "d"));
+    final TaskView first = taskManager.getTaskView(task.getId());
+    final TaskView epicView = taskManager.getEpicView(epic.getId());
+
+    final TaskView second = taskManager.getTaskView(task.getId());
+    final TaskView listed = taskManager.getTaskViews().get(0);
+    task.setTitle("changed");
+    taskManager.updateTask(task);
+    final Subtask subtask = taskManager.addSubtask(TestDataBuilder.buildSubtask("s", "d",
+        epic.getId()));
+
+    Assertions.assertAll(
+        () -> Assertions.assertSame(first, second, "Reads should share the view."),
+        () -> Assertions.assertSame(first, listed, "List should share the view."),
+        () -> Assertions.assertEquals("changed", taskManager.getTaskView(task.getId()).title(),
+            "Update should give a new view."),
+        () -> Assertions.assertEquals("t", first.title(), "Old view should not change."),
+        () -> Assertions.assertNotSame(epicView, taskManager.getEpicView(epic.getId()),
+            "New subtask should give a new epic view."),
+        () -> Assertions.assertSame(taskManager.getSubtaskView(subtask.getId()),
+            taskManager.getEpicView(epic.getId()).subtasks().get(0),
+            "Epic view should share the subtask view.")
+    );
+  }
+}
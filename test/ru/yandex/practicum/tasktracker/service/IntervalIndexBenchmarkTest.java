@@ -0,0 +1,171 @@
+package ru.yandex.practicum.tasktracker.service;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import ru.yandex.practicum.tasktracker.model.Task;
+import ru.yandex.practicum.tasktracker.model.TaskStatus;
+
+/**
+ * Compares the {@link IntervalIndex} with the {@link TreeSet} of the start times checked at the
+ * floor and the ceiling, which the prioritized tasks used before, on 1M scheduled tasks, and
+ * measures the free slot search on a dense calendar. Runs only with
+ * {@code -Dtasktracker.benchmark=true}.
+ */
+@Tag("benchmark")
+@EnabledIfSystemProperty(named = "tasktracker.benchmark", matches = "true")
+class IntervalIndexBenchmarkTest {
+
+  private static final LocalDateTime BASE_TIME = LocalDateTime.of(2024, 1, 1, 0, 0);
+  private static final int TASKS = 1_000_000;
+  private static final int QUERIES = 200_000;
+  private static final int CALENDAR = 100_000;
+
+  @Test
+  void scheduleAndQueryThroughput() {
+    final Random random = new Random(1);
+    final List<Task> tasks = new ArrayList<>(TASKS);
+    for (int i = 0; i < TASKS; i++) {
+      tasks.add(task(i + 1, 30L * i, 15 + random.nextInt(15)));
+    }
+    final List<Task> shuffled = new ArrayList<>(tasks);
+    Collections.shuffle(shuffled, random);
+    final List<Task> probes = new ArrayList<>(QUERIES);
+    for (int i = 0; i < QUERIES; i++) {
+      probes.add(task(TASKS + i + 1, random.nextInt(30 * TASKS), 1 + random.nextInt(90)));
+    }
+
+    final TreeSet<Task> treeSet = new TreeSet<>(Comparator.comparing(Task::getStartTime));
+    long start = System.nanoTime();
+    for (Task task : shuffled) {
+      if (treeSetConflict(treeSet, task) == null) {
+        treeSet.add(task);
+      }
+    }
+    report("TreeSet schedule", TASKS, start);
+    start = System.nanoTime();
+    int treeSetConflicts = 0;
+    for (Task probe : probes) {
+      treeSetConflicts += treeSetConflict(treeSet, probe) == null ? 0 : 1;
+    }
+    report("TreeSet conflict check", QUERIES, start);
+    start = System.nanoTime();
+    long treeSetFound = 0;
+    for (Task probe : probes) {
+      treeSetFound += treeSetOverlapping(treeSet, probe).size();
+    }
+    report("TreeSet window query", QUERIES, start);
+
+    final IntervalIndex index = new IntervalIndex();
+    start = System.nanoTime();
+    for (Task task : shuffled) {
+      if (index.firstOverlapping(task.getStartTime(), task.getEndTime()) == null) {
+        index.add(task);
+      }
+    }
+    report("IntervalIndex schedule", TASKS, start);
+    start = System.nanoTime();
+    int indexConflicts = 0;
+    for (Task probe : probes) {
+      indexConflicts += index.firstOverlapping(probe.getStartTime(), probe.getEndTime()) == null
+          ? 0 : 1;
+    }
+    report("IntervalIndex conflict check", QUERIES, start);
+    start = System.nanoTime();
+    long indexFound = 0;
+    for (Task probe : probes) {
+      indexFound += index.overlapping(probe.getStartTime(), probe.getEndTime()).size();
+    }
+    report("IntervalIndex window query", QUERIES, start);
+
+    Assertions.assertEquals(TASKS, index.size(), "Every task should be scheduled.");
+    Assertions.assertEquals(treeSetConflicts, indexConflicts, "Conflicts should be same.");
+    Assertions.assertEquals(treeSetFound, indexFound, "Window queries should find same tasks.");
+  }
+
+  /**
+   * Places unscheduled tasks of 30 minutes from the start of a calendar of 100k tasks with gaps of
+   * 15 minutes at most, so every slot is past the tasks placed before it.
+   */
+  @Test
+  void freeSlotThroughput() {
+    final Random random = new Random(2);
+    final IntervalIndex index = new IntervalIndex();
+    final List<Task> calendar = new ArrayList<>(CALENDAR);
+    for (int i = 0; i < CALENDAR; i++) {
+      calendar.add(task(i + 1, 60L * i, 45 + random.nextInt(16)));
+    }
+    index.rebuild(calendar);
+    final int placements = 10_000;
+    final LocalDateTime calendarEnd = calendar.get(CALENDAR - 1).getEndTime();
+    final long start = System.nanoTime();
+    for (int i = 0; i < placements; i++) {
+      final Task task = task(CALENDAR + i + 1, 0, 30);
+      task.setStartTime(index.firstGap(BASE_TIME, task.getDuration()));
+      index.add(task);
+    }
+    report("IntervalIndex slot placement", placements, start);
+
+    Assertions.assertEquals(CALENDAR + placements, index.size(), "Every task should be placed.");
+    Assertions.assertEquals(calendarEnd.plusMinutes(30L * placements),
+        index.firstGap(BASE_TIME, Duration.ofMinutes(30)),
+        "Tasks should be placed past the calendar.");
+  }
+
+  private static Task treeSetConflict(final TreeSet<Task> treeSet, final Task task) {
+    final Task floor = treeSet.floor(task);
+    if (floor != null && overlaps(task, floor)) {
+      return floor;
+    }
+    final Task ceiling = treeSet.ceiling(task);
+    return ceiling != null && overlaps(task, ceiling) ? ceiling : null;
+  }
+
+  /**
+   * Scans the tasks from the one starting before the window, the TreeSet has no better way to find
+   * the overlapping tasks.
+   */
+  private static List<Task> treeSetOverlapping(final TreeSet<Task> treeSet, final Task window) {
+    final Task floor = treeSet.floor(window);
+    final List<Task> result = new ArrayList<>();
+    for (Task task : floor == null ? treeSet : treeSet.tailSet(floor, true)) {
+      if (!task.getStartTime().isBefore(window.getEndTime())) {
+        break;
+      }
+      if (overlaps(window, task)) {
+        result.add(task);
+      }
+    }
+    return result;
+  }
+
+  private static boolean overlaps(final Task task1, final Task task2) {
+    return task1.getStartTime().isBefore(task2.getEndTime())
+        && task1.getEndTime().isAfter(task2.getStartTime());
+  }
+
+  private static void report(final String name, final int operations, final long start) {
+    final double seconds = (System.nanoTime() - start) / 1e9;
+    System.out.printf("%s: %,d operations in %.3f s, %,.0f ops/s%n", name, operations, seconds,
+        operations / seconds);
+  }
+
+  private static Task task(final int id, final long startMinute, final int minutes) {
+    final Task task = new Task();
+    task.setId(id);
+    task.setTitle("task " + id);
+    task.setStatus(TaskStatus.NEW);
+    task.setDuration(Duration.ofMinutes(minutes));
+    task.setStartTime(BASE_TIME.plusMinutes(startMinute));
+    return task;
+  }
+}
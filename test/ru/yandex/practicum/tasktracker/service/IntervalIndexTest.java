@@ -0,0 +1,210 @@
+package ru.yandex.practicum.tasktracker.service;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import ru.yandex.practicum.tasktracker.builder.TestDataBuilder;
+import ru.yandex.practicum.tasktracker.model.Task;
+import ru.yandex.practicum.tasktracker.model.TaskStatus;
+
+class IntervalIndexTest {
+
+  private static final LocalDateTime BASE_TIME = LocalDateTime.of(2024, 5, 21, 0, 0);
+
+  @Test
+  @DisplayName("Random adds, removals and queries match a scan of all tasks.")
+  void randomOperationsShouldMatchScan() {
+    final Random random = new Random(21);
+    final IntervalIndex index = new IntervalIndex();
+    final List<Task> all = new ArrayList<>();
+    for (int i = 1; i <= 3000; i++) {
+      final Task task = task(i, random.nextInt(5000), random.nextInt(60));
+      if (random.nextInt(4) == 0 && !all.isEmpty()) {
+        final Task removed = all.remove(random.nextInt(all.size()));
+        Assertions.assertTrue(index.remove(removed), "Task should be removed.");
+      }
+      Assertions.assertTrue(index.add(task), "Task should be added.");
+      all.add(task);
+    }
+    all.sort(IntervalIndex.ORDER);
+
+    Assertions.assertIterableEquals(all, index, "Tasks should be iterated in order.");
+    for (int i = 0; i < 500; i++) {
+      final LocalDateTime from = BASE_TIME.plusMinutes(random.nextInt(5100));
+      final LocalDateTime to = from.plusMinutes(random.nextInt(30));
+      final List<Task> expected = all.stream()
+          .filter(task -> task.getStartTime().isBefore(to) && task.getEndTime().isAfter(from))
+          .toList();
+      final List<Task> overlapping = all.stream()
+          .filter(task -> task.getStartTime().isBefore(to) && (task.getEndTime().isAfter(from)
+              || task.getStartTime().equals(from)))
+          .toList();
+      final List<Task> containing = all.stream()
+          .filter(task -> !task.getStartTime().isAfter(from) && task.getEndTime().isAfter(from))
+          .toList();
+      Assertions.assertEquals(overlapping, index.overlapping(from, to),
+          "Overlapping tasks differ.");
+      Assertions.assertEquals(expected.isEmpty() ? null : expected.get(0),
+          index.firstOverlapping(from, to), "First overlapping task differs.");
+      Assertions.assertEquals(containing, index.containing(from), "Containing tasks differ.");
+    }
+  }
+
+  @Test
+  @DisplayName("Pages of a window read one after another give all overlapping tasks once.")
+  void pagesShouldGiveOverlappingTasksOnce() {
+    final Random random = new Random(22);
+    final IntervalIndex index = new IntervalIndex();
+    for (int i = 1; i <= 2000; i++) {
+      index.add(task(i, i * 10 + random.nextInt(5), random.nextInt(6)));
+    }
+    for (int i = 0; i < 50; i++) {
+      final LocalDateTime from = BASE_TIME.plusMinutes(random.nextInt(20_000));
+      final ScheduleWindow window = ScheduleWindow.between(from,
+          from.plusMinutes(random.nextInt(2000)), 1 + random.nextInt(20));
+      final List<Task> pages = new ArrayList<>();
+      List<Task> page = index.page(window);
+      while (!page.isEmpty()) {
+        Assertions.assertTrue(page.size() <= window.limit(), "Page should respect the limit.");
+        pages.addAll(page);
+        page = index.page(window.after(ScheduleWindow.Cursor.of(page.get(page.size() - 1))));
+      }
+      Assertions.assertEquals(index.overlapping(window.from(), window.to()), pages,
+          "Pages should give every overlapping task once.");
+    }
+  }
+
+  @Test
+  @DisplayName("The first gap after removals and rebuilds matches a walk of all tasks.")
+  void firstGapShouldMatchWalk() {
+    final Random random = new Random(23);
+    final IntervalIndex index = new IntervalIndex();
+    final List<Task> all = new ArrayList<>();
+    for (int i = 1; i <= 3000; i++) {
+      final Task task = task(i, i * 10 + random.nextInt(3), 5 + random.nextInt(4));
+      task.setStartTime(task.getStartTime().plusNanos(random.nextInt(1_000_000_000)));
+      all.add(task);
+    }
+    index.rebuild(all);
+    for (int i = 0; i < 1000; i++) {
+      final Task removed = all.remove(random.nextInt(all.size()));
+      Assertions.assertTrue(index.remove(removed), "Task should be removed.");
+    }
+    for (int i = 0; i < 500; i++) {
+      final LocalDateTime after = BASE_TIME.plusMinutes(random.nextInt(31_000) - 100)
+          .plusNanos(random.nextInt(1_000_000_000));
+      final Duration duration = Duration.ofMinutes(random.nextInt(40))
+          .plusNanos(random.nextInt(2) * random.nextInt(1_000_000_000));
+      LocalDateTime expected = after;
+      for (Task task : all) {
+        if (!expected.plus(duration).isAfter(task.getStartTime())) {
+          break;
+        }
+        if (task.getEndTime().isAfter(expected)) {
+          expected = task.getEndTime();
+        }
+      }
+      Assertions.assertEquals(expected, index.firstGap(after, duration), "First gap differs.");
+    }
+  }
+
+  @Test
+  @DisplayName("Tasks starting at the same time are different entries.")
+  void tasksStartingAtSameTimeShouldBeKept() {
+    final IntervalIndex index = new IntervalIndex();
+    final Task first = task(1, 0, 0);
+    final Task second = task(2, 0, 0);
+
+    index.add(first);
+    index.add(second);
+
+    Assertions.assertAll(
+        () -> Assertions.assertEquals(List.of(first, second), List.copyOf(index),
+            "Both tasks should be kept."),
+        () -> Assertions.assertFalse(index.add(task(2, 0, 15)), "Same id and time is a duplicate."),
+        () -> Assertions.assertTrue(index.contains(second), "Task should be found.")
+    );
+  }
+
+  @Test
+  @DisplayName("A window touching a task at its end or start does not overlap it.")
+  void touchingWindowShouldNotOverlap() {
+    final IntervalIndex index = new IntervalIndex();
+    final Task task = task(1, 60, 30);
+    index.add(task);
+
+    Assertions.assertAll(
+        () -> Assertions.assertNull(index.firstOverlapping(BASE_TIME.plusMinutes(90),
+            BASE_TIME.plusMinutes(120)), "Window after the task should not overlap."),
+        () -> Assertions.assertNull(index.firstOverlapping(BASE_TIME.plusMinutes(30),
+            BASE_TIME.plusMinutes(60)), "Window before the task should not overlap."),
+        () -> Assertions.assertEquals(List.of(task), index.containing(BASE_TIME.plusMinutes(60)),
+            "Task should contain its start."),
+        () -> Assertions.assertEquals(List.of(), index.containing(BASE_TIME.plusMinutes(90)),
+            "Task should not contain its end.")
+    );
+  }
+
+  @Test
+  @DisplayName("A task taking no time at the start of a window overlaps it.")
+  void taskWithoutDurationAtWindowStartShouldOverlap() {
+    final IntervalIndex index = new IntervalIndex();
+    final Task before = task(1, 30, 30);
+    final Task milestone = task(2, 60, 0);
+    index.add(before);
+    index.add(milestone);
+
+    Assertions.assertAll(
+        () -> Assertions.assertEquals(List.of(milestone),
+            index.overlapping(BASE_TIME.plusMinutes(60), BASE_TIME.plusMinutes(90)),
+            "Milestone at the window start should overlap the window."),
+        () -> Assertions.assertEquals(List.of(milestone),
+            index.page(ScheduleWindow.between(BASE_TIME.plusMinutes(60), null, 10)),
+            "Milestone at the window start should be on the page."),
+        () -> Assertions.assertEquals(List.of(before),
+            index.overlapping(BASE_TIME.plusMinutes(30), BASE_TIME.plusMinutes(60)),
+            "Milestone at the window end should not overlap the window."),
+        () -> Assertions.assertNull(index.firstOverlapping(BASE_TIME.plusMinutes(60),
+            BASE_TIME.plusMinutes(90)), "Milestone should not be a time conflict."),
+        () -> Assertions.assertEquals(List.of(), index.containing(BASE_TIME.plusMinutes(60)),
+            "Milestone should not be going on at its time.")
+    );
+  }
+
+  @Test
+  @DisplayName("A rebuilt index and removals through the iterator keep the order.")
+  void rebuildAndIteratorRemovalShouldKeepOrder() {
+    final IntervalIndex index = new IntervalIndex();
+    final List<Task> sorted = new ArrayList<>();
+    for (int i = 1; i <= 100; i++) {
+      sorted.add(task(i, i * 10, 5));
+    }
+    index.rebuild(sorted);
+
+    for (Iterator<Task> iterator = index.iterator(); iterator.hasNext(); ) {
+      if (iterator.next().getId() % 2 == 0) {
+        iterator.remove();
+      }
+    }
+
+    Assertions.assertAll(
+        () -> Assertions.assertEquals(50, index.size(), "Half of the tasks should remain."),
+        () -> Assertions.assertIterableEquals(sorted.stream()
+                .filter(task -> task.getId() % 2 == 1).toList(), index,
+            "Remaining tasks should stay in order."),
+        () -> Assertions.assertEquals(sorted.get(2), index.firstOverlapping(
+            BASE_TIME.plusMinutes(25), BASE_TIME.plusMinutes(40)), "Query should see the rebuild.")
+    );
+  }
+
+  private static Task task(final int id, final int startMinute, final int minutes) {
+    return TestDataBuilder.buildTask(id, "task " + id, "d", TaskStatus.NEW,
+        Duration.ofMinutes(minutes), BASE_TIME.plusMinutes(startMinute));
+  }
+}
@@ -0,0 +1,283 @@
+package ru.yandex.practicum.tasktracker.service;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import ru.yandex.practicum.tasktracker.builder.TestDataBuilder;
+import ru.yandex.practicum.tasktracker.exception.ManagerLoadException;
+import ru.yandex.practicum.tasktracker.model.Epic;
+import ru.yandex.practicum.tasktracker.model.Subtask;
+import ru.yandex.practicum.tasktracker.model.Task;
+import ru.yandex.practicum.tasktracker.model.TaskStatus;
+
+class JournaledFileBackedTaskManagerTest extends TaskManagerTest<FileBackedTaskManager> {
+
+  private File file;
+  private Path journal;
+
+  @BeforeEach
+  @Override
+  void setUp() {
+    try {
+      file = File.createTempFile("journaledFile", ".csv");
+      file.deleteOnExit();
+      journal = Path.of(file.getPath() + ".journal");
+      journal.toFile().deleteOnExit();
+      taskManager = FileBackedTaskManager.loadFromFile(file, StorageConfig.journal());
+    } catch (IOException e) {
+      System.out.println(e.getMessage());
+    }
+  }
+
+  @Test
+  @DisplayName("Journal mode appends a record per operation and does not rewrite the snapshot.")
+  void modifyingOperationShouldAppendToJournalAndNotRewriteSnapshot() throws IOException {
+    taskManager.addTask(TestDataBuilder.buildTask("t1", "d1"));
+    final Task task = taskManager.addTask(TestDataBuilder.buildTask("t2", "d2"));
+    taskManager.deleteTask(task.getId());
+
+    Assertions.assertAll(
+        () -> Assertions.assertEquals(0, Files.size(file.toPath()),
+            "Snapshot should not be rewritten."),
+        () -> Assertions.assertEquals(4, Files.readAllLines(journal).size(),
+            "Journal should contain the header and one record per operation.")
+    );
+  }
+
+  @Test
+  @DisplayName("loadFromFile() replays the journal and folds it into the snapshot.")
+  void loadFromFileShouldReplayJournal() throws IOException {
+    final List<Integer> ids = TestDataBuilder.addTaskDataToTheTaskManager(taskManager);
+    final Task taskToUpdate = taskManager.getTaskById(ids.get(1));
+    taskToUpdate.setStatus(TaskStatus.DONE);
+    taskManager.updateTask(taskToUpdate);
+    taskManager.deleteSubtask(ids.get(2));
+    taskManager.getEpicById(ids.get(0));
+
+    final FileBackedTaskManager restored = FileBackedTaskManager.loadFromFile(file,
+        StorageConfig.journal());
+
+    TestDataBuilder.assertSameState(taskManager, restored);
+    Assertions.assertAll(
+        () -> Assertions.assertFalse(Files.exists(journal), "Journal should be compacted."),
+        () -> Assertions.assertTrue(Files.size(file.toPath()) > 0, "Snapshot should be written.")
+    );
+  }
+
+  @Test
+  @DisplayName("loadFromFile() restores an epic created with embedded subtasks.")
+  void loadFromFileShouldRestoreEpicWithEmbeddedSubtasks() {
+    final Epic epic = TestDataBuilder.buildEpic("epic", "d");
+    epic.addSubtask(TestDataBuilder.buildSubtask(0, "st1", "d", 0));
+    epic.addSubtask(TestDataBuilder.buildSubtask(-1, "st2", "d", 0, TaskStatus.DONE,
+        Duration.ofMinutes(10), BASE_TEST_TIME));
+    taskManager.addEpic(epic);
+
+    final FileBackedTaskManager restored = FileBackedTaskManager.loadFromFile(file,
+        StorageConfig.journal());
+
+    TestDataBuilder.assertSameState(taskManager, restored);
+    Assertions.assertEquals(2, restored.getSubtasksByEpicId(epic.getId()).size(),
+        "Epic should be restored with its subtasks.");
+  }
+
+  @Test
+  @DisplayName("addEpic() journals the epic before its embedded subtasks.")
+  void addEpicShouldJournalEpicBeforeItsSubtasks() throws IOException {
+    final Epic epic = TestDataBuilder.buildEpic("epic", "d");
+    epic.addSubtask(TestDataBuilder.buildSubtask(0, "st1", "d", 0));
+    epic.addSubtask(TestDataBuilder.buildSubtask(-1, "st2", "d", 0));
+    taskManager.addEpic(epic);
+
+    final List<String> lines = Files.readAllLines(journal);
+    final List<String> records = lines.subList(1, lines.size());
+
+    Assertions.assertAll(
+        () -> Assertions.assertEquals(TaskJournal.HEADER, lines.get(0),
+            "Journal should start with the header."),
+        () -> Assertions.assertEquals(3, records.size(), "Journal should have three records."),
+        () -> Assertions.assertTrue(records.get(0).matches(
+                "[0-9a-f]{8}:PUT," + epic.getId() + ",EPIC.*"),
+            "Epic should be journaled first.")
+    );
+  }
+
+  @Test
+  @DisplayName("Replaying stops at the record torn by a crash and cuts it off.")
+  void tornRecordShouldBeCutOffOnReplay() throws IOException {
+    taskManager.addTask(TestDataBuilder.buildTask("t1", "d1"));
+    taskManager.addTask(TestDataBuilder.buildTask("t2", "d2"));
+    taskManager.close();
+    final List<String> lines = Files.readAllLines(journal);
+    final String torn = lines.get(2);
+    Files.writeString(journal, lines.get(0) + System.lineSeparator() + lines.get(1)
+        + System.lineSeparator() + torn.substring(0, torn.length() / 2));
+
+    final FileBackedTaskManager restored = FileBackedTaskManager.loadFromFile(file,
+        StorageConfig.journal());
+
+    Assertions.assertAll(
+        () -> Assertions.assertEquals(List.of("t1"),
+            restored.getTasks().stream().map(Task::getTitle).toList(),
+            "Records before the torn one should be replayed."),
+        () -> Assertions.assertFalse(Files.exists(journal),
+            "Replayed journal should be compacted.")
+    );
+  }
+
+  @Test
+  @DisplayName("Replaying stops at the first record with a wrong checksum.")
+  void damagedRecordShouldStopReplay() throws IOException {
+    taskManager.addTask(TestDataBuilder.buildTask("t1", "d1"));
+    taskManager.addTask(TestDataBuilder.buildTask("t2", "d2"));
+    taskManager.addTask(TestDataBuilder.buildTask("t3", "d3"));
+    taskManager.close();
+    final List<String> records = new ArrayList<>(Files.readAllLines(journal));
+    records.set(2, records.get(2).replace("t2", "t9"));
+    Files.write(journal, records);
+
+    final FileBackedTaskManager restored = FileBackedTaskManager.loadFromFile(file,
+        StorageConfig.journal());
+
+    Assertions.assertEquals(List.of("t1"),
+        restored.getTasks().stream().map(Task::getTitle).toList(),
+        "Only the records before the damaged one should be replayed.");
+  }
+
+  @Test
+  @DisplayName("Replaying stops at the first record whose checksum prefix is damaged.")
+  void recordWithDamagedChecksumPrefixShouldStopReplay() throws IOException {
+    taskManager.addTask(TestDataBuilder.buildTask("t1", "d1"));
+    taskManager.addTask(TestDataBuilder.buildTask("t2", "d2"));
+    taskManager.addTask(TestDataBuilder.buildTask("t3", "d3"));
+    taskManager.close();
+    final List<String> records = new ArrayList<>(Files.readAllLines(journal));
+    records.set(2, records.get(2).substring(0, 8) + "x" + records.get(2).substring(9));
+    Files.write(journal, records);
+
+    final FileBackedTaskManager restored = FileBackedTaskManager.loadFromFile(file,
+        StorageConfig.journal());
+
+    Assertions.assertEquals(List.of("t1"),
+        restored.getTasks().stream().map(Task::getTitle).toList(),
+        "The record without a valid checksum prefix should not be replayed.");
+  }
+
+  @Test
+  @DisplayName("Journal written without checksums is replayed.")
+  void journalWithoutChecksumsShouldBeReplayed() throws IOException {
+    Files.writeString(journal, "PUT,1,TASK,t1,NEW,d1,0,null, " + System.lineSeparator()
+        + "PUT,2,TASK,t2,NEW,d2,0,null, " + System.lineSeparator()
+        + "DELETE,1" + System.lineSeparator());
+
+    final FileBackedTaskManager restored = FileBackedTaskManager.loadFromFile(file,
+        StorageConfig.journal());
+
+    Assertions.assertEquals(List.of("t2"),
+        restored.getTasks().stream().map(Task::getTitle).toList(),
+        "Records without checksums should be replayed.");
+  }
+
+  @Test
+  @DisplayName("loadFromFile() replays a journal the snapshot already covers, as a crash leaves it.")
+  void loadFromFileShouldReplayJournalCoveredBySnapshot() throws IOException {
+    final Epic epic = taskManager.addEpic(TestDataBuilder.buildEpic("epic", "d"));
+    final Subtask subtask = taskManager.addSubtask(
+        TestDataBuilder.buildSubtask("st", "d", epic.getId()));
+    taskManager.addTask(TestDataBuilder.buildTask("t1", "d1"));
+    taskManager.close();
+    taskManager = FileBackedTaskManager.loadFromFile(file, StorageConfig.journal());
+    subtask.setStatus(TaskStatus.DONE);
+    taskManager.updateSubtask(subtask);
+    taskManager.deleteEpic(epic.getId());
+    taskManager.close();
+    final byte[] staleJournal = Files.readAllBytes(journal);
+    taskManager = FileBackedTaskManager.loadFromFile(file, StorageConfig.journal());
+    taskManager.close();
+    Files.write(journal, staleJournal);
+
+    final FileBackedTaskManager restored = FileBackedTaskManager.loadFromFile(file,
+        StorageConfig.journal());
+
+    TestDataBuilder.assertSameState(taskManager, restored);
+    Assertions.assertTrue(restored.getEpics().isEmpty(), "Removed epic should stay removed.");
+  }
+
+  @Test
+  @DisplayName("Damaged snapshot is recovered from the backup and the journal folded into it.")
+  void damagedSnapshotShouldBeRecoveredFromBackupAndCoveredJournal() throws IOException {
+    taskManager = FileBackedTaskManager.loadFromFile(file,
+        StorageConfig.journal().setCompactionThreshold(3));
+    TestDataBuilder.addTaskDataToTheTaskManager(taskManager);
+    taskManager.addTask(TestDataBuilder.buildTask("t1", "d1"));
+    taskManager.addTask(TestDataBuilder.buildTask("t2", "d2"));
+    taskManager.close();
+    damage(file);
+
+    final FileBackedTaskManager restored = FileBackedTaskManager.loadFromFile(file,
+        StorageConfig.journal().setCompactionThreshold(3));
+
+    TestDataBuilder.assertSameState(taskManager, restored);
+    Assertions.assertTrue(restored.isRecoveredFromBackup(), "Recovery should be reported.");
+  }
+
+  @Test
+  @DisplayName("Damaged snapshot is reported if the journal folded into it is missing.")
+  void damagedSnapshotWithoutCoveredJournalShouldThrowException() throws IOException {
+    taskManager = FileBackedTaskManager.loadFromFile(file,
+        StorageConfig.journal().setCompactionThreshold(3));
+    TestDataBuilder.addTaskDataToTheTaskManager(taskManager);
+    taskManager.addTask(TestDataBuilder.buildTask("t1", "d1"));
+    taskManager.addTask(TestDataBuilder.buildTask("t2", "d2"));
+    taskManager.close();
+    damage(file);
+    try (final Stream<Path> files = Files.list(journal.getParent())) {
+      for (Path covered : files.filter(path -> path.getFileName().toString()
+          .startsWith(journal.getFileName() + ".covered-")).toList()) {
+        Files.delete(covered);
+      }
+    }
+
+    Assertions.assertThrows(ManagerLoadException.class,
+        () -> FileBackedTaskManager.loadFromFile(file, StorageConfig.journal()),
+        "Backup should not be loaded without the journal leading from it.");
+  }
+
+  @Test
+  @DisplayName("Journal is compacted into the snapshot when the threshold is reached.")
+  void journalShouldBeCompactedWhenThresholdIsReached() throws IOException {
+    taskManager = FileBackedTaskManager.loadFromFile(file,
+        StorageConfig.journal().setCompactionThreshold(3));
+
+    taskManager.addTask(TestDataBuilder.buildTask("t1", "d1"));
+    taskManager.addTask(TestDataBuilder.buildTask("t2", "d2"));
+    final long snapshotSizeBefore = Files.size(file.toPath());
+    taskManager.addTask(TestDataBuilder.buildTask("t3", "d3"));
+
+    Assertions.assertAll(
+        () -> Assertions.assertEquals(0, snapshotSizeBefore,
+            "Snapshot should not be written before the threshold."),
+        () -> Assertions.assertFalse(Files.exists(journal), "Journal should be truncated."),
+        () -> Assertions.assertEquals(3, FileBackedTaskManager.loadFromFile(file).getTasks().size(),
+            "Snapshot should contain all tasks.")
+    );
+  }
+
+  /**
+   * Flips a byte in the middle of the file, as a bit rot of the storage would.
+   */
+  private static void damage(final File damagedFile) throws IOException {
+    final byte[] bytes = Files.readAllBytes(damagedFile.toPath());
+    bytes[bytes.length / 2] ^= 1;
+    Files.write(damagedFile.toPath(), bytes);
+  }
+}
@@ -16,6 +16,14 @@ class ManagersTest {
     );
   }
 
+  @Test
+  void getConcurrentTaskManagerShouldReturnConcurrentTaskManagerObject() {
+    TaskManager taskManager = Managers.getConcurrentTaskManager();
+
+    Assertions.assertInstanceOf(ConcurrentTaskManager.class, taskManager,
+        "Created incorrect type of TaskManager");
+  }
+
   @Test
   void getDefaultHistoryShouldReturnInMemoryHistoryManagerObject() {
     HistoryManager historyManager = Managers.getDefaultHistory();
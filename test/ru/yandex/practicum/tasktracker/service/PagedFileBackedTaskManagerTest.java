@@ -0,0 +1,203 @@
+package ru.yandex.practicum.tasktracker.service;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.CRC32C;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import ru.yandex.practicum.tasktracker.builder.TestDataBuilder;
+import ru.yandex.practicum.tasktracker.exception.ManagerLoadException;
+import ru.yandex.practicum.tasktracker.model.Task;
+
+class PagedFileBackedTaskManagerTest extends TaskManagerTest<FileBackedTaskManager> {
+
+  private File file;
+
+  @BeforeEach
+  @Override
+  void setUp() {
+    try {
+      file = File.createTempFile("pagedFile", ".pages");
+      file.deleteOnExit();
+      Path.of(file.getPath() + ".history").toFile().deleteOnExit();
+      taskManager = FileBackedTaskManager.loadFromFile(file, paged());
+    } catch (IOException e) {
+      System.out.println(e.getMessage());
+    }
+  }
+
+  @Test
+  @DisplayName("Page file restores all fields of the tasks and the history.")
+  void pageFileShouldRestoreTasksAndHistory() {
+    TestDataBuilder.addTaskDataToTheTaskManager(taskManager);
+    taskManager.getSubtaskById(taskManager.getSubtasks().get(0).getId());
+    taskManager.getTaskById(taskManager.getTasks().get(0).getId());
+    taskManager.deleteTask(taskManager.getTasks().get(1).getId());
+
+    final FileBackedTaskManager restored = FileBackedTaskManager.loadFromFile(file, paged());
+
+    TestDataBuilder.assertSameState(taskManager, restored);
+  }
+
+  @Test
+  @DisplayName("Removed epic takes its subtasks out of the page file.")
+  void deletedEpicShouldRemoveItsSubtasksFromPageFile() {
+    TestDataBuilder.addTaskDataToTheTaskManager(taskManager);
+    taskManager.deleteEpic(taskManager.getSubtasks().get(0).getEpicId());
+    taskManager.clearTasks();
+
+    final FileBackedTaskManager restored = FileBackedTaskManager.loadFromFile(file, paged());
+
+    TestDataBuilder.assertSameState(taskManager, restored);
+  }
+
+  @Test
+  @DisplayName("Task larger than a page is stored in overflow pages.")
+  void taskLargerThanPageShouldBeRestored() {
+    final Task task = taskManager.addTask(
+        TestDataBuilder.buildTask("long", "d".repeat(3 * PageFile.PAGE_SIZE)));
+    task.setDescription("e".repeat(2 * PageFile.PAGE_SIZE));
+    taskManager.updateTask(task);
+
+    final FileBackedTaskManager restored = FileBackedTaskManager.loadFromFile(file, paged());
+
+    Assertions.assertEquals(task.getDescription(),
+        restored.getTaskById(task.getId()).getDescription(), "Long description should be kept.");
+  }
+
+  @Test
+  @DisplayName("Saving a change writes only the page of the changed task.")
+  void changeShouldWriteOnlyItsPage() throws IOException {
+    final List<Task> board = new ArrayList<>();
+    for (int id = 1; id <= 1000; id++) {
+      final Task task = TestDataBuilder.buildTask("task " + id, "description " + id);
+      task.setId(id);
+      board.add(task);
+    }
+    file.delete();
+    try (final PagedTaskStore store = PagedTaskStore.open(file, task -> { })) {
+      final int initialPages = store.write(board, List.of(), Durability.FLUSH);
+      board.get(500).setTitle("changed");
+
+      Assertions.assertAll(
+          () -> Assertions.assertTrue(initialPages > 10, "Board should take many pages."),
+          () -> Assertions.assertEquals(1,
+              store.write(List.of(board.get(500)), List.of(), Durability.FLUSH),
+              "Only the page of the changed task should be written."),
+          () -> Assertions.assertEquals(0,
+              store.write(List.of(board.get(1)), List.of(), Durability.FLUSH),
+              "Unchanged task should not be written."),
+          () -> Assertions.assertEquals(1,
+              store.write(List.of(), List.of(board.get(2).getId()), Durability.FLUSH),
+              "Only the page of the removed task should be written.")
+      );
+    }
+  }
+
+  @Test
+  @DisplayName("Space of removed tasks is reused instead of growing the file.")
+  void removedTasksSpaceShouldBeReused() throws IOException {
+    for (int i = 0; i < 500; i++) {
+      taskManager.addTask(TestDataBuilder.buildTask("task", "description"));
+    }
+    final long size = file.length();
+    for (int round = 0; round < 5; round++) {
+      taskManager.clearTasks();
+      for (int i = 0; i < 500; i++) {
+        taskManager.addTask(TestDataBuilder.buildTask("task", "description"));
+      }
+    }
+
+    Assertions.assertEquals(size, file.length(), "Page file should not grow.");
+  }
+
+  @Test
+  @DisplayName("Journal replayed over the page file is folded into the pages.")
+  void journalShouldBeFoldedIntoPageFile() {
+    final StorageConfig config = StorageConfig.journal()
+        .setSnapshotFormat(SnapshotFormat.PAGED)
+        .setCompactionThreshold(1000);
+    file.delete();
+    Path.of(file.getPath() + ".journal").toFile().deleteOnExit();
+    final FileBackedTaskManager journaled = FileBackedTaskManager.loadFromFile(file, config);
+    TestDataBuilder.addTaskDataToTheTaskManager(journaled);
+    journaled.deleteSubtask(journaled.getSubtasks().get(0).getId());
+    journaled.close();
+
+    FileBackedTaskManager.loadFromFile(file, config).close();
+
+    TestDataBuilder.assertSameState(journaled, FileBackedTaskManager.loadFromFile(file, paged()));
+  }
+
+  @Test
+  @DisplayName("Torn page is restored from a complete double-write file.")
+  void tornPageShouldBeRestoredFromDoubleWrite() throws IOException {
+    TestDataBuilder.addTaskDataToTheTaskManager(taskManager);
+    final byte[] before = Files.readAllBytes(file.toPath());
+    final Task task = taskManager.getTasks().get(0);
+    task.setTitle("changed");
+    taskManager.updateTask(task);
+    final byte[] after = Files.readAllBytes(file.toPath());
+    final int page = Arrays.mismatch(before, after) / PageFile.PAGE_SIZE;
+    final int start = page * PageFile.PAGE_SIZE;
+
+    final byte[] torn = before.clone();
+    System.arraycopy(after, start, torn, start, PageFile.PAGE_SIZE / 2);
+    Files.write(file.toPath(), torn);
+    final ByteBuffer doubleWrite = ByteBuffer.allocate(3 * Integer.BYTES + PageFile.PAGE_SIZE)
+        .putInt(page)
+        .put(after, start, PageFile.PAGE_SIZE)
+        .putInt(1);
+    final CRC32C crc = new CRC32C();
+    crc.update(doubleWrite.array(), 0, doubleWrite.position());
+    doubleWrite.putInt((int) crc.getValue());
+    Files.write(Path.of(file.getPath() + ".dwb"), doubleWrite.array());
+
+    final FileBackedTaskManager restored = FileBackedTaskManager.loadFromFile(file, paged());
+
+    Assertions.assertAll(
+        () -> Assertions.assertEquals("changed", restored.getTaskById(task.getId()).getTitle(),
+            "Page should be restored from the double-write file."),
+        () -> Assertions.assertFalse(Files.exists(Path.of(file.getPath() + ".dwb")),
+            "Double-write file should be removed after recovery.")
+    );
+  }
+
+  @Test
+  @DisplayName("Incomplete double-write file is discarded.")
+  void incompleteDoubleWriteShouldBeDiscarded() throws IOException {
+    TestDataBuilder.addTaskDataToTheTaskManager(taskManager);
+    Files.write(Path.of(file.getPath() + ".dwb"), new byte[PageFile.PAGE_SIZE / 2]);
+
+    final FileBackedTaskManager restored = FileBackedTaskManager.loadFromFile(file, paged());
+
+    TestDataBuilder.assertSameState(taskManager, restored);
+  }
+
+  @Test
+  @DisplayName("Damaged page is reported.")
+  void damagedPageShouldThrowException() throws IOException {
+    TestDataBuilder.addTaskDataToTheTaskManager(taskManager);
+    final byte[] bytes = Files.readAllBytes(file.toPath());
+    bytes[PageFile.PAGE_SIZE + PageFile.PAGE_SIZE / 2] ^= 0x5A;
+    Files.write(file.toPath(), bytes);
+
+    final Exception exception = Assertions.assertThrows(ManagerLoadException.class,
+        () -> FileBackedTaskManager.loadFromFile(file, paged()));
+
+    Assertions.assertTrue(exception.getMessage().startsWith("The page 1 is damaged"),
+        "Exception message should point at the damaged page.");
+  }
+
+  private static StorageConfig paged() {
+    return StorageConfig.snapshot().setSnapshotFormat(SnapshotFormat.PAGED);
+  }
+}
@@ -0,0 +1,98 @@
+package ru.yandex.practicum.tasktracker.service;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import ru.yandex.practicum.tasktracker.builder.TestDataBuilder;
+import ru.yandex.practicum.tasktracker.model.Task;
+
+class ParallelCsvSnapshotReaderTest {
+
+  private File file;
+
+  @BeforeEach
+  void setUp() throws IOException {
+    file = File.createTempFile("parallelFile", ".csv");
+    file.deleteOnExit();
+    new File(file.getPath() + ".history").deleteOnExit();
+  }
+
+  @ParameterizedTest
+  @ValueSource(ints = {1, 64, 1024, 1 << 20})
+  @DisplayName("Parallel reader passes the same tasks and history as the sequential one.")
+  void parallelReadShouldMatchSequentialRead(final int minChunkBytes) throws IOException {
+    CsvSnapshotLoadBenchmarkTest.writeSnapshot(file, 999);
+    final FileBackedTaskManager manager = FileBackedTaskManager.loadFromFile(file);
+    manager.getEpicById(11);
+    manager.getSubtaskById(2);
+    /* The next modifying operation writes the history and the prioritized tasks to the file. */
+    manager.addTask(TestDataBuilder.buildTask("task", "d"));
+    final List<String> expectedTasks = new ArrayList<>();
+    final List<Integer> expectedHistory = new ArrayList<>();
+    CsvSnapshot.read(file, task -> expectedTasks.add(task.toCsvLine()), expectedHistory::add);
+
+    final List<String> actualTasks = new ArrayList<>();
+    final List<Integer> actualHistory = new ArrayList<>();
+    new ParallelCsvSnapshotReader(4, minChunkBytes)
+        .read(file, task -> actualTasks.add(task.toCsvLine()), actualHistory::add);
+
+    Assertions.assertAll(
+        () -> Assertions.assertEquals(1000, actualTasks.size(), "All tasks should be read."),
+        () -> Assertions.assertIterableEquals(expectedTasks, actualTasks,
+            "Tasks should be read in the order of the file."),
+        () -> Assertions.assertIterableEquals(List.of(11, 2), actualHistory,
+            "History should be read in the order of the file."),
+        () -> Assertions.assertIterableEquals(expectedHistory, actualHistory,
+            "History should be same.")
+    );
+  }
+
+  @Test
+  @DisplayName("loadFromFile() restores a large snapshot on several threads.")
+  void loadFromFileShouldRestoreLargeSnapshotInParallel() throws IOException {
+    CsvSnapshotLoadBenchmarkTest.writeSnapshot(file, 20_000);
+
+    final FileBackedTaskManager sequential = FileBackedTaskManager.loadFromFile(file,
+        StorageConfig.snapshot().setLoadParallelism(1));
+    final FileBackedTaskManager parallel = FileBackedTaskManager.loadFromFile(file,
+        StorageConfig.snapshot().setLoadParallelism(4));
+
+    Assertions.assertAll(
+        () -> Assertions.assertTrue(Files.size(file.toPath()) > (1 << 20),
+            "Snapshot should be large enough to be read in parallel."),
+        () -> Assertions.assertEquals(sequential.getEpics().size(), parallel.getEpics().size(),
+            "Epics should be restored."),
+        () -> Assertions.assertIterableEquals(sequential.getPrioritizedTasks(),
+            parallel.getPrioritizedTasks(), "Prioritized list should be same."),
+        () -> Assertions.assertIterableEquals(
+            sequential.getEpics().stream().map(Task::toCsvLine).toList(),
+            parallel.getEpics().stream().map(Task::toCsvLine).toList(),
+            "Epics should be linked to their subtasks.")
+    );
+  }
+
+  @Test
+  @DisplayName("Parallel reader rejects an invalid line with the message of the sequential one.")
+  void parallelReadShouldRejectInvalidLine() throws IOException {
+    CsvSnapshotLoadBenchmarkTest.writeSnapshot(file, 100);
+    final String invalidLine = "1,TASK,title,NEW";
+    Files.writeString(file.toPath(), Files.readString(file.toPath())
+        .replaceFirst("(?m)^50,.*$", invalidLine));
+
+    final Exception exception = Assertions.assertThrows(IllegalArgumentException.class,
+        () -> new ParallelCsvSnapshotReader(4, 64).read(file, task -> {
+        }, id -> {
+        }));
+
+    Assertions.assertEquals("Invalid CSV format of the line with task: " + invalidLine,
+        exception.getMessage(), "Exception message should contain the line.");
+  }
+}
@@ -0,0 +1,231 @@
+package ru.yandex.practicum.tasktracker.service;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+import ru.yandex.practicum.tasktracker.builder.TestDataBuilder;
+import ru.yandex.practicum.tasktracker.model.Subtask;
+import ru.yandex.practicum.tasktracker.model.Task;
+
+class ShardedFileBackedTaskManagerTest extends TaskManagerTest<FileBackedTaskManager> {
+
+  private static final int SHARDS = 4;
+  @TempDir
+  Path directory;
+  private File file;
+
+  @BeforeEach
+  @Override
+  void setUp() {
+    try {
+      file = Files.createFile(directory.resolve("shardedFile.csv")).toFile();
+      taskManager = FileBackedTaskManager.loadFromFile(file, sharded(SHARDS));
+    } catch (IOException e) {
+      System.out.println(e.getMessage());
+    }
+  }
+
+  @AfterEach
+  void tearDown() {
+    taskManager.close();
+  }
+
+  @ParameterizedTest
+  @EnumSource(value = SnapshotFormat.class, names = {"CSV", "BINARY"})
+  @DisplayName("Shards restore all fields of the tasks and the history.")
+  void shardsShouldRestoreTasksAndHistory(final SnapshotFormat format) {
+    final StorageConfig config = sharded(SHARDS).setSnapshotFormat(format);
+    taskManager = FileBackedTaskManager.loadFromFile(file, config);
+    TestDataBuilder.addTaskDataToTheTaskManager(taskManager);
+    taskManager.getSubtaskById(taskManager.getSubtasks().get(0).getId());
+    taskManager.getTaskById(taskManager.getTasks().get(0).getId());
+    taskManager.deleteSubtask(taskManager.getSubtasks().get(1).getId());
+
+    TestDataBuilder.assertSameState(taskManager, FileBackedTaskManager.loadFromFile(file, config));
+  }
+
+  @Test
+  @DisplayName("Subtasks are stored in the shard of their epic.")
+  void subtasksShouldBeStoredWithTheirEpic() throws IOException {
+    TestDataBuilder.addTaskDataToTheTaskManager(taskManager);
+
+    for (int shard = 0; shard < SHARDS; shard++) {
+      final List<Task> stored = new ArrayList<>();
+      CsvSnapshot.read(shardFile(file, shard), stored::add, id -> { });
+      final Set<Integer> ids = stored.stream().map(Task::getId).collect(Collectors.toSet());
+      for (Task task : stored) {
+        if (task instanceof Subtask subtask) {
+          Assertions.assertTrue(ids.contains(subtask.getEpicId()),
+              "Epic should be in the shard of its subtask.");
+        }
+      }
+    }
+  }
+
+  @Test
+  @DisplayName("Saving a change rewrites only the shard of the changed task.")
+  void changeShouldRewriteOnlyItsShard() {
+    TestDataBuilder.addTaskDataToTheTaskManager(taskManager);
+    final List<File> shardsBefore = shardFiles(file);
+
+    final Task task = taskManager.getTasks().get(0);
+    task.setTitle("changed");
+    taskManager.updateTask(task);
+    final List<File> shardsAfter = shardFiles(file);
+
+    Assertions.assertEquals(1, IntStream.range(0, SHARDS)
+            .filter(shard -> !shardsBefore.get(shard).equals(shardsAfter.get(shard)))
+            .count(),
+        "Only one shard should be rewritten.");
+  }
+
+  @Test
+  @DisplayName("Shards written by a save that has not replaced the manifest are not loaded.")
+  void shardsOfUnfinishedSaveShouldNotBeLoaded() throws IOException {
+    TestDataBuilder.addTaskDataToTheTaskManager(taskManager);
+    final FileBackedTaskManager expected = FileBackedTaskManager.loadFromFile(file,
+        sharded(SHARDS));
+    expected.close();
+    final Path manifest = Path.of(file.getPath() + ".shards");
+    final byte[] manifestBefore = Files.readAllBytes(manifest);
+    taskManager.clearEpics();
+    taskManager.close();
+    Files.write(manifest, manifestBefore);
+
+    final FileBackedTaskManager restored = FileBackedTaskManager.loadFromFile(file,
+        sharded(SHARDS));
+    restored.close();
+
+    TestDataBuilder.assertSameState(expected, restored);
+  }
+
+  @Test
+  @DisplayName("Damaged shard is replaced by the shards of the previous save.")
+  void damagedShardShouldBeRecoveredFromBackup() throws IOException {
+    TestDataBuilder.addTaskDataToTheTaskManager(taskManager);
+    final Task task = taskManager.addTask(TestDataBuilder.buildTask("last", "d"));
+    final List<Task> expectedTasks = new ArrayList<>(taskManager.getTasks());
+    expectedTasks.remove(task);
+    final File shard = shardFile(file,
+        IntStream.range(0, SHARDS).filter(i -> readShard(i).contains("last")).findFirst()
+            .orElseThrow());
+    Files.writeString(shard.toPath(), Files.readString(shard.toPath()).replace("last", "lost"));
+
+    final FileBackedTaskManager restored = FileBackedTaskManager.loadFromFile(file,
+        sharded(SHARDS));
+
+    Assertions.assertIterableEquals(TestDataBuilder.toLines(expectedTasks),
+        TestDataBuilder.toLines(restored.getTasks()),
+        "State of the previous shard should be restored.");
+  }
+
+  @Test
+  @DisplayName("Shards are split again when the number of shards changes.")
+  void shardsShouldBeSplitAgainWhenTheirNumberChanges() {
+    TestDataBuilder.addTaskDataToTheTaskManager(taskManager);
+
+    final FileBackedTaskManager resharded = FileBackedTaskManager.loadFromFile(file, sharded(2));
+    resharded.close();
+
+    Assertions.assertAll(
+        () -> Assertions.assertEquals(2, shardFiles(file).size(),
+            "Manifest should list the new number of shards."),
+        () -> TestDataBuilder.assertSameState(taskManager,
+            FileBackedTaskManager.loadFromFile(file, sharded(2)))
+    );
+  }
+
+  @Test
+  @DisplayName("Snapshot written before sharding is split into shards.")
+  void singleSnapshotShouldBeSplitIntoShards() {
+    final FileBackedTaskManager single = FileBackedTaskManager.loadFromFile(file);
+    TestDataBuilder.addTaskDataToTheTaskManager(single);
+    single.getEpicById(single.getEpics().get(0).getId());
+    single.addTask(TestDataBuilder.buildTask("last", "d"));
+    Path.of(file.getPath() + ".history").toFile().delete();
+
+    final FileBackedTaskManager migrated = FileBackedTaskManager.loadFromFile(file,
+        sharded(SHARDS));
+    migrated.close();
+
+    Assertions.assertAll(
+        () -> Assertions.assertTrue(shardFile(file, SHARDS - 1).exists(),
+            "Shards should be written."),
+        () -> Assertions.assertFalse(file.exists(), "Split snapshot should be deleted."),
+        () -> Assertions.assertFalse(new File(file.getPath() + ".bak").exists(),
+            "Backup of the split snapshot should be deleted."),
+        () -> TestDataBuilder.assertSameState(single,
+            FileBackedTaskManager.loadFromFile(file, sharded(SHARDS)))
+    );
+  }
+
+  @Test
+  @DisplayName("Snapshot left next to the shards is not loaded and is deleted.")
+  void singleSnapshotNextToShardsShouldBeDeleted() {
+    final Task task = taskManager.addTask(TestDataBuilder.buildTask("sharded", "d"));
+    final FileBackedTaskManager single = FileBackedTaskManager.loadFromFile(file);
+    single.addTask(TestDataBuilder.buildTask("stale", "d"));
+    single.close();
+
+    final FileBackedTaskManager reloaded = FileBackedTaskManager.loadFromFile(file,
+        sharded(SHARDS));
+
+    Assertions.assertAll(
+        () -> Assertions.assertEquals(List.of(task.toCsvLine()),
+            TestDataBuilder.toLines(reloaded.getTasks()),
+            "Only the shards should be loaded."),
+        () -> Assertions.assertFalse(file.exists(), "Stale snapshot should be deleted.")
+    );
+    reloaded.close();
+  }
+
+  private String readShard(final int shard) {
+    try {
+      return Files.readString(shardFile(file, shard).toPath());
+    } catch (IOException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  /**
+   * Returns the file of the shard listed by the manifest of the shards of the {@code file}.
+   */
+  static File shardFile(final File file, final int shard) {
+    return shardFiles(file).get(shard);
+  }
+
+  /**
+   * Returns the files of the shards listed by the manifest: its second line holds the generation
+   * of the file of every shard.
+   */
+  private static List<File> shardFiles(final File file) {
+    try {
+      final String generations = Files.readAllLines(Path.of(file.getPath() + ".shards")).get(1);
+      final String[] shardGenerations = generations.split(",");
+      return IntStream.range(0, shardGenerations.length)
+          .mapToObj(shard -> new File(file.getPath() + ".shard-" + shard + "."
+              + shardGenerations[shard]))
+          .toList();
+    } catch (IOException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  private static StorageConfig sharded(final int shards) {
+    return StorageConfig.snapshot().setShardCount(shards);
+  }
+}
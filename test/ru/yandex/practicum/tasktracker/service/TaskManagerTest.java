@@ -20,9 +20,12 @@ import ru.yandex.practicum.tasktracker.exception.TaskNotFoundException;
 import ru.yandex.practicum.tasktracker.exception.TaskPrioritizationException;
 import ru.yandex.practicum.tasktracker.exception.TaskValidationException;
 import ru.yandex.practicum.tasktracker.model.Epic;
+import ru.yandex.practicum.tasktracker.model.EpicRecord;
 import ru.yandex.practicum.tasktracker.model.Subtask;
+import ru.yandex.practicum.tasktracker.model.SubtaskRecord;
 import ru.yandex.practicum.tasktracker.model.Task;
 import ru.yandex.practicum.tasktracker.model.TaskStatus;
+import ru.yandex.practicum.tasktracker.model.TaskView;
 
 public abstract class TaskManagerTest<T extends TaskManager> {
 
@@ -146,6 +149,208 @@ public abstract class TaskManagerTest<T extends TaskManager> {
     );
   }
 
+  @Test
+  @DisplayName("Tasks starting at the same time without overlapping are all prioritized.")
+  void tasksStartingAtSameTimeShouldAllBePrioritized() {
+    final Task milestone = taskManager.addTask(TestDataBuilder.buildTask(0, "milestone", "d",
+        TaskStatus.NEW, Duration.ZERO, BASE_TEST_TIME));
+    final Task task = taskManager.addTask(TestDataBuilder.buildTask(0, "task", "d",
+        TaskStatus.NEW, Duration.ofMinutes(30), BASE_TEST_TIME));
+
+    Assertions.assertEquals(List.of(milestone, task), taskManager.getPrioritizedTasks(),
+        "Both tasks should be prioritized.");
+  }
+
+  @Test
+  @DisplayName("A task overlapping one of the tasks starting at the same time has a conflict.")
+  void taskOverlappingTaskSharingStartTimeShouldHaveConflict() {
+    final Task task = taskManager.addTask(TestDataBuilder.buildTask(0, "task", "d",
+        TaskStatus.NEW, Duration.ofMinutes(30), BASE_TEST_TIME));
+    final Task milestone = taskManager.addTask(TestDataBuilder.buildTask(0, "milestone", "d",
+        TaskStatus.NEW, Duration.ZERO, BASE_TEST_TIME));
+
+    Assertions.assertThrows(TaskPrioritizationException.class,
+        () -> taskManager.addTask(TestDataBuilder.buildTask(0, "late", "d", TaskStatus.NEW,
+            Duration.ofMinutes(30), BASE_TEST_TIME.plusMinutes(15))),
+        "Task starting inside the first task should have a conflict.");
+    taskManager.deleteTask(milestone.getId());
+    Assertions.assertEquals(List.of(task), taskManager.getPrioritizedTasks(),
+        "Removing the milestone should leave the task prioritized.");
+  }
+
+  @Test
+  @DisplayName("getPrioritized(window) - returns the pages of the tasks overlapping the window.")
+  public void getPrioritizedTasksByWindowReturnsPages() {
+    final List<Task> added = new ArrayList<>();
+    for (int i = 0; i < 5; i++) {
+      added.add(taskManager.addTask(TestDataBuilder.buildTask(0, "task" + i, "d", TaskStatus.NEW,
+          Duration.ofMinutes(30), BASE_TEST_TIME.plusHours(i))));
+    }
+    final ScheduleWindow window = ScheduleWindow.between(BASE_TEST_TIME.plusMinutes(75),
+        BASE_TEST_TIME.plusMinutes(195), 2);
+
+    final List<Task> first = taskManager.getPrioritizedTasks(window);
+    final List<Task> second = taskManager.getPrioritizedTasks(
+        window.after(ScheduleWindow.Cursor.of(first.get(first.size() - 1))));
+
+    Assertions.assertAll(
+        () -> Assertions.assertIterableEquals(List.of(added.get(1), added.get(2)), first,
+            "First page should hold the first overlapping tasks."),
+        () -> Assertions.assertIterableEquals(List.of(added.get(3)), second,
+            "Second page should hold the rest."),
+        () -> Assertions.assertIterableEquals(added.subList(0, 1),
+            taskManager.getPrioritizedTasks(ScheduleWindow.between(null, null, 1)),
+            "Open window should start from the first task."),
+        () -> Assertions.assertIterableEquals(List.of(),
+            taskManager.getPrioritizedTasks(ScheduleWindow.between(BASE_TEST_TIME.plusMinutes(30),
+                BASE_TEST_TIME.plusMinutes(60), 10)),
+            "Window between the tasks should be empty.")
+    );
+  }
+
+  @Test
+  @DisplayName("getPrioritized(window) - includes a task taking no time at the window start.")
+  public void getPrioritizedTasksByWindowIncludesMilestoneAtWindowStart() {
+    taskManager.addTask(TestDataBuilder.buildTask(0, "before", "d", TaskStatus.NEW,
+        Duration.ofMinutes(30), BASE_TEST_TIME.minusMinutes(30)));
+    final Task milestone = taskManager.addTask(TestDataBuilder.buildTask(0, "milestone", "d",
+        TaskStatus.NEW, Duration.ZERO, BASE_TEST_TIME));
+    taskManager.addTask(TestDataBuilder.buildTask(0, "after", "d", TaskStatus.NEW,
+        Duration.ZERO, BASE_TEST_TIME.plusHours(1)));
+
+    Assertions.assertAll(
+        () -> Assertions.assertIterableEquals(List.of(milestone),
+            taskManager.getPrioritizedTasks(ScheduleWindow.between(BASE_TEST_TIME,
+                BASE_TEST_TIME.plusHours(1), 10)),
+            "Milestone at the window start should be included."),
+        () -> Assertions.assertIterableEquals(List.of(),
+            taskManager.getPrioritizedTasks(ScheduleWindow.between(
+                BASE_TEST_TIME.minusHours(1), BASE_TEST_TIME.minusMinutes(30), 10)),
+            "Task starting at the window end should not be included.")
+    );
+  }
+
+  @Test
+  @DisplayName("findFreeSlot() - returns the earliest time without a conflict for the duration.")
+  public void findFreeSlotReturnsEarliestGap() {
+    taskManager.addTask(TestDataBuilder.buildTask(0, "t1", "d", TaskStatus.NEW,
+        Duration.ofMinutes(30), BASE_TEST_TIME));
+    taskManager.addTask(TestDataBuilder.buildTask(0, "t2", "d", TaskStatus.NEW,
+        Duration.ofMinutes(45), BASE_TEST_TIME.plusMinutes(45)));
+    taskManager.addTask(TestDataBuilder.buildTask(0, "t3", "d", TaskStatus.NEW,
+        Duration.ofMinutes(30), BASE_TEST_TIME.plusMinutes(120)));
+
+    Assertions.assertAll(
+        () -> Assertions.assertEquals(BASE_TEST_TIME.plusMinutes(30),
+            taskManager.findFreeSlot(BASE_TEST_TIME, Duration.ofMinutes(15)),
+            "Slot should be the first gap long enough."),
+        () -> Assertions.assertEquals(BASE_TEST_TIME.plusMinutes(90),
+            taskManager.findFreeSlot(BASE_TEST_TIME, Duration.ofMinutes(20)),
+            "Slot should skip the gaps too short."),
+        () -> Assertions.assertEquals(BASE_TEST_TIME.plusMinutes(30),
+            taskManager.findFreeSlot(BASE_TEST_TIME.plusMinutes(10), Duration.ZERO),
+            "Slot should not start inside a task."),
+        () -> Assertions.assertEquals(BASE_TEST_TIME.plusMinutes(150),
+            taskManager.findFreeSlot(BASE_TEST_TIME.plusMinutes(100), Duration.ofMinutes(60)),
+            "Slot should follow the last task."),
+        () -> Assertions.assertEquals(BASE_TEST_TIME.minusHours(1),
+            taskManager.findFreeSlot(BASE_TEST_TIME.minusHours(1), Duration.ofHours(1)),
+            "Slot should start at the time given when it is free."),
+        () -> Assertions.assertThrows(IllegalArgumentException.class,
+            () -> taskManager.findFreeSlot(BASE_TEST_TIME, Duration.ofMinutes(-1)),
+            "Negative duration should be rejected.")
+    );
+  }
+
+  @Test
+  @DisplayName("scheduleUnscheduled() - gives the free slots to the tasks without a start time.")
+  public void scheduleUnscheduledPlacesTasksIntoGaps() {
+    taskManager.addTask(TestDataBuilder.buildTask(0, "t1", "d", TaskStatus.NEW,
+        Duration.ofMinutes(30), BASE_TEST_TIME));
+    taskManager.addTask(TestDataBuilder.buildTask(0, "t2", "d", TaskStatus.NEW,
+        Duration.ofMinutes(30), BASE_TEST_TIME.plusMinutes(60)));
+    final Task first = TestDataBuilder.buildTask(0, "t3", "d", TaskStatus.NEW);
+    first.setDuration(Duration.ofMinutes(30));
+    taskManager.addTask(first);
+    final Epic epic = taskManager.addEpic(TestDataBuilder.buildEpic("e", "d"));
+    final Subtask subtask = taskManager.addSubtask(TestDataBuilder.buildSubtask("s", "d",
+        epic.getId(), Duration.ofMinutes(45), null));
+    final Task last = TestDataBuilder.buildTask(0, "t4", "d", TaskStatus.NEW);
+    last.setDuration(Duration.ofMinutes(20));
+    taskManager.addTask(last);
+
+    final List<Task> scheduled = taskManager.scheduleUnscheduled(BASE_TEST_TIME);
+
+    Assertions.assertAll(
+        () -> Assertions.assertEquals(List.of(first.getId(), subtask.getId(), last.getId()),
+            scheduled.stream().map(Task::getId).toList(), "Tasks should be scheduled by id."),
+        () -> Assertions.assertEquals(BASE_TEST_TIME.plusMinutes(30),
+            taskManager.getTaskById(first.getId()).getStartTime(), "Task should fill the gap."),
+        () -> Assertions.assertEquals(BASE_TEST_TIME.plusMinutes(90),
+            taskManager.getSubtaskById(subtask.getId()).getStartTime(),
+            "Subtask should skip the filled gap."),
+        () -> Assertions.assertEquals(BASE_TEST_TIME.plusMinutes(90),
+            taskManager.getEpicById(epic.getId()).getStartTime(),
+            "Epic should start with its subtask."),
+        () -> Assertions.assertEquals(BASE_TEST_TIME.plusMinutes(135),
+            taskManager.getTaskById(last.getId()).getStartTime(), "Task should follow the rest."),
+        () -> Assertions.assertEquals(5, taskManager.getPrioritizedTasks().size(),
+            "Scheduled tasks should be prioritized."),
+        () -> Assertions.assertEquals(List.of(), taskManager.scheduleUnscheduled(BASE_TEST_TIME),
+            "Nothing should be left to schedule.")
+    );
+  }
+
+  @Test
+  @DisplayName("getTaskView(int) - views hold the values of the tasks and follow their updates.")
+  public void viewsShouldFollowTasks() {
+    final Task task = taskManager.addTask(TestDataBuilder.buildTask(0, "t", "d", TaskStatus.NEW,
+        Duration.ofMinutes(30), BASE_TEST_TIME));
+    final Epic epic = taskManager.addEpic(TestDataBuilder.buildEpic("e", "d"));
+    final Subtask subtask = taskManager.addSubtask(TestDataBuilder.buildSubtask("s", "d",
+        epic.getId(), Duration.ofMinutes(15), BASE_TEST_TIME.plusHours(1)));
+
+    final TaskView taskView = taskManager.getTaskView(task.getId());
+    final EpicRecord epicView = taskManager.getEpicView(epic.getId());
+    final Subtask updated = taskManager.getSubtaskById(subtask.getId());
+    updated.setStatus(TaskStatus.DONE);
+    taskManager.updateSubtask(updated);
+    final SubtaskRecord subtaskView = taskManager.getSubtaskView(subtask.getId());
+
+    Assertions.assertAll(
+        () -> Assertions.assertEquals(List.of(task.getId(), "t", "d", TaskStatus.NEW,
+                Duration.ofMinutes(30), BASE_TEST_TIME, BASE_TEST_TIME.plusMinutes(30)),
+            List.of(taskView.id(), taskView.title(), taskView.description(), taskView.status(),
+                taskView.duration(), taskView.startTime(), taskView.endTime()),
+            "Task view should hold the values of the task."),
+        () -> Assertions.assertEquals(TaskStatus.NEW, epicView.status(),
+            "Epic view should keep the status it was taken with."),
+        () -> Assertions.assertEquals(TaskStatus.DONE, subtaskView.status(),
+            "Subtask view should follow the update."),
+        () -> Assertions.assertEquals(epic.getId(), subtaskView.epicId(),
+            "Subtask view should hold its epic."),
+        () -> Assertions.assertEquals(List.of(subtaskView),
+            taskManager.getEpicView(epic.getId()).subtasks(),
+            "Epic view should hold the updated subtask."),
+        () -> Assertions.assertEquals(TaskStatus.DONE,
+            taskManager.getEpicView(epic.getId()).status(), "Epic view should follow its subtasks."),
+        () -> Assertions.assertEquals(BASE_TEST_TIME.plusMinutes(75),
+            taskManager.getEpicView(epic.getId()).endTime(), "Epic view should end with subtask."),
+        () -> Assertions.assertEquals(List.of(taskView), taskManager.getTaskViews(),
+            "Views of all tasks should match."),
+        () -> Assertions.assertEquals(List.of(subtaskView), taskManager.getSubtaskViews(),
+            "Views of all subtasks should match."),
+        () -> Assertions.assertEquals(List.of(epic.getId()),
+            taskManager.getEpicViews().stream().map(EpicRecord::id).toList(),
+            "Views of all epics should match."),
+        () -> Assertions.assertEquals(Set.of(task.getId(), epic.getId(), subtask.getId()),
+            taskManager.getHistory().stream().map(Task::getId).collect(Collectors.toSet()),
+            "Views should be added to the history."),
+        () -> Assertions.assertThrows(TaskNotFoundException.class,
+            () -> taskManager.getTaskView(epic.getId()), "Epic is not a task.")
+    );
+  }
+
   @Test
   @DisplayName("getPrioritized() - returns an empty List when task manager is new. ")
   public void getPrioritizedTasksReturnsEmptyListWhenTaskManagerIsNew() {
@@ -707,6 +912,27 @@ public abstract class TaskManagerTest<T extends TaskManager> {
     );
   }
 
+  @Test
+  @DisplayName("addEpic(Epic) - counts every embedded subtask once.")
+  void addEpicShouldCountEmbeddedSubtasksOnce() {
+    Epic epicToAdd = TestDataBuilder.buildEpic("epic", "d");
+    epicToAdd.addSubtask(TestDataBuilder.buildSubtask(0, "st1", "d", 0));
+    epicToAdd.addSubtask(TestDataBuilder.buildSubtask(-1, "st2", "d", 0, TaskStatus.DONE,
+        Duration.ofMinutes(10), BASE_TEST_TIME));
+
+    Epic epic = taskManager.addEpic(epicToAdd);
+    Epic epicSaved = taskManager.getEpicById(epic.getId());
+
+    Assertions.assertAll(
+        () -> Assertions.assertEquals(2, epicSaved.getSubtasks().size(),
+            "Epic should hold only the added subtasks."),
+        () -> Assertions.assertEquals(Duration.ofMinutes(10), epicSaved.getDuration(),
+            "Duration of every subtask should be counted once."),
+        () -> Assertions.assertEquals(TaskStatus.IN_PROGRESS, epicSaved.getStatus(),
+            "Status should be counted from the added subtasks.")
+    );
+  }
+
   @Test
   @DisplayName("addEpic(Epic) - generates an ID.")
   void addEpicShouldGenerateNewIdWhenSavingInTaskManagerEpicWithId() {
@@ -0,0 +1,229 @@
+package ru.yandex.practicum.tasktracker.service;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.function.BooleanSupplier;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import ru.yandex.practicum.tasktracker.builder.TestDataBuilder;
+import ru.yandex.practicum.tasktracker.exception.ManagerSaveException;
+import ru.yandex.practicum.tasktracker.model.Epic;
+
+class WriteBehindFileBackedTaskManagerTest extends TaskManagerTest<FileBackedTaskManager> {
+
+  private static final Duration LONG_INTERVAL = Duration.ofHours(1);
+  private static final long WAITING_TIMEOUT_MILLIS = 5_000;
+
+  private File file;
+
+  @BeforeEach
+  @Override
+  void setUp() {
+    try {
+      file = File.createTempFile("writeBehindFile", ".csv");
+      file.deleteOnExit();
+      Path.of(file.getPath() + ".journal").toFile().deleteOnExit();
+      taskManager = FileBackedTaskManager.loadFromFile(file, writeBehind(LONG_INTERVAL, 1000));
+    } catch (IOException e) {
+      System.out.println(e.getMessage());
+    }
+  }
+
+  @AfterEach
+  void tearDown() {
+    taskManager.close();
+  }
+
+  @Test
+  @DisplayName("Write-behind mode does not write to the file on the caller's thread.")
+  void modifyingOperationsShouldNotBeWrittenBeforeFlush() throws IOException {
+    taskManager.addTask(TestDataBuilder.buildTask("t1", "d1"));
+    taskManager.addTask(TestDataBuilder.buildTask("t2", "d2"));
+
+    Assertions.assertEquals(0, Files.size(file.toPath()), "Nothing should be written yet.");
+
+    taskManager.close();
+
+    Assertions.assertEquals(2, FileBackedTaskManager.loadFromFile(file).getTasks().size(),
+        "Pending operations should be written on closing.");
+  }
+
+  @Test
+  @DisplayName("Write-behind mode writes a group when the number of operations is reached.")
+  void groupShouldBeFlushedWhenNumberOfOperationsIsReached() throws InterruptedException {
+    taskManager.close();
+    taskManager = FileBackedTaskManager.loadFromFile(file, writeBehind(LONG_INTERVAL, 3));
+
+    taskManager.addTask(TestDataBuilder.buildTask("t1", "d1"));
+    taskManager.addTask(TestDataBuilder.buildTask("t2", "d2"));
+    taskManager.addTask(TestDataBuilder.buildTask("t3", "d3"));
+
+    Assertions.assertTrue(
+        waitFor(() -> FileBackedTaskManager.loadFromFile(file).getTasks().size() == 3),
+        "Group should be written in the background.");
+  }
+
+  @Test
+  @DisplayName("Composite operation is registered as one operation.")
+  void addEpicWithSubtasksShouldBePersistedOnce() throws IOException {
+    taskManager.close();
+    taskManager = FileBackedTaskManager.loadFromFile(file, writeBehind(LONG_INTERVAL, 2));
+    final Epic epic = TestDataBuilder.buildEpic("epic", "d");
+    for (int i = 0; i < 5; i++) {
+      epic.addSubtask(TestDataBuilder.buildSubtask(-i, "st" + i, "d", 0));
+    }
+
+    taskManager.addEpic(epic);
+
+    Assertions.assertEquals(0, Files.size(file.toPath()),
+        "Epic with subtasks should not reach the number of operations to flush.");
+  }
+
+  @Test
+  @DisplayName("Scheduling the unscheduled tasks is registered as one operation.")
+  void scheduleUnscheduledShouldBePersistedOnce() throws IOException {
+    taskManager.close();
+    taskManager = FileBackedTaskManager.loadFromFile(file, writeBehind(LONG_INTERVAL, 5));
+    for (int i = 0; i < 3; i++) {
+      taskManager.addTask(TestDataBuilder.buildTask("t" + i, "d"));
+    }
+
+    taskManager.scheduleUnscheduled(BASE_TEST_TIME);
+
+    Assertions.assertEquals(0, Files.size(file.toPath()),
+        "Scheduled tasks should not reach the number of operations to flush.");
+  }
+
+  @Test
+  @DisplayName("Write-behind mode writes a group when the interval has passed.")
+  void groupShouldBeFlushedWhenIntervalHasPassed() throws InterruptedException {
+    taskManager.close();
+    taskManager = FileBackedTaskManager.loadFromFile(file,
+        writeBehind(Duration.ofMillis(20), 1000));
+
+    taskManager.addTask(TestDataBuilder.buildTask("t1", "d1"));
+
+    Assertions.assertTrue(
+        waitFor(() -> FileBackedTaskManager.loadFromFile(file).getTasks().size() == 1),
+        "Group should be written in the background.");
+  }
+
+  @Test
+  @DisplayName("Write-behind mode commits journal records in groups.")
+  void journalRecordsShouldBeCommittedInGroups() {
+    taskManager.close();
+    taskManager = FileBackedTaskManager.loadFromFile(file,
+        writeBehind(LONG_INTERVAL, 1000).setJournalEnabled(true).setDurability(Durability.FSYNC));
+    TestDataBuilder.addTaskDataToTheTaskManager(taskManager);
+
+    taskManager.close();
+    final FileBackedTaskManager restored = FileBackedTaskManager.loadFromFile(file);
+
+    Assertions.assertAll(
+        () -> Assertions.assertEquals(taskManager.getTasks().size(), restored.getTasks().size(),
+            "Tasks should be restored."),
+        () -> Assertions.assertEquals(taskManager.getSubtasks().size(),
+            restored.getSubtasks().size(), "Subtasks should be restored."),
+        () -> Assertions.assertIterableEquals(taskManager.getPrioritizedTasks(),
+            restored.getPrioritizedTasks(), "Prioritized list should be same.")
+    );
+  }
+
+  @Test
+  @DisplayName("Failed background flush is reported by checkHealth(), not by the next operation.")
+  void failedFlushShouldBeReportedByHealthCheck() throws IOException, InterruptedException {
+    taskManager.close();
+    taskManager = FileBackedTaskManager.loadFromFile(file, writeBehind(LONG_INTERVAL, 1));
+    final Path blocker = blockSnapshot();
+
+    taskManager.addTask(TestDataBuilder.buildTask("t1", "d1"));
+    Assertions.assertTrue(waitFor(() -> failsHealthCheck(taskManager)),
+        "Failed flush should be reported by the health check.");
+    Assertions.assertDoesNotThrow(
+        () -> taskManager.addTask(TestDataBuilder.buildTask("t2", "d2")),
+        "Next operation should not report the failed flush.");
+    Files.delete(blocker);
+    taskManager.close();
+
+    Assertions.assertEquals(2, FileBackedTaskManager.loadFromFile(file).getTasks().size(),
+        "Pending operations should be written on closing.");
+  }
+
+  @Test
+  @DisplayName("Operations left after a failed flush are written by the next operation.")
+  void groupShouldBeFlushedByNextOperationAfterFailedFlush()
+      throws IOException, InterruptedException {
+    taskManager.close();
+    taskManager = FileBackedTaskManager.loadFromFile(file, writeBehind(LONG_INTERVAL, 2));
+    final Path blocker = blockSnapshot();
+
+    taskManager.addTask(TestDataBuilder.buildTask("t1", "d1"));
+    taskManager.addTask(TestDataBuilder.buildTask("t2", "d2"));
+    Assertions.assertTrue(waitFor(() -> failsHealthCheck(taskManager)),
+        "Flush should fail.");
+    Files.delete(blocker);
+    taskManager.addTask(TestDataBuilder.buildTask("t3", "d3"));
+
+    Assertions.assertTrue(
+        waitFor(() -> FileBackedTaskManager.loadFromFile(file).getTasks().size() == 3),
+        "Pending operations should be written without waiting for the interval.");
+  }
+
+  @Test
+  @DisplayName("close() reports pending operations that cannot be written.")
+  void closeShouldReportFailedFlush() throws IOException {
+    final Path blocker = blockSnapshot();
+    taskManager.addTask(TestDataBuilder.buildTask("t1", "d1"));
+
+    try {
+      Assertions.assertThrows(ManagerSaveException.class, () -> taskManager.close(),
+          "Failed flush should be reported on closing.");
+    } finally {
+      Files.delete(blocker);
+    }
+  }
+
+  /**
+   * Puts a directory in place of the temporary snapshot file, so no snapshot can be written.
+   */
+  private Path blockSnapshot() throws IOException {
+    return Files.createDirectory(Path.of(file.getPath() + ".tmp"));
+  }
+
+  private static boolean failsHealthCheck(final FileBackedTaskManager manager) {
+    try {
+      manager.checkHealth();
+      return false;
+    } catch (ManagerSaveException e) {
+      return true;
+    }
+  }
+
+  private static StorageConfig writeBehind(final Duration interval, final int operations) {
+    return StorageConfig.snapshot()
+        .setWriteBehindEnabled(true)
+        .setFlushInterval(interval)
+        .setFlushOperations(operations);
+  }
+
+  private static boolean waitFor(final BooleanSupplier condition) throws InterruptedException {
+    final long deadline = System.currentTimeMillis() + WAITING_TIMEOUT_MILLIS;
+    while (System.currentTimeMillis() < deadline) {
+      try {
+        if (condition.getAsBoolean()) {
+          return true;
+        }
+      } catch (RuntimeException e) {
+        /* The file is being rewritten by the flusher, try again. */
+      }
+      Thread.sleep(10);
+    }
+    return false;
+  }
+}